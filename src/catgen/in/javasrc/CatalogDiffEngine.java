@@ -527,6 +527,10 @@ public class CatalogDiffEngine {
             return null;
         if (suspect instanceof Cluster && field.equals("heartbeatTimeout"))
             return null;
+        // read by each snapshot and rejoin, and recorded with the data they compress
+        if (suspect instanceof Systemsettings &&
+                (field.equals("snapshotcompression") || field.equals("rejoincompression")))
+            return null;
         if (suspect instanceof Constraint && field.equals("index"))
             return null;
         if (suspect instanceof Table) {
@@ -46,8 +46,14 @@ public class ForeignHost {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private static final RateLimitedLogger rateLimitedLogger = new RateLimitedLogger(10 * 1000, hostLog, Level.WARN);
 
-    final PicoNetwork m_network;
-    final FHInputHandler m_handler;
+    /*
+     * One network per stripe. Messages are striped by destination site so
+     * that all traffic to a given site travels on one socket and stays ordered.
+     */
+    final PicoNetwork m_networks[];
+    private final FHInputHandler m_handlers[];
+    // one per stripe, null if messages are not coalesced
+    private final MessageBatcher m_batchers[];
     private final HostMessenger m_hostMessenger;
     private final Integer m_hostId;
     final InetSocketAddress m_listeningAddress;
@@ -55,8 +61,8 @@ public class ForeignHost {
     private boolean m_closing;
     boolean m_isUp;
 
-    // hold onto the socket so we can kill it
-    private final Socket m_socket;
+    // hold onto the sockets so we can kill them
+    private final Socket m_sockets[];
 
     // Set the default here for TestMessaging, which currently has no VoltDB instance
     private long m_deadHostTimeout;
@@ -65,6 +71,10 @@ public class ForeignHost {
     private final AtomicInteger m_deadReportsCount = new AtomicInteger(0);
 
     public static final int POISON_PILL = -1;
+    /*
+     * Destination count of a frame that carries several coalesced frames, see MessageBatcher
+     */
+    public static final int COALESCED = -2;
 
     public static final int CRASH_ALL = 0;
     public static final int CRASH_ME = 1;
@@ -119,24 +129,42 @@ public class ForeignHost {
         }
     }
 
-    /** Create a ForeignHost and install in VoltNetwork */
-    ForeignHost(HostMessenger host, int hostId, SocketChannel socket, int deadHostTimeout,
-            InetSocketAddress listeningAddress, PicoNetwork network)
+    /**
+     * Create a ForeignHost and install in VoltNetwork. The first socket is the
+     * one the mesh was negotiated on, any others are additional stripes.
+     */
+    ForeignHost(HostMessenger host, int hostId, SocketChannel sockets[], int deadHostTimeout,
+            InetSocketAddress listeningAddress, PicoNetwork networks[], long coalesceWindowMicros)
     throws IOException
     {
+        assert(sockets.length > 0 && sockets.length == networks.length);
         m_hostMessenger = host;
-        m_handler = new FHInputHandler();
         m_hostId = hostId;
         m_closing = false;
         m_isUp = true;
-        m_socket = socket.socket();
+        m_sockets = new Socket[sockets.length];
+        m_handlers = new FHInputHandler[sockets.length];
+        for (int ii = 0; ii < sockets.length; ii++) {
+            m_sockets[ii] = sockets[ii].socket();
+            m_handlers[ii] = new FHInputHandler();
+        }
         m_deadHostTimeout = deadHostTimeout;
         m_listeningAddress = listeningAddress;
-        m_network = network;
+        m_networks = networks;
+        if (coalesceWindowMicros >= 0) {
+            m_batchers = new MessageBatcher[networks.length];
+            for (int ii = 0; ii < networks.length; ii++) {
+                m_batchers[ii] = new MessageBatcher(networks[ii], coalesceWindowMicros);
+            }
+        } else {
+            m_batchers = null;
+        }
     }
 
     public void enableRead(Set<Long> verbotenThreads) {
-        m_network.start(m_handler, verbotenThreads);
+        for (int ii = 0; ii < m_networks.length; ii++) {
+            m_networks[ii].start(m_handlers[ii], verbotenThreads);
+        }
     }
 
     synchronized void close()
@@ -145,22 +173,40 @@ public class ForeignHost {
         if (m_closing) return;
         m_closing = true;
         try {
-            m_network.shutdownAsync();
+            for (PicoNetwork network : m_networks) {
+                network.shutdownAsync();
+            }
         } catch (InterruptedException e) {
             Throwables.propagate(e);
         }
     }
 
+    int stripeCount() {
+        return m_networks.length;
+    }
+
+    /**
+     * The stripe that carries all traffic to the specified site. Sites are spread by
+     * site id since every destination behind this foreign host shares a host id.
+     */
+    int stripeFor(long hsId) {
+        return (CoreUtils.getSiteIdFromHSId(hsId) & Integer.MAX_VALUE) % m_networks.length;
+    }
+
     /**
      * Used only for test code to kill this FH
      */
     void killSocket() {
         try {
             m_closing = true;
-            m_socket.setKeepAlive(false);
-            m_socket.setSoLinger(false, 0);
+            for (Socket socket : m_sockets) {
+                socket.setKeepAlive(false);
+                socket.setSoLinger(false, 0);
+            }
             Thread.sleep(25);
-            m_socket.close();
+            for (Socket socket : m_sockets) {
+                socket.close();
+            }
             Thread.sleep(25);
             System.gc();
             Thread.sleep(25);
@@ -197,16 +243,123 @@ public class ForeignHost {
             return;
         }
 
-        m_network.enqueue(
+        if (m_networks.length == 1) {
+            write(0, destinations, message, null);
+        } else {
+            final int stripe = stripeFor(destinations[0]);
+            if (sameStripe(stripe, destinations)) {
+                write(stripe, destinations, message, null);
+            } else {
+                final long destinationsByStripe[][] = splitByStripe(destinations);
+                for (int ii = 0; ii < destinationsByStripe.length; ii++) {
+                    if (destinationsByStripe[ii] != null) {
+                        write(ii, destinationsByStripe[ii], message, null);
+                    }
+                }
+            }
+        }
+
+        checkLiveness();
+    }
+
+    /**
+     * Send a message whose destinations were already split with splitByStripe. If the payload
+     * is not null the message was flattened up front and each write retains the payload.
+     * This public method is re-entrant.
+     */
+    void send(
+            final long destinationsByStripe[][],
+            final VoltMessage message,
+            final MulticastPayload payload)
+    {
+        assert(destinationsByStripe.length == m_networks.length);
+        for (int ii = 0; ii < destinationsByStripe.length; ii++) {
+            if (destinationsByStripe[ii] != null) {
+                write(ii, destinationsByStripe[ii], message, payload);
+            }
+        }
+
+        checkLiveness();
+    }
+
+    private boolean sameStripe(int stripe, final long destinations[]) {
+        for (int ii = 1; ii < destinations.length; ii++) {
+            if (stripeFor(destinations[ii]) != stripe) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Split the destinations by stripe so that each site keeps receiving
+     * its messages in order on its own stripe. Stripes without destinations are null.
+     */
+    long[][] splitByStripe(final long destinations[]) {
+        final long destinationsByStripe[][] = new long[m_networks.length][];
+        final int counts[] = new int[m_networks.length];
+        for (long hsId : destinations) {
+            counts[stripeFor(hsId)]++;
+        }
+        for (int stripe = 0; stripe < m_networks.length; stripe++) {
+            if (counts[stripe] == 0) continue;
+            final long stripeDestinations[] = new long[counts[stripe]];
+            int idx = 0;
+            for (long hsId : destinations) {
+                if (stripeFor(hsId) == stripe) {
+                    stripeDestinations[idx++] = hsId;
+                }
+            }
+            destinationsByStripe[stripe] = stripeDestinations;
+        }
+        return destinationsByStripe;
+    }
+
+    private void write(
+            final int stripe,
+            final long destinations[],
+            final VoltMessage message,
+            final MulticastPayload payload)
+    {
+        if (m_batchers != null) {
+            m_batchers[stripe].send(destinations, message, payload);
+        } else {
+            enqueue(m_networks[stripe], destinations, message, payload);
+        }
+    }
+
+    static int headerSize(final long destinations[]) {
+        return 4            /* length prefix */
+             + 8            /* source hsid */
+             + 4            /* destinationCount */
+             + 8 * destinations.length;  /* destination list */
+    }
+
+    private static void putHeader(final ByteBuffer buf, final long destinations[], final VoltMessage message) {
+        buf.putInt(buf.capacity() - 4);
+        buf.putLong(message.m_sourceHSId);
+        buf.putInt(destinations.length);
+        for (int ii = 0; ii < destinations.length; ii++) {
+            buf.putLong(destinations[ii]);
+        }
+    }
+
+    private static void enqueue(
+            final PicoNetwork network,
+            final long destinations[],
+            final VoltMessage message,
+            final MulticastPayload payload)
+    {
+        if (payload != null) {
+            enqueueShared(network, destinations, message, payload);
+            return;
+        }
+
+        network.enqueue(
                 new DeferredSerialization() {
                     @Override
                     public final void serialize(final ByteBuffer buf) throws IOException {
-                        buf.putInt(buf.capacity() - 4);
-                        buf.putLong(message.m_sourceHSId);
-                        buf.putInt(destinations.length);
-                        for (int ii = 0; ii < destinations.length; ii++) {
-                            buf.putLong(destinations[ii]);
-                        }
+                        putHeader(buf, destinations, message);
                         message.flattenToBuffer(buf);
                         buf.flip();
                     }
@@ -225,15 +378,53 @@ public class ForeignHost {
 
                     @Override
                     public int getSerializedSize() {
-                        final int len = 4            /* length prefix */
-                                + 8            /* source hsid */
-                                + 4            /* destinationCount */
-                                + 8 * destinations.length  /* destination list */
-                                + message.getSerializedSize();
-                        return len;
+                        return headerSize(destinations) + message.getSerializedSize();
                     }
                 });
+    }
 
+    /*
+     * Copy the already flattened message after the header, serialization and cancellation
+     * both give up the reference this write retains
+     */
+    private static void enqueueShared(
+            final PicoNetwork network,
+            final long destinations[],
+            final VoltMessage message,
+            final MulticastPayload payload)
+    {
+        payload.retain();
+        network.enqueue(
+                new DeferredSerialization() {
+                    @Override
+                    public final void serialize(final ByteBuffer buf) throws IOException {
+                        try {
+                            putHeader(buf, destinations, message);
+                            payload.copyTo(buf);
+                            buf.flip();
+                        } finally {
+                            payload.release();
+                        }
+                    }
+
+                    @Override
+                    public final void cancel() {
+                        payload.release();
+                    }
+
+                    @Override
+                    public String toString() {
+                        return message.getClass().getName();
+                    }
+
+                    @Override
+                    public int getSerializedSize() {
+                        return headerSize(destinations) + payload.size();
+                    }
+                });
+    }
+
+    private void checkLiveness() {
         long current_time = EstTime.currentTimeMillis();
         long current_delta = current_time - m_lastMessageMillis.get();
         /*
@@ -266,11 +457,11 @@ public class ForeignHost {
 
 
     String hostnameAndIPAndPort() {
-        return m_network.getHostnameAndIPAndPort();
+        return m_networks[0].getHostnameAndIPAndPort();
     }
 
     String hostname() {
-        return m_network.getHostnameOrIP();
+        return m_networks[0].getHostnameOrIP();
     }
 
     /** Deliver a deserialized message from the network to a local mailbox */
@@ -280,7 +471,7 @@ public class ForeignHost {
                     m_hostMessenger.getHostId() + " from " + CoreUtils.hsIdToString(message.m_sourceHSId) +
                     " which is a known failed host. The message will be dropped\n",
                     message.getClass().getSimpleName(),
-                    CoreUtils.hsIdToString(destinationHSId), m_socket.getRemoteSocketAddress().toString()));
+                    CoreUtils.hsIdToString(destinationHSId), m_sockets[0].getRemoteSocketAddress().toString()));
             return;
         }
 
@@ -293,7 +484,7 @@ public class ForeignHost {
             hostLog.info(String.format("Message (%s) sent to unknown site id: %s @ (%s) at " +
                     m_hostMessenger.getHostId() + " from " + CoreUtils.hsIdToString(message.m_sourceHSId) + "\n",
                     message.getClass().getSimpleName(),
-                    CoreUtils.hsIdToString(destinationHSId), m_socket.getRemoteSocketAddress().toString()));
+                    CoreUtils.hsIdToString(destinationHSId), m_sockets[0].getRemoteSocketAddress().toString()));
             /*
              * If it is for the wrong host, that definitely isn't cool
              */
@@ -313,8 +504,6 @@ public class ForeignHost {
     private void handleRead(ByteBuffer in, Connection c) throws IOException {
         // port is locked by VoltNetwork when in valid use.
         // assert(m_port.m_lock.tryLock() == true);
-        long recvDests[] = null;
-
         final long sourceHSId = in.getLong();
         final int destCount = in.getInt();
         if (destCount == POISON_PILL) {//This is a poison pill
@@ -344,7 +533,36 @@ public class ForeignHost {
             return;
         }
 
-        recvDests = new long[destCount];
+        if (destCount == COALESCED) {
+            /*
+             * Each coalesced frame is delivered in place by narrowing the limit,
+             * messages slice what they keep so nothing is copied
+             */
+            final int messageCount = in.getInt();
+            final int limit = in.limit();
+            for (int ii = 0; ii < messageCount; ii++) {
+                final int frameLength = in.getInt();
+                final int end = in.position() + frameLength;
+                in.limit(end);
+                final long frameSourceHSId = in.getLong();
+                handleFrame(frameSourceHSId, in.getInt(), in);
+                in.limit(limit);
+                in.position(end);
+            }
+        } else {
+            handleFrame(sourceHSId, destCount, in);
+        }
+
+        //m_lastMessageMillis = System.currentTimeMillis();
+        m_lastMessageMillis.lazySet(EstTime.currentTimeMillis());
+
+    }
+
+    /*
+     * Deliver the message of one frame, positioned after its destination count
+     */
+    private void handleFrame(final long sourceHSId, final int destCount, ByteBuffer in) throws IOException {
+        final long recvDests[] = new long[destCount];
         for (int i = 0; i < destCount; i++) {
             recvDests[i] = in.getLong();
         }
@@ -367,10 +585,6 @@ public class ForeignHost {
         for (int i = 0; i < destCount; i++) {
             deliverMessage( recvDests[i], message);
         }
-
-        //m_lastMessageMillis = System.currentTimeMillis();
-        m_lastMessageMillis.lazySet(EstTime.currentTimeMillis());
-
     }
 
     public void sendPoisonPill(String err, int cause) {
@@ -389,7 +603,7 @@ public class ForeignHost {
         message.put(errBytes);
         message.putInt(cause);
         message.flip();
-        m_network.enqueue(message);
+        m_networks[0].enqueue(message);
     }
 
     public void updateDeadHostTimeout(int timeout) {
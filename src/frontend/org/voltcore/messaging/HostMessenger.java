@@ -17,14 +17,16 @@
 
 package org.voltcore.messaging;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
 import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -94,6 +96,18 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         public VoltMessageFactory factory = new VoltMessageFactory();
         public int networkThreads =  Math.max(2, CoreUtils.availableProcessors() / 4);
         public Queue<String> coreBindIds;
+        /*
+         * Number of sockets (each with its own network thread) opened to every
+         * other host in the mesh. The joining node decides the count for each pair.
+         */
+        public int foreignHostStripes = 1;
+        /*
+         * Coalesce messages to each host into batched frames, waiting up to this many
+         * microseconds for a batch to fill. 0 batches only what queues up while the
+         * network thread is busy, -1 disables coalescing. Nodes from builds without
+         * coalescing can't read batched frames, leave it off while the cluster runs them.
+         */
+        public long coalesceWindowMicros = -1;
 
         public Config(String coordIp, int coordPort) {
             if (coordIp == null || coordIp.length() == 0) {
@@ -102,6 +116,12 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 coordinatorIp = new InetSocketAddress(coordIp, coordPort);
             }
             initNetworkThreads();
+            initForeignHostStripes();
+            Long windowConfig = Long.getLong("foreignHostCoalesceWindowMicros");
+            if (windowConfig != null) {
+                coalesceWindowMicros = windowConfig;
+                logger.info("Overridden foreign host coalescing window: " + coalesceWindowMicros);
+            }
         }
 
         public Config() {
@@ -132,6 +152,18 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
             }
         }
 
+        private void initForeignHostStripes() {
+            Integer stripesConfig = Integer.getInteger("foreignHostStripes");
+            if (stripesConfig != null) {
+                if (stripesConfig < 1) {
+                    logger.error("Ignoring invalid foreign host stripe count " + stripesConfig);
+                } else {
+                    this.foreignHostStripes = stripesConfig;
+                    logger.info("Overridden foreign host stripe count: " + this.foreignHostStripes);
+                }
+            }
+        }
+
         @Override
         public String toString() {
             JSONStringer js = new JSONStringer();
@@ -144,6 +176,8 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 js.key("deadhosttimeout").value(deadHostTimeout);
                 js.key("backwardstimeforgivenesswindow").value(backwardsTimeForgivenessWindow);
                 js.key("networkThreads").value(networkThreads);
+                js.key("foreignHostStripes").value(foreignHostStripes);
+                js.key("coalesceWindowMicros").value(coalesceWindowMicros);
                 js.endObject();
 
                 return js.toString();
@@ -203,6 +237,61 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
      */
     private volatile ImmutableSet<Integer> m_knownFailedHosts = ImmutableSet.of();
 
+    /*
+     * Bumped after every change to the foreign host or mailbox maps so cached
+     * multicast plans know when they are stale
+     */
+    private volatile int m_topologyVersion = 0;
+
+    /*
+     * Direct mapped cache of multicast plans keyed by destination list.
+     * Plans are immutable (final fields) so racing writers are harmless.
+     */
+    private static final int MULTICAST_PLAN_CACHE_SIZE = 64;
+    private final MulticastPlan m_multicastPlans[] = new MulticastPlan[MULTICAST_PLAN_CACHE_SIZE];
+
+    /*
+     * How a multicast destination list splits between local mailboxes and the
+     * stripes of each foreign host, valid for one topology version
+     */
+    private static final class MulticastPlan {
+        final int m_topologyVersion;
+        final long m_destinations[];
+        final long m_localDestinations[];
+        final Mailbox m_localMailboxes[];
+        // parallel, a host id with a null foreign host was not connected
+        final int m_hostIds[];
+        final ForeignHost m_hosts[];
+        final long m_hostDestinations[][];
+        final long m_hostDestinationsByStripe[][][];
+        final int m_hostStripesUsed[];
+
+        MulticastPlan(
+                int topologyVersion, long destinations[],
+                long localDestinations[], Mailbox localMailboxes[],
+                int hostIds[], ForeignHost hosts[],
+                long hostDestinations[][], long hostDestinationsByStripe[][][])
+        {
+            m_topologyVersion = topologyVersion;
+            m_destinations = destinations;
+            m_localDestinations = localDestinations;
+            m_localMailboxes = localMailboxes;
+            m_hostIds = hostIds;
+            m_hosts = hosts;
+            m_hostDestinations = hostDestinations;
+            m_hostDestinationsByStripe = hostDestinationsByStripe;
+            m_hostStripesUsed = new int[hosts.length];
+            for (int ii = 0; ii < hosts.length; ii++) {
+                if (hostDestinationsByStripe[ii] == null) continue;
+                for (long stripe[] : hostDestinationsByStripe[ii]) {
+                    if (stripe != null) {
+                        m_hostStripesUsed[ii]++;
+                    }
+                }
+            }
+        }
+    }
+
     private AgreementSite m_agreementSite;
     private ZooKeeper m_zk;
     private final AtomicInteger m_nextSiteId = new AtomicInteger(0);
@@ -228,6 +317,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 m_config.coordinatorIp,
                 m_config.internalInterface,
                 m_config.internalPort,
+                m_config.foreignHostStripes,
                 this);
 
         // Register a clean shutdown hook for the network threads.  This gets cranky
@@ -448,12 +538,11 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
      * and put it in the map of foreign hosts
      */
     @Override
-    public void notifyOfJoin(int hostId, SocketChannel socket, InetSocketAddress listeningAddress) {
+    public void notifyOfJoin(int hostId, SocketChannel sockets[], InetSocketAddress listeningAddress) {
         logger.info(getHostId() + " notified of " + hostId);
-        prepSocketChannel(socket);
         ForeignHost fhost = null;
         try {
-            fhost = new ForeignHost(this, hostId, socket, m_config.deadHostTimeout, listeningAddress, new PicoNetwork(socket));
+            fhost = createForeignHost(hostId, sockets, listeningAddress);
             putForeignHost(hostId, fhost);
             fhost.enableRead(VERBOTEN_THREADS);
         } catch (java.io.IOException e) {
@@ -461,6 +550,20 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         }
     }
 
+    /*
+     * Wrap each socket (stripe) to a host in its own network
+     */
+    private ForeignHost createForeignHost(
+            int hostId, SocketChannel sockets[], InetSocketAddress listeningAddress) throws java.io.IOException {
+        PicoNetwork networks[] = new PicoNetwork[sockets.length];
+        for (int ii = 0; ii < sockets.length; ii++) {
+            prepSocketChannel(sockets[ii]);
+            networks[ii] = new PicoNetwork(sockets[ii]);
+        }
+        return new ForeignHost(this, hostId, sockets, m_config.deadHostTimeout, listeningAddress, networks,
+                m_config.coalesceWindowMicros);
+    }
+
     /*
      * Set all the default options for sockets
      */
@@ -482,6 +585,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
             b.putAll(m_foreignHosts);
             b.put(hostId, fh);
             m_foreignHosts = b.build();
+            m_topologyVersion++;
         }
     }
 
@@ -500,6 +604,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 b.put(e.getKey(), e.getValue());
             }
             m_foreignHosts = b.build();
+            m_topologyVersion++;
         }
         if (fh != null) {
             fh.close();
@@ -511,7 +616,11 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
      * is done via ZK
      */
     @Override
-    public void requestJoin(SocketChannel socket, InetSocketAddress listeningAddress) throws Exception {
+    public void requestJoin(SocketChannel sockets[], InetSocketAddress listeningAddress) throws Exception {
+        /*
+         * The join is negotiated on the first socket, the rest are additional stripes
+         */
+        final SocketChannel socket = sockets[0];
         /*
          * Generate the host id via creating an ephemeral sequential node
          */
@@ -546,7 +655,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 /*
                  * Now add the host to the mailbox system
                  */
-                fhost = new ForeignHost(this, hostId, socket, m_config.deadHostTimeout, listeningAddress, new PicoNetwork(socket));
+                fhost = createForeignHost(hostId, sockets, listeningAddress);
                 putForeignHost(hostId, fhost);
                 fhost.enableRead(VERBOTEN_THREADS);
             } catch (Exception e) {
@@ -639,7 +748,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
     public void notifyOfHosts(
             int yourHostId,
             int[] hosts,
-            SocketChannel[] sockets,
+            SocketChannel[][] sockets,
             InetSocketAddress listeningAddresses[]) throws Exception {
         m_localHostId = yourHostId;
         long agreementHSId = getHSIdForLocalSite(AGREEMENT_SITE_ID);
@@ -655,10 +764,9 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
         for (int ii = 0; ii < hosts.length; ii++) {
             logger.info(yourHostId + " notified of host " + hosts[ii]);
             agreementSites.add(CoreUtils.getHSIdFromHostAndSite(hosts[ii], AGREEMENT_SITE_ID));
-            prepSocketChannel(sockets[ii]);
             ForeignHost fhost = null;
             try {
-                fhost = new ForeignHost(this, hosts[ii], sockets[ii], m_config.deadHostTimeout, listeningAddresses[ii], new PicoNetwork(sockets[ii]));
+                fhost = createForeignHost(hosts[ii], sockets[ii], listeningAddresses[ii]);
                 putForeignHost(hosts[ii], fhost);
             } catch (java.io.IOException e) {
                 org.voltdb.VoltDB.crashLocalVoltDB("", true, e);
@@ -854,6 +962,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 }
             }
             m_siteMailboxes = b.build();
+            m_topologyVersion++;
         }
     }
 
@@ -941,6 +1050,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
             b.putAll(m_siteMailboxes);
             b.put(hsId, m);
             m_siteMailboxes = b.build();
+            m_topologyVersion++;
         }
     }
 
@@ -955,6 +1065,7 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
                 b.put(e.getKey(), e.getValue());
             }
             m_siteMailboxes = b.build();
+            m_topologyVersion++;
         }
     }
 
@@ -972,24 +1083,134 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
     {
         assert(message != null);
         assert(destinationHSIds != null);
-        final HashMap<ForeignHost, ArrayList<Long>> foreignHosts =
-            new HashMap<ForeignHost, ArrayList<Long>>(32);
+        final MulticastPlan plan = getMulticastPlan(destinationHSIds);
+
+        for (int ii = 0; ii < plan.m_localMailboxes.length; ii++) {
+            final Mailbox mbox = plan.m_localMailboxes[ii];
+            if (mbox != null) {
+                mbox.deliver(message);
+            } else {
+                hostLog.info("Mailbox is not registered for site id " +
+                        CoreUtils.getSiteIdFromHSId(plan.m_localDestinations[ii]));
+            }
+        }
+
+        /*
+         * The message is flattened once and shared when it goes out
+         * on more than one foreign host stripe
+         */
+        int writes = 0;
+        for (int ii = 0; ii < plan.m_hosts.length; ii++) {
+            final ForeignHost host = plan.m_hosts[ii];
+            if (host != null && host.isUp()) {
+                writes += plan.m_hostStripesUsed[ii];
+            }
+        }
+
+        MulticastPayload payload = null;
+        if (writes > 1) {
+            try {
+                payload = MulticastPayload.flatten(message);
+            } catch (IOException e) {
+                org.voltdb.VoltDB.crashLocalVoltDB("Failed to serialize multicast message", true, e);
+            }
+        }
+        try {
+            for (int ii = 0; ii < plan.m_hosts.length; ii++) {
+                if (isLive(plan.m_hostIds[ii], plan.m_hosts[ii], plan.m_hostDestinations[ii])) {
+                    plan.m_hosts[ii].send(plan.m_hostDestinationsByStripe[ii], message, payload);
+                }
+            }
+        } finally {
+            if (payload != null) {
+                payload.release();
+            }
+        }
+    }
+
+    /*
+     * Same checks as presend, once per foreign host in a multicast
+     */
+    private boolean isLive(int hostId, ForeignHost fhost, long destinations[]) {
+        if (fhost == null) {
+            if (!m_knownFailedHosts.contains(hostId)) {
+                hostLog.warn(
+                        "Attempted to send a message to foreign host with id " +
+                        hostId + " but there is no such host.");
+            }
+            return false;
+        }
+        if (!fhost.isUp()) {
+            if (!m_shuttingDown) {
+                for (long hsId : destinations) {
+                    m_logger.warn("Attempted delivery of message to failed site: " + CoreUtils.hsIdToString(hsId));
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private MulticastPlan getMulticastPlan(long destinationHSIds[]) {
+        // read the version before the maps so a plan is never newer than its version
+        final int version = m_topologyVersion;
+        final int slot = Arrays.hashCode(destinationHSIds) & (MULTICAST_PLAN_CACHE_SIZE - 1);
+        MulticastPlan plan = m_multicastPlans[slot];
+        if (plan != null &&
+                plan.m_topologyVersion == version &&
+                Arrays.equals(plan.m_destinations, destinationHSIds)) {
+            return plan;
+        }
+        plan = buildMulticastPlan(version, destinationHSIds);
+        m_multicastPlans[slot] = plan;
+        return plan;
+    }
+
+    private MulticastPlan buildMulticastPlan(int version, long destinationHSIds[]) {
+        final ImmutableMap<Integer, ForeignHost> foreignHosts = m_foreignHosts;
+        final ImmutableMap<Long, Mailbox> siteMailboxes = m_siteMailboxes;
+
+        final ArrayList<Long> localDestinations = new ArrayList<Long>();
+        final LinkedHashMap<Integer, ArrayList<Long>> hostDestinations = new LinkedHashMap<Integer, ArrayList<Long>>();
         for (long hsId : destinationHSIds) {
-            ForeignHost host = presend(hsId, message);
-            if (host == null) continue;
-            ArrayList<Long> bundle = foreignHosts.get(host);
+            final int hostId = (int)hsId;
+            if (hostId == m_localHostId) {
+                localDestinations.add(hsId);
+                continue;
+            }
+            ArrayList<Long> bundle = hostDestinations.get(hostId);
             if (bundle == null) {
                 bundle = new ArrayList<Long>();
-                foreignHosts.put(host, bundle);
+                hostDestinations.put(hostId, bundle);
             }
             bundle.add(hsId);
         }
 
-        if (foreignHosts.size() == 0) return;
+        final long locals[] = Longs.toArray(localDestinations);
+        final Mailbox localMailboxes[] = new Mailbox[locals.length];
+        for (int ii = 0; ii < locals.length; ii++) {
+            localMailboxes[ii] = siteMailboxes.get(locals[ii]);
+        }
 
-        for (Entry<ForeignHost, ArrayList<Long>> e : foreignHosts.entrySet()) {
-            e.getKey().send(Longs.toArray(e.getValue()), message);
+        final int hostIds[] = new int[hostDestinations.size()];
+        final ForeignHost hosts[] = new ForeignHost[hostIds.length];
+        final long destinations[][] = new long[hostIds.length][];
+        final long destinationsByStripe[][][] = new long[hostIds.length][][];
+        int ii = 0;
+        for (Entry<Integer, ArrayList<Long>> e : hostDestinations.entrySet()) {
+            hostIds[ii] = e.getKey();
+            hosts[ii] = foreignHosts.get(e.getKey());
+            destinations[ii] = Longs.toArray(e.getValue());
+            if (hosts[ii] != null) {
+                destinationsByStripe[ii] = hosts[ii].splitByStripe(destinations[ii]);
+            }
+            ii++;
         }
+
+        return new MulticastPlan(
+                version, destinationHSIds.clone(),
+                locals, localMailboxes,
+                hostIds, hosts, destinations, destinationsByStripe);
     }
 
     /**
@@ -1124,10 +1345,13 @@ public class HostMessenger implements SocketJoiner.JoinHandler, InterfaceToMesse
     public Map<Long, Pair<String, long[]>>
         getIOStats(final boolean interval) throws InterruptedException, ExecutionException {
         final ImmutableMap<Integer, ForeignHost> fhosts = m_foreignHosts;
-        ArrayList<IOStatsIntf> picoNetworks = new ArrayList<IOStatsIntf>(fhosts.size());
+        ArrayList<IOStatsIntf> picoNetworks = new ArrayList<IOStatsIntf>(fhosts.size() * m_config.foreignHostStripes);
 
+        // every stripe reports as its own connection
         for (ForeignHost fh : fhosts.values()) {
-            picoNetworks.add(fh.m_network);
+            for (PicoNetwork pn : fh.m_networks) {
+                picoNetworks.add(pn);
+            }
         }
 
         return m_network.getIOStats(interval, picoNetworks);
@@ -0,0 +1,240 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.network.PicoNetwork;
+import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.DeferredSerialization;
+
+/**
+ * Coalesces the messages sent on one ForeignHost stripe into batched frames. The first
+ * message of a batch hands the batch to the network, right away or after the coalescing
+ * window, and messages sent before the network thread serializes the batch join the same
+ * frame. A burst of messages then costs one queued write and one selector wakeup.
+ *
+ * A batch of one message is written as an ordinary frame. A batch of several is written as
+ * a frame whose destination count is ForeignHost.COALESCED, followed by the message count
+ * and the ordinary frames of the messages, so the receiver can deliver each in place.
+ */
+final class MessageBatcher {
+    /*
+     * Keep batches within a network pool buffer so they serialize without a heap copy
+     */
+    static final int MAX_BATCH_BYTES = 16 * 1024;
+
+    /*
+     * length prefix, unused source hsid, COALESCED marker, message count
+     */
+    static final int COALESCED_HEADER_SIZE = 4 + 8 + 4 + 4;
+
+    private static ScheduledThreadPoolExecutor m_timer;
+
+    private static synchronized ScheduledThreadPoolExecutor timer() {
+        if (m_timer == null) {
+            m_timer = CoreUtils.getScheduledThreadPoolExecutor("Message Coalescing", 1, CoreUtils.SMALL_STACK_SIZE);
+        }
+        return m_timer;
+    }
+
+    private final PicoNetwork m_network;
+    private final long m_windowMicros;
+
+    // both guarded by this
+    private Batch m_open;
+    private Batch m_spare;
+
+    /**
+     * @param windowMicros How long the first message of a batch may wait for others,
+     * 0 to hand every batch to the network right away
+     */
+    MessageBatcher(PicoNetwork network, long windowMicros) {
+        assert(windowMicros >= 0);
+        m_network = network;
+        m_windowMicros = windowMicros;
+    }
+
+    /**
+     * Add a message to the open batch. A non-null payload is retained until the batch
+     * is serialized or cancelled. Batches are handed to the network under the lock so
+     * they go out in the order they were opened.
+     */
+    void send(long destinations[], VoltMessage message, MulticastPayload payload) {
+        final int size = ForeignHost.headerSize(destinations) +
+                (payload == null ? message.getSerializedSize() : payload.size());
+        if (payload != null) {
+            payload.retain();
+        }
+        synchronized (this) {
+            if (m_open != null && m_open.m_bytes + size > MAX_BATCH_BYTES) {
+                // full, it goes out now and later messages start another batch
+                if (!m_open.m_queued) {
+                    m_open.m_queued = true;
+                    m_network.enqueue(m_open);
+                }
+                m_open = null;
+            }
+            if (m_open == null) {
+                m_open = m_spare != null ? m_spare : new Batch();
+                m_spare = null;
+                m_open.add(destinations, message, payload, size);
+                if (m_windowMicros == 0) {
+                    m_open.m_queued = true;
+                    m_network.enqueue(m_open);
+                } else {
+                    scheduleFlush(m_open);
+                }
+            } else {
+                m_open.add(destinations, message, payload, size);
+            }
+        }
+    }
+
+    private void scheduleFlush(final Batch batch) {
+        final long generation = batch.m_generation;
+        timer().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MessageBatcher.this) {
+                    if (batch.m_generation == generation && !batch.m_queued) {
+                        batch.m_queued = true;
+                        m_network.enqueue(batch);
+                    }
+                }
+            }
+        }, m_windowMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /*
+     * The batch is its own deferred serialization. It is closed to new messages
+     * when the network thread sizes it, and reused once serialized.
+     */
+    private final class Batch implements DeferredSerialization {
+        private long m_destinations[][] = new long[16][];
+        private VoltMessage m_messages[] = new VoltMessage[16];
+        private MulticastPayload m_payloads[] = new MulticastPayload[16];
+        private int m_sizes[] = new int[16];
+        private int m_count = 0;
+        private int m_bytes = COALESCED_HEADER_SIZE;
+        // guarded by the batcher
+        private boolean m_queued = false;
+        private long m_generation = 0;
+
+        private void add(long destinations[], VoltMessage message, MulticastPayload payload, int size) {
+            if (m_count == m_messages.length) {
+                final int capacity = m_count * 2;
+                m_destinations = Arrays.copyOf(m_destinations, capacity);
+                m_messages = Arrays.copyOf(m_messages, capacity);
+                m_payloads = Arrays.copyOf(m_payloads, capacity);
+                m_sizes = Arrays.copyOf(m_sizes, capacity);
+            }
+            m_destinations[m_count] = destinations;
+            m_messages[m_count] = message;
+            m_payloads[m_count] = payload;
+            m_sizes[m_count] = size;
+            m_count++;
+            m_bytes += size;
+        }
+
+        private void close() {
+            synchronized (MessageBatcher.this) {
+                if (m_open == this) {
+                    m_open = null;
+                }
+            }
+        }
+
+        @Override
+        public int getSerializedSize() {
+            close();
+            return m_count == 1 ? m_sizes[0] : m_bytes;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            try {
+                if (m_count > 1) {
+                    buf.putInt(buf.capacity() - 4);
+                    buf.putLong(-1);
+                    buf.putInt(ForeignHost.COALESCED);
+                    buf.putInt(m_count);
+                }
+                for (int ii = 0; ii < m_count; ii++) {
+                    final long destinations[] = m_destinations[ii];
+                    buf.putInt(m_sizes[ii] - 4);
+                    buf.putLong(m_messages[ii].m_sourceHSId);
+                    buf.putInt(destinations.length);
+                    for (int jj = 0; jj < destinations.length; jj++) {
+                        buf.putLong(destinations[jj]);
+                    }
+                    if (m_payloads[ii] != null) {
+                        m_payloads[ii].copyTo(buf);
+                    } else {
+                        // messages may assume they are flattened into a buffer of exactly their size
+                        final int limit = buf.limit();
+                        buf.limit(buf.position() + m_sizes[ii] - ForeignHost.headerSize(destinations));
+                        m_messages[ii].flattenToBuffer(buf.slice());
+                        buf.position(buf.limit());
+                        buf.limit(limit);
+                    }
+                }
+                buf.flip();
+            } finally {
+                recycle();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            close();
+            for (int ii = 0; ii < m_count; ii++) {
+                if (m_payloads[ii] != null) {
+                    m_payloads[ii].release();
+                }
+            }
+        }
+
+        private void recycle() {
+            for (int ii = 0; ii < m_count; ii++) {
+                if (m_payloads[ii] != null) {
+                    m_payloads[ii].release();
+                    m_payloads[ii] = null;
+                }
+                m_destinations[ii] = null;
+                m_messages[ii] = null;
+            }
+            m_count = 0;
+            m_bytes = COALESCED_HEADER_SIZE;
+            synchronized (MessageBatcher.this) {
+                m_queued = false;
+                m_generation++;
+                m_spare = this;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Coalesced batch of " + m_count + " messages";
+        }
+    }
+}
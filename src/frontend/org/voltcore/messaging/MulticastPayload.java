@@ -0,0 +1,125 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+/**
+ * A message flattened once for a multicast that is written to several foreign
+ * hosts (or stripes of one host). The sender holds the first reference, every
+ * write retains another and releases it once the payload has been copied into
+ * its network buffers or the write was cancelled. The last release recycles the
+ * payload and its direct buffer, so steady state fan-out allocates no buffers.
+ */
+final class MulticastPayload {
+    /*
+     * Larger payloads go to the heap instead of pinning big direct buffers in the pool
+     */
+    static final int MAX_POOLED_SIZE = 64 * 1024;
+    private static final int MIN_POOLED_SIZE = 256;
+    private static final int POOLED_PER_SIZE =
+            Integer.getInteger("MULTICAST_PAYLOAD_POOL_SIZE", 128);
+
+    /*
+     * One pool per power of two size from MIN_POOLED_SIZE to MAX_POOLED_SIZE. Bounded queues
+     * backed by arrays so that recycling does not allocate either.
+     */
+    private static final ArrayBlockingQueue<MulticastPayload> m_pools[];
+    static {
+        final int sizes = Integer.numberOfTrailingZeros(MAX_POOLED_SIZE / MIN_POOLED_SIZE) + 1;
+        @SuppressWarnings("unchecked")
+        final ArrayBlockingQueue<MulticastPayload> pools[] = new ArrayBlockingQueue[sizes];
+        for (int ii = 0; ii < sizes; ii++) {
+            pools[ii] = new ArrayBlockingQueue<MulticastPayload>(POOLED_PER_SIZE);
+        }
+        m_pools = pools;
+    }
+
+    private final BBContainer m_container;
+    private final int m_pool;
+    private ByteBuffer m_payload;
+    private final AtomicInteger m_refCount = new AtomicInteger();
+
+    private MulticastPayload(BBContainer container, int pool) {
+        m_container = container;
+        m_pool = pool;
+    }
+
+    /**
+     * Flatten the message into a pooled (or, if large, heap) buffer. The caller
+     * holds the first reference.
+     */
+    static MulticastPayload flatten(VoltMessage message) throws IOException {
+        final int size = message.getSerializedSize();
+        MulticastPayload payload;
+        if (size <= MAX_POOLED_SIZE) {
+            final int capacity = Math.max(MIN_POOLED_SIZE, Integer.highestOneBit(Math.max(1, size - 1)) << 1);
+            final int pool = Integer.numberOfTrailingZeros(capacity / MIN_POOLED_SIZE);
+            payload = m_pools[pool].poll();
+            if (payload == null) {
+                payload = new MulticastPayload(DBBPool.allocateDirect(capacity), pool);
+            }
+        } else {
+            payload = new MulticastPayload(DBBPool.wrapBB(ByteBuffer.allocate(size)), -1);
+        }
+
+        final ByteBuffer buf = payload.m_container.b();
+        buf.clear();
+        buf.limit(size);
+        // messages may assume they are flattened into a buffer of exactly their size
+        final ByteBuffer slice = buf.slice();
+        message.flattenToBuffer(slice);
+        slice.flip();
+        payload.m_payload = slice;
+        payload.m_refCount.set(1);
+        return payload;
+    }
+
+    int size() {
+        return m_payload.remaining();
+    }
+
+    /**
+     * Copy the payload to the buffer without touching the shared position
+     */
+    void copyTo(ByteBuffer buf) {
+        buf.put(m_payload.duplicate());
+    }
+
+    void retain() {
+        m_refCount.incrementAndGet();
+    }
+
+    void release() {
+        final int count = m_refCount.decrementAndGet();
+        if (count == 0) {
+            m_payload = null;
+            if (m_pool < 0 || !m_pools[m_pool].offer(this)) {
+                m_container.discard();
+            }
+        } else if (count < 0) {
+            throw new IllegalStateException("Multicast payload released more times than it was referenced");
+        }
+    }
+}
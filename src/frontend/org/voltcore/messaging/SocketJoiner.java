@@ -30,8 +30,10 @@ import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
@@ -70,22 +72,23 @@ public class SocketJoiner {
     public interface JoinHandler {
         /*
          * Notify that a specific host has joined with the specified host id.
+         * The first socket published the host id, any others are additional stripes.
          */
-        public void notifyOfJoin(int hostId, SocketChannel socket, InetSocketAddress listeningAddress);
+        public void notifyOfJoin(int hostId, SocketChannel sockets[], InetSocketAddress listeningAddress);
 
         /*
-         * A node wants to join the socket mesh
+         * A node wants to join the socket mesh. The join is negotiated on the first socket.
          */
-        public void requestJoin(SocketChannel socket, InetSocketAddress listeningAddress ) throws Exception;
+        public void requestJoin(SocketChannel sockets[], InetSocketAddress listeningAddress ) throws Exception;
 
         /*
          * A connection has been made to all of the specified hosts. Invoked by
-         * nodes connected to the cluster
+         * nodes connected to the cluster. There is an array of stripes per host.
          */
         public void notifyOfHosts(
                 int yourLocalHostId,
                 int hosts[],
-                SocketChannel sockets[],
+                SocketChannel sockets[][],
                 InetSocketAddress listeningAddresses[]) throws Exception;
     }
 
@@ -102,6 +105,43 @@ public class SocketJoiner {
     private Selector m_selector;
     private final JoinHandler m_joinHandler;
 
+    /*
+     * Sockets per host pair opened by this node when it joins the mesh
+     */
+    private final int m_stripes;
+    /*
+     * Identifies the stripes opened by this node before its host id is known
+     */
+    private final long m_joinToken = new Random().nextLong();
+    /*
+     * Stripes accepted from joining nodes, by join token, waiting for the connection
+     * that requests or publishes the host id
+     */
+    private final Map<Long, PendingStripes> m_pendingStripes = new HashMap<Long, PendingStripes>();
+    /*
+     * How long accepted stripes wait for their host id request/publish before they are dropped
+     */
+    private static final long PENDING_STRIPE_TIMEOUT_MILLIS = 30 * 1000;
+
+    private static class PendingStripes {
+        final SocketChannel m_stripes[];
+        final long m_deadline = System.currentTimeMillis() + PENDING_STRIPE_TIMEOUT_MILLIS;
+
+        PendingStripes(int stripes) {
+            m_stripes = new SocketChannel[stripes];
+        }
+
+        void close() {
+            for (SocketChannel stripe : m_stripes) {
+                if (stripe != null) {
+                    try {
+                        stripe.close();
+                    } catch (IOException e) {}
+                }
+            }
+        }
+    }
+
     // from configuration data
     int m_internalPort = 3021;
     String m_internalInterface = "";
@@ -211,11 +251,13 @@ public class SocketJoiner {
             InetSocketAddress coordIp,
             String internalInterface,
             int internalPort,
+            int stripes,
             JoinHandler jh) {
-        if (internalInterface == null || coordIp == null || jh == null) {
+        if (internalInterface == null || coordIp == null || jh == null || stripes < 1) {
             throw new IllegalArgumentException();
         }
         m_coordIp = coordIp;
+        m_stripes = stripes;
         m_joinHandler = jh;
         m_internalInterface = internalInterface;
         m_internalPort = internalPort;
@@ -357,6 +399,14 @@ public class SocketJoiner {
              */
             String type = jsObj.getString("type");
 
+            /*
+             * Additional stripes arrive ahead of the connection that carries the host id
+             */
+            if (type.equals("PUBLISH_STRIPE")) {
+                addPendingStripe(sc, jsObj);
+                continue;
+            }
+
             /*
              * The new connection may specify the address it is listening on,
              * or it can be derived from the connection itself
@@ -376,15 +426,85 @@ public class SocketJoiner {
 
             hostLog.info("Received request type " + type);
             if (type.equals("REQUEST_HOSTID")) {
-                m_joinHandler.requestJoin( sc, listeningAddress);
+                m_joinHandler.requestJoin( collectStripes(sc, jsObj), listeningAddress);
             } else if (type.equals("PUBLISH_HOSTID")){
-                m_joinHandler.notifyOfJoin(jsObj.getInt("hostId"), sc, listeningAddress);
+                m_joinHandler.notifyOfJoin(jsObj.getInt("hostId"), collectStripes(sc, jsObj), listeningAddress);
             } else {
                 throw new RuntimeException("Unexpected message type " + type + " from " + remoteAddress);
             }
         }
     }
 
+    private void addPendingStripe(SocketChannel sc, JSONObject jsObj) throws IOException, JSONException {
+        final long joinToken = jsObj.getLong("joinToken");
+        final int stripe = jsObj.getInt("stripe");
+        final int stripeCount = jsObj.getInt("stripes");
+        PendingStripes pending = m_pendingStripes.get(joinToken);
+        // stripe 0 is the connection that carries the host id, it never arrives on its own
+        if (stripeCount < 1 || stripe < 1 || stripe >= stripeCount ||
+                (pending != null && (pending.m_stripes.length != stripeCount || pending.m_stripes[stripe] != null))) {
+            sc.close();
+            if (pending != null) {
+                m_pendingStripes.remove(joinToken);
+                pending.close();
+            }
+            throw new IOException("Rejected stripe " + stripe + " of " + stripeCount +
+                    " from " + sc.socket().getRemoteSocketAddress());
+        }
+        if (pending == null) {
+            pending = new PendingStripes(stripeCount);
+            m_pendingStripes.put(joinToken, pending);
+        }
+        pending.m_stripes[stripe] = sc;
+    }
+
+    /*
+     * Drop the stripes of joining nodes that went away before requesting or publishing a host id
+     */
+    private void expirePendingStripes() {
+        final long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, PendingStripes>> iter = m_pendingStripes.entrySet().iterator();
+        while (iter.hasNext()) {
+            PendingStripes pending = iter.next().getValue();
+            if (pending.m_deadline <= now) {
+                iter.remove();
+                pending.close();
+                LOG.warn("Dropped " + pending.m_stripes.length + " stripes that were never followed by a host id request");
+            }
+        }
+    }
+
+    /*
+     * Gather the stripes that preceded a host id request/publish. The connection
+     * that carries the host id is always the first stripe.
+     */
+    private SocketChannel[] collectStripes(SocketChannel sc, JSONObject jsObj) throws IOException, JSONException {
+        if (!jsObj.has("stripes")) {
+            return new SocketChannel[] { sc };
+        }
+        final int stripeCount = jsObj.getInt("stripes");
+        PendingStripes pending = m_pendingStripes.remove(jsObj.getLong("joinToken"));
+        if (pending == null) {
+            // no stripes arrived, only valid if the host id connection is the only one
+            pending = new PendingStripes(1);
+        }
+        final SocketChannel stripes[] = pending.m_stripes;
+        stripes[0] = sc;
+        if (stripeCount != stripes.length) {
+            pending.close();
+            throw new IOException("Host id connection from " + sc.socket().getRemoteSocketAddress() +
+                    " announced " + stripeCount + " stripes but " + stripes.length + " were expected");
+        }
+        for (int ii = 1; ii < stripes.length; ii++) {
+            if (stripes[ii] == null) {
+                pending.close();
+                throw new IOException("Missing stripe " + ii + " of " + stripes.length +
+                        " from " + sc.socket().getRemoteSocketAddress());
+            }
+        }
+        return stripes;
+    }
+
     /*
      * After startup everything is a primary and can accept
      * new nodes into the cluster. This loop accepts the new socket
@@ -397,7 +517,10 @@ public class SocketJoiner {
 
             while (true) {
                 try {
-                    final int selectedKeyCount = m_selector.select();
+                    // wake up to expire stripes that are still waiting for a host id
+                    final int selectedKeyCount =
+                            m_selector.select(m_pendingStripes.isEmpty() ? 0 : PENDING_STRIPE_TIMEOUT_MILLIS);
+                    expirePendingStripes();
                     if (selectedKeyCount == 0) continue;
                     Set<SelectionKey> selectedKeys = m_selector.selectedKeys();
                     try {
@@ -423,6 +546,10 @@ public class SocketJoiner {
                 } catch (Exception e) {}
             }
             m_listenerSockets.clear();
+            for (PendingStripes pending : m_pendingStripes.values()) {
+                pending.close();
+            }
+            m_pendingStripes.clear();
             try {
                 m_selector.close();
             } catch (IOException e) {
@@ -467,6 +594,75 @@ public class SocketJoiner {
         activeVersions.add(remoteVersionString);
     }
 
+    /*
+     * Open the additional stripes to a host. This is done before the connection that
+     * requests or publishes the host id, so the remote node has every stripe in hand
+     * when it creates the foreign host. Slot 0 is left for that connection.
+     */
+    private SocketChannel[] connectStripes(InetSocketAddress hostAddr,
+                                           List<Long> skews,
+                                           String localVersionString,
+                                           String localBuildString,
+                                           Set<String> activeVersions) throws Exception
+    {
+        SocketChannel stripes[] = new SocketChannel[m_stripes];
+        for (int stripe = 1; stripe < m_stripes; stripe++) {
+            SocketChannel stripeSocket = null;
+            while (stripeSocket == null) {
+                try {
+                    stripeSocket = SocketChannel.open(hostAddr);
+                }
+                catch (java.net.ConnectException e) {
+                    LOG.warn("Connecting stripe failed: " + e.getMessage() + " retrying..");
+                    try {
+                        Thread.sleep(250); //  milliseconds
+                    }
+                    catch (InterruptedException ex) {
+                        // don't really care.
+                    }
+                }
+            }
+            stripeSocket.socket().setTcpNoDelay(true);
+            stripeSocket.socket().setPerformancePreferences(0, 2, 1);
+            final String remoteAddress = stripeSocket.socket().getRemoteSocketAddress().toString();
+
+            ByteBuffer currentTimeBuf = ByteBuffer.allocate(8);
+            while (currentTimeBuf.hasRemaining()) {
+                stripeSocket.read(currentTimeBuf);
+            }
+            currentTimeBuf.flip();
+            skews.add(System.currentTimeMillis() - currentTimeBuf.getLong());
+
+            JSONObject jsObj = new JSONObject();
+            jsObj.put("type", "PUBLISH_STRIPE");
+            jsObj.put("joinToken", m_joinToken);
+            jsObj.put("stripe", stripe);
+            jsObj.put("stripes", m_stripes);
+            jsObj.put("versionString", localVersionString);
+            byte jsBytes[] = jsObj.toString(4).getBytes(Constants.UTF8ENCODING);
+            ByteBuffer publishStripe = ByteBuffer.allocate(4 + jsBytes.length);
+            publishStripe.putInt(jsBytes.length);
+            publishStripe.put(jsBytes).flip();
+            while (publishStripe.hasRemaining()) {
+                stripeSocket.write(publishStripe);
+            }
+
+            processVersionJSONResponse(stripeSocket, remoteAddress, localVersionString, localBuildString, activeVersions);
+            stripes[stripe] = stripeSocket;
+        }
+        return stripes;
+    }
+
+    /*
+     * Tag a host id request/publish with the stripes that preceded it
+     */
+    private void putStripes(JSONObject jsObj) throws JSONException {
+        if (m_stripes > 1) {
+            jsObj.put("joinToken", m_joinToken);
+            jsObj.put("stripes", m_stripes);
+        }
+    }
+
     /*
      * If this node failed to bind to the leader address
      * it must connect to the leader which will generate a host id and
@@ -484,6 +680,17 @@ public class SocketJoiner {
         try {
             LOG.debug("Non-Primary Starting & Connecting to Primary");
 
+            String localVersionString = VoltDB.instance().getVersionString();
+            String localBuildString = VoltDB.instance().getBuildString();
+            activeVersions.add(localVersionString);
+
+            /*
+             * The leader accepts connections on the thread that handles the join request,
+             * so its extra stripes have to be connected before the join is requested.
+             */
+            SocketChannel leaderSockets[] =
+                connectStripes(m_coordIp, skews, localVersionString, localBuildString, activeVersions);
+
             while (socket == null) {
                 try {
                     socket = SocketChannel.open(m_coordIp);
@@ -512,12 +719,9 @@ public class SocketJoiner {
             long skew = System.currentTimeMillis() - currentTimeBuf.getLong();
             skews.add(skew);
 
-            String localVersionString = VoltDB.instance().getVersionString();
-            String localBuildString = VoltDB.instance().getBuildString();
-            activeVersions.add(localVersionString);
-
             JSONObject jsObj = new JSONObject();
             jsObj.put("type", "REQUEST_HOSTID");
+            putStripes(jsObj);
 
             // put the version compatibility status in the json
             jsObj.put("versionString", localVersionString);
@@ -563,7 +767,7 @@ public class SocketJoiner {
              */
             JSONArray otherHosts = jsonObj.getJSONArray("hosts");
             int hostIds[] = new int[otherHosts.length()];
-            SocketChannel hostSockets[] = new SocketChannel[hostIds.length];
+            SocketChannel hostSockets[][] = new SocketChannel[hostIds.length][];
             InetSocketAddress listeningAddresses[] = new InetSocketAddress[hostIds.length];
 
             for (int ii = 0; ii < otherHosts.length(); ii++) {
@@ -578,10 +782,14 @@ public class SocketJoiner {
                     //Leader already has a socket
                     hostIds[ii] = hostId;
                     listeningAddresses[ii] = hostAddr;
-                    hostSockets[ii] = socket;
+                    leaderSockets[0] = socket;
+                    hostSockets[ii] = leaderSockets;
                     continue;
                 }
 
+                SocketChannel stripes[] =
+                    connectStripes(hostAddr, skews, localVersionString, localBuildString, activeVersions);
+
                 SocketChannel hostSocket = null;
                 while (hostSocket == null) {
                     try {
@@ -612,6 +820,7 @@ public class SocketJoiner {
 
                 jsObj = new JSONObject();
                 jsObj.put("type", "PUBLISH_HOSTID");
+                putStripes(jsObj);
                 jsObj.put("hostId", m_localHostId);
                 jsObj.put("port", m_internalPort);
                 jsObj.put(
@@ -626,7 +835,8 @@ public class SocketJoiner {
                     hostSocket.write(pushHostId);
                 }
                 hostIds[ii] = hostId;
-                hostSockets[ii] = hostSocket;
+                stripes[0] = hostSocket;
+                hostSockets[ii] = stripes;
                 listeningAddresses[ii] = hostAddr;
 
                 // read the json response from socketjoiner with version info and validate it
@@ -678,7 +888,7 @@ public class SocketJoiner {
              */
             ByteBuffer joinCompleteBuffer = ByteBuffer.allocate(1);
             while (joinCompleteBuffer.hasRemaining()) {
-                hostSockets[0].write(joinCompleteBuffer);
+                hostSockets[0][0].write(joinCompleteBuffer);
             }
 
             /*
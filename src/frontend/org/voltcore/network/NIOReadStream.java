@@ -63,17 +63,55 @@ public class NIOReadStream {
     }
 
     int getInt() {
-        // TODO: Optimize?
-        byte[] intbytes = new byte[4];
-        getBytes(intbytes);
+        if (m_totalAvailable < 4) {
+            throw new IllegalStateException("Requested 4 bytes; only have "
+                    + m_totalAvailable + " bytes; call tryRead() first");
+        }
+
+        // Usually the int is in one buffer, read it in place
+        BBContainer firstC = firstReadBuffer();
+        ByteBuffer first = firstC.b();
+        if (first.remaining() >= 4) {
+            final int output = first.getInt();
+            m_totalAvailable -= 4;
+            if (!first.hasRemaining()) {
+                m_readBuffers.poll();
+                firstC.discard();
+            }
+            return output;
+        }
+
         int output = 0;
-        for (int i = 0; i < intbytes.length; ++i) {
+        for (int i = 0; i < 4; ++i) {
+            firstC = firstReadBuffer();
+            first = firstC.b();
             output <<= 8;
-            output |= (intbytes[i]) & 0xff;
+            output |= first.get() & 0xff;
+            m_totalAvailable--;
+            if (!first.hasRemaining()) {
+                m_readBuffers.poll();
+                firstC.discard();
+            }
         }
         return output;
     }
 
+    /*
+     * The buffer at the head of the stream, moving the partially filled
+     * write buffer over for reading if everything else has been consumed
+     */
+    private BBContainer firstReadBuffer() {
+        BBContainer firstC = m_readBuffers.peekFirst();
+        if (firstC == null) {
+            // Steal the write buffer
+            m_writeBuffer.b().flip();
+            m_readBuffers.add(m_writeBuffer);
+            firstC = m_writeBuffer;
+            m_writeBuffer = null;
+        }
+        return firstC;
+    }
+
     void getBytes(byte[] output) {
         if (m_totalAvailable < output.length) {
             throw new IllegalStateException("Requested " + output.length + " bytes; only have "
@@ -82,14 +120,7 @@ public class NIOReadStream {
 
         int bytesCopied = 0;
         while (bytesCopied < output.length) {
-            BBContainer firstC = m_readBuffers.peekFirst();
-            if (firstC == null) {
-                // Steal the write buffer
-                m_writeBuffer.b().flip();
-                m_readBuffers.add(m_writeBuffer);
-                firstC = m_writeBuffer;
-                m_writeBuffer = null;
-            }
+            BBContainer firstC = firstReadBuffer();
             ByteBuffer first = firstC.b();
             assert first.remaining() > 0;
 
@@ -338,26 +338,13 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
                 return bytesWritten;
             }
 
-            ByteBuffer buffer = null;
-            if (m_currentWriteBuffer == null) {
-                m_currentWriteBuffer = m_queuedBuffers.poll();
-                buffer = m_currentWriteBuffer.b();
-                buffer.flip();
-            } else {
-                buffer = m_currentWriteBuffer.b();
-            }
-
-            rc = channel.write(buffer);
+            rc = writeQueuedBuffers(channel);
 
-            //Discard the buffer back to a pool if no data remains
-            if (buffer.hasRemaining()) {
+            //Written buffers went back to the pool, one left over means the socket is full
+            if (m_currentWriteBuffer != null) {
                 if (!m_hadBackPressure) {
                     backpressureStarted();
                 }
-            } else {
-                m_currentWriteBuffer.discard();
-                m_currentWriteBuffer = null;
-                m_messagesWritten++;
             }
             bytesWritten += rc;
 
@@ -28,6 +28,7 @@ import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.RateLimitedLogger;
+import org.voltcore.utils.ScatteredDeferredSerialization;
 
 /**
 *
@@ -49,6 +50,8 @@ public abstract class NIOWriteStreamBase {
 
     protected long m_bytesWritten = 0;
     protected long m_messagesWritten = 0;
+    // write() calls made on the channel, to relate syscalls to messages
+    protected long m_writeCalls = 0;
 
     /*
      * Used to provide incremental reads of the amount of
@@ -58,6 +61,27 @@ public abstract class NIOWriteStreamBase {
      */
     private long m_lastBytesWritten = 0;
     private long m_lastMessagesWritten = 0;
+    private long m_lastWriteCalls = 0;
+
+    /**
+     * Upper bound on the bytes handed to a single gathering write. Every serialized buffer
+     * ready to go, up to this many bytes, is written with one call instead of one call per
+     * buffer. 0 disables gathering.
+     */
+    static final int MAX_GATHERING_WRITE_BYTES = Integer.getInteger("NETWORK_MAX_GATHERING_WRITE_BYTES", 256 * 1024);
+    // Keep well under IOV_MAX
+    static final int MAX_GATHERING_WRITE_BUFFERS = 64;
+    // The gathering budget never shrinks below what a single pooled buffer holds
+    private static final int MIN_GATHERING_WRITE_BYTES = 32 * 1024;
+
+    /*
+     * The byte budget for the next gathering write. It shrinks to what the socket accepted when a
+     * write comes up short, so a congested connection doesn't keep assembling writes the kernel
+     * can't take, and doubles back toward the maximum each time a gathering write completes.
+     */
+    private int m_gatheringBudget = MAX_GATHERING_WRITE_BYTES;
+    private ByteBuffer m_gatheringBuffers[] = null;
+    private BBContainer m_gatheringContainers[] = null;
 
     long[] getBytesAndMessagesWritten(boolean interval) {
         if (interval) {
@@ -66,9 +90,12 @@ public abstract class NIOWriteStreamBase {
 
             final long messagesWrittenThisTime = m_messagesWritten - m_lastMessagesWritten;
             m_lastMessagesWritten = m_messagesWritten;
-            return new long[] { bytesWrittenThisTime, messagesWrittenThisTime };
+
+            final long writeCallsThisTime = m_writeCalls - m_lastWriteCalls;
+            m_lastWriteCalls = m_writeCalls;
+            return new long[] { bytesWrittenThisTime, messagesWrittenThisTime, writeCallsThisTime };
         } else {
-            return new long[] {m_bytesWritten, m_messagesWritten};
+            return new long[] {m_bytesWritten, m_messagesWritten, m_writeCalls};
         }
     }
 
@@ -106,6 +133,7 @@ public abstract class NIOWriteStreamBase {
             processedWrites++;
             final int serializedSize = ds.getSerializedSize();
             if (serializedSize == DeferredSerialization.EMPTY_MESSAGE_LENGTH) continue;
+            m_messagesWritten++;
             BBContainer outCont = m_queuedBuffers.peekLast();
             ByteBuffer outbuf = null;
             if (outCont == null || !outCont.b().hasRemaining()) {
@@ -127,6 +155,16 @@ public abstract class NIOWriteStreamBase {
                 bytesQueued += slice.remaining();
                 outbuf.position(outbuf.limit());
                 outbuf.limit(oldLimit);
+            } else if (ds instanceof ScatteredDeferredSerialization) {
+                //Message is already in buffers, copy them in without an intermediate heap buffer
+                final ByteBuffer bufs[] = ((ScatteredDeferredSerialization)ds).serializeToBuffers();
+                int scatteredBytes = 0;
+                for (ByteBuffer buf : bufs) {
+                    scatteredBytes += buf.remaining();
+                    copyToQueuedBuffers(buf, pool);
+                }
+                checkSloppySerialization(scatteredBytes, serializedSize, ds);
+                bytesQueued += scatteredBytes;
             } else {
                 //Slow path serialize to heap, and then put in buffers
                 ByteBuffer buf = ByteBuffer.allocate(serializedSize);
@@ -134,28 +172,123 @@ public abstract class NIOWriteStreamBase {
                 checkSloppySerialization(buf, ds);
                 buf.position(0);
                 bytesQueued += buf.remaining();
-                while (buf.hasRemaining()) {
-                    if (!outbuf.hasRemaining()) {
-                        outCont = pool.acquire();
-                        outbuf = outCont.b();
-                        outbuf.clear();
-                        m_queuedBuffers.offer(outCont);
-                    }
-                    if (outbuf.remaining() >= buf.remaining()) {
-                        outbuf.put(buf);
-                    } else {
-                        final int oldLimit = buf.limit();
-                        buf.limit(buf.position() + outbuf.remaining());
-                        outbuf.put(buf);
-                        buf.limit(oldLimit);
-                    }
-                }
+                copyToQueuedBuffers(buf, pool);
             }
         }
         updateQueued(bytesQueued, true);
         return processedWrites;
     }
 
+    /*
+     * Copy the remaining bytes of buf to the end of the queued buffers,
+     * acquiring more buffers from the pool as they fill
+     */
+    private void copyToQueuedBuffers(final ByteBuffer buf, final NetworkDBBPool pool) {
+        BBContainer outCont = m_queuedBuffers.peekLast();
+        ByteBuffer outbuf = outCont.b();
+        while (buf.hasRemaining()) {
+            if (!outbuf.hasRemaining()) {
+                outCont = pool.acquire();
+                outbuf = outCont.b();
+                outbuf.clear();
+                m_queuedBuffers.offer(outCont);
+            }
+            if (outbuf.remaining() >= buf.remaining()) {
+                outbuf.put(buf);
+            } else {
+                final int oldLimit = buf.limit();
+                buf.limit(buf.position() + outbuf.remaining());
+                outbuf.put(buf);
+                buf.limit(oldLimit);
+            }
+        }
+    }
+
+    /**
+     * Make one write call on the channel. If more than one serialized buffer is ready, as many as
+     * fit in the gathering budget go out in a single gathering write, otherwise the current buffer
+     * is written on its own. Buffers that are completely written are returned to the pool.
+     * On return m_currentWriteBuffer is null if everything handed to the channel was written,
+     * or is the partially written buffer if the channel didn't take it all.
+     *
+     * @return The number of bytes written
+     */
+    protected final long writeQueuedBuffers(final GatheringByteChannel channel) throws IOException {
+        if (m_currentWriteBuffer == null) {
+            m_currentWriteBuffer = m_queuedBuffers.poll();
+            m_currentWriteBuffer.b().flip();
+        }
+
+        final ByteBuffer current = m_currentWriteBuffer.b();
+        if (m_queuedBuffers.isEmpty() || current.remaining() >= m_gatheringBudget) {
+            m_writeCalls++;
+            final long rc = channel.write(current);
+            if (!current.hasRemaining()) {
+                m_currentWriteBuffer.discard();
+                m_currentWriteBuffer = null;
+            }
+            return rc;
+        }
+
+        if (m_gatheringBuffers == null) {
+            m_gatheringBuffers = new ByteBuffer[MAX_GATHERING_WRITE_BUFFERS];
+            m_gatheringContainers = new BBContainer[MAX_GATHERING_WRITE_BUFFERS];
+        }
+        final ByteBuffer buffers[] = m_gatheringBuffers;
+        final BBContainer containers[] = m_gatheringContainers;
+        buffers[0] = current;
+        containers[0] = m_currentWriteBuffer;
+        int count = 1;
+        long bytesOffered = current.remaining();
+        BBContainer next;
+        while (count < MAX_GATHERING_WRITE_BUFFERS && (next = m_queuedBuffers.peek()) != null) {
+            // queued buffers aren't flipped yet, position is the amount serialized into them
+            if (bytesOffered + next.b().position() > m_gatheringBudget) {
+                break;
+            }
+            m_queuedBuffers.poll();
+            next.b().flip();
+            bytesOffered += next.b().remaining();
+            buffers[count] = next.b();
+            containers[count] = next;
+            count++;
+        }
+
+        m_writeCalls++;
+        final long rc = channel.write(buffers, 0, count);
+
+        /*
+         * Release what was written. The first buffer with data left becomes the current write
+         * buffer and any after it were untouched, so unflip them and put them back in order.
+         */
+        m_currentWriteBuffer = null;
+        int ii = 0;
+        for (; ii < count; ii++) {
+            if (buffers[ii].hasRemaining()) {
+                m_currentWriteBuffer = containers[ii];
+                break;
+            }
+            containers[ii].discard();
+        }
+        for (int jj = count - 1; jj > ii; jj--) {
+            final ByteBuffer untouched = buffers[jj];
+            untouched.position(untouched.limit());
+            untouched.limit(untouched.capacity());
+            m_queuedBuffers.offerFirst(containers[jj]);
+        }
+        for (int jj = 0; jj < count; jj++) {
+            buffers[jj] = null;
+            containers[jj] = null;
+        }
+
+        if (m_currentWriteBuffer == null) {
+            m_gatheringBudget = (int)Math.min(MAX_GATHERING_WRITE_BYTES, m_gatheringBudget * 2L);
+        } else {
+            m_gatheringBudget = (int)Math.min(MAX_GATHERING_WRITE_BYTES, Math.max(MIN_GATHERING_WRITE_BYTES, rc));
+        }
+        return rc;
+    }
+
     private static final boolean ASSERT_ON;
     static {
         boolean assertOn = false;
@@ -168,7 +301,11 @@ public abstract class NIOWriteStreamBase {
      * to serialize the message
      */
     private void checkSloppySerialization(ByteBuffer buf, DeferredSerialization ds) {
-        if (buf.limit() != buf.capacity()) {
+        checkSloppySerialization(buf.limit(), buf.capacity(), ds);
+    }
+
+    private void checkSloppySerialization(int serializedBytes, int expectedBytes, DeferredSerialization ds) {
+        if (serializedBytes != expectedBytes) {
             if (ASSERT_ON) {
                 networkLog.fatal("Sloppy serialization size for message class " + ds);
                 System.exit(-1);
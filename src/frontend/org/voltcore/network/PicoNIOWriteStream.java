@@ -76,7 +76,7 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
     protected void updateQueued(int queued, boolean noBackpressureSignal) {}
 
     /**
-     * Drain pending buffers one at a time into the socket
+     * Drain pending buffers into the socket, several per write call when possible
      * @param channel
      * @return
      * @throws IOException
@@ -93,23 +93,7 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
                 break;
             }
 
-            ByteBuffer buffer = null;
-            if (m_currentWriteBuffer == null) {
-                m_currentWriteBuffer = m_queuedBuffers.poll();
-                buffer = m_currentWriteBuffer.b();
-                buffer.flip();
-            } else {
-                buffer = m_currentWriteBuffer.b();
-            }
-
-            rc = channel.write(buffer);
-
-            //Discard the buffer back to a pool if no data remains
-            if (!buffer.hasRemaining()) {
-                m_currentWriteBuffer.discard();
-                m_currentWriteBuffer = null;
-                m_messagesWritten++;
-            }
+            rc = writeQueuedBuffers(channel);
             bytesWritten += rc;
 
         } while (rc > 0);
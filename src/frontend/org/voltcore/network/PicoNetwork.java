@@ -104,6 +104,11 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
     private final PicoNIOWriteStream m_writeStream = new PicoNIOWriteStream();
     private final ConcurrentLinkedQueue<Runnable> m_tasks = new ConcurrentLinkedQueue<Runnable>();
     private volatile boolean m_shouldStop = false;//volatile boolean is sufficient
+    /*
+     * Set once the write stream is shut down. Tasks queued after that are run by
+     * whoever notices, so queued writes are always cancelled and release what they hold
+     */
+    private volatile boolean m_stopped = false;
     private long m_messagesRead;
     private int m_interestOps = 0;
     private final SocketChannel m_sc;
@@ -350,6 +355,8 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 } finally {
                     try {
                         m_writeStream.shutdown();
+                        m_stopped = true;
+                        drainTasksAfterStop();
                     } finally {
                         try {
                             m_pool.clear();
@@ -384,7 +391,8 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1]}));
+                                    writeInfo[1],
+                                    writeInfo[2]}));
             retval.put(
                     -1L,
                     Pair.of(
@@ -393,7 +401,8 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    writeInfo[2] }));
             return retval;
     }
 
@@ -495,6 +504,24 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
             }
         });
         m_selector.wakeup();
+        if (m_stopped) {
+            drainTasksAfterStop();
+        }
+    }
+
+    /*
+     * The write stream is shut down so enqueueing only cancels the deferred serialization,
+     * which is safe from any thread
+     */
+    private void drainTasksAfterStop() {
+        Runnable task = null;
+        while ((task = m_tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                m_logger.error("Error running network task after shutdown", t);
+            }
+        }
     }
 
     public void enqueue(final ByteBuffer buf) {
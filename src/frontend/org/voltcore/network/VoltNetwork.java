@@ -394,7 +394,11 @@ class VoltNetwork implements Runnable, IOStatsIntf
         SelectionKey key = port.getKey();
 
         if (key.isValid()) {
-            key.interestOps (port.interestOps());
+            // Every interest set change is an epoll_ctl at the next select, skip the no-ops
+            final int interestOps = port.interestOps();
+            if (key.interestOps() != interestOps) {
+                key.interestOps(interestOps);
+            }
         } else {
             m_ports.remove(port);
             m_numPorts.decrementAndGet();
@@ -403,8 +407,12 @@ class VoltNetwork implements Runnable, IOStatsIntf
 
     private void callPort(final VoltPort port) {
         try {
+            /*
+             * The key keeps its interest set while the port runs. Everything runs on this
+             * thread so the key can't be selected again in the meantime, and leaving it
+             * alone means a port whose interests didn't change costs no epoll update.
+             */
             port.lockForHandlingWork();
-            port.getKey().interestOps(0);
             port.run();
         } catch (CancelledKeyException e) {
             port.m_running = false;
@@ -492,6 +500,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
         long totalMessagesRead = 0;
         long totalWritten = 0;
         long totalMessagesWritten = 0;
+        long totalWriteCalls = 0;
         for (VoltPort p : m_ports) {
             final long read = p.readStream().getBytesRead(interval);
             final long writeInfo[] = p.writeStream().getBytesAndMessagesWritten(interval);
@@ -500,6 +509,7 @@ class VoltNetwork implements Runnable, IOStatsIntf
             totalMessagesRead += messagesRead;
             totalWritten += writeInfo[0];
             totalMessagesWritten += writeInfo[1];
+            totalWriteCalls += writeInfo[2];
             retval.put(
                     p.connectionId(),
                     Pair.of(
@@ -508,7 +518,8 @@ class VoltNetwork implements Runnable, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    writeInfo[2] }));
         }
         retval.put(
                 -1L,
@@ -518,7 +529,8 @@ class VoltNetwork implements Runnable, IOStatsIntf
                                 totalRead,
                                 totalMessagesRead,
                                 totalWritten,
-                                totalMessagesWritten }));
+                                totalMessagesWritten,
+                                totalWriteCalls }));
         return retval;
     }
 
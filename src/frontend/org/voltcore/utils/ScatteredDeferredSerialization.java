@@ -0,0 +1,37 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltcore.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A DeferredSerialization for a message that already exists in serialized form as
+ * a sequence of buffers, for example result tables framed by a small header.
+ * A write stream can copy the buffers straight into its network buffers instead
+ * of serializing a large message into a temporary buffer first.
+ */
+public interface ScatteredDeferredSerialization extends DeferredSerialization {
+    /**
+     * Get the buffers that make up the serialized message. The bytes between position and
+     * limit of each buffer, in order, must total getSerializedSize(). The buffers are only
+     * read, and may be read only views of buffers shared with other messages.
+     * @throws IOException Thrown here because FastSerialzier throws IOException
+     */
+    ByteBuffer[] serializeToBuffers() throws IOException;
+}
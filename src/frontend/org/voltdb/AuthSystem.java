@@ -29,11 +29,16 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
 import javax.security.auth.Subject;
 import javax.security.auth.login.AccountExpiredException;
@@ -298,6 +303,40 @@ public class AuthSystem {
      */
     private Map<String, AuthUser> m_users = new HashMap<String, AuthUser>();
 
+    /*
+     * BCrypt checks in progress, keyed by user and password hash. BCrypt is deliberately
+     * slow, and when many clients log in with the same credentials at once, as they do when
+     * reconnecting after a failover, each of them hashing the same password on its own
+     * authentication thread makes logins queue up for seconds. The first login does the
+     * check and the others that arrive while it is running wait for its answer.
+     */
+    private final ConcurrentHashMap<BCryptCheckKey, FutureTask<Boolean>> m_bcryptChecks =
+            new ConcurrentHashMap<BCryptCheckKey, FutureTask<Boolean>>();
+
+    private static final class BCryptCheckKey {
+        private final AuthUser m_user;
+        private final byte m_password[];
+
+        private BCryptCheckKey(AuthUser user, byte password[]) {
+            m_user = user;
+            m_password = password;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(m_user) * 31 + Arrays.hashCode(m_password);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BCryptCheckKey)) {
+                return false;
+            }
+            BCryptCheckKey other = (BCryptCheckKey)o;
+            return m_user == other.m_user && Arrays.equals(m_password, other.m_password);
+        }
+    }
+
     /**
      * Storage for group permissions keyed on group name.
      */
@@ -550,6 +589,33 @@ public class AuthSystem {
         return user.getGroupNames();
     }
 
+    private boolean checkBCryptPassword(final AuthUser user, final byte password[]) throws Exception {
+        final BCryptCheckKey key = new BCryptCheckKey(user, password);
+        FutureTask<Boolean> check = new FutureTask<Boolean>(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return BCrypt.checkpw(Encoder.hexEncode(password), user.m_bcryptShadowPassword);
+            }
+        });
+        final FutureTask<Boolean> inProgress = m_bcryptChecks.putIfAbsent(key, check);
+        if (inProgress != null) {
+            check = inProgress;
+        } else {
+            try {
+                check.run();
+            } finally {
+                // only coalesce checks that overlap, never cache the answer
+                m_bcryptChecks.remove(key, check);
+            }
+        }
+        try {
+            return check.get();
+        } catch (ExecutionException e) {
+            Throwables.propagateIfPossible(e.getCause(), Exception.class);
+            throw e;
+        }
+    }
+
     public class HashAuthenticationRequest extends AuthenticationRequest {
 
         private final String m_user;
@@ -594,7 +660,7 @@ public class AuthSystem {
                     }
                 }
             } else {
-                matched = BCrypt.checkpw(Encoder.hexEncode(m_password), user.m_bcryptShadowPassword);
+                matched = checkBCryptPassword(user, m_password);
             }
 
             if (matched) {
@@ -0,0 +1,189 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Connection accept and login statistics for each acceptor thread of the
+ * client and admin ports. Like LiveClientsStats the rows come straight from
+ * the ClientInterface when the stats are requested.
+ */
+public class ClientAcceptorStats extends StatsSource
+{
+    /**
+     * Counters kept by one acceptor thread and the authentications it handed off
+     */
+    public static class Counters {
+        final int m_acceptorId;
+        final int m_port;
+        final boolean m_isAdmin;
+
+        final AtomicLong m_accepted = new AtomicLong();
+        final AtomicLong m_rejected = new AtomicLong();
+        final AtomicLong m_authenticated = new AtomicLong();
+        final AtomicLong m_authFailures = new AtomicLong();
+        final AtomicLong m_authNanos = new AtomicLong();
+        final AtomicLong m_maxAuthNanos = new AtomicLong();
+        final AtomicLong m_pending = new AtomicLong();
+
+        // Values at the last interval poll, only used by the stats source
+        private long m_lastAccepted, m_lastRejected, m_lastAuthenticated, m_lastAuthFailures, m_lastAuthNanos;
+
+        public Counters(int acceptorId, int port, boolean isAdmin) {
+            m_acceptorId = acceptorId;
+            m_port = port;
+            m_isAdmin = isAdmin;
+        }
+
+        public void accepted() {
+            m_accepted.incrementAndGet();
+        }
+
+        public void rejected() {
+            m_rejected.incrementAndGet();
+        }
+
+        public void authenticationQueued() {
+            m_pending.incrementAndGet();
+        }
+
+        /**
+         * Record the outcome of a login handed off by this acceptor
+         */
+        public void authenticationDone(boolean success, long elapsedNanos) {
+            m_pending.decrementAndGet();
+            if (success) {
+                m_authenticated.incrementAndGet();
+            } else {
+                m_authFailures.incrementAndGet();
+            }
+            m_authNanos.addAndGet(elapsedNanos);
+            long max = m_maxAuthNanos.get();
+            while (elapsedNanos > max && !m_maxAuthNanos.compareAndSet(max, elapsedNanos)) {
+                max = m_maxAuthNanos.get();
+            }
+        }
+    }
+
+    public static final ColumnInfo acceptorColumnInfo[] =
+        new ColumnInfo[] {new ColumnInfo("ACCEPTOR_ID", VoltType.INTEGER),
+                          new ColumnInfo("PORT", VoltType.INTEGER),
+                          new ColumnInfo("ADMIN", VoltType.TINYINT),
+                          new ColumnInfo("CONNECTIONS_ACCEPTED", VoltType.BIGINT),
+                          new ColumnInfo("CONNECTIONS_REJECTED", VoltType.BIGINT),
+                          new ColumnInfo("AUTHENTICATED", VoltType.BIGINT),
+                          new ColumnInfo("AUTHENTICATION_FAILURES", VoltType.BIGINT),
+                          new ColumnInfo("AVG_AUTHENTICATION_MICROS", VoltType.BIGINT),
+                          new ColumnInfo("MAX_AUTHENTICATION_MICROS", VoltType.BIGINT),
+                          new ColumnInfo("PENDING_AUTHENTICATIONS", VoltType.BIGINT)
+    };
+
+    private static final int ACCEPTED = 0;
+    private static final int REJECTED = 1;
+    private static final int AUTHENTICATED = 2;
+    private static final int AUTH_FAILURES = 3;
+    private static final int AUTH_NANOS = 4;
+    private static final int MAX_AUTH_NANOS = 5;
+    private static final int PENDING = 6;
+
+    private final Map<Object, long[]> m_rows = new HashMap<Object, long[]>();
+
+    public ClientAcceptorStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        for (ColumnInfo column : acceptorColumnInfo)
+        {
+            columns.add(column);
+        }
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Counters counters = (Counters)rowKey;
+        final long values[] = m_rows.get(rowKey);
+        final long logins = values[AUTHENTICATED] + values[AUTH_FAILURES];
+
+        rowValues[columnNameToIndex.get("ACCEPTOR_ID")] = counters.m_acceptorId;
+        rowValues[columnNameToIndex.get("PORT")] = counters.m_port;
+        rowValues[columnNameToIndex.get("ADMIN")] = counters.m_isAdmin ? 1 : 0;
+        rowValues[columnNameToIndex.get("CONNECTIONS_ACCEPTED")] = values[ACCEPTED];
+        rowValues[columnNameToIndex.get("CONNECTIONS_REJECTED")] = values[REJECTED];
+        rowValues[columnNameToIndex.get("AUTHENTICATED")] = values[AUTHENTICATED];
+        rowValues[columnNameToIndex.get("AUTHENTICATION_FAILURES")] = values[AUTH_FAILURES];
+        rowValues[columnNameToIndex.get("AVG_AUTHENTICATION_MICROS")] =
+                logins == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(values[AUTH_NANOS] / logins);
+        rowValues[columnNameToIndex.get("MAX_AUTHENTICATION_MICROS")] =
+                TimeUnit.NANOSECONDS.toMicros(values[MAX_AUTH_NANOS]);
+        rowValues[columnNameToIndex.get("PENDING_AUTHENTICATIONS")] = values[PENDING];
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval)
+    {
+        m_rows.clear();
+        ClientInterface ci = VoltDB.instance().getClientInterface();
+        if (ci != null) {
+            for (Counters counters : ci.getAcceptorCounters()) {
+                m_rows.put(counters, snapshot(counters, interval));
+            }
+        }
+        return m_rows.keySet().iterator();
+    }
+
+    private static long[] snapshot(Counters c, boolean interval) {
+        final long values[] = new long[7];
+        values[ACCEPTED] = c.m_accepted.get();
+        values[REJECTED] = c.m_rejected.get();
+        values[AUTHENTICATED] = c.m_authenticated.get();
+        values[AUTH_FAILURES] = c.m_authFailures.get();
+        values[AUTH_NANOS] = c.m_authNanos.get();
+        values[PENDING] = c.m_pending.get();
+        if (interval) {
+            values[MAX_AUTH_NANOS] = c.m_maxAuthNanos.getAndSet(0);
+            final long accepted = values[ACCEPTED], rejected = values[REJECTED];
+            final long authenticated = values[AUTHENTICATED], authFailures = values[AUTH_FAILURES];
+            final long authNanos = values[AUTH_NANOS];
+            values[ACCEPTED] -= c.m_lastAccepted;
+            values[REJECTED] -= c.m_lastRejected;
+            values[AUTHENTICATED] -= c.m_lastAuthenticated;
+            values[AUTH_FAILURES] -= c.m_lastAuthFailures;
+            values[AUTH_NANOS] -= c.m_lastAuthNanos;
+            c.m_lastAccepted = accepted;
+            c.m_lastRejected = rejected;
+            c.m_lastAuthenticated = authenticated;
+            c.m_lastAuthFailures = authFailures;
+            c.m_lastAuthNanos = authNanos;
+        } else {
+            values[MAX_AUTH_NANOS] = c.m_maxAuthNanos.get();
+        }
+        return values;
+    }
+}
@@ -72,6 +72,7 @@ import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.Pair;
 import org.voltcore.utils.RateLimitedLogger;
+import org.voltcore.utils.ScatteredDeferredSerialization;
 import org.voltdb.AuthSystem.AuthProvider;
 import org.voltdb.CatalogContext.ProcedurePartitionInfo;
 import org.voltdb.ClientInterfaceHandleManager.Iv2InFlight;
@@ -94,6 +95,8 @@ import org.voltdb.compiler.AsyncCompilerWork.AsyncCompilerWorkCompletionHandler;
 import org.voltdb.compiler.CatalogChangeResult;
 import org.voltdb.compiler.CatalogChangeWork;
 import org.voltdb.dtxn.InitiatorStats.InvocationInfo;
+import org.voltdb.dtxn.StageLatencyTracer;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Iv2Trace;
 import org.voltdb.iv2.MpInitiator;
@@ -256,28 +259,39 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
 
     private final boolean m_isConfiguredForHSQL;
 
+    /*
+     * Number of threads accepting connections on the client port. They share one listening
+     * socket and each hands its connections to its own pool of authentication threads, so a
+     * reconnect storm isn't serialized behind a single thread. The admin port always has one.
+     */
+    static final int CLIENT_ACCEPTOR_THREADS = Integer.getInteger("CLIENT_ACCEPTOR_THREADS", 2);
+    // Authentication threads shared out between the acceptors of a port
+    private static final int MAX_AUTHENTICATION_THREADS = 128;
+
     /** A port that accepts client connections */
-    public class ClientAcceptor implements Runnable {
+    public class ClientAcceptor {
         private final int m_port;
         private final ServerSocketChannel m_serverSocket;
         private final VoltNetworkPool m_network;
         private volatile boolean m_running = true;
-        private Thread m_thread = null;
+        private Thread m_threads[] = null;
+        private final Acceptor m_acceptors[];
+        // acceptors still running, the last one to exit closes the listening socket
+        private final AtomicInteger m_liveAcceptors = new AtomicInteger();
         private final boolean m_isAdmin;
         private final InetAddress m_interface;
 
-        /**
-         * Used a cached thread pool to accept new connections.
-         */
-        private final ExecutorService m_executor = CoreUtils.getBoundedThreadPoolExecutor(128, 10L, TimeUnit.SECONDS,
-                        CoreUtils.getThreadFactory("Client authentication threads", "Client authenticator"));
-
         ClientAcceptor(InetAddress intf, int port, VoltNetworkPool network, boolean isAdmin)
         {
             m_interface = intf;
             m_network = network;
             m_port = port;
             m_isAdmin = isAdmin;
+            final int acceptorCount = isAdmin ? 1 : Math.max(1, CLIENT_ACCEPTOR_THREADS);
+            m_acceptors = new Acceptor[acceptorCount];
+            for (int ii = 0; ii < acceptorCount; ii++) {
+                m_acceptors[ii] = new Acceptor(ii, Math.max(1, MAX_AUTHENTICATION_THREADS / acceptorCount));
+            }
             ServerSocketChannel socket;
             try {
                 socket = ServerSocketChannel.open();
@@ -296,7 +310,7 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         }
 
         public void start() throws IOException {
-            if (m_thread != null) {
+            if (m_threads != null) {
                 throw new IllegalStateException("A thread for this ClientAcceptor is already running");
             }
             if (!m_serverSocket.socket().isBound()) {
@@ -316,33 +330,56 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             }
             m_running = true;
             String threadName = m_isAdmin ? "AdminPort connection acceptor" : "ClientPort connection acceptor";
-            m_thread = new Thread( null, this, threadName, 262144);
-            m_thread.setDaemon(true);
-            m_thread.start();
+            Thread threads[] = new Thread[m_acceptors.length];
+            for (int ii = 0; ii < m_acceptors.length; ii++) {
+                threads[ii] = new Thread( null, m_acceptors[ii],
+                        m_acceptors.length == 1 ? threadName : threadName + " - " + ii, 262144);
+                threads[ii].setDaemon(true);
+            }
+            m_threads = threads;
+            m_liveAcceptors.set(threads.length);
+            for (Thread t : threads) {
+                t.start();
+            }
         }
 
         public void shutdown() throws InterruptedException {
             //sync prevents interruption while shuttown down executor
-            if (m_thread != null) {
+            if (m_threads != null) {
                 synchronized (this) {
                     m_running = false;
-                    m_thread.interrupt();
+                    for (Thread t : m_threads) {
+                        t.interrupt();
+                    }
+                }
+                for (Thread t : m_threads) {
+                    t.join();
                 }
-                m_thread.join();
             }
         }
 
+        List<ClientAcceptorStats.Counters> getCounters() {
+            List<ClientAcceptorStats.Counters> counters = new ArrayList<ClientAcceptorStats.Counters>();
+            for (Acceptor acceptor : m_acceptors) {
+                counters.add(acceptor.m_counters);
+            }
+            return counters;
+        }
+
         //Thread for Running authentication of client.
         class AuthRunnable implements Runnable {
             final SocketChannel m_socket;
+            final ClientAcceptorStats.Counters m_counters;
 
-            AuthRunnable(SocketChannel socket) {
+            AuthRunnable(SocketChannel socket, ClientAcceptorStats.Counters counters) {
                 this.m_socket = socket;
+                this.m_counters = counters;
             }
 
             @Override
             public void run() {
                 if (m_socket != null) {
+                    final long startNanos = System.nanoTime();
                     boolean success = false;
                     //Populated on timeout
                     AtomicReference<String> timeoutRef = new AtomicReference<String>();
@@ -392,94 +429,120 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                         if (!success) {
                             m_numConnections.decrementAndGet();
                         }
+                        m_counters.authenticationDone(success, System.nanoTime() - startNanos);
                     }
                 }
             }
         }
 
-        @Override
-        public void run() {
-            try {
-                do {
-                    final SocketChannel socket;
-                    try
-                    {
-                        socket = m_serverSocket.accept();
-                    }
-                    catch (IOException ioe)
-                    {
-                        if (ioe.getMessage() != null &&
-                            ioe.getMessage().contains("Too many open files"))
+        /*
+         * One of the threads accepting on the port's listening socket, with its own
+         * authentication threads and counters
+         */
+        class Acceptor implements Runnable {
+            private final ClientAcceptorStats.Counters m_counters;
+
+            /**
+             * Used a cached thread pool to accept new connections.
+             */
+            private final ExecutorService m_executor;
+
+            Acceptor(int acceptorId, int maxAuthenticationThreads) {
+                m_counters = new ClientAcceptorStats.Counters(acceptorId, m_port, m_isAdmin);
+                m_executor = CoreUtils.getBoundedThreadPoolExecutor(maxAuthenticationThreads, 10L, TimeUnit.SECONDS,
+                        CoreUtils.getThreadFactory("Client authentication threads", "Client authenticator"));
+            }
+
+            @Override
+            public void run() {
+                try {
+                    do {
+                        final SocketChannel socket;
+                        try
                         {
-                            networkLog.warn("Rejected accepting new connection due to too many open files");
-                            continue;
+                            socket = m_serverSocket.accept();
                         }
-                        else
+                        catch (IOException ioe)
                         {
-                            throw ioe;
+                            if (ioe.getMessage() != null &&
+                                ioe.getMessage().contains("Too many open files"))
+                            {
+                                networkLog.warn("Rejected accepting new connection due to too many open files");
+                                continue;
+                            }
+                            else
+                            {
+                                throw ioe;
+                            }
                         }
-                    }
 
-                    /*
-                     * Enforce a limit on the maximum number of connections
-                     */
-                    if (m_numConnections.get() >= MAX_CONNECTIONS.get()) {
-                        networkLog.warn("Rejected connection from " +
-                                socket.socket().getRemoteSocketAddress() +
-                                " because the connection limit of " + MAX_CONNECTIONS + " has been reached");
-                        try {
+                        /*
+                         * Increment the number of connections even though this one hasn't been authenticated
+                         * so that a flood of connection attempts (with many doomed) will not result in
+                         * successful authentication of connections that would put us over the limit.
+                         * Incrementing before checking keeps the limit exact with several acceptors.
+                         */
+                        m_counters.accepted();
+                        if (m_numConnections.incrementAndGet() > MAX_CONNECTIONS.get()) {
+                            m_numConnections.decrementAndGet();
+                            m_counters.rejected();
                             /*
-                             * Send rejection message with reason code
+                             * Enforce a limit on the maximum number of connections
                              */
-                            final ByteBuffer b = ByteBuffer.allocate(1);
-                            b.put(MAX_CONNECTIONS_LIMIT_ERROR);
-                            b.flip();
-                            socket.configureBlocking(true);
-                            for (int ii = 0; ii < 4 && b.hasRemaining(); ii++) {
-                                socket.write(b);
+                            networkLog.warn("Rejected connection from " +
+                                    socket.socket().getRemoteSocketAddress() +
+                                    " because the connection limit of " + MAX_CONNECTIONS + " has been reached");
+                            try {
+                                /*
+                                 * Send rejection message with reason code
+                                 */
+                                final ByteBuffer b = ByteBuffer.allocate(1);
+                                b.put(MAX_CONNECTIONS_LIMIT_ERROR);
+                                b.flip();
+                                socket.configureBlocking(true);
+                                for (int ii = 0; ii < 4 && b.hasRemaining(); ii++) {
+                                    socket.write(b);
+                                }
+                                socket.close();
+                            } catch (IOException e) {}//don't care keep running
+                            continue;
+                        }
+
+                        m_counters.authenticationQueued();
+                        final AuthRunnable authRunnable = new AuthRunnable(socket, m_counters);
+                        while (true) {
+                            try {
+                                m_executor.execute(authRunnable);
+                                break;
+                            } catch (RejectedExecutionException e) {
+                                Thread.sleep(1);
                             }
-                            socket.close();
-                        } catch (IOException e) {}//don't care keep running
-                        continue;
+                        }
+                    } while (m_running);
+                } catch (Exception e) {
+                    if (m_running) {
+                        hostLog.error("Exception in ClientAcceptor. The acceptor has died", e);
                     }
-
-                    /*
-                     * Increment the number of connections even though this one hasn't been authenticated
-                     * so that a flood of connection attempts (with many doomed) will not result in
-                     * successful authentication of connections that would put us over the limit.
-                     */
-                    m_numConnections.incrementAndGet();
-
-                    final AuthRunnable authRunnable = new AuthRunnable(socket);
-                    while (true) {
+                } finally {
+                    // the socket is shared, only stop listening once no acceptor is left
+                    if (m_liveAcceptors.decrementAndGet() == 0) {
                         try {
-                            m_executor.execute(authRunnable);
-                            break;
-                        } catch (RejectedExecutionException e) {
-                            Thread.sleep(1);
+                            m_serverSocket.close();
+                        } catch (IOException e) {
+                            hostLog.fatal(null, e);
                         }
                     }
-                } while (m_running);
-            } catch (Exception e) {
-                if (m_running) {
-                    hostLog.error("Exception in ClientAcceptor. The acceptor has died", e);
-                }
-            } finally {
-                try {
-                    m_serverSocket.close();
-                } catch (IOException e) {
-                    hostLog.fatal(null, e);
-                }
-                //Prevent interruption
-                synchronized (this) {
-                    Thread.interrupted();
-                    m_executor.shutdownNow();
-                    try {
-                        m_executor.awaitTermination(5, TimeUnit.MINUTES);
-                    } catch (InterruptedException e) {
-                        String msg = "Client Listener Interrupted while shutting down "
-                                + (m_isAdmin ? " Admin " : " ") + "port: " + m_port;
-                        VoltDB.crashLocalVoltDB(msg, false, e);
+                    //Prevent interruption
+                    synchronized (ClientAcceptor.this) {
+                        Thread.interrupted();
+                        m_executor.shutdownNow();
+                        try {
+                            m_executor.awaitTermination(5, TimeUnit.MINUTES);
+                        } catch (InterruptedException e) {
+                            String msg = "Client Listener Interrupted while shutting down "
+                                    + (m_isAdmin ? " Admin " : " ") + "port: " + m_port;
+                            VoltDB.crashLocalVoltDB(msg, false, e);
+                        }
                     }
                 }
             }
@@ -759,12 +822,17 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
             try {
+                if (message.get(message.position()) == ProcedureInvocationType.BULK_INVOCATIONS) {
+                    handleBulkRead(message, this, c);
+                    return;
+                }
+                final long traceStart = StageLatencyTracer.start();
                 final ClientResponseImpl error = handleRead(message, this, c);
                 if (error != null) {
-                    ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
-                    buf.putInt(buf.capacity() - 4);
-                    error.flattenToBuffer(buf).flip();
-                    c.writeStream().enqueue(buf);
+                    enqueueErrorResponse(error, c);
+                }
+                else {
+                    StageLatencyTracer.record(Stage.RECEIVE, traceStart);
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
@@ -855,12 +923,19 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
     /**
      * Runs on the network thread to prepare client response. If a transaction needs to be
      * restarted, it will get restarted here.
+     *
+     * A response too large for the write stream to serialize directly into its network
+     * buffers is handed over as a header followed by the result table buffers, so large
+     * results are copied once into the network buffers rather than flattened into a
+     * temporary buffer first.
      */
-    private class ClientResponseWork implements DeferredSerialization {
+    private class ClientResponseWork implements ScatteredDeferredSerialization {
         private final ClientInterfaceHandleManager cihm;
         private final InitiateResponseMessage response;
         private final Procedure catProc;
         private ClientResponseImpl clientResponse;
+        private int serializedSize;
+        private final long traceStart = StageLatencyTracer.start();
 
         private ClientResponseWork(InitiateResponseMessage response,
                                    ClientInterfaceHandleManager cihm,
@@ -879,6 +954,38 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.flattenToBuffer(buf);
         }
 
+        @Override
+        public ByteBuffer[] serializeToBuffers() throws IOException
+        {
+            final VoltTable results[] = clientResponse.getResults();
+            int tablesSize = 0;
+            for (VoltTable vt : results) {
+                tablesSize += vt.getSerializedSize();
+            }
+
+            // The message length, response header and the length prefix of each table share
+            // one small buffer, the table contents are sent from the tables' own buffers
+            final int headerSize = serializedSize - tablesSize;
+            final ByteBuffer header = ByteBuffer.allocate(headerSize + 4 * results.length);
+            header.putInt(serializedSize - 4);
+            clientResponse.flattenHeaderToBuffer(header);
+            for (VoltTable vt : results) {
+                header.putInt(vt.getSerializedSize() - 4);
+            }
+
+            final ByteBuffer bufs[] = new ByteBuffer[1 + 2 * results.length];
+            header.position(0);
+            header.limit(headerSize);
+            bufs[0] = header.slice();
+            for (int ii = 0; ii < results.length; ii++) {
+                header.limit(headerSize + 4 * (ii + 1));
+                header.position(headerSize + 4 * ii);
+                bufs[1 + 2 * ii] = header.slice();
+                bufs[2 + 2 * ii] = results[ii].getBuffer();
+            }
+            return bufs;
+        }
+
         @Override
         public void cancel() {
         }
@@ -926,7 +1033,9 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
             clientResponse.setClusterRoundtrip((int)TimeUnit.NANOSECONDS.toMillis(delta));
             clientResponse.setHash(null); // not part of wire protocol
 
-            return clientResponse.getSerializedSize() + 4;
+            serializedSize = clientResponse.getSerializedSize() + 4;
+            StageLatencyTracer.record(Stage.RESPONSE, traceStart);
+            return serializedSize;
         }
 
         @Override
@@ -1630,6 +1739,58 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         return null;
     }
 
+    private static void enqueueErrorResponse(ClientResponseImpl error, Connection c) {
+        ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
+        buf.putInt(buf.capacity() - 4);
+        error.flattenToBuffer(buf).flip();
+        c.writeStream().enqueue(buf);
+    }
+
+    /**
+     * Handle a frame of length prefixed invocations sent by a client with bulk invocations
+     * enabled. Each invocation is handled in turn from a slice of the frame, as if it had
+     * arrived on its own. The whole frame is checked before any invocation is handled, so
+     * a malformed frame is rejected without running part of it.
+     */
+    final void handleBulkRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) throws IOException {
+        buf.get(); // version
+        if (buf.remaining() < 4) {
+            throw new IOException("Bulk invocation frame is too short to hold an invocation count");
+        }
+        final int count = buf.getInt();
+        if (count < 0) {
+            throw new IOException("Bulk invocation frame has invocation count " + count);
+        }
+        final int start = buf.position();
+        for (int ii = 0; ii < count; ii++) {
+            final int length = buf.remaining() >= 4 ? buf.getInt() : -1;
+            if (length < 1 || length > buf.remaining()) {
+                throw new IOException("Invocation " + ii + " of a bulk invocation frame has length " +
+                        length + " with " + buf.remaining() + " bytes left in the frame");
+            }
+            buf.position(buf.position() + length);
+        }
+        if (buf.hasRemaining()) {
+            throw new IOException("Bulk invocation frame has " + buf.remaining() +
+                    " bytes left after its " + count + " invocations");
+        }
+
+        final int frameLimit = buf.limit();
+        buf.position(start);
+        for (int ii = 0; ii < count; ii++) {
+            final int length = buf.getInt();
+            buf.limit(buf.position() + length);
+            final ByteBuffer invocation = buf.slice();
+            buf.position(buf.limit());
+            buf.limit(frameLimit);
+
+            final ClientResponseImpl error = handleRead(invocation, handler, ccxn);
+            if (error != null) {
+                enqueueErrorResponse(error, ccxn);
+            }
+        }
+    }
+
     /**
      *
      * @param port
@@ -2735,6 +2896,16 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         return client_stats;
     }
 
+    public List<ClientAcceptorStats.Counters> getAcceptorCounters()
+    {
+        List<ClientAcceptorStats.Counters> counters = new ArrayList<ClientAcceptorStats.Counters>();
+        counters.addAll(m_acceptor.getCounters());
+        if (m_adminAcceptor != null) {
+            counters.addAll(m_adminAcceptor.getCounters());
+        }
+        return counters;
+    }
+
     public SnapshotDaemon getSnapshotDaemon() {
         return m_snapshotDaemon;
     }
@@ -210,6 +210,21 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
      * @return buf to allow call chaining.
      */
     public ByteBuffer flattenToBuffer(ByteBuffer buf) {
+        flattenHeaderToBuffer(buf);
+        for (VoltTable vt : results)
+        {
+            vt.flattenToBuffer(buf);
+        }
+        return buf;
+    }
+
+    /**
+     * Serialize everything up to and including the result table count. The serialized tables
+     * follow, which lets a caller send the table buffers as they are instead of copying them.
+     * Must be called after {@link #getSerializedSize()}.
+     * @return buf to allow call chaining.
+     */
+    public ByteBuffer flattenHeaderToBuffer(ByteBuffer buf) {
         assert setProperly;
         buf.put((byte)0); //version
         buf.putLong(clientHandle);
@@ -239,10 +254,6 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
             buf.putInt(m_hash.intValue());
         }
         buf.putShort((short)results.length);
-        for (VoltTable vt : results)
-        {
-            vt.flattenToBuffer(buf);
-        }
         return buf;
     }
 
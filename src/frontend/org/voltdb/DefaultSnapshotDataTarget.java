@@ -46,6 +46,7 @@ import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.messaging.FastSerializer;
 import org.voltdb.sysprocs.saverestore.SnapshotUtil;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
@@ -99,6 +100,9 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     @SuppressWarnings("unused")
     private final String m_tableName;
 
+    // recorded in the header so restore can decode the chunks
+    private final CompressionCodec m_codec;
+
     private final AtomicInteger m_outstandingWriteTasks = new AtomicInteger(0);
     private final ReentrantLock m_outstandingWriteTasksLock = new ReentrantLock();
     private final Condition m_noMoreOutstandingWriteTasksCondition =
@@ -149,7 +153,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             final List<Integer> partitionIds,
             final VoltTable schemaTable,
             final long txnId,
-            final long timestamp) throws IOException {
+            final long timestamp,
+            final CompressionCodec codec) throws IOException {
         this(
                 file,
                 hostId,
@@ -162,7 +167,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                 schemaTable,
                 txnId,
                 timestamp,
-                new int[] { 0, 0, 0, 2 });
+                new int[] { 0, 0, 0, 2 },
+                codec);
     }
 
     public DefaultSnapshotDataTarget(
@@ -177,11 +183,13 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             final VoltTable schemaTable,
             final long txnId,
             final long timestamp,
-            int version[]
+            int version[],
+            final CompressionCodec codec
             ) throws IOException {
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
+        m_codec = codec;
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
@@ -204,6 +212,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             stringer.key("tableName").value(tableName.toUpperCase());
             stringer.key("isReplicated").value(isReplicated);
             stringer.key("isCompressed").value(true);
+            stringer.key("compressionCodec").value(codec.name());
             stringer.key("checksumType").value("CRC32C");
             stringer.key("timestamp").value(timestamp);
             /*
@@ -434,7 +443,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              * that is 16 bytes, but 4 of those are done by CompressionService
              */
             cont.b().position(12);
-            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont, m_codec);
         }
         final Future<BBContainer> compressionTaskFinal = compressionTask;
 
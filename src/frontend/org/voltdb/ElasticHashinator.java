@@ -31,6 +31,7 @@ import org.apache.cassandra_voltpatches.MurmurHash3;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.Bits;
 import org.voltcore.utils.Pair;
+import org.voltdb.client.TokenLookupTable;
 
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.base.Supplier;
@@ -68,6 +69,11 @@ public class ElasticHashinator extends TheHashinator {
     private final int m_tokenCount;
     private final Cleaner m_cleaner;
 
+    /*
+     * Heap copy of the ring indexed for lookups, the pointer above is what the EE gets
+     */
+    private final TokenLookupTable m_lookup;
+
     private final Supplier<byte[]> m_configBytes;
     private final Supplier<byte[]> m_configBytesSupplier = Suppliers.memoize(new Supplier<byte[]>() {
         @Override
@@ -91,6 +97,13 @@ public class ElasticHashinator extends TheHashinator {
 
     @Override
     public int pHashToPartition(VoltType type, Object obj) {
+        // integers hash as their 8 little endian bytes, skip converting them to an array
+        if (obj instanceof Long || obj instanceof Integer || obj instanceof Short || obj instanceof Byte) {
+            if (VoltType.isNullVoltType(obj)) {
+                return 0;
+            }
+            return partitionForToken(MurmurHash3.hash3_x64_128(((Number)obj).longValue()));
+        }
         return hashinateBytes(valueToBytes(obj));
     }
 
@@ -108,6 +121,7 @@ public class ElasticHashinator extends TheHashinator {
         m_tokens = p.getFirst();
         m_tokenCount = p.getSecond();
         m_cleaner = Cleaner.create(this, new Deallocator(m_tokens, m_tokenCount * 8));
+        m_lookup = TokenLookupTable.fromPointer(m_tokens, m_tokenCount);
         m_configBytes = !cooked ? Suppliers.ofInstance(configBytes) : m_configBytesSupplier;
         m_cookedBytes = cooked ? Suppliers.ofInstance(configBytes) : m_cookedBytesSupplier;
         m_tokensMap =  Suppliers.memoize(new Supplier<ImmutableSortedMap<Integer, Integer>>() {
@@ -146,6 +160,7 @@ public class ElasticHashinator extends TheHashinator {
             ii++;
         }
         m_tokenCount = tokens.size();
+        m_lookup = TokenLookupTable.fromPointer(m_tokens, m_tokenCount);
         m_configBytes = m_configBytesSupplier;
         m_cookedBytes = m_cookedBytesSupplier;
     }
@@ -199,8 +214,7 @@ public class ElasticHashinator extends TheHashinator {
      * it wraps around to the last token in the ring closest to Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return m_lookup.partitionForToken(hash);
     }
 
     /**
@@ -478,26 +492,6 @@ public class ElasticHashinator extends TheHashinator {
         return Pair.of(tokens, numEntries);
     }
 
-    private long getTokenPtr(int hash) {
-        int min = 0;
-        int max = m_tokenCount - 1;
-
-        while (min <= max) {
-            int mid = (min + max) >>> 1;
-            final long midPtr = m_tokens + (8 * mid);
-            int midval = Bits.unsafe.getInt(midPtr);
-
-            if (midval < hash) {
-                min = mid + 1;
-            } else if (midval > hash) {
-                max = mid - 1;
-            } else {
-                return midPtr;
-            }
-        }
-        return m_tokens + (min - 1) * 8;
-    }
-
     /**
      * Update from optimized (cooked) wire format.
      *      token-1 token-2 ...
@@ -19,6 +19,7 @@ package org.voltdb;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 
@@ -41,14 +42,18 @@ public class ParameterSet implements JSONString {
 
     static final byte ARRAY = -99;
 
-    static class OneParamInfo {
-        Object value;
-        byte[] encodedString;
-        byte[][] encodedStringArray;
-    }
-
     private final Object m_params[];
 
+    /*
+     * Sets read by fromByteBuffer keep the bytes they were read from and aren't decoded
+     * until a parameter is accessed, which often never happens when the set is only
+     * forwarded to another site or the EE. Serializing the set copies these bytes.
+     * Decoding fills in m_params under the instance monitor and then sets m_decoded,
+     * so threads that see m_decoded see every parameter.
+     */
+    private final ByteBuffer m_serialized;
+    private volatile boolean m_decoded;
+
     /*
      * The same ParameterSet instance could be accessed by multiple threads to
      * serialize the parameters. These two member variables keeps the encoded
@@ -220,34 +225,22 @@ public class ParameterSet implements JSONString {
         return fromArrayNoCopy(params);
     }
 
+    /**
+     * Read a set from a buffer, leaving the buffer positioned after it. The parameters
+     * are only located, they are decoded from the buffer when first accessed, so the
+     * contents of the buffer must not change while the set is in use.
+     */
     public static ParameterSet fromByteBuffer(ByteBuffer buffer) throws IOException {
-        int startPos = buffer.position();
+        final ByteBuffer serialized = buffer.slice();
+        final int startPos = buffer.position();
 
         short count = buffer.getShort();
-        Object[] params = new Object[count];
-        byte[][] encodedStrings = null;
-        byte[][][] encodedStringArrays = null;
-
         for (int i = 0; i < count; ++i) {
-            OneParamInfo opi = readOneParameter(buffer);
-            params[i] = opi.value;
-            if (opi.encodedString != null) {
-                if (encodedStrings == null) {
-                    encodedStrings = new byte[count][];
-                }
-                encodedStrings[i] = opi.encodedString;
-            }
-            if (opi.encodedStringArray != null) {
-                if (encodedStringArrays == null) {
-                    encodedStringArrays = new byte[count][][];
-                }
-                encodedStringArrays[i] = opi.encodedStringArray;
-            }
+            skipOneParameter(buffer);
         }
 
-        int size = buffer.position() - startPos;
-
-        return new ParameterSet(params, size, encodedStrings, encodedStringArrays);
+        serialized.limit(buffer.position() - startPos);
+        return new ParameterSet(serialized, count);
     }
 
     private ParameterSet(Object[] params, int serializedSize, byte[][] encodedStrings, byte[][][] encodedStringArrays) {
@@ -255,6 +248,41 @@ public class ParameterSet implements JSONString {
         m_serializedSize = serializedSize;
         m_encodedStrings = encodedStrings;
         m_encodedStringArrays = encodedStringArrays;
+        m_serialized = null;
+        m_decoded = true;
+    }
+
+    private ParameterSet(ByteBuffer serialized, short count) {
+        m_params = new Object[count];
+        m_serializedSize = serialized.remaining();
+        m_encodedStrings = null;
+        m_encodedStringArrays = null;
+        m_serialized = serialized;
+        m_decoded = false;
+    }
+
+    private Object[] params() {
+        if (!m_decoded) {
+            decode();
+        }
+        return m_params;
+    }
+
+    private synchronized void decode() {
+        if (m_decoded) {
+            return;
+        }
+        final ByteBuffer in = m_serialized.duplicate();
+        in.getShort();
+        try {
+            for (int i = 0; i < m_params.length; ++i) {
+                m_params[i] = readOneParameter(in);
+            }
+        } catch (IOException e) {
+            // the set was checked when it was read, the buffer must have been changed since
+            throw new RuntimeException("Unable to decode parameter set", e);
+        }
+        m_decoded = true;
     }
 
     static Object limitType(Object o) {
@@ -267,7 +295,7 @@ public class ParameterSet implements JSONString {
     }
 
     public Object getParam(int index) {
-        return m_params[index];
+        return params()[index];
     }
 
     /**
@@ -275,7 +303,7 @@ public class ParameterSet implements JSONString {
      * @return
      */
     public Object[] toArray() {
-        return m_params.clone();
+        return params().clone();
     }
 
     public int size() {
@@ -302,11 +330,11 @@ public class ParameterSet implements JSONString {
             throw new RuntimeException("Invalid partition parameter requested.");
         }
         for (int i = 0; i < partitionIndex; ++i) {
-            readOneParameter(unserializedParams);
+            skipOneParameter(unserializedParams);
         }
-        OneParamInfo opi = readOneParameter(unserializedParams);
+        Object value = readOneParameter(unserializedParams);
         unserializedParams.rewind();
-        return opi.value;
+        return value;
     }
 
     static Object getAKosherArray(Object[] array) {
@@ -415,9 +443,10 @@ public class ParameterSet implements JSONString {
     public String toString() {
         StringBuilder b = new StringBuilder();
         b.append("ParameterSet:");
-        for (int i = 0; i < m_params.length; ++i) {
-            b.append(",param[" + i + "]=" + (m_params[i] == null ? "NULL"
-                    : m_params[i].toString() + "(" + m_params[i].getClass().getName() + ")"));
+        final Object params[] = params();
+        for (int i = 0; i < params.length; ++i) {
+            b.append(",param[" + i + "]=" + (params[i] == null ? "NULL"
+                    : params[i].toString() + "(" + params[i].getClass().getName() + ")"));
         }
         return new String(b);
     }
@@ -427,7 +456,7 @@ public class ParameterSet implements JSONString {
         JSONStringer js = new JSONStringer();
         try {
             js.array();
-            for (Object o : m_params) {
+            for (Object o : params()) {
                 js.value(o);
             }
             js.endArray();
@@ -456,12 +485,95 @@ public class ParameterSet implements JSONString {
         return value;
     }
 
-    static private OneParamInfo readOneParameter(ByteBuffer in)
+    /*
+     * Move past a parameter without decoding it, checking its type and length
+     */
+    static private void skipOneParameter(ByteBuffer in) throws IOException {
+        byte nextTypeByte = in.get();
+        if (nextTypeByte == ARRAY) {
+            // arrays are uncommon, decoding is the simplest way to find their end
+            in.position(in.position() - 1);
+            readOneParameter(in);
+            return;
+        }
+        VoltType nextType;
+        try {
+            nextType = VoltType.get(nextTypeByte);
+        } catch (AssertionError ae) {
+            throw new RuntimeException("ParameterSet doesn't support type " + nextTypeByte);
+        }
+        switch (nextType) {
+            case NULL:
+                break;
+            case TINYINT:
+                skip(in, 1);
+                break;
+            case SMALLINT:
+                skip(in, 2);
+                break;
+            case INTEGER:
+                skip(in, 4);
+                break;
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+                skip(in, 8);
+                break;
+            case DECIMAL:
+                skip(in, 16);
+                break;
+            case STRING:
+            case VARBINARY: {
+                final int len = in.getInt();
+                if (len != VoltType.NULL_STRING_LENGTH) {
+                    if (len < 0) {
+                        throw new IOException("Invalid " + nextType + " parameter length " + len);
+                    }
+                    skip(in, len);
+                }
+                break;
+            }
+            case VOLTTABLE: {
+                final int tableSize = in.getInt();
+                if (tableSize < 0) {
+                    throw new IOException("Invalid table parameter length " + tableSize);
+                }
+                skip(in, tableSize);
+                break;
+            }
+            default:
+                throw new RuntimeException("ParameterSet doesn't support type " + nextType);
+        }
+    }
+
+    private static void skip(ByteBuffer in, int length) {
+        if (length > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        in.position(in.position() + length);
+    }
+
+    /*
+     * Decode a string straight from the buffer's backing array when it has one
+     */
+    private static String readString(ByteBuffer in, int len) {
+        if (len > in.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        if (in.hasArray()) {
+            final String value = new String(in.array(), in.arrayOffset() + in.position(), len, Constants.UTF8ENCODING);
+            in.position(in.position() + len);
+            return value;
+        }
+        final byte encodedString[] = new byte[len];
+        in.get(encodedString);
+        return new String(encodedString, Constants.UTF8ENCODING);
+    }
+
+    static private Object readOneParameter(ByteBuffer in)
             throws IOException {
         Object value;
         int len;
-        byte[] encodedString = null;
-        byte[][] encodedStringArray = null;
 
         byte nextTypeByte = in.get();
         if (nextTypeByte == ARRAY) {
@@ -476,7 +588,7 @@ public class ParameterSet implements JSONString {
                 value = null;
             }
             else if (nextType == VoltType.STRING) {
-                encodedStringArray = (byte[][]) SerializationHelper.readArray(byte[].class, in);
+                final byte[][] encodedStringArray = (byte[][]) SerializationHelper.readArray(byte[].class, in);
                 String[] sval = new String[encodedStringArray.length];
                 for (int i = 0; i < encodedStringArray.length; ++i) {
                     if (encodedStringArray[i] == null) {
@@ -524,9 +636,7 @@ public class ParameterSet implements JSONString {
                         value = VoltType.NULL_STRING_OR_VARBINARY;
                     }
                     else {
-                        encodedString = new byte[len];
-                        in.get(encodedString);
-                        value = new String(encodedString, Constants.UTF8ENCODING);
+                        value = readString(in, len);
                     }
                     break;
                 case VARBINARY:
@@ -535,9 +645,9 @@ public class ParameterSet implements JSONString {
                         value = VoltType.NULL_STRING_OR_VARBINARY;
                     }
                     else {
-                        encodedString = new byte[len];
-                        in.get(encodedString);
-                        value = encodedString;
+                        final byte[] bytes = new byte[len];
+                        in.get(bytes);
+                        value = bytes;
                     }
                     break;
                 case TIMESTAMP:
@@ -565,14 +675,15 @@ public class ParameterSet implements JSONString {
             }
         }
 
-        OneParamInfo retval = new OneParamInfo();
-        retval.value = value;
-        retval.encodedString = encodedString;
-        retval.encodedStringArray = encodedStringArray;
-        return retval;
+        return value;
     }
 
     public void flattenToBuffer(ByteBuffer buf) throws IOException {
+        if (m_serialized != null) {
+            // still in the form it was read in
+            buf.put(m_serialized.duplicate());
+            return;
+        }
 
         buf.putShort((short)m_params.length);
 
@@ -758,7 +869,7 @@ public class ParameterSet implements JSONString {
             return false;
         }
         ParameterSet other = (ParameterSet) obj;
-        return Arrays.deepEquals(m_params, other.m_params);
+        return Arrays.deepEquals(params(), other.params());
     }
 
     /* (non-Javadoc)
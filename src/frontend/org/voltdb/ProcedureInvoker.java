@@ -0,0 +1,34 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+/**
+ * Calls the run method of a Java stored procedure with parameters that have already
+ * been converted to the method's parameter types. Implementations are generated for
+ * each procedure class by {@link ProcedureInvokerGenerator}, so it has to be public
+ * for the generated classes to implement it.
+ */
+public interface ProcedureInvoker {
+    /**
+     * @param procedure The procedure instance to call run on
+     * @param params The run parameters, primitives boxed in their wrapper types
+     * @return The value returned by run, boxed if it is primitive and null if run is void
+     * @throws Throwable Whatever run throws, unwrapped
+     */
+    public Object invoke(VoltProcedure procedure, Object[] params) throws Throwable;
+}
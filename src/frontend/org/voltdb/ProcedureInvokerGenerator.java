@@ -0,0 +1,399 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltcore.logging.VoltLogger;
+
+/**
+ * Generates a {@link ProcedureInvoker} class for the run method of a procedure, so
+ * the site thread calls run directly instead of through Method.invoke. The generated
+ * invoke method casts the procedure, unboxes each parameter to the type run declares
+ * and boxes the return value, roughly
+ *
+ * <pre>
+ * return Long.valueOf(((MyProc)procedure).run(((Long)params[0]).longValue(), (String)params[1]));
+ * </pre>
+ *
+ * The code has no branches, so the class file needs no stack map frames and is simple
+ * enough to emit by hand. Methods that can't be called from another class loader, such
+ * as those of non-public classes, get no invoker and the caller falls back to reflection.
+ *
+ * Invokers are stateless and shared by every site. They are cached on the procedure
+ * class and are unloaded with it when a catalog update replaces the class.
+ */
+final class ProcedureInvokerGenerator {
+
+    private static final VoltLogger log = new VoltLogger("HOST");
+
+    // Set to fall back to reflection for every procedure
+    static final boolean DISABLED = Boolean.getBoolean("DISABLE_GENERATED_PROCEDURE_INVOKERS");
+
+    private static final AtomicInteger m_generatedCount = new AtomicInteger();
+
+    private static final ClassValue<ConcurrentHashMap<Method, ProcedureInvoker>> m_invokers =
+            new ClassValue<ConcurrentHashMap<Method, ProcedureInvoker>>() {
+                @Override
+                protected ConcurrentHashMap<Method, ProcedureInvoker> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<Method, ProcedureInvoker>();
+                }
+            };
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int CONSTANT_Utf8 = 1;
+    private static final int CONSTANT_Class = 7;
+    private static final int CONSTANT_Methodref = 10;
+    private static final int CONSTANT_NameAndType = 12;
+
+    private static final int ACONST_NULL = 0x01;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int ALOAD_2 = 0x2c;
+    private static final int AALOAD = 0x32;
+    private static final int ARETURN = 0xb0;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKEVIRTUAL = 0xb6;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int CHECKCAST = 0xc0;
+
+    private ProcedureInvokerGenerator() {}
+
+    /**
+     * Get the invoker for a procedure's run method, generating it the first time.
+     *
+     * @return The invoker, or null if the method has to be called through reflection
+     */
+    static ProcedureInvoker getInvoker(Method run) {
+        if (DISABLED || !isInvokable(run)) {
+            return null;
+        }
+        final ConcurrentHashMap<Method, ProcedureInvoker> invokers = m_invokers.get(run.getDeclaringClass());
+        ProcedureInvoker invoker = invokers.get(run);
+        if (invoker == null) {
+            try {
+                invoker = generate(run);
+            } catch (Throwable t) {
+                // Reflection still works, it's just slower
+                log.warn("Unable to generate an invoker for " + run + ", it will be called through reflection", t);
+                return null;
+            }
+            ProcedureInvoker existing = invokers.putIfAbsent(run, invoker);
+            if (existing != null) {
+                invoker = existing;
+            }
+        }
+        return invoker;
+    }
+
+    /*
+     * Generated classes live in their own class loader, so they can only reach public members
+     * of public classes
+     */
+    private static boolean isInvokable(Method run) {
+        if (!Modifier.isPublic(run.getModifiers()) || Modifier.isStatic(run.getModifiers())) {
+            return false;
+        }
+        for (Class<?> c = run.getDeclaringClass(); c != null; c = c.getEnclosingClass()) {
+            if (!Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        for (Class<?> param : run.getParameterTypes()) {
+            if (!isAccessible(param)) {
+                return false;
+            }
+        }
+        return isAccessible(run.getReturnType()) && run.getParameterTypes().length <= Short.MAX_VALUE;
+    }
+
+    private static boolean isAccessible(Class<?> type) {
+        while (type.isArray()) {
+            type = type.getComponentType();
+        }
+        for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+            if (!c.isPrimitive() && !Modifier.isPublic(c.getModifiers())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ProcedureInvoker generate(Method run) throws Exception {
+        final Class<?> procClass = run.getDeclaringClass();
+        final String className = procClass.getName() + "$$Invoker" + m_generatedCount.incrementAndGet();
+        final InvokerLoader loader = new InvokerLoader(procClass.getClassLoader());
+        // The generated code names the procedure class, make sure the loader resolves that name to this class
+        if (Class.forName(procClass.getName(), false, loader) != procClass) {
+            throw new ClassNotFoundException(procClass.getName() + " resolves to a different class from its class loader");
+        }
+        final Class<?> invokerClass = loader.define(className, classBytes(className, run));
+        return (ProcedureInvoker)invokerClass.newInstance();
+    }
+
+    private static final class InvokerLoader extends ClassLoader {
+        InvokerLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte bytes[]) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    static byte[] classBytes(String className, Method run) throws IOException {
+        final ConstantPool pool = new ConstantPool();
+        final int thisClass = pool.classRef(internalName(className));
+        final int superClass = pool.classRef("java/lang/Object");
+        final int invokerInterface = pool.classRef(internalName(ProcedureInvoker.class.getName()));
+        final int codeAttr = pool.utf8("Code");
+
+        // <init> just calls Object's
+        final ByteArrayOutputStream ctorCode = new ByteArrayOutputStream();
+        ctorCode.write(ALOAD_0);
+        writeRef(ctorCode, INVOKESPECIAL, pool.methodRef("java/lang/Object", "<init>", "()V"));
+        ctorCode.write(RETURN);
+
+        // invoke(VoltProcedure, Object[])
+        final Class<?> procClass = run.getDeclaringClass();
+        final Class<?> paramTypes[] = run.getParameterTypes();
+        final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        // the cast procedure and the parameters pushed so far are on the stack
+        int depth = 1;
+        int maxStack = 1;
+        code.write(ALOAD_1);
+        writeRef(code, CHECKCAST, pool.classRef(internalName(procClass)));
+        for (int ii = 0; ii < paramTypes.length; ii++) {
+            final Class<?> type = paramTypes[ii];
+            code.write(ALOAD_2);
+            if (ii <= Byte.MAX_VALUE) {
+                code.write(BIPUSH);
+                code.write(ii);
+            } else {
+                code.write(SIPUSH);
+                code.write(ii >>> 8);
+                code.write(ii);
+            }
+            code.write(AALOAD);
+            if (type.isPrimitive()) {
+                final Class<?> box = boxFor(type);
+                writeRef(code, CHECKCAST, pool.classRef(internalName(box)));
+                writeRef(code, INVOKEVIRTUAL,
+                        pool.methodRef(internalName(box), type.getName() + "Value", "()" + descriptor(type)));
+            } else if (type != Object.class) {
+                writeRef(code, CHECKCAST, pool.classRef(internalName(type)));
+            }
+            // the array and index are on the stack before aaload replaces them with the parameter
+            maxStack = Math.max(maxStack, depth + 2);
+            depth += slots(type);
+        }
+        writeRef(code, INVOKEVIRTUAL, pool.methodRef(internalName(procClass), run.getName(), methodDescriptor(run)));
+        final Class<?> returnType = run.getReturnType();
+        maxStack = Math.max(maxStack, slots(returnType));
+        if (returnType == void.class) {
+            code.write(ACONST_NULL);
+        } else if (returnType.isPrimitive()) {
+            final Class<?> box = boxFor(returnType);
+            writeRef(code, INVOKESTATIC, pool.methodRef(internalName(box), "valueOf",
+                    "(" + descriptor(returnType) + ")" + descriptor(box)));
+        }
+        code.write(ARETURN);
+
+        final int ctorName = pool.utf8("<init>");
+        final int ctorDesc = pool.utf8("()V");
+        final int invokeName = pool.utf8("invoke");
+        final int invokeDesc = pool.utf8("(" + descriptor(VoltProcedure.class) + "[Ljava/lang/Object;)Ljava/lang/Object;");
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(0xCAFEBABE);
+        out.writeShort(0);
+        out.writeShort(50); // Java 6, no stack map frames
+        pool.write(out);
+        out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        out.writeShort(thisClass);
+        out.writeShort(superClass);
+        out.writeShort(1);
+        out.writeShort(invokerInterface);
+        out.writeShort(0); // fields
+        out.writeShort(2); // methods
+        writeMethod(out, ctorName, ctorDesc, codeAttr, 1, 1, ctorCode.toByteArray());
+        writeMethod(out, invokeName, invokeDesc, codeAttr, maxStack, 3, code.toByteArray());
+        out.writeShort(0); // class attributes
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttr,
+            int maxStack, int maxLocals, byte code[]) throws IOException {
+        out.writeShort(ACC_PUBLIC);
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttr);
+        out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0); // exception table
+        out.writeShort(0); // code attributes
+    }
+
+    private static void writeRef(ByteArrayOutputStream code, int opcode, int index) {
+        code.write(opcode);
+        code.write(index >>> 8);
+        code.write(index);
+    }
+
+    private static Class<?> boxFor(Class<?> primitive) {
+        if (primitive == long.class) return Long.class;
+        if (primitive == int.class) return Integer.class;
+        if (primitive == short.class) return Short.class;
+        if (primitive == byte.class) return Byte.class;
+        if (primitive == double.class) return Double.class;
+        if (primitive == float.class) return Float.class;
+        if (primitive == boolean.class) return Boolean.class;
+        if (primitive == char.class) return Character.class;
+        throw new IllegalArgumentException("No wrapper for " + primitive);
+    }
+
+    private static int slots(Class<?> type) {
+        return (type == long.class || type == double.class) ? 2 : 1;
+    }
+
+    private static String internalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    /*
+     * The name used by checkcast and constant pool class entries, arrays use their descriptor
+     */
+    private static String internalName(Class<?> type) {
+        return internalName(type.getName());
+    }
+
+    private static String descriptor(Class<?> type) {
+        if (type.isArray()) return internalName(type.getName());
+        if (type == long.class) return "J";
+        if (type == int.class) return "I";
+        if (type == short.class) return "S";
+        if (type == byte.class) return "B";
+        if (type == double.class) return "D";
+        if (type == float.class) return "F";
+        if (type == boolean.class) return "Z";
+        if (type == char.class) return "C";
+        if (type == void.class) return "V";
+        return "L" + internalName(type.getName()) + ";";
+    }
+
+    private static String methodDescriptor(Method m) {
+        final StringBuilder sb = new StringBuilder("(");
+        for (Class<?> param : m.getParameterTypes()) {
+            sb.append(descriptor(param));
+        }
+        return sb.append(')').append(descriptor(m.getReturnType())).toString();
+    }
+
+    /*
+     * Constant pool entries are deduplicated by their contents
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream m_bytes = new ByteArrayOutputStream();
+        private final DataOutputStream m_out = new DataOutputStream(m_bytes);
+        private final Map<String, Integer> m_entries = new HashMap<String, Integer>();
+        private int m_count = 1;
+
+        int utf8(String value) throws IOException {
+            final String key = "U" + value;
+            Integer index = m_entries.get(key);
+            if (index == null) {
+                m_out.writeByte(CONSTANT_Utf8);
+                m_out.writeUTF(value);
+                index = add(key);
+            }
+            return index;
+        }
+
+        int classRef(String internalName) throws IOException {
+            final String key = "C" + internalName;
+            Integer index = m_entries.get(key);
+            if (index == null) {
+                final int name = utf8(internalName);
+                m_out.writeByte(CONSTANT_Class);
+                m_out.writeShort(name);
+                index = add(key);
+            }
+            return index;
+        }
+
+        int methodRef(String owner, String name, String descriptor) throws IOException {
+            final String key = "M" + owner + "." + name + descriptor;
+            Integer index = m_entries.get(key);
+            if (index == null) {
+                final int ownerIndex = classRef(owner);
+                final int nameAndType = nameAndType(name, descriptor);
+                m_out.writeByte(CONSTANT_Methodref);
+                m_out.writeShort(ownerIndex);
+                m_out.writeShort(nameAndType);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int nameAndType(String name, String descriptor) throws IOException {
+            final String key = "N" + name + descriptor;
+            Integer index = m_entries.get(key);
+            if (index == null) {
+                final int nameIndex = utf8(name);
+                final int descIndex = utf8(descriptor);
+                m_out.writeByte(CONSTANT_NameAndType);
+                m_out.writeShort(nameIndex);
+                m_out.writeShort(descIndex);
+                index = add(key);
+            }
+            return index;
+        }
+
+        private int add(String key) {
+            final int index = m_count++;
+            m_entries.put(key, index);
+            return index;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            m_out.flush();
+            out.writeShort(m_count);
+            out.write(m_bytes.toByteArray());
+        }
+    }
+}
@@ -26,6 +26,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -82,8 +83,69 @@ public class ProcedureRunner {
         ByteBuffer serialization = null;
     }
     protected final ArrayList<QueuedSQL> m_batch = new ArrayList<QueuedSQL>(100);
+    // QueuedSQLs handed out since the last batch was released, reused by the next batch
+    private final ArrayList<QueuedSQL> m_queuedSQLs = new ArrayList<QueuedSQL>();
+    private int m_queuedSQLsUsed = 0;
+    // serialized parameters of the queued writes, sliced per statement
+    private static final int PARAM_BUFFER_SIZE = 4096;
+    private static final int MAX_KEPT_PARAM_BUFFER_SIZE = 1024 * 1024;
+    private ByteBuffer m_paramBuffer = ByteBuffer.allocate(PARAM_BUFFER_SIZE);
+    // fragment id and sql text arrays of recently run single partition batches
+    static final int PREBOUND_BATCH_COUNT = Integer.getInteger("PROCEDURE_PREBOUND_BATCHES", 4);
+    private final PreboundBatch[] m_preboundBatches = new PreboundBatch[PREBOUND_BATCH_COUNT];
+    private int m_nextPreboundBatch = 0;
     // cached fake SQLStmt array for single statement non-java procs
     QueuedSQL m_cachedSingleStmt = new QueuedSQL(); // never null
+
+    /**
+     * The arrays the EE is called with for one shape of single partition batch,
+     * the same catalog statements in the same order. Procedures that run the same
+     * few statements on every call fill them in once and then only swap parameters.
+     */
+    static class PreboundBatch {
+        final SQLStmt[] stmts;
+        final long[] fragmentIds;
+        final String[] sqlTexts;
+        final Object[] params;
+
+        PreboundBatch(List<QueuedSQL> batch) {
+            final int size = batch.size();
+            stmts = new SQLStmt[size];
+            fragmentIds = new long[size];
+            sqlTexts = new String[size];
+            params = new Object[size];
+            for (int i = 0; i < size; i++) {
+                final SQLStmt stmt = batch.get(i).stmt;
+                stmts[i] = stmt;
+                fragmentIds[i] = stmt.aggregator.id;
+                sqlTexts[i] = stmt.getText();
+            }
+        }
+
+        boolean matches(List<QueuedSQL> batch) {
+            if (batch.size() != stmts.length) {
+                return false;
+            }
+            for (int i = 0; i < stmts.length; i++) {
+                final SQLStmt stmt = batch.get(i).stmt;
+                // a catalog update can replan a statement shared between procedure instances
+                if (stmt != stmts[i] || stmt.aggregator.id != fragmentIds[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static boolean canPrebind(List<QueuedSQL> batch) {
+            // ad hoc statements are new objects on every call and would never match
+            for (QueuedSQL qs : batch) {
+                if (!qs.stmt.inCatalog) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
     boolean m_seenFinalBatch = false;
 
     // reflected info
@@ -91,6 +153,8 @@ public class ProcedureRunner {
     protected final String m_procedureName;
     protected final VoltProcedure m_procedure;
     protected Method m_procMethod;
+    // calls m_procMethod directly, null if it has to be called through reflection
+    protected ProcedureInvoker m_procInvoker;
     protected Class<?>[] m_paramTypes;
 
     // per txn state (are reset after call)
@@ -312,13 +376,23 @@ public class ProcedureRunner {
                         if (HOST_TRACE_ENABLED) {
                             log.trace("invoking... procMethod=" + m_procMethod.getName() + ", class=" + m_procMethod.getDeclaringClass().getName());
                         }
-                        try {
-                            Object rawResult = m_procMethod.invoke(m_procedure, paramList);
-                            results = getResultsFromRawResults(rawResult);
-                        } catch (IllegalAccessException e) {
-                            // If reflection fails, invoke the same error handling that other exceptions do
-                            throw new InvocationTargetException(e);
+                        Object rawResult;
+                        if (m_procInvoker != null) {
+                            try {
+                                rawResult = m_procInvoker.invoke(m_procedure, paramList);
+                            } catch (Throwable t) {
+                                // The invoker calls run directly, so whatever it throws came from the procedure
+                                throw new InvocationTargetException(t);
+                            }
+                        } else {
+                            try {
+                                rawResult = m_procMethod.invoke(m_procedure, paramList);
+                            } catch (IllegalAccessException e) {
+                                // If reflection fails, invoke the same error handling that other exceptions do
+                                throw new InvocationTargetException(e);
+                            }
                         }
+                        results = getResultsFromRawResults(rawResult);
                     }
                     else if (m_language == Language.GROOVY) {
                         if (HOST_TRACE_ENABLED) {
@@ -413,7 +487,7 @@ public class ProcedureRunner {
             // finally at the call(..) scope to ensure params can be
             // garbage collected and that the queue will be empty for
             // the next call
-            m_batch.clear();
+            releaseBatch();
 
             // reset other per-txn state
             m_txnState = null;
@@ -550,10 +624,11 @@ public class ProcedureRunner {
         if (!queuedSQL.stmt.isReadOnly) {
             m_inputCRC.update(queuedSQL.stmt.sqlCRC);
             try {
-                ByteBuffer buf = ByteBuffer.allocate(queuedSQL.params.getSerializedSize());
+                final int size = queuedSQL.params.getSerializedSize();
+                ByteBuffer buf = allocateParams(size);
                 queuedSQL.params.flattenToBuffer(buf);
                 buf.flip();
-                m_inputCRC.update(buf.array());
+                m_inputCRC.update(buf.array(), buf.arrayOffset(), size);
                 queuedSQL.serialization = buf;
             } catch (IOException e) {
                 log.error("Unable to compute CRC of parameters to " +
@@ -565,11 +640,60 @@ public class ProcedureRunner {
         }
     }
 
+    /**
+     * Slice space for serialized parameters off the shared parameter buffer. The slices
+     * stay valid until the batch is released, even if the buffer has to be replaced
+     * by a bigger one in the meantime.
+     */
+    private ByteBuffer allocateParams(int size) {
+        if (m_paramBuffer.remaining() < size) {
+            m_paramBuffer = ByteBuffer.allocate(Math.max(m_paramBuffer.capacity() * 2, size));
+        }
+        ByteBuffer buf = m_paramBuffer.slice();
+        buf.limit(size);
+        m_paramBuffer.position(m_paramBuffer.position() + size);
+        return buf;
+    }
+
+    private QueuedSQL newQueuedSQL() {
+        if (m_queuedSQLsUsed < m_queuedSQLs.size()) {
+            return m_queuedSQLs.get(m_queuedSQLsUsed++);
+        }
+        QueuedSQL queuedSQL = new QueuedSQL();
+        if (m_queuedSQLs.size() < MAX_BATCH_SIZE) {
+            m_queuedSQLs.add(queuedSQL);
+            m_queuedSQLsUsed++;
+        }
+        return queuedSQL;
+    }
+
+    /**
+     * Drop the queued SQL and let the QueuedSQLs and the parameter buffer be reused.
+     * Only safe once nothing from the batch is running.
+     */
+    private void releaseBatch() {
+        m_batch.clear();
+        for (int i = 0; i < m_queuedSQLsUsed; i++) {
+            QueuedSQL queuedSQL = m_queuedSQLs.get(i);
+            queuedSQL.stmt = null;
+            queuedSQL.params = null;
+            queuedSQL.expectation = null;
+            queuedSQL.serialization = null;
+        }
+        m_queuedSQLsUsed = 0;
+        if (m_paramBuffer.capacity() > MAX_KEPT_PARAM_BUFFER_SIZE) {
+            m_paramBuffer = ByteBuffer.allocate(PARAM_BUFFER_SIZE);
+        }
+        else {
+            m_paramBuffer.clear();
+        }
+    }
+
     public void voltQueueSQL(final SQLStmt stmt, Expectation expectation, Object... args) {
         if (stmt == null) {
             throw new IllegalArgumentException("SQLStmt parameter to voltQueueSQL(..) was null.");
         }
-        QueuedSQL queuedSQL = new QueuedSQL();
+        QueuedSQL queuedSQL = newQueuedSQL();
         queuedSQL.expectation = expectation;
         queuedSQL.params = getCleanParams(stmt, args);
         queuedSQL.stmt = stmt;
@@ -599,7 +723,7 @@ public class ProcedureRunner {
 
             assert(1 == batch.plannedStatements.size());
 
-            QueuedSQL queuedSQL = new QueuedSQL();
+            QueuedSQL queuedSQL = newQueuedSQL();
             AdHocPlannedStatement plannedStatement = batch.plannedStatements.get(0);
 
             long aggFragId = ActivePlanRepository.loadOrAddRefPlanFragment(
@@ -720,7 +844,7 @@ public class ProcedureRunner {
             }
         }
         finally {
-            m_batch.clear();
+            releaseBatch();
         }
     }
 
@@ -919,6 +1043,9 @@ public class ProcedureRunner {
             if (m_procMethod == null && m_language == Language.JAVA) {
                 throw new RuntimeException("No \"run\" method found in: " + m_procedure.getClass().getName());
             }
+            if (m_procMethod != null) {
+                m_procInvoker = ProcedureInvokerGenerator.getInvoker(m_procMethod);
+            }
         }
 
         // iterate through the fields and deal with sql statements
@@ -1341,8 +1468,8 @@ public class ProcedureRunner {
            ByteBuffer paramBuf = null;
            try {
                if (queuedSQL.serialization != null) {
-                   paramBuf = ByteBuffer.allocate(queuedSQL.serialization.capacity());
-                   paramBuf.put(queuedSQL.serialization);
+                   paramBuf = ByteBuffer.allocate(queuedSQL.serialization.limit());
+                   paramBuf.put(queuedSQL.serialization.duplicate());
                }
                else {
                    paramBuf = ByteBuffer.allocate(queuedSQL.params.getSerializedSize());
@@ -1412,14 +1539,12 @@ public class ProcedureRunner {
    // Batch up pre-planned fragments, but handle ad hoc independently.
    private VoltTable[] fastPath(List<QueuedSQL> batch) {
        final int batchSize = batch.size();
-       Object[] params = new Object[batchSize];
-       long[] fragmentIds = new long[batchSize];
-       String[] sqlTexts = new String[batchSize];
+       final PreboundBatch prebound = getPreboundBatch(batch);
+       final Object[] params = prebound != null ? prebound.params : new Object[batchSize];
 
        int i = 0;
        for (final QueuedSQL qs : batch) {
            assert(qs.stmt.collector == null);
-           fragmentIds[i] = qs.stmt.aggregator.id;
            // use the pre-serialized params if it exists
            if (qs.serialization != null) {
                params[i] = qs.serialization;
@@ -1427,9 +1552,29 @@ public class ProcedureRunner {
            else {
                params[i] = qs.params;
            }
-           sqlTexts[i] = qs.stmt.getText();
            i++;
        }
+       if (prebound == null) {
+           long[] fragmentIds = new long[batchSize];
+           String[] sqlTexts = new String[batchSize];
+           i = 0;
+           for (final QueuedSQL qs : batch) {
+               fragmentIds[i] = qs.stmt.aggregator.id;
+               sqlTexts[i] = qs.stmt.getText();
+               i++;
+           }
+           return executeFastPath(batchSize, fragmentIds, params, sqlTexts);
+       }
+       try {
+           return executeFastPath(batchSize, prebound.fragmentIds, params, prebound.sqlTexts);
+       }
+       finally {
+           // don't hold on to this batch's parameters
+           Arrays.fill(params, null);
+       }
+    }
+
+   private VoltTable[] executeFastPath(int batchSize, long[] fragmentIds, Object[] params, String[] sqlTexts) {
        return m_site.executePlanFragments(
            batchSize,
            fragmentIds,
@@ -1440,5 +1585,28 @@ public class ProcedureRunner {
            m_txnState.m_spHandle,
            m_txnState.uniqueId,
            m_isReadOnly);
-    }
+   }
+
+   /**
+    * Find the prebound arrays for the shape of this batch, binding a new set
+    * in place of the oldest if this shape hasn't been seen recently.
+    * @return null if the batch can't be prebound
+    */
+   private PreboundBatch getPreboundBatch(List<QueuedSQL> batch) {
+       if (m_preboundBatches.length == 0) {
+           return null;
+       }
+       for (PreboundBatch prebound : m_preboundBatches) {
+           if (prebound != null && prebound.matches(batch)) {
+               return prebound;
+           }
+       }
+       if (!PreboundBatch.canPrebind(batch)) {
+           return null;
+       }
+       PreboundBatch prebound = new PreboundBatch(batch);
+       m_preboundBatches[m_nextPreboundBatch] = prebound;
+       m_nextPreboundBatch = (m_nextPreboundBatch + 1) % m_preboundBatches.length;
+       return prebound;
+   }
 }
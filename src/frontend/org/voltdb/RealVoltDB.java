@@ -98,6 +98,7 @@ import org.voltdb.dtxn.InitiatorStats;
 import org.voltdb.dtxn.LatencyHistogramStats;
 import org.voltdb.dtxn.LatencyStats;
 import org.voltdb.dtxn.SiteTracker;
+import org.voltdb.dtxn.StageLatencyStats;
 import org.voltdb.export.ExportManager;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.iv2.Initiator;
@@ -672,11 +673,14 @@ public class RealVoltDB implements VoltDBInterface, RestoreAgent.Callback
             m_initiatorStats = new InitiatorStats(m_myHostId);
             m_liveClientsStats = new LiveClientsStats();
             getStatsAgent().registerStatsSource(StatsSelector.LIVECLIENTS, 0, m_liveClientsStats);
+            getStatsAgent().registerStatsSource(StatsSelector.ACCEPTOR, 0, new ClientAcceptorStats());
             m_latencyStats = new LatencyStats(m_myHostId);
             getStatsAgent().registerStatsSource(StatsSelector.LATENCY, 0, m_latencyStats);
             m_latencyHistogramStats = new LatencyHistogramStats(m_myHostId);
             getStatsAgent().registerStatsSource(StatsSelector.LATENCY_HISTOGRAM,
                     0, m_latencyHistogramStats);
+            getStatsAgent().registerStatsSource(StatsSelector.LATENCY_STAGES,
+                    0, new StageLatencyStats(m_myHostId));
 
 
             BalancePartitionsStatistics rebalanceStats = new BalancePartitionsStatistics();
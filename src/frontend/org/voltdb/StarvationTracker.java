@@ -52,6 +52,18 @@ public class StarvationTracker extends SiteStatsSource {
 
     private long m_starvationStartTime;
 
+    // Part of the starved time spent spinning or yielding instead of blocked, see SiteWaitStrategy
+    private long m_spinTime = 0;
+    private long m_lastSpinTime = 0;
+
+    // Batches of tasks taken at once by a site, see SiteTaskerQueue.takeBatch
+    private long m_batches = 0;
+    private long m_lastBatches = 0;
+    private long m_batchedTasks = 0;
+    private long m_lastBatchedTasks = 0;
+    private long m_maxBatch = 0;
+    private long m_lastMaxBatch = 0;
+
     private boolean m_interval;
 
     /**
@@ -81,6 +93,17 @@ public class StarvationTracker extends SiteStatsSource {
         m_lastMin = Math.min(m_lastMin, delta);
     }
 
+    public void recordSpin(long nanos) {
+        m_spinTime += nanos;
+    }
+
+    public void recordBatch(int tasks) {
+        m_batches++;
+        m_batchedTasks += tasks;
+        m_maxBatch = Math.max(m_maxBatch, tasks);
+        m_lastMaxBatch = Math.max(m_lastMaxBatch, tasks);
+    }
+
     @Override
     protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
         super.populateColumnSchema(columns);
@@ -90,6 +113,11 @@ public class StarvationTracker extends SiteStatsSource {
         columns.add(new ColumnInfo("MIN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("STDDEV", VoltType.BIGINT));
+        columns.add(new ColumnInfo("BATCHES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_BATCH_SIZE", VoltType.FLOAT));
+        columns.add(new ColumnInfo("MAX_BATCH_SIZE", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SPIN_PERCENT", VoltType.FLOAT));
+        columns.add(new ColumnInfo("BLOCKED_PERCENT", VoltType.FLOAT));
     }
 
     @Override
@@ -107,6 +135,19 @@ public class StarvationTracker extends SiteStatsSource {
             m_lastCount = m_count;
             m_lastMax = 0;
             m_lastMin = Long.MAX_VALUE;
+            final long batches = m_batches - m_lastBatches;
+            final long batchedTasks = m_batchedTasks - m_lastBatchedTasks;
+            rowValues[columnNameToIndex.get("BATCHES")] = batches;
+            rowValues[columnNameToIndex.get("AVG_BATCH_SIZE")] = batches > 0 ? batchedTasks / (double)batches : 0.0;
+            rowValues[columnNameToIndex.get("MAX_BATCH_SIZE")] = m_lastMaxBatch;
+            final long spinTime = m_spinTime - m_lastSpinTime;
+            rowValues[columnNameToIndex.get("SPIN_PERCENT")] = spinTime / (totalTime / 100.0);
+            rowValues[columnNameToIndex.get("BLOCKED_PERCENT")] =
+                    Math.max(0, totalStarvedTime - spinTime) / (totalTime / 100.0);
+            m_lastSpinTime = m_spinTime;
+            m_lastBatches = m_batches;
+            m_lastBatchedTasks = m_batchedTasks;
+            m_lastMaxBatch = 0;
             if (count > 0) {
                 rowValues[columnNameToIndex.get("COUNT")] = count;
                 rowValues[columnNameToIndex.get("PERCENT")] = totalStarvedTime / (totalTime / 100.0);
@@ -124,6 +165,12 @@ public class StarvationTracker extends SiteStatsSource {
             }
         } else {
             final long totalTime = System.nanoTime() - m_startTime;
+            rowValues[columnNameToIndex.get("BATCHES")] = m_batches;
+            rowValues[columnNameToIndex.get("AVG_BATCH_SIZE")] = m_batches > 0 ? m_batchedTasks / (double)m_batches : 0.0;
+            rowValues[columnNameToIndex.get("MAX_BATCH_SIZE")] = m_maxBatch;
+            rowValues[columnNameToIndex.get("SPIN_PERCENT")] = m_spinTime / (totalTime / 100.0);
+            rowValues[columnNameToIndex.get("BLOCKED_PERCENT")] =
+                    Math.max(0, m_totalTime - m_spinTime) / (totalTime / 100.0);
             if (m_count > 0) {
                 final long uSecs = (m_totalTime / m_count) / 1000;
                 rowValues[columnNameToIndex.get("COUNT")] = m_count;
@@ -382,18 +382,33 @@ public class StatsAgent extends OpsAgent
         case STARVATION:
             stats = collectStarvationStats(interval);
             break;
+        case MPREADPOOL:
+            stats = collectMpReadPoolStats(interval);
+            break;
+        case REPAIRLOG:
+            stats = collectRepairLogStats(interval);
+            break;
+        case DUPLICATECOUNTER:
+            stats = collectDuplicateCounterStats(interval);
+            break;
         case PLANNER:
             stats = collectPlannerStats(interval);
             break;
         case LIVECLIENTS:
             stats = collectLiveClientsStats(interval);
             break;
+        case ACCEPTOR:
+            stats = collectAcceptorStats(interval);
+            break;
         case LATENCY:
             stats = collectLatencyStats(interval);
             break;
         case LATENCY_HISTOGRAM:
             stats = collectLatencyHistogramStats(interval);
             break;
+        case LATENCY_STAGES:
+            stats = collectLatencyStageStats(interval);
+            break;
         case MANAGEMENT:
             stats = collectManagementStats(interval);
             break;
@@ -571,6 +586,45 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectMpReadPoolStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable pStats = getStatsAggregate(StatsSelector.MPREADPOOL, interval, now);
+        if (pStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = pStats;
+        }
+        return stats;
+    }
+
+    private VoltTable[] collectRepairLogStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable rStats = getStatsAggregate(StatsSelector.REPAIRLOG, interval, now);
+        if (rStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = rStats;
+        }
+        return stats;
+    }
+
+    private VoltTable[] collectDuplicateCounterStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable dStats = getStatsAggregate(StatsSelector.DUPLICATECOUNTER, interval, now);
+        if (dStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = dStats;
+        }
+        return stats;
+    }
+
     private VoltTable[] collectPlannerStats(boolean interval)
     {
         Long now = System.currentTimeMillis();
@@ -597,6 +651,19 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectAcceptorStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable aStats = getStatsAggregate(StatsSelector.ACCEPTOR, interval, now);
+        if (aStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = aStats;
+        }
+        return stats;
+    }
+
     // Latency stats have been broken since 3.0.  Putting these hooks
     // in here so that ALL selectors in SysProcSelector go through
     // this path and nothing uses the legacy sysproc
@@ -626,6 +693,19 @@ public class StatsAgent extends OpsAgent
         return stats;
     }
 
+    private VoltTable[] collectLatencyStageStats(boolean interval)
+    {
+        Long now = System.currentTimeMillis();
+        VoltTable[] stats = null;
+
+        VoltTable lStats = getStatsAggregate(StatsSelector.LATENCY_STAGES, interval, now);
+        if (lStats != null) {
+            stats = new VoltTable[1];
+            stats[0] = lStats;
+        }
+        return stats;
+    }
+
     // This is just a roll-up of MEMORY, TABLE, INDEX, PROCEDURE, INITIATOR, IO, and
     // STARVATION
     private VoltTable[] collectManagementStats(boolean interval)
@@ -21,13 +21,18 @@ public enum StatsSelector {
     INDEX,            // invoked as @stat index
     PROCEDURE,        // invoked as @stat procedure
     STARVATION,
+    MPREADPOOL,       // occupancy and queueing of the MPI read-only site pool
+    REPAIRLOG,        // size of each initiator's repair log
+    DUPLICATECOUNTER, // replica responses held by each partition leader
     INITIATOR,        // invoked as @stat initiator
     LATENCY,          // invoked as @stat latency
     LATENCY_HISTOGRAM,
+    LATENCY_STAGES,   // sampled latency of each stage of the transaction pipeline
     PARTITIONCOUNT,
     IOSTATS,
     MEMORY,           // info about node's memory usage
     LIVECLIENTS,      // info about the currently connected clients
+    ACCEPTOR,         // connection accept and login counts for each client acceptor thread
     PLANNER,          // info about planner and EE performance and cache usage
     MANAGEMENT,       // Returns pretty much everything
     PROCEDUREPROFILE, // performs an aggregation of the procedure statistics
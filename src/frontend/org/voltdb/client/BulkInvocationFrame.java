@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+import org.voltcore.utils.DeferredSerialization;
+
+/**
+ * Invocations queued on a connection that go out in one frame. A frame is queued to the
+ * connection's write stream with its first invocation, and invocations keep being added
+ * to it until the network thread picks it up to serialize, so a busy connection sends
+ * everything submitted since its last write as one frame without waiting for more.
+ *
+ * A frame holding several invocations is sent as
+ * <pre>
+ *   int   frame length
+ *   byte  {@link ProcedureInvocationType#BULK_INVOCATIONS}
+ *   int   invocation count
+ *   count times: int invocation length, serialized invocation
+ * </pre>
+ * A frame holding a single invocation is sent as a plain invocation.
+ */
+class BulkInvocationFrame implements DeferredSerialization {
+
+    // Beyond this an invocation starts a new frame, so one frame doesn't hold up the server for long
+    static final int MAX_FRAME_BYTES = 1024 * 256;
+
+    // Length prefixed serialized invocations
+    private final ArrayList<ByteBuffer> m_invocations = new ArrayList<ByteBuffer>();
+    private int m_invocationBytes = 0;
+    private boolean m_closed = false;
+
+    BulkInvocationFrame(ByteBuffer invocation) {
+        m_invocations.add(invocation);
+        m_invocationBytes = invocation.remaining();
+    }
+
+    /**
+     * Add a length prefixed serialized invocation to the frame.
+     *
+     * @return false if the frame has been serialized or is full and the invocation
+     * needs to go in a new frame
+     */
+    synchronized boolean add(ByteBuffer invocation) {
+        if (m_closed || m_invocationBytes + invocation.remaining() > MAX_FRAME_BYTES) {
+            return false;
+        }
+        m_invocations.add(invocation);
+        m_invocationBytes += invocation.remaining();
+        return true;
+    }
+
+    @Override
+    public synchronized int getSerializedSize() {
+        // Nothing can be added once the size has been handed out
+        m_closed = true;
+        if (m_invocations.size() == 1) {
+            return m_invocationBytes;
+        }
+        return 4 + 1 + 4 + m_invocationBytes;
+    }
+
+    @Override
+    public synchronized void serialize(ByteBuffer buf) {
+        assert(m_closed);
+        if (m_invocations.size() > 1) {
+            buf.putInt(buf.capacity() - 4);
+            buf.put(ProcedureInvocationType.BULK_INVOCATIONS);
+            buf.putInt(m_invocations.size());
+        }
+        for (ByteBuffer invocation : m_invocations) {
+            buf.put(invocation);
+        }
+    }
+
+    @Override
+    public synchronized void cancel() {
+        m_closed = true;
+    }
+}
@@ -0,0 +1,148 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.client.Distributer.CallbackBookeeping;
+
+/**
+ * Runs procedure callbacks on a pool of threads instead of the network thread that read
+ * the response, so a slow callback doesn't hold up reads for every connection sharing
+ * that network thread.
+ *
+ * Each thread has its own queue and a response is assigned to a queue by a stripe key.
+ * Striping by connection id runs the callbacks for a connection in the order the
+ * responses arrived; striping by client handle spreads the callbacks of a busy
+ * connection over all the threads with no ordering between them. A thread takes
+ * everything queued for it, up to a batch limit, each time it wakes up so it pays
+ * for one wakeup per batch rather than one per response.
+ */
+class CallbackExecutor {
+
+    // Upper bound on the callbacks a thread runs between checks of its queue
+    static final int MAX_BATCH = 256;
+
+    // Queued behind the outstanding work to stop a thread
+    private static final CallbackBookeeping SHUTDOWN = new CallbackBookeeping();
+
+    private final LinkedBlockingQueue<CallbackBookeeping> m_queues[];
+    private final Thread m_threads[];
+    private final boolean m_stripeByConnection;
+
+    @SuppressWarnings("unchecked")
+    CallbackExecutor(int threadCount, boolean stripeByConnection) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("Callback thread count must be at least 1, " +
+                    threadCount + " was specified");
+        }
+        m_stripeByConnection = stripeByConnection;
+        m_queues = new LinkedBlockingQueue[threadCount];
+        m_threads = new Thread[threadCount];
+        ThreadFactory factory = CoreUtils.getThreadFactory("VoltDB Client Callback Thread");
+        for (int ii = 0; ii < threadCount; ii++) {
+            final LinkedBlockingQueue<CallbackBookeeping> queue = new LinkedBlockingQueue<CallbackBookeeping>();
+            m_queues[ii] = queue;
+            m_threads[ii] = factory.newThread(new Runnable() {
+                @Override
+                public void run() {
+                    runCallbacks(queue);
+                }
+            });
+            m_threads[ii].setDaemon(true);
+        }
+        for (Thread t : m_threads) {
+            t.start();
+        }
+    }
+
+    /**
+     * Queue the callback for a response that has been attached to the record with
+     * {@link CallbackBookeeping#response}.
+     *
+     * @return The depth of the queue the callback went to, including it
+     */
+    int submit(CallbackBookeeping cb) {
+        final long key = m_stripeByConnection ? cb.connection.connectionId() : cb.handle;
+        final LinkedBlockingQueue<CallbackBookeeping> queue = m_queues[stripe(key, m_queues.length)];
+        queue.offer(cb);
+        return queue.size();
+    }
+
+    static int stripe(long key, int stripes) {
+        // Handles and connection ids are sequential, mixing isn't needed for an even spread
+        return (int)((key & Long.MAX_VALUE) % stripes);
+    }
+
+    /**
+     * Number of callbacks queued and not yet started across all threads
+     */
+    int getQueueDepth() {
+        int depth = 0;
+        for (LinkedBlockingQueue<CallbackBookeeping> queue : m_queues) {
+            depth += queue.size();
+        }
+        return depth;
+    }
+
+    List<Long> getThreadIds() {
+        List<Long> ids = new ArrayList<Long>(m_threads.length);
+        for (Thread t : m_threads) {
+            ids.add(t.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Stop the threads after they run the callbacks already queued
+     */
+    void shutdown() throws InterruptedException {
+        for (LinkedBlockingQueue<CallbackBookeeping> queue : m_queues) {
+            queue.offer(SHUTDOWN);
+        }
+        for (Thread t : m_threads) {
+            if (t != Thread.currentThread()) {
+                t.join();
+            }
+        }
+    }
+
+    private static void runCallbacks(LinkedBlockingQueue<CallbackBookeeping> queue) {
+        final ArrayList<CallbackBookeeping> batch = new ArrayList<CallbackBookeeping>(MAX_BATCH);
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+                for (int ii = 0; ii < batch.size(); ii++) {
+                    final CallbackBookeeping cb = batch.get(ii);
+                    if (cb == SHUTDOWN) {
+                        return;
+                    }
+                    cb.connection.invokeQueuedCallback(cb);
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            return;
+        }
+    }
+}
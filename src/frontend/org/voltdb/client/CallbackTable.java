@@ -0,0 +1,262 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.Collection;
+
+import org.voltdb.client.Distributer.CallbackBookeeping;
+
+/**
+ * Table of the callbacks for the invocations outstanding on a connection, keyed by client handle.
+ *
+ * Keys are primitive client handles so nothing is boxed, and entries live in open addressing
+ * arrays (linear probing with backward shift deletion) so nothing is allocated per invocation.
+ * The table is split into stripes by handle hash, each guarded by its own monitor, which keeps
+ * sender threads, the network thread and the timeout sweeper from contending on one lock.
+ *
+ * Each stripe also keeps a small free list of {@link CallbackBookeeping} records. A record is
+ * acquired and released using the stripe of the handle it is for, so the pool needs no extra
+ * synchronization and stays balanced between the threads that acquire and the threads that release.
+ */
+class CallbackTable {
+
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+    private static final int MAX_POOLED_PER_STRIPE = 256;
+
+    private static final class Stripe {
+        long m_keys[];
+        // null marks an empty slot, so every long is a valid key
+        CallbackBookeeping m_values[];
+        int m_size = 0;
+
+        final CallbackBookeeping m_pool[] = new CallbackBookeeping[MAX_POOLED_PER_STRIPE];
+        int m_pooled = 0;
+
+        Stripe(int capacity) {
+            m_keys = new long[capacity];
+            m_values = new CallbackBookeeping[capacity];
+        }
+    }
+
+    private final Stripe m_stripes[];
+    private final int m_stripeShift;
+
+    CallbackTable() {
+        this(DEFAULT_STRIPES);
+    }
+
+    CallbackTable(int stripes) {
+        if (stripes < 1 || Integer.bitCount(stripes) != 1) {
+            throw new IllegalArgumentException("Stripe count must be a power of two, " + stripes + " was specified");
+        }
+        m_stripes = new Stripe[stripes];
+        for (int ii = 0; ii < stripes; ii++) {
+            m_stripes[ii] = new Stripe(INITIAL_STRIPE_CAPACITY);
+        }
+        // the high bits of the hash pick the stripe, the low bits the slot
+        m_stripeShift = 64 - Integer.numberOfTrailingZeros(stripes);
+    }
+
+    /*
+     * Handles are mostly sequential, so spread them with the murmur3 finalizer
+     */
+    private static long hash(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    private Stripe stripeFor(long hash) {
+        return m_stripeShift == 64 ? m_stripes[0] : m_stripes[(int)(hash >>> m_stripeShift)];
+    }
+
+    /**
+     * Get a record for a new invocation with the given handle, reusing a released one if possible.
+     * The record is not in the table until {@link #put(long, CallbackBookeeping)} is called.
+     */
+    CallbackBookeeping acquire(long handle) {
+        final Stripe stripe = stripeFor(hash(handle));
+        synchronized (stripe) {
+            if (stripe.m_pooled > 0) {
+                final CallbackBookeeping cb = stripe.m_pool[--stripe.m_pooled];
+                stripe.m_pool[stripe.m_pooled] = null;
+                return cb;
+            }
+        }
+        return new CallbackBookeeping();
+    }
+
+    /**
+     * Return a record to the pool. The caller must own the record: it has been removed from
+     * the table, its timeout can no longer fire and no other thread still refers to it.
+     */
+    void release(CallbackBookeeping cb) {
+        // Drop references to user objects so a pooled record doesn't retain them
+        final long handle = cb.handle;
+        cb.clear();
+        final Stripe stripe = stripeFor(hash(handle));
+        synchronized (stripe) {
+            if (stripe.m_pooled < MAX_POOLED_PER_STRIPE) {
+                stripe.m_pool[stripe.m_pooled++] = cb;
+            }
+        }
+    }
+
+    /**
+     * Map a handle to a record, replacing and returning any previous mapping.
+     */
+    CallbackBookeeping put(long handle, CallbackBookeeping cb) {
+        assert(cb != null);
+        final long hash = hash(handle);
+        final Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            // keep the load factor at or below 1/2
+            if ((stripe.m_size + 1) * 2 > stripe.m_keys.length) {
+                resize(stripe, stripe.m_keys.length * 2);
+            }
+            final int mask = stripe.m_keys.length - 1;
+            int slot = (int)hash & mask;
+            while (stripe.m_values[slot] != null) {
+                if (stripe.m_keys[slot] == handle) {
+                    final CallbackBookeeping previous = stripe.m_values[slot];
+                    stripe.m_values[slot] = cb;
+                    return previous;
+                }
+                slot = (slot + 1) & mask;
+            }
+            stripe.m_keys[slot] = handle;
+            stripe.m_values[slot] = cb;
+            stripe.m_size++;
+            return null;
+        }
+    }
+
+    CallbackBookeeping get(long handle) {
+        final long hash = hash(handle);
+        final Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            final int slot = find(stripe, hash, handle);
+            return slot < 0 ? null : stripe.m_values[slot];
+        }
+    }
+
+    boolean containsKey(long handle) {
+        return get(handle) != null;
+    }
+
+    /**
+     * Remove the mapping for a handle. Concurrent removers race on the stripe lock,
+     * so exactly one of them gets the record back.
+     */
+    CallbackBookeeping remove(long handle) {
+        final long hash = hash(handle);
+        final Stripe stripe = stripeFor(hash);
+        synchronized (stripe) {
+            int slot = find(stripe, hash, handle);
+            if (slot < 0) {
+                return null;
+            }
+            final CallbackBookeeping removed = stripe.m_values[slot];
+            deleteSlot(stripe, slot);
+            return removed;
+        }
+    }
+
+    /**
+     * Remove every mapping, adding the removed records to out
+     */
+    void removeAll(Collection<? super CallbackBookeeping> out) {
+        for (Stripe stripe : m_stripes) {
+            synchronized (stripe) {
+                for (int ii = 0; ii < stripe.m_values.length; ii++) {
+                    if (stripe.m_values[ii] != null) {
+                        out.add(stripe.m_values[ii]);
+                        stripe.m_values[ii] = null;
+                    }
+                }
+                stripe.m_size = 0;
+            }
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe stripe : m_stripes) {
+            synchronized (stripe) {
+                size += stripe.m_size;
+            }
+        }
+        return size;
+    }
+
+    private static int find(Stripe stripe, long hash, long handle) {
+        final int mask = stripe.m_keys.length - 1;
+        int slot = (int)hash & mask;
+        while (stripe.m_values[slot] != null) {
+            if (stripe.m_keys[slot] == handle) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /*
+     * Backward shift deletion: move later members of the probe sequence into the hole
+     * so lookups never need tombstones
+     */
+    private static void deleteSlot(Stripe stripe, int slot) {
+        final int mask = stripe.m_keys.length - 1;
+        int hole = slot;
+        int next = (hole + 1) & mask;
+        while (stripe.m_values[next] != null) {
+            final int home = (int)hash(stripe.m_keys[next]) & mask;
+            // can the entry at next move back to the hole without passing its home slot?
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                stripe.m_keys[hole] = stripe.m_keys[next];
+                stripe.m_values[hole] = stripe.m_values[next];
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        stripe.m_values[hole] = null;
+        stripe.m_size--;
+    }
+
+    private static void resize(Stripe stripe, int capacity) {
+        final long oldKeys[] = stripe.m_keys;
+        final CallbackBookeeping oldValues[] = stripe.m_values;
+        final int mask = capacity - 1;
+        stripe.m_keys = new long[capacity];
+        stripe.m_values = new CallbackBookeeping[capacity];
+        for (int ii = 0; ii < oldValues.length; ii++) {
+            if (oldValues[ii] != null) {
+                int slot = (int)hash(oldKeys[ii]) & mask;
+                while (stripe.m_values[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                stripe.m_keys[slot] = oldKeys[ii];
+                stripe.m_values[slot] = oldValues[ii];
+            }
+        }
+    }
+}
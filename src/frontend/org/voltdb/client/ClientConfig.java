@@ -20,6 +20,8 @@ package org.voltdb.client;
 import javax.security.auth.Subject;
 import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -31,6 +33,7 @@ public class ClientConfig {
     static final long DEFAULT_CONNECTION_TIMOUT_MS = 2 * 60 * 1000; // default timeout is 2 minutes;
     static final long DEFAULT_INITIAL_CONNECTION_RETRY_INTERVAL_MS = 1000; // default initial connection retry interval is 1 second
     static final long DEFAULT_MAX_CONNECTION_RETRY_INTERVAL_MS = 8000; // default max connection retry interval is 8 seconds
+    static final long DEFAULT_TIMEOUT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(1); // default timeout resolution is 1 millisecond
 
     final String m_username;
     final String m_password;
@@ -48,6 +51,13 @@ public class ClientConfig {
     boolean m_reconnectOnConnectionLoss;
     long m_initialConnectionRetryIntervalMS = DEFAULT_INITIAL_CONNECTION_RETRY_INTERVAL_MS;
     long m_maxConnectionRetryIntervalMS = DEFAULT_MAX_CONNECTION_RETRY_INTERVAL_MS;
+    long m_timeoutTickNanos = DEFAULT_TIMEOUT_TICK_NANOS;
+    int m_callbackThreads = 0;
+    boolean m_callbacksOrderedPerConnection = true;
+    boolean m_bulkInvocations = false;
+    // {max transactions per second, max outstanding} for procedures and partitions with their own budgets
+    final Map<String, int[]> m_procedureRateLimits = new HashMap<String, int[]>();
+    final Map<Integer, int[]> m_partitionRateLimits = new HashMap<Integer, int[]>();
 
     /**
      * <p>Configuration for a client with no authentication credentials that will
@@ -132,7 +142,8 @@ public class ClientConfig {
      *
      * Default value is 2 minutes if not set. Value of 0 means forever.</p>
      *
-     * Note that while specified in MS, this timeout is only accurate to within a second or so.</p>
+     * Note that this timeout is only accurate to within the resolution set with
+     * {@link #setProcedureCallTimeoutResolution(long, TimeUnit)}, 1 millisecond by default.</p>
      *
      * @param ms Timeout value in milliseconds.
      */
@@ -144,6 +155,26 @@ public class ClientConfig {
         m_procedureCallTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(ms);
     }
 
+    /**
+     * <p>Set the resolution of procedure call timeouts. Outstanding calls are expired by
+     * a timing wheel that is swept once per interval, so a call times out no earlier than
+     * its timeout and at most about one interval later. A coarser resolution reduces the
+     * CPU spent sweeping. See {@link ClientStatsContext#getTimeoutStats()}.</p>
+     *
+     * <p>Default value is 1 millisecond if not set.</p>
+     *
+     * @param interval Length of one tick of the timing wheel.
+     * @param unit Unit of the interval.
+     */
+    public void setProcedureCallTimeoutResolution(long interval, TimeUnit unit) {
+        long nanos = unit.toNanos(interval);
+        if (nanos < TimeUnit.MICROSECONDS.toNanos(100)) {
+            throw new IllegalArgumentException(
+                    "Timeout resolution must be at least 100 microseconds, " + nanos + " nanoseconds was specified");
+        }
+        m_timeoutTickNanos = nanos;
+    }
+
     /**
      * <p>Set the timeout for reading from a connection. If a connection receives no responses,
      * either from procedure calls or &amp;Pings, for the timeout time in milliseconds,
@@ -255,6 +286,93 @@ public class ClientConfig {
         m_useClientAffinity = on;
     }
 
+    /**
+     * <p>Invoke procedure callbacks on a pool of dedicated callback threads instead of
+     * the network thread that read the response. A network thread serves several
+     * connections, so with the default behavior a slow callback delays reading responses
+     * on all of them. Callback threads take the responses queued for them in batches.</p>
+     *
+     * <p>With ordering per connection the callbacks for responses from one connection are
+     * invoked one at a time, in the order the responses arrived, as they would be on the
+     * network thread. Otherwise responses are spread over the callback threads by client
+     * handle, which balances the load of a single busy connection but invokes callbacks
+     * concurrently and in no particular order.</p>
+     *
+     * <p>Callback queue wait, callback time and queue depth are reported in {@link ClientStats}.
+     * Default is 0 callback threads, callbacks run on the network threads.</p>
+     *
+     * @param threadCount Number of callback threads, 0 to invoke callbacks on the network threads.
+     * @param orderedPerConnection Preserve the order of callbacks for each connection.
+     */
+    public void setCallbackThreads(int threadCount, boolean orderedPerConnection) {
+        if (threadCount < 0) {
+            throw new IllegalArgumentException(
+                    "Callback thread count can't be negative, " + threadCount + " was specified");
+        }
+        m_callbackThreads = threadCount;
+        m_callbacksOrderedPerConnection = orderedPerConnection;
+    }
+
+    /**
+     * <p>Pack the procedure invocations submitted to a connection between network writes
+     * into one frame. The server decodes and dispatches a frame in a single pass, which
+     * saves client and server network thread time when many small invocations are sent.
+     * Invocations aren't delayed waiting for a frame to fill.</p>
+     *
+     * <p>Only enable this when connecting to servers that accept bulk invocation frames.
+     * Default is off.</p>
+     *
+     * @param on Enable or disable bulk invocation frames.
+     */
+    public void setBulkInvocations(boolean on) {
+        m_bulkInvocations = on;
+    }
+
+    /**
+     * <p>Give a procedure its own limits on outstanding transactions and transactions
+     * per second. Invocations of the procedure are held until both its own limits and
+     * the client's limits allow them to be sent.</p>
+     *
+     * @param procName Name of the procedure the limits apply to.
+     * @param maxTxnsPerSecond Requested ceiling on the rate of calls to the procedure,
+     * {@link Integer#MAX_VALUE} for no rate limit.
+     * @param maxOutstanding The maximum outstanding transactions of the procedure.
+     */
+    public void setProcedureRateLimit(String procName, int maxTxnsPerSecond, int maxOutstanding) {
+        checkRateLimit(maxTxnsPerSecond, maxOutstanding);
+        m_procedureRateLimits.put(procName, new int[] { maxTxnsPerSecond, maxOutstanding });
+    }
+
+    /**
+     * <p>Give a partition its own limits on outstanding transactions and transactions
+     * per second. Invocations routed to the partition are held until both its own limits
+     * and the client's limits allow them to be sent.</p>
+     *
+     * <p>The partition of an invocation is only known to the client when client affinity is
+     * on and the client has learned the cluster topology, see {@link #setClientAffinity(boolean)}.
+     * Other invocations are only held by the client's limits.</p>
+     *
+     * @param partitionId Id of the partition the limits apply to.
+     * @param maxTxnsPerSecond Requested ceiling on the rate of calls to the partition,
+     * {@link Integer#MAX_VALUE} for no rate limit.
+     * @param maxOutstanding The maximum outstanding transactions of the partition.
+     */
+    public void setPartitionRateLimit(int partitionId, int maxTxnsPerSecond, int maxOutstanding) {
+        checkRateLimit(maxTxnsPerSecond, maxOutstanding);
+        m_partitionRateLimits.put(partitionId, new int[] { maxTxnsPerSecond, maxOutstanding });
+    }
+
+    private static void checkRateLimit(int maxTxnsPerSecond, int maxOutstanding) {
+        if (maxTxnsPerSecond < 1) {
+            throw new IllegalArgumentException(
+                    "Max TPS must be greater than 0, " + maxTxnsPerSecond + " was specified");
+        }
+        if (maxOutstanding < 1) {
+            throw new IllegalArgumentException(
+                    "Max outstanding must be greater than 0, " + maxOutstanding + " was specified");
+        }
+    }
+
     /**
      * <p>Experimental: Attempts to reconnect to a node with retry after connection loss. See the {@link ReconnectStatusListener}.</p>
      *
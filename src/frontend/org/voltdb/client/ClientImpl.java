@@ -24,6 +24,7 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
@@ -101,7 +102,11 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
                 config.m_procedureCallTimeoutNanos,
                 config.m_connectionResponseTimeoutMS,
                 config.m_useClientAffinity,
-                config.m_subject);
+                config.m_subject,
+                config.m_timeoutTickNanos,
+                config.m_callbackThreads,
+                config.m_callbacksOrderedPerConnection,
+                config.m_bulkInvocations);
         m_distributer.addClientStatusListener(m_listener);
         String username = config.m_username;
         if (config.m_subject != null) {
@@ -135,6 +140,12 @@ public final class ClientImpl implements Client, ReplicaProcCaller {
             m_distributer.m_rateLimiter.setLimits(
                     config.m_maxTransactionsPerSecond, config.m_maxOutstandingTxns);
         }
+        for (Map.Entry<String, int[]> e : config.m_procedureRateLimits.entrySet()) {
+            m_distributer.m_rateLimiter.setProcedureLimits(e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
+        for (Map.Entry<Integer, int[]> e : config.m_partitionRateLimits.entrySet()) {
+            m_distributer.m_rateLimiter.setPartitionLimits(e.getKey(), e.getValue()[0], e.getValue()[1]);
+        }
     }
 
     private boolean verifyCredentialsAreAlwaysTheSame(String username, byte[] hashedPassword) {
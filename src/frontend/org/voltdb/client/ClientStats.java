@@ -63,6 +63,18 @@ public class ClientStats {
     // cumulative latency measured by the cluster, used to calculate avg lat.
     long m_clusterRoundTripTime; // milliseconds
 
+    // cumulative time responses waited for a callback thread and time spent in callbacks
+    long m_callbacksInvoked;
+    long m_callbackWaitNanos;
+    long m_callbackTimeNanos;
+    // deepest the callback queue was seen when queueing a response
+    int m_maxCallbackQueueDepth;
+
+    // invocations that waited for the rate limiter, and how long they waited
+    long m_rateLimitBlocks;
+    long m_rateLimitBlockedNanos;
+    Histogram m_rateLimitHistogram;
+
     /** The number of buckets tracking latency with 1ms granularity. */
     final public static int ONE_MS_BUCKET_COUNT = 50;
     /** The number of buckets tracking latency with 10ms granularity. */
@@ -96,8 +108,12 @@ public class ClientStats {
         m_endTS = Long.MIN_VALUE;
         m_invocationsCompleted = m_invocationAborts = m_invocationErrors = 0;
         m_roundTripTimeNanos = m_clusterRoundTripTime = 0;
+        m_callbacksInvoked = m_callbackWaitNanos = m_callbackTimeNanos = 0;
+        m_maxCallbackQueueDepth = 0;
+        m_rateLimitBlocks = m_rateLimitBlockedNanos = 0;
         m_bytesSent = m_bytesReceived = 0;
         m_latencyHistogram = constructHistogram();
+        m_rateLimitHistogram = constructHistogram();
     }
 
     ClientStats(ClientStats other) {
@@ -114,7 +130,17 @@ public class ClientStats {
         m_roundTripTimeNanos = other.m_roundTripTimeNanos;
         m_clusterRoundTripTime = other.m_clusterRoundTripTime;
         m_latencyHistogram = other.m_latencyHistogram.copy();
+        synchronized (other) {
+            m_callbacksInvoked = other.m_callbacksInvoked;
+            m_callbackWaitNanos = other.m_callbackWaitNanos;
+            m_callbackTimeNanos = other.m_callbackTimeNanos;
+            m_maxCallbackQueueDepth = other.m_maxCallbackQueueDepth;
+            m_rateLimitBlocks = other.m_rateLimitBlocks;
+            m_rateLimitBlockedNanos = other.m_rateLimitBlockedNanos;
+            m_rateLimitHistogram = other.m_rateLimitHistogram.copy();
+        }
         m_latencyHistogram.reestablishTotalCount();
+        m_rateLimitHistogram.reestablishTotalCount();
         m_bytesSent = other.m_bytesSent;
         m_bytesReceived = other.m_bytesReceived;
     }
@@ -143,7 +169,17 @@ public class ClientStats {
         retval.m_roundTripTimeNanos = newer.m_roundTripTimeNanos - older.m_roundTripTimeNanos;
         retval.m_clusterRoundTripTime = newer.m_clusterRoundTripTime - older.m_clusterRoundTripTime;
 
+        retval.m_callbacksInvoked = newer.m_callbacksInvoked - older.m_callbacksInvoked;
+        retval.m_callbackWaitNanos = newer.m_callbackWaitNanos - older.m_callbackWaitNanos;
+        retval.m_callbackTimeNanos = newer.m_callbackTimeNanos - older.m_callbackTimeNanos;
+        // a maximum can't be diffed, report the deepest seen up to the newer one
+        retval.m_maxCallbackQueueDepth = newer.m_maxCallbackQueueDepth;
+
+        retval.m_rateLimitBlocks = newer.m_rateLimitBlocks - older.m_rateLimitBlocks;
+        retval.m_rateLimitBlockedNanos = newer.m_rateLimitBlockedNanos - older.m_rateLimitBlockedNanos;
+
         retval.m_latencyHistogram = Histogram.diff(newer.m_latencyHistogram, older.m_latencyHistogram);
+        retval.m_rateLimitHistogram = Histogram.diff(newer.m_rateLimitHistogram, older.m_rateLimitHistogram);
 
         retval.m_bytesSent = newer.m_bytesSent - older.m_bytesSent;
         retval.m_bytesReceived = newer.m_bytesReceived - older.m_bytesReceived;
@@ -191,8 +227,18 @@ public class ClientStats {
         m_roundTripTimeNanos += other.m_roundTripTimeNanos;
         m_clusterRoundTripTime += other.m_clusterRoundTripTime;
 
+        m_callbacksInvoked += other.m_callbacksInvoked;
+        m_callbackWaitNanos += other.m_callbackWaitNanos;
+        m_callbackTimeNanos += other.m_callbackTimeNanos;
+        m_maxCallbackQueueDepth = Math.max(other.m_maxCallbackQueueDepth, m_maxCallbackQueueDepth);
+
+        m_rateLimitBlocks += other.m_rateLimitBlocks;
+        m_rateLimitBlockedNanos += other.m_rateLimitBlockedNanos;
+
         m_latencyHistogram.add(other.m_latencyHistogram);
         m_latencyHistogram.reestablishTotalCount();
+        m_rateLimitHistogram.add(other.m_rateLimitHistogram);
+        m_rateLimitHistogram.reestablishTotalCount();
 
         m_bytesSent += other.m_bytesSent;
         m_bytesReceived += other.m_bytesReceived;
@@ -205,21 +251,47 @@ public class ClientStats {
         if (timeout) m_invocationTimeouts++;
         m_roundTripTimeNanos += roundTripTimeNanos;
         m_clusterRoundTripTime += clusterRoundTripTime;
+        recordNanos(m_latencyHistogram, roundTripTimeNanos);
+    }
 
+    private static void recordNanos(Histogram histogram, long nanos) {
         //Round up to 50 microseconds. Average is still accurate and it doesn't change the percentile distribution
         //above 50 micros
-        final long roundTripMicros = Math.max(LOWEST_TRACKABLE, TimeUnit.NANOSECONDS.toMicros(roundTripTimeNanos));
-        if (roundTripMicros > HIGHEST_TRACKABLE) {
-            m_latencyHistogram.recordValue(roundTripMicros % HIGHEST_TRACKABLE);
-            int count = (int)(roundTripMicros / HIGHEST_TRACKABLE);
+        final long micros = Math.max(LOWEST_TRACKABLE, TimeUnit.NANOSECONDS.toMicros(nanos));
+        if (micros > HIGHEST_TRACKABLE) {
+            histogram.recordValue(micros % HIGHEST_TRACKABLE);
+            int count = (int)(micros / HIGHEST_TRACKABLE);
             for (int ii = 0; ii < count; ii++) {
-                m_latencyHistogram.recordValue(HIGHEST_TRACKABLE);
+                histogram.recordValue(HIGHEST_TRACKABLE);
             }
         } else {
-            m_latencyHistogram.recordValue(roundTripMicros);
+            histogram.recordValue(micros);
         }
     }
 
+    /*
+     * Callbacks can run on callback threads while the network thread updates the
+     * other counters, so the callback counters are guarded by this instance's monitor
+     */
+    synchronized void updateCallback(long waitNanos, long callbackNanos) {
+        m_callbacksInvoked++;
+        m_callbackWaitNanos += waitNanos;
+        m_callbackTimeNanos += callbackNanos;
+    }
+
+    synchronized void updateCallbackQueueDepth(int queueDepth) {
+        m_maxCallbackQueueDepth = Math.max(queueDepth, m_maxCallbackQueueDepth);
+    }
+
+    /*
+     * Sender threads record the time they were held by the rate limiter, also under the monitor
+     */
+    synchronized void updateRateLimit(long blockedNanos) {
+        m_rateLimitBlocks++;
+        m_rateLimitBlockedNanos += blockedNanos;
+        recordNanos(m_rateLimitHistogram, blockedNanos);
+    }
+
     /**
      * Get the name of the procedure this statistics instance applies to.
      *
@@ -364,6 +436,92 @@ public class ClientStats {
         return (double)m_clusterRoundTripTime / (double)m_invocationsCompleted;
     }
 
+    /**
+     * <p>Get the average time in milliseconds a response waited for a callback thread
+     * before its callback was invoked, for the time period covered by this stats instance.</p>
+     *
+     * <p>This is always zero unless callbacks are run on callback threads, see
+     * {@link ClientConfig#setCallbackThreads(int, boolean)}.</p>
+     *
+     * @return Average callback queue wait in milliseconds.
+     */
+    public double getAverageCallbackWaitTime() {
+        if (m_callbacksInvoked == 0) return 0;
+        return (m_callbackWaitNanos / (double)m_callbacksInvoked) / 1000000.0;
+    }
+
+    /**
+     * Get the average time in milliseconds spent in procedure callbacks for the
+     * time period covered by this stats instance. Callbacks for calls that timed
+     * out are not included.
+     *
+     * @return Average callback execution time in milliseconds.
+     */
+    public double getAverageCallbackTime() {
+        if (m_callbacksInvoked == 0) return 0;
+        return (m_callbackTimeNanos / (double)m_callbacksInvoked) / 1000000.0;
+    }
+
+    /**
+     * <p>Get the largest number of callbacks that were waiting on a callback thread
+     * when a response was queued for it. Unlike the other counters this is not reset
+     * for an interval, it is the maximum seen since the stats were created.</p>
+     *
+     * <p>This is always zero unless callbacks are run on callback threads, see
+     * {@link ClientConfig#setCallbackThreads(int, boolean)}.</p>
+     *
+     * @return Maximum callback queue depth.
+     */
+    public int getMaxCallbackQueueDepth() {
+        return m_maxCallbackQueueDepth;
+    }
+
+    /**
+     * <p>Get the number of invocations that were held by the client's rate limiter before
+     * being sent, for the time period covered by this stats instance.</p>
+     *
+     * <p>Invocations are held when the maximum outstanding transactions or the maximum
+     * transactions per second would be exceeded, either for the client or for the
+     * procedure or partition budget they fall under, see
+     * {@link ClientConfig#setProcedureRateLimit(String, int, int)} and
+     * {@link ClientConfig#setPartitionRateLimit(int, int, int)}.</p>
+     *
+     * @return The number of invocations held by the rate limiter.
+     */
+    public long getRateLimitBlockedInvocations() {
+        return m_rateLimitBlocks;
+    }
+
+    /**
+     * Get the average time in milliseconds an invocation held by the rate limiter
+     * waited before it was sent, for the time period covered by this stats instance.
+     * Invocations that weren't held are not included.
+     *
+     * @return Average rate limiter wait in milliseconds.
+     */
+    public double getAverageRateLimitBlockedTime() {
+        if (m_rateLimitBlocks == 0) return 0;
+        return (m_rateLimitBlockedNanos / (double)m_rateLimitBlocks) / 1000000.0;
+    }
+
+    /**
+     * <p>Estimate the k-percentile of the time invocations held by the rate limiter waited
+     * before being sent, for the time period covered by this stats instance. Invocations
+     * that weren't held are not included.</p>
+     *
+     * <p>For example, k=.5 returns an estimate of the median. k=0 returns the
+     * minimum. k=1.0 returns the maximum.</p>
+     *
+     * @param percentile A floating point number between 0.0 and 1.0.
+     * @return An estimate of k-percentile rate limiter wait in milliseconds.
+     */
+    public double kPercentileRateLimitBlockedTime(double percentile) {
+        final HistogramData data = m_rateLimitHistogram.getHistogramData();
+        if (data.getTotalCount() == 0) return 0.0;
+        percentile = Math.max(0.0, percentile);
+        return data.getValueAtPercentile(percentile * 100.0) / 1000.0;
+    }
+
     /**
      * <p>Get the raw buckets used for latency tracking in 1ms increments. For example, if
      * a transaction returns in 3.2ms, then the array at index 3 will be incremented by
@@ -602,6 +760,14 @@ public class ClientStats {
                     (m_roundTripTimeNanos / (double)m_invocationsCompleted) / 1000000.0, m_clusterRoundTripTime / m_invocationsCompleted));
             sb.append(latencyHistoReport()).append("\n");
         }
+        if (m_callbacksInvoked > 0) {
+            sb.append(String.format("    avg callback wait/time: %.2f/%.2f max callback queue depth: %d\n",
+                    getAverageCallbackWaitTime(), getAverageCallbackTime(), m_maxCallbackQueueDepth));
+        }
+        if (m_rateLimitBlocks > 0) {
+            sb.append(String.format("    rate limited invocations: %d avg/99th percentile wait: %.2f/%.2f\n",
+                    m_rateLimitBlocks, getAverageRateLimitBlockedTime(), kPercentileRateLimitBlockedTime(.99)));
+        }
 
         return sb.toString();
     }
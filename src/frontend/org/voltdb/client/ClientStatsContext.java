@@ -45,13 +45,16 @@ public class ClientStatsContext {
     Map<Long, ClientIOStats> m_currentIO;
     Map<Integer, ClientAffinityStats> m_baselineAffinity;
     Map<Integer, ClientAffinityStats> m_currentAffinity;
+    ClientTimeoutStats m_baselineTimeouts;
+    ClientTimeoutStats m_currentTimeouts;
     long m_baselineTS;
     long m_currentTS;
 
     ClientStatsContext(Distributer distributor,
                        Map<Long, Map<String, ClientStats>> current,
                        Map<Long, ClientIOStats> currentIO,
-                       Map<Integer, ClientAffinityStats> currentAffinity)
+                       Map<Integer, ClientAffinityStats> currentAffinity,
+                       ClientTimeoutStats currentTimeouts)
     {
         m_distributor = distributor;
         m_baseline = new TreeMap<Long, Map<String, ClientStats>>();
@@ -60,6 +63,8 @@ public class ClientStatsContext {
         m_current = current;
         m_currentIO = currentIO;
         m_currentAffinity = currentAffinity;
+        m_baselineTimeouts = new ClientTimeoutStats(currentTimeouts.getTickNanos(), 0, 0, 0, 0);
+        m_currentTimeouts = currentTimeouts;
         m_baselineTS = m_currentTS = System.currentTimeMillis();
     }
 
@@ -76,6 +81,7 @@ public class ClientStatsContext {
         m_currentIO = m_distributor.getIOStatsSnapshot();
         m_currentTS = System.currentTimeMillis();
         m_currentAffinity = m_distributor.getAffinityStatsSnapshot();
+        m_currentTimeouts = m_distributor.getTimeoutStatsSnapshot();
         return this;
     }
 
@@ -89,16 +95,18 @@ public class ClientStatsContext {
     public ClientStatsContext fetchAndResetBaseline() {
         fetch();
         ClientStatsContext retval = new ClientStatsContext(m_distributor, m_current, m_currentIO,
-                m_currentAffinity);
+                m_currentAffinity, m_currentTimeouts);
         retval.m_baseline = m_baseline;
         retval.m_baselineIO = m_baselineIO;
         retval.m_baselineTS = m_baselineTS;
         retval.m_baselineAffinity = m_baselineAffinity;
+        retval.m_baselineTimeouts = m_baselineTimeouts;
         retval.m_currentTS = m_currentTS;
         m_baseline = m_current;
         m_baselineIO = m_currentIO;
         m_baselineTS = m_currentTS;
         m_baselineAffinity = m_currentAffinity;
+        m_baselineTimeouts = m_currentTimeouts;
         return retval;
     }
 
@@ -247,6 +255,17 @@ public class ClientStatsContext {
         return retval;
     }
 
+    /**
+     * Get the cost of procedure call timeout bookkeeping for the time period
+     * currently covered by the context.
+     *
+     * @return A {@link ClientTimeoutStats} instance.
+     */
+    public ClientTimeoutStats getTimeoutStats()
+    {
+        return ClientTimeoutStats.diff(m_currentTimeouts, m_baselineTimeouts);
+    }
+
     /**
      * Return a {@link ClientStats} instance for a specific procedure
      * name. This will be rolled up across all connections. The
@@ -0,0 +1,128 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collect the cost of the client's procedure call timeout bookkeeping. Every
+ * call with a finite timeout is scheduled on a timing wheel, and is either
+ * cancelled when its response arrives or expired when the wheel is swept past
+ * its deadline. Sweep time is the time the client spent walking the wheel.
+ */
+public class ClientTimeoutStats {
+
+    private final long m_tickNanos;
+    private final long m_scheduled;
+    private final long m_cancelled;
+    private final long m_expired;
+    private final long m_sweepNanos;
+
+    ClientTimeoutStats(long tickNanos, long scheduled, long cancelled, long expired, long sweepNanos)
+    {
+        m_tickNanos = tickNanos;
+        m_scheduled = scheduled;
+        m_cancelled = cancelled;
+        m_expired = expired;
+        m_sweepNanos = sweepNanos;
+    }
+
+    /**
+     * Subtract one ClientTimeoutStats instance from another to produce a third.
+     *
+     * @param newer More recent ClientTimeoutStats instance.
+     * @param older Less recent ClientTimeoutStats instance.
+     * @return New instance representing the difference.
+     */
+    public static ClientTimeoutStats diff(ClientTimeoutStats newer, ClientTimeoutStats older) {
+        return new ClientTimeoutStats(newer.m_tickNanos,
+                newer.m_scheduled - older.m_scheduled,
+                newer.m_cancelled - older.m_cancelled,
+                newer.m_expired - older.m_expired,
+                newer.m_sweepNanos - older.m_sweepNanos);
+    }
+
+    /* (non-Javadoc)
+     * @see java.lang.Object#clone()
+     */
+    @Override
+    protected Object clone() {
+        return new ClientTimeoutStats(m_tickNanos, m_scheduled, m_cancelled, m_expired, m_sweepNanos);
+    }
+
+    /**
+     * Get the resolution of the timing wheel in nanoseconds.
+     *
+     * @return The tick length as a long.
+     */
+    public long getTickNanos()
+    {
+        return m_tickNanos;
+    }
+
+    /**
+     * Get the number of procedure call timeouts scheduled for this time period.
+     *
+     * @return The count as a long.
+     */
+    public long getScheduled()
+    {
+        return m_scheduled;
+    }
+
+    /**
+     * Get the number of procedure call timeouts cancelled because a response
+     * (or connection loss) arrived first for this time period.
+     *
+     * @return The count as a long.
+     */
+    public long getCancelled()
+    {
+        return m_cancelled;
+    }
+
+    /**
+     * Get the number of procedure call timeouts that expired for this time period.
+     *
+     * @return The count as a long.
+     */
+    public long getExpired()
+    {
+        return m_expired;
+    }
+
+    /**
+     * Get the time spent sweeping the timing wheel, including invoking the
+     * callbacks of expired calls, for this time period.
+     *
+     * @param unit The unit of time to return the value in.
+     * @return The time as a long.
+     */
+    public long getSweepTime(TimeUnit unit)
+    {
+        return unit.convert(m_sweepNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString()
+    {
+        String display = "Timeouts: %d scheduled, %d cancelled, %d expired, %d us sweeping with a %d us tick";
+        return String.format(display, m_scheduled, m_cancelled, m_expired,
+                TimeUnit.NANOSECONDS.toMicros(m_sweepNanos), TimeUnit.NANOSECONDS.toMicros(m_tickNanos));
+    }
+}
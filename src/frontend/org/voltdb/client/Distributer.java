@@ -66,12 +66,16 @@ import org.voltdb.common.Constants;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
 
 /**
  *   De/multiplexes transactions across a cluster
  *
  *   It is safe to synchronized on an individual connection and then the distributer, but it is always unsafe
  *   to synchronized on the distributer and then an individual connection.
+ *
+ *   Routing in queue() reads an immutable RoutingTable snapshot and only takes the distributer
+ *   lock when it has to report backpressure.
  */
 class Distributer {
 
@@ -93,10 +97,11 @@ class Distributer {
     private final VoltNetworkPool m_network;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
+    private final boolean m_bulkInvocations;
 
     private static final class Procedure {
         final static int PARAMETER_NONE = -1;
@@ -115,18 +120,63 @@ class Distributer {
         }
     }
 
-    private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<Integer, NodeConnection>();
-    private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<Integer, NodeConnection[]>();
+    /**
+     * Immutable snapshot of everything queue() needs to route an invocation. Writers
+     * (topology, procedure and connection changes) build a new snapshot while holding
+     * the distributer lock and publish it through a volatile store, so readers never lock.
+     */
+    private static final class RoutingTable {
+        static final RoutingTable EMPTY = new RoutingTable(
+                new NodeConnection[0],
+                null,
+                ImmutableMap.<Integer, NodeConnection>of(),
+                ImmutableMap.<Integer, NodeConnection[]>of(),
+                ImmutableMap.<String, Procedure>of());
+
+        final NodeConnection m_connections[];
+        //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
+        final HashinatorLite m_hashinator;
+        final ImmutableMap<Integer, NodeConnection> m_partitionMasters;
+        final ImmutableMap<Integer, NodeConnection[]> m_partitionReplicas;
+        final ImmutableMap<String, Procedure> m_procedureInfo;
+
+        private RoutingTable(NodeConnection connections[],
+                             HashinatorLite hashinator,
+                             ImmutableMap<Integer, NodeConnection> partitionMasters,
+                             ImmutableMap<Integer, NodeConnection[]> partitionReplicas,
+                             ImmutableMap<String, Procedure> procedureInfo) {
+            m_connections = connections;
+            m_hashinator = hashinator;
+            m_partitionMasters = partitionMasters;
+            m_partitionReplicas = partitionReplicas;
+            m_procedureInfo = procedureInfo;
+        }
+
+        RoutingTable withConnections(NodeConnection connections[]) {
+            return new RoutingTable(connections, m_hashinator, m_partitionMasters, m_partitionReplicas, m_procedureInfo);
+        }
+
+        RoutingTable withTopology(HashinatorLite hashinator,
+                                  ImmutableMap<Integer, NodeConnection> partitionMasters,
+                                  ImmutableMap<Integer, NodeConnection[]> partitionReplicas) {
+            return new RoutingTable(m_connections, hashinator, partitionMasters, partitionReplicas, m_procedureInfo);
+        }
+
+        RoutingTable withProcedureInfo(ImmutableMap<String, Procedure> procedureInfo) {
+            return new RoutingTable(m_connections, m_hashinator, m_partitionMasters, m_partitionReplicas, procedureInfo);
+        }
+    }
+
+    // Only ever replaced while holding the distributer lock, read without it
+    private volatile RoutingTable m_routing = RoutingTable.EMPTY;
+    // Only used to rebuild the routing table, guarded by the distributer lock
     private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<Integer, NodeConnection>();
-    private final Map<String, Procedure> m_procedureInfo = new HashMap<String, Procedure>();
-    //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
-    private HashinatorLite m_hashinator = null;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
-        new HashMap<Integer, ClientAffinityStats>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats =
+        new ConcurrentHashMap<Integer, ClientAffinityStats>();
 
     public final RateLimiter m_rateLimiter = new RateLimiter();
 
@@ -136,6 +186,15 @@ class Distributer {
                 CoreUtils.getThreadFactory("VoltDB Client Reaper Thread"));
     ScheduledFuture<?> m_timeoutReaperHandle;
 
+    // Enough buckets that a revolution covers a second at the default 1 ms tick
+    private static final int TIMEOUT_WHEEL_SIZE = 1024;
+    // Procedure call timeouts, swept by the reaper thread
+    private final TimeoutWheel m_callTimeouts;
+    ScheduledFuture<?> m_timeoutWheelHandle;
+
+    // Runs procedure callbacks off the network threads, null if they run on the network threads
+    private final CallbackExecutor m_callbackExecutor;
+
     /**
      * Server's instances id. Unique for the cluster
      */
@@ -287,26 +346,7 @@ class Distributer {
                         c.sendPing();
                     }
 
-                    // for each outstanding procedure
-                    for (final Map.Entry<Long, CallbackBookeeping> e : c.m_callbacks.entrySet()) {
-                        final long handle = e.getKey();
-                        final CallbackBookeeping cb = e.getValue();
-
-                        // if the timeout is expired, call the callback and remove the
-                        // bookeeping data
-                        final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
-                        if (deltaNanos > cb.procedureTimeoutNanos) {
-
-                            //For expected long operations don't use the default timeout
-                            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
-                            final boolean isLongOp = isLongOp(cb.name);
-                            if (isLongOp && (deltaNanos < TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS))) {
-                                continue;
-                            }
-
-                            c.handleTimedoutCallback(handle, nowNanos);
-                        }
-                    }
+                    // procedure call timeouts are expired by m_callTimeouts
                 }
             } catch (Throwable t) {
                 t.printStackTrace();
@@ -330,26 +370,66 @@ class Distributer {
         return false;
     }
 
-    class CallbackBookeeping {
-        public CallbackBookeeping(long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+    /*
+     * Records are pooled by CallbackTable, so they are initialized after construction
+     * and cleared when released back to the pool
+     */
+    static final class CallbackBookeeping extends TimeoutWheel.Timeout {
+        void init(NodeConnection connection, long handle,
+                long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+            init(connection, handle, timestampNanos, callback, name, timeoutNanos, ignoreBackpressure, null, null);
+        }
+
+        void init(NodeConnection connection, long handle,
+                long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure,
+                RateLimiter.Budget procedureBudget, RateLimiter.Budget partitionBudget) {
             assert(callback != null);
+            this.connection = connection;
+            this.handle = handle;
             this.timestampNanos = timestampNanos;
             this.callback = callback;
             this.name = name;
             this.procedureTimeoutNanos = timeoutNanos;
             this.ignoreBackpressure = ignoreBackpressure;
+            this.procedureBudget = procedureBudget;
+            this.partitionBudget = partitionBudget;
+        }
+
+        void clear() {
+            connection = null;
+            callback = null;
+            name = null;
+            response = null;
+            procedureBudget = null;
+            partitionBudget = null;
         }
+
         long timestampNanos;
         //Timeout in ms 0 means use conenction specified procedure timeoutMS.
-        final long procedureTimeoutNanos;
+        long procedureTimeoutNanos;
         ProcedureCallback callback;
         String name;
         boolean ignoreBackpressure;
+        // Rate limiter budgets the invocation holds permits from besides the client wide one
+        RateLimiter.Budget procedureBudget;
+        RateLimiter.Budget partitionBudget;
+        NodeConnection connection;
+        long handle;
+
+        // Set when the callback is handed to the callback executor
+        ClientResponseImpl response;
+        long responseNanos;
+        boolean recyclable;
+
+        @Override
+        protected void expire(long nowNanos) {
+            connection.handleTimedoutCallback(this, nowNanos);
+        }
     }
 
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
-        private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<Long, CallbackBookeeping>();
+        private final CallbackTable m_callbacks = new CallbackTable();
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<String, ClientStats>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
@@ -358,6 +438,10 @@ class Distributer {
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
+        // Frame invocations are added to until the network thread serializes it
+        private final Object m_frameLock = new Object();
+        private BulkInvocationFrame m_openFrame = null;
+
         public NodeConnection(long ids[]) {}
 
         /*
@@ -368,14 +452,20 @@ class Distributer {
          */
         public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
                 ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
+            createWork(nowNanos, handle, name, c, callback, ignoreBackpressure, timeoutNanos, -1);
+        }
+
+        /*
+         * The partition is the one the invocation was routed to by client affinity,
+         * or -1 if it isn't known. It selects the rate limiter's partition budget.
+         */
+        public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
+                ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos, int partition) {
             assert(callback != null);
 
             //How long from the starting point in time to wait to get this stuff done
             timeoutNanos = (timeoutNanos == Distributer.USE_DEFAULT_TIMEOUT) ? m_procedureCallTimeoutNanos : timeoutNanos;
 
-            //Trigger the timeout at this point in time no matter what
-            final long timeoutTime = nowNanos + timeoutNanos;
-
             //What was the time after the rate limiter returned
             //Will be the same as timeoutNanos if it didn't block
             long afterRateLimitNanos = 0;
@@ -385,18 +475,27 @@ class Distributer {
              * the rate limiter which can block. If it blocks we can still get a timeout
              * exception to give prompt timeouts
              */
+            final RateLimiter.Budget procedureBudget = m_rateLimiter.getProcedureBudget(name);
+            final RateLimiter.Budget partitionBudget = m_rateLimiter.getPartitionBudget(partition);
             try {
                 afterRateLimitNanos = m_rateLimiter.sendTxnWithOptionalBlockAndReturnCurrentTime(
-                        nowNanos, timeoutNanos, ignoreBackpressure);
+                        nowNanos, timeoutNanos, ignoreBackpressure, procedureBudget, partitionBudget);
             } catch (TimeoutException e) {
                 /*
                  * It's possible we need to timeout because it took too long to get
-                 * the transaction out on the wire due to max outstanding
+                 * the transaction out on the wire due to max outstanding.
+                 * The rate limiter gave back everything it took, so no permits are returned
                  */
                 final long deltaNanos = Math.max(1, System.nanoTime() - nowNanos);
-                    invokeCallbackWithTimeout(name, callback, deltaNanos, afterRateLimitNanos,  timeoutNanos, handle, ignoreBackpressure);
+                getStats(name).updateRateLimit(deltaNanos);
+                //Drain needs to know when all callbacks have been invoked
+                m_callbacksToInvoke.incrementAndGet();
+                invokeCallbackWithTimeout(name, callback, deltaNanos, System.nanoTime(), timeoutNanos, handle);
                 return;
             }
+            if (afterRateLimitNanos != nowNanos) {
+                getStats(name).updateRateLimit(afterRateLimitNanos - nowNanos);
+            }
 
             assert(m_callbacks.containsKey(handle) == false);
 
@@ -405,23 +504,31 @@ class Distributer {
             assert(callbacksToInvoke >= 0);
 
             //Optimistically submit the task
-            m_callbacks.put(handle, new CallbackBookeeping(nowNanos, callback, name, timeoutNanos, ignoreBackpressure));
+            final CallbackBookeeping cb = m_callbacks.acquire(handle);
+            cb.init(this, handle, nowNanos, callback, name, timeoutNanos, ignoreBackpressure,
+                    procedureBudget, partitionBudget);
+            m_callbacks.put(handle, cb);
 
             //Schedule the timeout to fire relative to the amount of time
             //spent getting to this point. Might fire immediately
             //some of the time, but that is fine
-            final long timeoutRemaining = timeoutTime - afterRateLimitNanos;
-
-            //Schedule an individual timeout if necessary
-            //If it is a long op, don't bother scheduling a discrete timeout
-            if (timeoutNanos < TimeUnit.SECONDS.toNanos(1) && !isLongOp(name)) {
-                submitDiscreteTimeoutTask(handle, Math.max(0, timeoutRemaining));
+            //(written so an infinite timeout of Long.MAX_VALUE doesn't overflow)
+            long timeoutRemaining = timeoutNanos - (afterRateLimitNanos - nowNanos);
+
+            //For expected long operations don't use the default timeout
+            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
+            if (isLongOp(name)) {
+                timeoutRemaining = Math.max(timeoutRemaining,
+                        TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS) - (afterRateLimitNanos - nowNanos));
             }
+            m_callTimeouts.schedule(cb, afterRateLimitNanos, Math.max(0, timeoutRemaining));
 
             //Check for disconnect
             if (!m_isConnected) {
                 //Check if the disconnect or expiration already handled the callback
                 if (m_callbacks.remove(handle) == null) return;
+                //If the timeout could still fire the sweeper may be looking at the record, don't reuse it
+                final boolean recyclable = m_callTimeouts.cancel(cb);
                 final ClientResponse r = new ClientResponseImpl(
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
@@ -437,48 +544,57 @@ class Distributer {
                 assert(remainingToInvoke >= 0);
 
                 //for bookkeeping, but it feels dishonest to call this here
-                m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
+                m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure,
+                        procedureBudget, partitionBudget);
+                if (recyclable) {
+                    m_callbacks.release(cb);
+                }
                 return;
             } else {
-                m_connection.writeStream().enqueue(c);
+                enqueueInvocation(c);
             }
         }
 
         /*
-         * For high precision timeouts, submit a discrete task to a scheduled
-         * executor service to time out the transaction. The timeout task
-         * when run checks if the task is still present in the concurrent map
-         * of tasks and removes it. If it wins the race to remove the map
-         * then the transaction will be timed out even if a response is received
-         * at the same time.
-         *
-         * This will race with the periodic task that checks lower resolution timeouts
-         * and it is fine, the concurrent map makes sure each callback is handled exactly once
+         * Queue a serialized invocation. With bulk invocations it joins the frame
+         * that is still waiting for the network thread, if there is one with room.
          */
-        void submitDiscreteTimeoutTask(final long handle, long timeoutNanos) {
-            m_ex.schedule(new Runnable() {
-                @Override
-                public void run() {
-                    handleTimedoutCallback(handle, System.nanoTime());
+        private void enqueueInvocation(ByteBuffer c) {
+            if (!m_bulkInvocations) {
+                m_connection.writeStream().enqueue(c);
+                return;
+            }
+            synchronized (m_frameLock) {
+                if (m_openFrame == null || !m_openFrame.add(c)) {
+                    m_openFrame = new BulkInvocationFrame(c);
+                    m_connection.writeStream().enqueue(m_openFrame);
                 }
-            }, timeoutNanos, TimeUnit.NANOSECONDS);
+            }
         }
 
         /*
-         * Factor out the boilerplate involved in checking whether a timed out callback
-         * still exists and needs to be invoked, or has already been handled by another thread
+         * Invoked by the timing wheel when a call's deadline passes. The wheel
+         * races with responses and connection loss to remove the callback from the
+         * callback table, which makes sure each callback is handled exactly once.
+         * Whoever wins the race and isn't the wheel cancels the timeout.
          */
-        void handleTimedoutCallback(long handle, long nowNanos) {
+        void handleTimedoutCallback(CallbackBookeeping expired, long nowNanos) {
             //Callback doesn't have to be there, it may have already
-            //received a response or been expired by the periodic expiration task, or a discrete expiration task
-            final CallbackBookeeping cb = m_callbacks.remove(handle);
+            //received a response or been failed by connection loss
+            final CallbackBookeeping cb = m_callbacks.remove(expired.handle);
 
             //It was handled during the race
             if (cb == null) return;
+            assert(cb == expired);
 
             final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
 
-            invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, handle, cb.ignoreBackpressure);
+            invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, cb.handle);
+            m_rateLimiter.transactionResponseReceived(nowNanos, -1, cb.ignoreBackpressure,
+                    cb.procedureBudget, cb.partitionBudget);
+
+            //The wheel has already unlinked it and nothing else can reach it now
+            m_callbacks.release(cb);
         }
 
         /*
@@ -489,8 +605,7 @@ class Distributer {
                                        long deltaNanos,
                                        long nowNanos,
                                        long timeoutNanos,
-                                       long handle,
-                                       boolean ignoreBackpressure) {
+                                       long handle) {
             ClientResponseImpl r = new ClientResponseImpl(
                     ClientResponse.CONNECTION_TIMEOUT,
                     ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
@@ -511,7 +626,6 @@ class Distributer {
             final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
             assert(remainingToInvoke >= 0);
 
-            m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
             updateStatsForTimeout(procName, r.getClientRoundtripNanos(), r.getClusterRoundtrip());
         }
 
@@ -556,6 +670,13 @@ class Distributer {
                 boolean abort,
                 boolean failure,
                 boolean timeout) {
+            getStats(procName).update(roundTripNanos, clusterRoundTrip, abort, failure, timeout);
+        }
+
+        /*
+         * Sender threads create stats for rate limiter waits, so creation can race with the network thread
+         */
+        private ClientStats getStats(String procName) {
             ClientStats stats = m_stats.get(procName);
             if (stats == null) {
                 stats = new ClientStats();
@@ -565,9 +686,41 @@ class Distributer {
                 stats.m_procName = procName;
                 stats.m_startTS = System.currentTimeMillis();
                 stats.m_endTS = Long.MIN_VALUE;
-                m_stats.put(procName, stats);
+                ClientStats existing = m_stats.putIfAbsent(procName, stats);
+                if (existing != null) {
+                    stats = existing;
+                }
+            }
+            return stats;
+        }
+
+        /**
+         * Invoke a callback that was handed to the callback executor by handleMessage.
+         * Called from a callback thread.
+         */
+        void invokeQueuedCallback(CallbackBookeeping stuff) {
+            final long startNanos = System.nanoTime();
+            final ClientResponseImpl response = stuff.response;
+            final ProcedureCallback cb = stuff.callback;
+            try {
+                try {
+                    cb.clientCallback(response);
+                } catch (Throwable t) {
+                    // an Error must not kill the callback thread and strand the callbacks queued behind it
+                    uncaughtException(cb, response, t);
+                }
+                // handleMessage created the stats for the procedure before queueing the callback
+                m_stats.get(stuff.name).updateCallback(
+                        startNanos - stuff.responseNanos, System.nanoTime() - startNanos);
+            } finally {
+                //Drain needs to know when all callbacks have been invoked
+                final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
+                assert(remainingToInvoke >= 0);
+            }
+
+            if (stuff.recyclable) {
+                m_callbacks.release(stuff);
             }
-            stats.update(roundTripNanos, clusterRoundTrip, abort, failure, timeout);
         }
 
         @Override
@@ -625,6 +778,8 @@ class Distributer {
             }
             // handle a proper callback
             else {
+                //If the timeout could still fire the sweeper may be looking at the record, don't reuse it
+                final boolean recyclable = m_callTimeouts.cancel(stuff);
                 final long callTimeNanos = stuff.timestampNanos;
                 final long deltaNanos = Math.max(1, nowNanos - callTimeNanos);
                 final ProcedureCallback cb = stuff.callback;
@@ -639,19 +794,37 @@ class Distributer {
                 }
 
                 int clusterRoundTrip = response.getClusterRoundtrip();
-                m_rateLimiter.transactionResponseReceived(nowNanos, clusterRoundTrip, stuff.ignoreBackpressure);
+                m_rateLimiter.transactionResponseReceived(nowNanos, clusterRoundTrip, stuff.ignoreBackpressure,
+                        stuff.procedureBudget, stuff.partitionBudget);
                 updateStats(stuff.name, deltaNanos, clusterRoundTrip, abort, error, false);
                 response.setClientRoundtrip(deltaNanos);
                 assert(response.getHash() == null); // make sure it didn't sneak into wire protocol
+
+                final ClientStats stats = m_stats.get(stuff.name);
+                if (m_callbackExecutor != null) {
+                    // The callback thread owns the record from here on
+                    stuff.response = response;
+                    stuff.responseNanos = nowNanos;
+                    stuff.recyclable = recyclable;
+                    stats.updateCallbackQueueDepth(m_callbackExecutor.submit(stuff));
+                    return;
+                }
+
+                final long startNanos = System.nanoTime();
                 try {
                     cb.clientCallback(response);
                 } catch (Exception e) {
                     uncaughtException(cb, response, e);
                 }
+                stats.updateCallback(0, System.nanoTime() - startNanos);
 
                 //Drain needs to know when all callbacks have been invoked
                 final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
                 assert(remainingToInvoke >= 0);
+
+                if (recyclable) {
+                    m_callbacks.release(stuff);
+                }
             }
         }
 
@@ -674,7 +847,7 @@ class Distributer {
                 /*
                  * Repair all cluster topology data with the node connection removed
                  */
-                Iterator<Map.Entry<Integer, NodeConnection>> i = m_partitionMasters.entrySet().iterator();
+                Iterator<Map.Entry<Integer, NodeConnection>> i = m_hostIdToConnection.entrySet().iterator();
                 while (i.hasNext()) {
                     Map.Entry<Integer, NodeConnection> entry = i.next();
                     if (entry.getValue() == this) {
@@ -682,39 +855,31 @@ class Distributer {
                     }
                 }
 
-                i = m_hostIdToConnection.entrySet().iterator();
-                while (i.hasNext()) {
-                    Map.Entry<Integer, NodeConnection> entry = i.next();
-                    if (entry.getValue() == this) {
-                        i.remove();
+                final RoutingTable routing = m_routing;
+                ImmutableMap.Builder<Integer, NodeConnection> masters = ImmutableMap.builder();
+                for (Map.Entry<Integer, NodeConnection> entry : routing.m_partitionMasters.entrySet()) {
+                    if (entry.getValue() != this) {
+                        masters.put(entry);
                     }
                 }
 
-                Iterator<Map.Entry<Integer, NodeConnection[]>> i2 = m_partitionReplicas.entrySet().iterator();
-                List<Pair<Integer, NodeConnection[]>> entriesToRewrite = new ArrayList<Pair<Integer, NodeConnection[]>>();
-                while (i2.hasNext()) {
-                    Map.Entry<Integer, NodeConnection[]> entry = i2.next();
+                ImmutableMap.Builder<Integer, NodeConnection[]> replicas = ImmutableMap.builder();
+                for (Map.Entry<Integer, NodeConnection[]> entry : routing.m_partitionReplicas.entrySet()) {
+                    List<NodeConnection> survivors = new ArrayList<NodeConnection>(entry.getValue().length);
                     for (NodeConnection nc : entry.getValue()) {
-                        if (nc == this) {
-                            entriesToRewrite.add(Pair.of(entry.getKey(), entry.getValue()));
+                        if (nc != this) {
+                            survivors.add(nc);
                         }
                     }
-                }
-
-                for (Pair<Integer, NodeConnection[]> entry : entriesToRewrite) {
-                    m_partitionReplicas.remove(entry.getFirst());
-                    NodeConnection survivors[] = new NodeConnection[entry.getSecond().length - 1];
-                    if (survivors.length == 0) break;
-                    int zz = 0;
-                    for (int ii = 0; ii < entry.getSecond().length; ii++) {
-                        if (entry.getSecond()[ii] != this) {
-                            survivors[zz++] = entry.getSecond()[ii];
-                        }
+                    if (!survivors.isEmpty()) {
+                        replicas.put(entry.getKey(), survivors.toArray(new NodeConnection[survivors.size()]));
                     }
-                    m_partitionReplicas.put(entry.getFirst(), survivors);
                 }
 
                 m_connections.remove(this);
+                m_routing = routing
+                        .withTopology(routing.m_hashinator, masters.build(), replicas.build())
+                        .withConnections(m_connections.toArray(new NodeConnection[0]));
                 //Notify listeners that a connection has been lost
                 for (ClientStatusListenerExt s : m_listeners) {
                     s.connectionLost(
@@ -750,10 +915,12 @@ class Distributer {
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
                 ") was lost before a response was received");
-            for (Map.Entry<Long, CallbackBookeeping> e : m_callbacks.entrySet()) {
-                //Check for race with other threads
-                if (m_callbacks.remove(e.getKey()) == null) continue;
-                final CallbackBookeeping callBk = e.getValue();
+            //Removing them all at once wins the race with the other threads for each of them
+            final List<CallbackBookeeping> callbacks = new ArrayList<CallbackBookeeping>();
+            m_callbacks.removeAll(callbacks);
+            for (final CallbackBookeeping callBk : callbacks) {
+                //If the timeout could still fire the sweeper may be looking at the record, don't reuse it
+                final boolean recyclable = m_callTimeouts.cancel(callBk);
                 try {
                     callBk.callback.clientCallback(r);
                 }
@@ -765,7 +932,11 @@ class Distributer {
                 final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
                 assert(remainingToInvoke >= 0);
 
-                m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure);
+                m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure,
+                        callBk.procedureBudget, callBk.partitionBudget);
+                if (recyclable) {
+                    m_callbacks.release(callBk);
+                }
             }
         }
 
@@ -851,6 +1022,60 @@ class Distributer {
             long connectionResponseTimeoutMS,
             boolean useClientAffinity,
             Subject subject) {
+        this(useMultipleThreads,
+                procedureCallTimeoutNanos,
+                connectionResponseTimeoutMS,
+                useClientAffinity,
+                subject,
+                ClientConfig.DEFAULT_TIMEOUT_TICK_NANOS);
+    }
+
+    Distributer(
+            boolean useMultipleThreads,
+            long procedureCallTimeoutNanos,
+            long connectionResponseTimeoutMS,
+            boolean useClientAffinity,
+            Subject subject,
+            long timeoutTickNanos) {
+        this(useMultipleThreads,
+                procedureCallTimeoutNanos,
+                connectionResponseTimeoutMS,
+                useClientAffinity,
+                subject,
+                timeoutTickNanos,
+                0, true);
+    }
+
+    Distributer(
+            boolean useMultipleThreads,
+            long procedureCallTimeoutNanos,
+            long connectionResponseTimeoutMS,
+            boolean useClientAffinity,
+            Subject subject,
+            long timeoutTickNanos,
+            int callbackThreads,
+            boolean callbacksOrderedPerConnection) {
+        this(useMultipleThreads,
+                procedureCallTimeoutNanos,
+                connectionResponseTimeoutMS,
+                useClientAffinity,
+                subject,
+                timeoutTickNanos,
+                callbackThreads,
+                callbacksOrderedPerConnection,
+                false);
+    }
+
+    Distributer(
+            boolean useMultipleThreads,
+            long procedureCallTimeoutNanos,
+            long connectionResponseTimeoutMS,
+            boolean useClientAffinity,
+            Subject subject,
+            long timeoutTickNanos,
+            int callbackThreads,
+            boolean callbacksOrderedPerConnection,
+            boolean bulkInvocations) {
         m_useMultipleThreads = useMultipleThreads;
         m_network = new VoltNetworkPool(
                 m_useMultipleThreads ? Math.max(1, CoreUtils.availableProcessors() / 4 ) : 1,
@@ -859,10 +1084,24 @@ class Distributer {
         m_procedureCallTimeoutNanos= procedureCallTimeoutNanos;
         m_connectionResponseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(connectionResponseTimeoutMS);
         m_useClientAffinity = useClientAffinity;
+        m_bulkInvocations = bulkInvocations;
 
-        // schedule the task that looks for timed-out proc calls and connections
+        // schedule the task that looks for timed-out connections
         m_timeoutReaperHandle = m_ex.scheduleAtFixedRate(new CallExpiration(), 1, 1, TimeUnit.SECONDS);
+
+        // and the task that sweeps the timing wheel for timed-out proc calls once a tick.
+        // A late sweep catches up in one pass, so missed runs aren't replayed at a fixed rate
+        m_callTimeouts = new TimeoutWheel(timeoutTickNanos, TIMEOUT_WHEEL_SIZE, System.nanoTime());
+        m_timeoutWheelHandle = m_ex.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                m_callTimeouts.advance(System.nanoTime());
+            }
+        }, timeoutTickNanos, timeoutTickNanos, TimeUnit.NANOSECONDS);
         m_subject = subject;
+
+        m_callbackExecutor = callbackThreads > 0 ?
+                new CallbackExecutor(callbackThreads, callbacksOrderedPerConnection) : null;
     }
 
     void createConnection(String host, String program, String password, int port)
@@ -912,6 +1151,7 @@ class Distributer {
             m_buildString = (String)socketChannelAndInstanceIdAndBuildString[2];
 
             m_connections.add(cxn);
+            m_routing = m_routing.withConnections(m_connections.toArray(new NodeConnection[0]));
         }
 
         if (m_useClientAffinity) {
@@ -1006,116 +1246,53 @@ class Distributer {
         assert(invocation != null);
         assert(cb != null);
 
-        NodeConnection cxn = null;
-        boolean backpressure = true;
-
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Routing decisions are made against an immutable snapshot so that sender threads
+         * don't contend with each other or with topology and procedure updates
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
+        final RoutingTable routing = m_routing;
+        if (routing.m_connections.length == 0) {
+            throw new NoConnectionsException("No connections.");
+        }
 
-            if (totalConnections == 0) {
-                throw new NoConnectionsException("No connections.");
-            }
+        NodeConnection cxn = null;
+        int partition = -1;
+        /*
+         * Check if the master for the partition is known. No back pressure check to ensure correct
+         * routing, but backpressure will be managed anyways. This is where we guess partition based on client
+         * affinity and known topology (hashinator initialized).
+         */
+        if (m_useClientAffinity && (routing.m_hashinator != null)) {
+            final Procedure procedureInfo = routing.m_procedureInfo.get(invocation.getProcName());
+            partition = getHashedPartition(routing, procedureInfo, invocation);
+            cxn = getAffinityConnection(routing, procedureInfo, partition);
+        }
+        if (cxn == null) {
+            cxn = getRoundRobinConnection(routing, ignoreBackpressure);
+        }
 
+        boolean backpressure = (cxn == null) || (!ignoreBackpressure && cxn.hadBackPressure());
+        if (backpressure) {
             /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
+             * Synchronization is necessary to ensure that backpressure is reported correctly.
+             * offBackPressure() reports under the same lock, so re-check while holding it or the
+             * connection may drain between the check above and the report below, losing the wakeup.
              */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final Procedure procedureInfo = m_procedureInfo.get(invocation.getProcName());
-                Integer hashedPartition = -1;
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (( ! procedureInfo.multiPart) &&
-                        // User may have passed too few parameters to allow dispatching.
-                        // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
-                    }
-                    /*
-                     * If the procedure is read only and single part, load balance across replicas
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
-                                }
-                            }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
-                        }
-                    } else {
-                        /*
-                         * Writes have to go to the master
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
-                            backpressure = false;
-                        }
-                    }
+            synchronized (this) {
+                if (cxn == null) {
+                    cxn = getRoundRobinConnection(m_routing, ignoreBackpressure);
+                    backpressure = (cxn == null);
+                } else if (!cxn.hadBackPressure()) {
+                    backpressure = false;
                 }
-                if (cxn != null && !cxn.m_isConnected) {
-                    // Would be nice to log something here
-                    // Client affinity picked a connection that was actually disconnected.  Reset to null
-                    // and let the round-robin choice pick a connection
+
+                if (backpressure) {
                     cxn = null;
-                }
-                ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
-                if (stats == null) {
-                    stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
-                }
-                if (cxn != null) {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addAffinityRead();
-                    }
-                    else {
-                        stats.addAffinityWrite();
-                    }
-                }
-                // account these here because we lose the partition ID and procedure info once we
-                // bust out of this scope.
-                else {
-                    if (procedureInfo != null && procedureInfo.readOnly) {
-                        stats.addRrRead();
-                    }
-                    else {
-                        stats.addRrWrite();
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
                     }
                 }
             }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
-                        backpressure = false;
-                        break;
-                    }
-                }
-            }
-
-            if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
-                }
-            }
         }
 
         /*
@@ -1129,12 +1306,122 @@ class Distributer {
             } catch (Exception e) {
                 Throwables.propagate(e);
             }
-            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
+            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure,
+                    timeoutNanos, partition);
         }
 
         return !backpressure;
     }
 
+    /*
+     * The partition the invocation hashes to, MP_INIT_PID for multi-partition procedures
+     * or -1 if the procedure isn't known
+     */
+    private static int getHashedPartition(RoutingTable routing, Procedure procedureInfo, ProcedureInvocation invocation) {
+        int hashedPartition = -1;
+        if (procedureInfo != null) {
+            hashedPartition = Constants.MP_INIT_PID;
+            if (( ! procedureInfo.multiPart) &&
+                // User may have passed too few parameters to allow dispatching.
+                // Avoid an indexing error here to fall through to the proper ProcCallException.
+                    (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
+                hashedPartition = routing.m_hashinator.getHashedPartitionForParameter(
+                        procedureInfo.partitionParameterType,
+                        invocation.getPartitionParamValue(procedureInfo.partitionParameter));
+            }
+        }
+        return hashedPartition;
+    }
+
+    /*
+     * Pick the master (writes) or a replica (single partition reads) for the partition the
+     * invocation hashes to. Returns null if the partition can't be determined or the chosen
+     * connection is gone, in which case the caller falls back to round-robin.
+     */
+    private NodeConnection getAffinityConnection(RoutingTable routing, Procedure procedureInfo, Integer hashedPartition) {
+        NodeConnection cxn = null;
+
+        if (procedureInfo != null) {
+            /*
+             * If the procedure is read only and single part, load balance across replicas
+             */
+            if (!procedureInfo.multiPart && procedureInfo.readOnly) {
+                NodeConnection partitionReplicas[] = routing.m_partitionReplicas.get(hashedPartition);
+                if (partitionReplicas != null && partitionReplicas.length > 0) {
+                    cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                    if (cxn.hadBackPressure()) {
+                        //See if there is one without backpressure, make sure it's still connected
+                        for (NodeConnection nc : partitionReplicas) {
+                            if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                cxn = nc;
+                                break;
+                            }
+                        }
+                    }
+                }
+            } else {
+                /*
+                 * Writes have to go to the master
+                 */
+                cxn = routing.m_partitionMasters.get(hashedPartition);
+            }
+        }
+        if (cxn != null && !cxn.m_isConnected) {
+            // Would be nice to log something here
+            // Client affinity picked a connection that was actually disconnected.  Reset to null
+            // and let the round-robin choice pick a connection
+            cxn = null;
+        }
+
+        ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
+        if (stats == null) {
+            stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
+            ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        if (cxn != null) {
+            if (procedureInfo != null && procedureInfo.readOnly) {
+                stats.addAffinityRead();
+            }
+            else {
+                stats.addAffinityWrite();
+            }
+        }
+        // account these here because we lose the partition ID and procedure info once we
+        // bust out of this scope.
+        else {
+            if (procedureInfo != null && procedureInfo.readOnly) {
+                stats.addRrRead();
+            }
+            else {
+                stats.addRrWrite();
+            }
+        }
+        return cxn;
+    }
+
+    /*
+     * Round-robin across all connections starting after the last one handed out, skipping
+     * those with backpressure. Returns null if every connection has backpressure.
+     */
+    private NodeConnection getRoundRobinConnection(RoutingTable routing, boolean ignoreBackpressure) {
+        final NodeConnection connections[] = routing.m_connections;
+        final int totalConnections = connections.length;
+        if (totalConnections == 0) {
+            return null;
+        }
+        final int start = m_nextConnection.incrementAndGet();
+        for (int i = 0; i < totalConnections; ++i) {
+            final NodeConnection cxn = connections[Math.abs((start + i) % totalConnections)];
+            if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                return cxn;
+            }
+        }
+        return null;
+    }
+
     /**
      * Shutdown the VoltNetwork allowing the Ports to close and free resources
      * like memory pools
@@ -1143,10 +1430,16 @@ class Distributer {
     final void shutdown() throws InterruptedException {
         // stop the old proc call reaper
         m_timeoutReaperHandle.cancel(false);
+        m_timeoutWheelHandle.cancel(false);
         m_ex.shutdown();
         m_ex.awaitTermination(1, TimeUnit.SECONDS);
 
         m_network.shutdown();
+
+        // no more responses can arrive, let the callback threads finish what was read
+        if (m_callbackExecutor != null) {
+            m_callbackExecutor.shutdown();
+        }
     }
 
     void uncaughtException(ProcedureCallback cb, ClientResponse r, Throwable t) {
@@ -1179,7 +1472,7 @@ class Distributer {
 
     ClientStatsContext createStatsContext() {
         return new ClientStatsContext(this, getStatsSnapshot(), getIOStatsSnapshot(),
-                getAffinityStatsSnapshot());
+                getAffinityStatsSnapshot(), getTimeoutStatsSnapshot());
     }
 
     Map<Long, Map<String, ClientStats>> getStatsSnapshot() {
@@ -1225,15 +1518,17 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<Integer, ClientAffinityStats>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        // these get modified concurrently by queue(), the counters themselves are atomic
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
 
+    ClientTimeoutStats getTimeoutStatsSnapshot() {
+        return m_callTimeouts.getStats();
+    }
+
     public synchronized Object[] getInstanceId() {
         return m_clusterInstanceId;
     }
@@ -1250,7 +1545,11 @@ class Distributer {
     }
 
     public List<Long> getThreadIds() {
-        return m_network.getThreadIds();
+        List<Long> ids = new ArrayList<Long>(m_network.getThreadIds());
+        if (m_callbackExecutor != null) {
+            ids.addAll(m_callbackExecutor.getThreadIds());
+        }
+        return ids;
     }
 
     public List<InetSocketAddress> getConnectedHostList() {
@@ -1267,11 +1566,12 @@ class Distributer {
 
         //In future let TOPO return cooked bytes when cooked and we use correct recipe
         boolean cooked = false;
+        final HashinatorLite hashinator;
         if (tables.length == 1) {
             //Just in case the new client connects to the old version of Volt that only returns 1 topology table
             // We're going to get the MPI back in this table, so subtract it out from the number of partitions.
             int numPartitions = vt.getRowCount() - 1;
-            m_hashinator = new HashinatorLite(numPartitions); // legacy only
+            hashinator = new HashinatorLite(numPartitions); // legacy only
         } else {
             //Second table contains the hash function
             boolean advanced = tables[1].advanceRow();
@@ -1280,13 +1580,13 @@ class Distributer {
                                    "performance will be lower because transactions can't be routed at this client");
                 return;
             }
-            m_hashinator = new HashinatorLite(
+            hashinator = new HashinatorLite(
                     HashinatorLiteType.valueOf(tables[1].getString("HASHTYPE")),
                     tables[1].getVarbinary("HASHCONFIG"),
                     cooked);
         }
-        m_partitionMasters.clear();
-        m_partitionReplicas.clear();
+        Map<Integer, NodeConnection> partitionMasters = new HashMap<Integer, NodeConnection>();
+        Map<Integer, NodeConnection[]> partitionReplicas = new HashMap<Integer, NodeConnection[]>();
         // The MPI's partition ID is 16383 (MpInitiator.MP_INIT_PID), so we shouldn't inadvertently
         // hash to it.  Go ahead and include it in the maps, we can use it at some point to
         // route MP transactions directly to the MPI node.
@@ -1301,17 +1601,21 @@ class Distributer {
                     connections.add(m_hostIdToConnection.get(hostId));
                 }
             }
-            m_partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
+            partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
 
             Integer leaderHostId = Integer.valueOf(vt.getString("Leader").split(":")[0]);
             if (m_hostIdToConnection.containsKey(leaderHostId)) {
-                m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
+                partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        m_routing = m_routing.withTopology(
+                hashinator,
+                ImmutableMap.copyOf(partitionMasters),
+                ImmutableMap.copyOf(partitionReplicas));
     }
 
     private void updateProcedurePartitioning(VoltTable vt) {
-        m_procedureInfo.clear();
+        Map<String, Procedure> procedureInfo = new HashMap<String, Procedure>();
         while (vt.advanceRow()) {
             try {
                 //Data embedded in JSON object in remarks column
@@ -1323,11 +1627,11 @@ class Distributer {
                     int partitionParameter = jsObj.getInt(Constants.JSON_PARTITION_PARAMETER);
                     int partitionParameterType =
                         jsObj.getInt(Constants.JSON_PARTITION_PARAMETER_TYPE);
-                    m_procedureInfo.put(procedureName,
+                    procedureInfo.put(procedureName,
                             new Procedure(false,readOnly, partitionParameter, partitionParameterType));
                 } else {
                     // Multi Part procedure JSON descriptors omit the partitionParameter
-                    m_procedureInfo.put(procedureName, new Procedure(true, readOnly, Procedure.PARAMETER_NONE,
+                    procedureInfo.put(procedureName, new Procedure(true, readOnly, Procedure.PARAMETER_NONE,
                                 Procedure.PARAMETER_NONE));
                 }
 
@@ -1335,6 +1639,7 @@ class Distributer {
                 e.printStackTrace();
             }
         }
+        m_routing = m_routing.withProcedureInfo(ImmutableMap.copyOf(procedureInfo));
     }
 
     /**
@@ -1344,7 +1649,7 @@ class Distributer {
      * @return
      */
     public boolean isHashinatorInitialized() {
-        return (m_hashinator != null);
+        return (m_routing.m_hashinator != null);
     }
 
     /**
@@ -1355,17 +1660,19 @@ class Distributer {
      * @return
      */
     public long getPartitionForParameter(byte typeValue, Object value) {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_routing.m_hashinator;
+        if (hashinator == null) {
             return -1;
         }
-        return m_hashinator.getHashedPartitionForParameter(typeValue, value);
+        return hashinator.getHashedPartitionForParameter(typeValue, value);
     }
 
     public HashinatorLiteType getHashinatorType() {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_routing.m_hashinator;
+        if (hashinator == null) {
             return HashinatorLiteType.LEGACY;
         }
-        return m_hashinator.getConfigurationType();
+        return hashinator.getConfigurationType();
     }
 
     private ByteBuffer serializeSPI(ProcedureInvocation pi) throws IOException {
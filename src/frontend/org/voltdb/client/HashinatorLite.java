@@ -24,8 +24,6 @@ import java.nio.ByteOrder;
 import java.util.zip.InflaterOutputStream;
 
 import org.apache.cassandra_voltpatches.MurmurHash3;
-import org.voltcore.utils.Bits;
-import org.voltcore.utils.Pair;
 import org.voltdb.ParameterConverter;
 import org.voltdb.VoltType;
 import org.voltdb.VoltTypeException;
@@ -64,12 +62,7 @@ public class HashinatorLite {
     private int catalogPartitionCount;
 
     //Values for Elastic
-    /*
-     * Pointer to an array of integers containing the tokens and partitions. Even values are tokens and odd values
-     * are partition ids.
-     */
-    private long m_etokens = 0;
-    private int m_etokenCount;
+    private TokenLookupTable m_lookup;
 
     private final HashinatorLiteType m_type;
 
@@ -85,9 +78,7 @@ public class HashinatorLite {
         m_type = type;
 
         if (type == HashinatorLiteType.ELASTIC) {
-            Pair<Long, Integer> p = (cooked ? updateCooked(configBytes) : updateRaw(configBytes));
-            m_etokens = p.getFirst();
-            m_etokenCount = p.getSecond();
+            m_lookup = (cooked ? updateCooked(configBytes) : updateRaw(configBytes));
         }
         else {
             catalogPartitionCount = ByteBuffer.wrap(configBytes).getInt();
@@ -98,20 +89,13 @@ public class HashinatorLite {
         this(HashinatorLiteType.LEGACY, getLegacyConfigureBytes(numPartitions), false);
     }
 
-    @Override
-    public void finalize() {
-        if (m_etokens != 0) {
-            Bits.unsafe.freeMemory(m_etokens);
-        }
-    }
-
     /**
      * Update from optimized (cooked) wire format. token-1 token-2 ... partition-1 partition-2 ... tokens are 4 bytes
      *
      * @param compressedData optimized and compressed config data
      * @return token/partition map
      */
-    private Pair<Long, Integer> updateCooked(byte[] compressedData) {
+    private TokenLookupTable updateCooked(byte[] compressedData) {
         // Uncompress (inflate) the bytes.
         byte[] cookedBytes;
         try {
@@ -128,7 +112,6 @@ public class HashinatorLite {
         if (numEntries <= 0 || cookedBytes.length != 4 + tokensSize + partitionsSize) {
             throw new RuntimeException("Bad elastic hashinator cooked config size.");
         }
-        long tokens = Bits.unsafe.allocateMemory(8 * numEntries);
         ByteBuffer tokenBuf = ByteBuffer.wrap(cookedBytes, 4, tokensSize);
         ByteBuffer partitionBuf = ByteBuffer.wrap(cookedBytes, 4 + tokensSize, partitionsSize);
         int tokensArray[] = new int[numEntries];
@@ -140,17 +123,15 @@ public class HashinatorLite {
             }
         }
 
+        int partitionsArray[] = new int[numEntries];
         int lastToken = Integer.MIN_VALUE;
         for (int ii = 0; ii < numEntries; ii++) {
             int token = tokensArray[ii];
             Preconditions.checkArgument(token >= lastToken);
             lastToken = token;
-            long ptr = tokens + (ii * 8);
-            Bits.unsafe.putInt(ptr, token);
-            final int partitionId = partitionBuf.getInt();
-            Bits.unsafe.putInt(ptr + 4, partitionId);
+            partitionsArray[ii] = partitionBuf.getInt();
         }
-        return Pair.of(tokens, numEntries);
+        return new TokenLookupTable(tokensArray, partitionsArray);
     }
 
     /**
@@ -159,24 +140,23 @@ public class HashinatorLite {
      * @param configBytes raw config data
      * @return token/partition map
      */
-    private Pair<Long, Integer> updateRaw(byte configBytes[]) {
+    private TokenLookupTable updateRaw(byte configBytes[]) {
         ByteBuffer buf = ByteBuffer.wrap(configBytes);
         int numEntries = buf.getInt();
         if (numEntries < 0) {
             throw new RuntimeException("Bad elastic hashinator config");
         }
-        long tokens = Bits.unsafe.allocateMemory(8 * numEntries);
+        int tokens[] = new int[numEntries];
+        int partitions[] = new int[numEntries];
         int lastToken = Integer.MIN_VALUE;
         for (int ii = 0; ii < numEntries; ii++) {
-            long ptr = tokens + (ii * 8);
             final int token = buf.getInt();
             Preconditions.checkArgument(token >= lastToken);
             lastToken = token;
-            Bits.unsafe.putInt(ptr, token);
-            final int partitionId = buf.getInt();
-            Bits.unsafe.putInt(ptr + 4, partitionId);
+            tokens[ii] = token;
+            partitions[ii] = buf.getInt();
         }
-        return Pair.of(tokens, numEntries);
+        return new TokenLookupTable(tokens, partitions);
     }
 
     /**
@@ -214,8 +194,7 @@ public class HashinatorLite {
      * Long.MAX_VALUE
      */
     public int partitionForToken(int hash) {
-        long token = getTokenPtr(hash);
-        return Bits.unsafe.getInt(token + 4);
+        return m_lookup.partitionForToken(hash);
     }
 
     /**
@@ -234,8 +213,7 @@ public class HashinatorLite {
         if (m_type.equals(HashinatorLiteType.ELASTIC)) {
             ByteBuffer buf = ByteBuffer.wrap(bytes);
             final int hash = MurmurHash3.hash3_x64_128(buf, 0, bytes.length, 0);
-            long token = getTokenPtr(hash);
-            return Bits.unsafe.getInt(token + 4);
+            return m_lookup.partitionForToken(hash);
         } else {
             int hashCode = 0;
             int offset = 0;
@@ -246,31 +224,19 @@ public class HashinatorLite {
         }
     }
 
-    private long getTokenPtr(int hash) {
-        int min = 0;
-        int max = m_etokenCount - 1;
-
-        while (min <= max) {
-            int mid = (min + max) >>> 1;
-            final long midPtr = m_etokens + (8 * mid);
-            int midval = Bits.unsafe.getInt(midPtr);
-
-            if (midval < hash) {
-                min = mid + 1;
-            } else if (midval > hash) {
-                max = mid - 1;
-            } else {
-                return midPtr;
-            }
-        }
-        return m_etokens + (min - 1) * 8;
-    }
 
     /**
      * Given an object, map it to a partition. DON'T EVER MAKE ME PUBLIC
      */
     int hashToPartition(VoltType type, Object obj) {
         if (m_type.equals(HashinatorLiteType.ELASTIC)) {
+            // integers hash as their 8 little endian bytes, skip converting them to an array
+            if (obj instanceof Long || obj instanceof Integer || obj instanceof Short || obj instanceof Byte) {
+                if (VoltType.isNullVoltType(obj)) {
+                    return 0;
+                }
+                return partitionForToken(MurmurHash3.hash3_x64_128(((Number)obj).longValue()));
+            }
             return hashinateBytes(valueToBytes(obj));
         }
         // Annoying, legacy hashes numbers and bytes differently, need to preserve that.
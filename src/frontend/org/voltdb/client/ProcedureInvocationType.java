@@ -30,6 +30,12 @@ public enum ProcedureInvocationType {
     ORIGINAL((byte) 0),
     REPLICATED ((byte) (1 << 7));
 
+    /**
+     * Version byte of a frame that packs several invocations, each with its own length
+     * prefix. It isn't a type of invocation and never appears on a single invocation.
+     */
+    public static final byte BULK_INVOCATIONS = (byte) (1 << 6);
+
     private final byte value;
 
     private ProcedureInvocationType(byte val) {
@@ -18,9 +18,12 @@
 package org.voltdb.client;
 
 import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import com.google_voltpatches.common.base.Throwables;
 
@@ -31,6 +34,11 @@ import com.google_voltpatches.common.base.Throwables;
  * send rate to get a good balance of througput and latency on the
  * server.
  *
+ * The limits are kept in {@link Budget}s. The client wide budget applies to every
+ * invocation, and procedures and partitions can be given budgets of their own that
+ * apply on top of it. Senders don't take a lock to get through the limiter, they
+ * claim a permit from a semaphore and a slot from a token bucket with CAS and only
+ * park when a limit has really been reached.
  */
 class RateLimiter {
 
@@ -39,23 +47,156 @@ class RateLimiter {
     final int RECENT_HISTORY_SIZE = 5;
     final int MINIMUM_MOVEMENT = 5;
 
-    //Boolean indicating whether the only thing being tracked is max outstanding
-    protected boolean m_doesAnyTuning = false;
-    protected boolean m_autoTune = false;
-    protected int m_targetTxnsPerSecond = Integer.MAX_VALUE;
-    //protected int m_targetTxnsPerBlock = Integer.MAX_VALUE;
-    protected int m_latencyTarget = 5;
+    // Sends that can go back to back after the sender has been idle, as a time at the target rate
+    static final long BURST_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
 
-    protected int m_currentBlockSendCount = 0;
-    protected int m_currentBlockRecvSuccessCount = 0;
-    protected int m_outstandingTxns = 0;
-    protected Semaphore m_outstandingTxnsSemaphore = new Semaphore(10);
+    /**
+     * A cap on outstanding transactions and on the rate transactions are sent.
+     * Either can be changed while senders are waiting on it.
+     */
+    static class Budget {
+        private final ResizableSemaphore m_outstanding;
+        private volatile int m_maxOutstanding;
+        private volatile int m_txnsPerSecond;
+        // Nanoseconds between sends at the target rate, 0 if the rate isn't limited
+        private volatile long m_intervalNanos;
+        // Token bucket kept as the theoretical time of the next send (GCRA), it is
+        // never allowed to fall more than BURST_NANOS behind the current time
+        private final AtomicLong m_nextSendNanos = new AtomicLong(System.nanoTime());
+
+        Budget(int txnsPerSec, int maxOutstanding) {
+            m_outstanding = new ResizableSemaphore(maxOutstanding);
+            m_maxOutstanding = maxOutstanding;
+            setRate(txnsPerSec);
+        }
+
+        synchronized void setLimits(int txnsPerSec, int maxOutstanding) {
+            setRate(txnsPerSec);
+            setMaxOutstanding(maxOutstanding);
+        }
+
+        synchronized void setMaxOutstanding(int maxOutstanding) {
+            m_outstanding.resize(maxOutstanding - m_maxOutstanding);
+            m_maxOutstanding = maxOutstanding;
+        }
+
+        private void setRate(int txnsPerSec) {
+            m_txnsPerSecond = txnsPerSec;
+            /*
+             * If the rate limit is some reasonably low value then go through the effort
+             * of rate limiting
+             */
+            m_intervalNanos = txnsPerSec < Integer.MAX_VALUE / 2 ? TimeUnit.SECONDS.toNanos(1) / txnsPerSec : 0;
+        }
+
+        int getMaxOutstanding() {
+            return m_maxOutstanding;
+        }
+
+        int getTxnsPerSecond() {
+            return m_txnsPerSecond;
+        }
+
+        int getOutstanding() {
+            return m_maxOutstanding - m_outstanding.availablePermits();
+        }
+
+        /**
+         * Take a permit and a send slot, waiting no more than timeoutNanos past startNanos.
+         * Nothing is held if a TimeoutException is thrown.
+         *
+         * @return The time the caller may send at, nowNanos if it didn't have to wait
+         */
+        long acquire(long nowNanos, long startNanos, long timeoutNanos) throws TimeoutException {
+            if (!m_outstanding.tryAcquire()) {
+                try {
+                    // times are only compared as differences, nanoTime can be negative
+                    final long remainingNanos = timeoutNanos - (nowNanos - startNanos);
+                    if (!m_outstanding.tryAcquire(remainingNanos, TimeUnit.NANOSECONDS)) {
+                        throw new TimeoutException();
+                    }
+                } catch (InterruptedException e) {
+                    Throwables.propagate(e);
+                }
+                nowNanos = System.nanoTime();
+            }
+
+            final long intervalNanos = m_intervalNanos;
+            if (intervalNanos == 0) {
+                return nowNanos;
+            }
+
+            long sendNanos;
+            while (true) {
+                final long next = m_nextSendNanos.get();
+                sendNanos = Math.max(next, nowNanos - BURST_NANOS);
+                if (sendNanos - startNanos > timeoutNanos) {
+                    // Waiting for a slot would take past the deadline, leave the slot for someone else
+                    m_outstanding.release();
+                    throw new TimeoutException();
+                }
+                if (m_nextSendNanos.compareAndSet(next, sendNanos + intervalNanos)) {
+                    break;
+                }
+            }
+
+            // The slot is ours, wait for it to come up
+            while (sendNanos - nowNanos > 0) {
+                LockSupport.parkNanos(sendNanos - nowNanos);
+                nowNanos = System.nanoTime();
+            }
+            return nowNanos;
+        }
 
-    protected int m_maxOutstandingTxns = 10;
+        void release() {
+            m_outstanding.release();
+        }
 
-    protected long m_currentBlockTimestamp = -1;
+        /**
+         * Give back a permit and send slot from {@link #acquire} that weren't used because
+         * another budget timed out. Moving the theoretical send time back one interval
+         * leaves the slot to the next sender, so a failed send doesn't use up rate.
+         */
+        void refund() {
+            final long intervalNanos = m_intervalNanos;
+            if (intervalNanos != 0) {
+                m_nextSendNanos.addAndGet(-intervalNanos);
+            }
+            m_outstanding.release();
+        }
+    }
 
-    protected long m_currentBlockTotalInternalLatency = 0;
+    /*
+     * Semaphore with a permit count that can grow and shrink while permits are held.
+     * Shrinking below the number held leaves it negative until enough are released.
+     */
+    private static class ResizableSemaphore extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        void resize(int delta) {
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+        }
+    }
+
+    protected volatile boolean m_autoTune = false;
+    protected volatile int m_latencyTarget = 5;
+
+    protected final Budget m_budget = new Budget(Integer.MAX_VALUE, 10);
+    protected final ConcurrentHashMap<String, Budget> m_procedureBudgets = new ConcurrentHashMap<String, Budget>();
+    protected final ConcurrentHashMap<Integer, Budget> m_partitionBudgets = new ConcurrentHashMap<Integer, Budget>();
+
+    // Collected for auto tuning, the block is only switched under the monitor
+    protected volatile long m_currentBlockTimestamp = -1;
+    protected final AtomicLong m_currentBlockRecvSuccessCount = new AtomicLong();
+    protected final AtomicLong m_currentBlockTotalInternalLatency = new AtomicLong();
 
     protected ArrayDeque<Double> m_prevInternalLatencyAvgs = new ArrayDeque<Double>();
 
@@ -72,53 +213,56 @@ class RateLimiter {
             mediumTermLatency /= m_prevInternalLatencyAvgs.size();
         }
 
+        int maxOutstandingTxns = m_budget.getMaxOutstanding();
         if ((mediumTermLatency > m_latencyTarget) && (recentLatency > m_latencyTarget)) {
-            m_maxOutstandingTxns -= Math.max(0.1 * m_maxOutstandingTxns, MINIMUM_MOVEMENT);
+            maxOutstandingTxns -= Math.max(0.1 * maxOutstandingTxns, MINIMUM_MOVEMENT);
         }
         else if ((mediumTermLatency < m_latencyTarget) && (recentLatency > m_latencyTarget)) {
-            --m_maxOutstandingTxns;
+            --maxOutstandingTxns;
         }
         else if ((mediumTermLatency > m_latencyTarget) && (recentLatency < m_latencyTarget)) {
-            m_maxOutstandingTxns++;
+            maxOutstandingTxns++;
         }
         else { // if ((mediumTermLatency < m_latencyTarget) && (recentLatency < m_latencyTarget)) {
-            m_maxOutstandingTxns += Math.max(0.1 * m_maxOutstandingTxns, MINIMUM_MOVEMENT);
+            maxOutstandingTxns += Math.max(0.1 * maxOutstandingTxns, MINIMUM_MOVEMENT);
         }
 
         // don't let this go to 0, latency be damned
-        if (m_maxOutstandingTxns <= 0) {
-            m_maxOutstandingTxns = 1;
+        if (maxOutstandingTxns <= 0) {
+            maxOutstandingTxns = 1;
         }
+        m_budget.setMaxOutstanding(maxOutstandingTxns);
     }
 
     protected void ensureCurrentBlockIsKosher(long timestamp) {
-        long thisBlock = timestamp - (timestamp % BLOCK_SIZE);
-
-        // handle first time initialization
-        if (m_currentBlockTimestamp == -1) {
-            m_currentBlockTimestamp = thisBlock;
-        }
+        final long thisBlock = timestamp - (timestamp % BLOCK_SIZE);
 
-        // handle time moving backwards (a bit)
-        if (thisBlock < m_currentBlockTimestamp) {
-            thisBlock = m_currentBlockTimestamp;
+        // handle time moving backwards (a bit), senders only get here once per block
+        if (thisBlock <= m_currentBlockTimestamp) {
+            return;
         }
 
-        // check for new block
-        if (thisBlock > m_currentBlockTimestamp) {
-            // need to deal with 100ms skips here TODO
-            m_currentBlockTimestamp = thisBlock;
-            m_prevInternalLatencyAvgs.addFirst(
-                    m_currentBlockTotalInternalLatency / (double) m_currentBlockRecvSuccessCount);
-            while (m_prevInternalLatencyAvgs.size() > HISTORY_SIZE) {
-                m_prevInternalLatencyAvgs.pollLast();
+        synchronized (this) {
+            // handle first time initialization
+            if (m_currentBlockTimestamp == -1) {
+                m_currentBlockTimestamp = thisBlock;
+                return;
             }
-            m_currentBlockSendCount = 0;
-            m_currentBlockRecvSuccessCount = 0;
-            m_currentBlockTotalInternalLatency = 0;
 
-            if (m_autoTune) {
-                autoTuneTargetFromHistory();
+            // check for new block, another thread may have switched it already
+            if (thisBlock > m_currentBlockTimestamp) {
+                // need to deal with 100ms skips here TODO
+                m_currentBlockTimestamp = thisBlock;
+                m_prevInternalLatencyAvgs.addFirst(
+                        m_currentBlockTotalInternalLatency.getAndSet(0) /
+                        (double) m_currentBlockRecvSuccessCount.getAndSet(0));
+                while (m_prevInternalLatencyAvgs.size() > HISTORY_SIZE) {
+                    m_prevInternalLatencyAvgs.pollLast();
+                }
+
+                if (m_autoTune) {
+                    autoTuneTargetFromHistory();
+                }
             }
         }
     }
@@ -128,28 +272,57 @@ class RateLimiter {
      */
     synchronized void enableAutoTuning(int latencyTarget) {
         m_autoTune = true;
-        m_doesAnyTuning = true;
-        m_targetTxnsPerSecond = Integer.MAX_VALUE;
-        m_maxOutstandingTxns = 20;
         m_latencyTarget = latencyTarget;
+        m_budget.setLimits(Integer.MAX_VALUE, 20);
     }
 
-    /**
-     * May not be reflected until the next 100ms.
-     */
     synchronized void setLimits(int txnsPerSec, int maxOutstanding) {
         m_autoTune = false;
-        /*
-         * If the rate limit is some reasonably low value then go through the effort
-         * of rate limiting
-         */
-        if (txnsPerSec < Integer.MAX_VALUE / 2) {
-            m_doesAnyTuning = true;
+        m_budget.setLimits(txnsPerSec, maxOutstanding);
+    }
+
+    /**
+     * Limit the invocations of one procedure on top of the client wide limits.
+     * Takes effect immediately.
+     */
+    void setProcedureLimits(String procName, int txnsPerSec, int maxOutstanding) {
+        setLimits(m_procedureBudgets, procName, txnsPerSec, maxOutstanding);
+    }
+
+    /**
+     * Limit the invocations routed to one partition on top of the client wide limits.
+     * Takes effect immediately.
+     */
+    void setPartitionLimits(int partitionId, int txnsPerSec, int maxOutstanding) {
+        setLimits(m_partitionBudgets, partitionId, txnsPerSec, maxOutstanding);
+    }
+
+    private static <K> void setLimits(ConcurrentHashMap<K, Budget> budgets, K key, int txnsPerSec, int maxOutstanding) {
+        // Budgets are never removed, a transaction returns its permits to the budget it took them from
+        Budget budget = budgets.get(key);
+        if (budget == null) {
+            budget = new Budget(txnsPerSec, maxOutstanding);
+            Budget existing = budgets.putIfAbsent(key, budget);
+            if (existing == null) {
+                return;
+            }
+            budget = existing;
         }
-        m_targetTxnsPerSecond = txnsPerSec;
-        m_maxOutstandingTxns = maxOutstanding;
-        m_outstandingTxnsSemaphore.drainPermits();
-        m_outstandingTxnsSemaphore.release(maxOutstanding);
+        budget.setLimits(txnsPerSec, maxOutstanding);
+    }
+
+    /**
+     * @return The budget for the procedure, or null if it only has the client wide limits
+     */
+    Budget getProcedureBudget(String procName) {
+        return m_procedureBudgets.isEmpty() ? null : m_procedureBudgets.get(procName);
+    }
+
+    /**
+     * @return The budget for the partition, or null if it only has the client wide limits
+     */
+    Budget getPartitionBudget(int partitionId) {
+        return (partitionId < 0 || m_partitionBudgets.isEmpty()) ? null : m_partitionBudgets.get(partitionId);
     }
 
     /**
@@ -157,10 +330,10 @@ class RateLimiter {
      * @return A length-2 array of integers representing max throughput/sec and
      * max outstanding txns.
      */
-    synchronized int[] getLimits() {
+    int[] getLimits() {
         int[] limits = new int[2];
-        limits[0] = m_targetTxnsPerSecond;
-        limits[1] = m_maxOutstandingTxns;
+        limits[0] = m_budget.getTxnsPerSecond();
+        limits[1] = m_budget.getMaxOutstanding();
         return limits;
     }
 
@@ -171,19 +344,29 @@ class RateLimiter {
      * @param ignoreBackpressure Don't return a permit for backpressure purposes since none was ever taken
      */
     void transactionResponseReceived(long timestampNanos, int internalLatency, boolean ignoreBackpressure) {
-        if (m_doesAnyTuning) {
-            synchronized (this) {
-                ensureCurrentBlockIsKosher(TimeUnit.NANOSECONDS.toMillis(timestampNanos));
-                --m_outstandingTxns;
-                assert(m_outstandingTxns >= 0);
-                if (internalLatency != -1) {
-                    ++m_currentBlockRecvSuccessCount;
-                    m_currentBlockTotalInternalLatency += internalLatency;
-                }
+        transactionResponseReceived(timestampNanos, internalLatency, ignoreBackpressure, null, null);
+    }
+
+    /**
+     * @param procedureBudget The procedure budget the transaction was sent under, or null
+     * @param partitionBudget The partition budget the transaction was sent under, or null
+     */
+    void transactionResponseReceived(long timestampNanos, int internalLatency, boolean ignoreBackpressure,
+            Budget procedureBudget, Budget partitionBudget) {
+        if (m_autoTune) {
+            ensureCurrentBlockIsKosher(TimeUnit.NANOSECONDS.toMillis(timestampNanos));
+            if (internalLatency != -1) {
+                m_currentBlockRecvSuccessCount.incrementAndGet();
+                m_currentBlockTotalInternalLatency.addAndGet(internalLatency);
             }
-        } else {
-            if (ignoreBackpressure) return;
-            m_outstandingTxnsSemaphore.release();
+        }
+        if (ignoreBackpressure) return;
+        m_budget.release();
+        if (procedureBudget != null) {
+            procedureBudget.release();
+        }
+        if (partitionBudget != null) {
+            partitionBudget.release();
         }
     }
 
@@ -195,73 +378,54 @@ class RateLimiter {
      * @return The time as measured when the call returns.
      */
     long sendTxnWithOptionalBlockAndReturnCurrentTime(long timestampNanos, long timeoutNanos, boolean ignoreBackpressure) throws TimeoutException {
-        if (m_doesAnyTuning) {
-            long timestamp = TimeUnit.NANOSECONDS.toMillis(timestampNanos);
-            while (true) {
-                synchronized(this) {
-                    // switch to a new block if 100ms has passed
-                    // possibly compute a new target rate
-                    ensureCurrentBlockIsKosher(timestamp);
-
-                    assert((timestamp - m_currentBlockTimestamp) <= BLOCK_SIZE);
-
-                    // don't let the time be before the start of the current block
-                    // also ensure faketime - m_currentBlockTimestamp is positive
-                    long faketime = timestamp < m_currentBlockTimestamp ? m_currentBlockTimestamp : timestamp;
-
-                    long targetTxnsPerBlock = m_targetTxnsPerSecond / (1000 / BLOCK_SIZE);
-
-                    // compute the percentage of the current 100ms block that has passed
-                    double expectedTxnsSent =
-                            targetTxnsPerBlock * (faketime - m_currentBlockTimestamp + 1.0) / BLOCK_SIZE;
-                    expectedTxnsSent = Math.ceil(expectedTxnsSent);
-
-                    assert(expectedTxnsSent <= targetTxnsPerBlock); // stupid fp math
-                    assert((expectedTxnsSent >= 1.0) || (targetTxnsPerBlock == 0));
-
-                    // if the rate is under target, no problems
-                    if (((m_currentBlockSendCount < expectedTxnsSent) &&
-                         (m_outstandingTxns < m_maxOutstandingTxns)) ||
-                        (ignoreBackpressure == true)) {
-
-                        // bookkeeping
-                        ++m_currentBlockSendCount;
-                        ++m_outstandingTxns;
-
-                        // exit the while loop
-                        break;
-                    }
-                }
+        return sendTxnWithOptionalBlockAndReturnCurrentTime(timestampNanos, timeoutNanos, ignoreBackpressure, null, null);
+    }
 
-                // if the rate is above target, pause for the smallest time possible
-                try { Thread.sleep(1); } catch (InterruptedException e) {}
-                timestampNanos = System.nanoTime();
-                timestamp = TimeUnit.NANOSECONDS.toMillis(timestampNanos);
+    /**
+     * Wait for the client wide budget and the procedure and partition budgets, if any.
+     * If a TimeoutException is thrown no permits or send slots are held and no response
+     * should be reported to {@link #transactionResponseReceived}.
+     *
+     * @param procedureBudget The procedure budget from {@link #getProcedureBudget(String)}, or null
+     * @param partitionBudget The partition budget from {@link #getPartitionBudget(int)}, or null
+     */
+    long sendTxnWithOptionalBlockAndReturnCurrentTime(long timestampNanos, long timeoutNanos, boolean ignoreBackpressure,
+            Budget procedureBudget, Budget partitionBudget) throws TimeoutException {
+        if (ignoreBackpressure) return timestampNanos;
+
+        // The narrower budgets are taken first so a sender waiting on a busy procedure
+        // or partition doesn't hold a client wide permit that others could use
+        long nowNanos = timestampNanos;
+        if (procedureBudget != null) {
+            nowNanos = procedureBudget.acquire(nowNanos, timestampNanos, timeoutNanos);
+        }
+        try {
+            if (partitionBudget != null) {
+                nowNanos = partitionBudget.acquire(nowNanos, timestampNanos, timeoutNanos);
             }
-        } else {
-            if (ignoreBackpressure) return timestampNanos;
-            boolean acquired = m_outstandingTxnsSemaphore.tryAcquire();
-
-            if (!acquired) {
-                try {
-                    if (!m_outstandingTxnsSemaphore.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS)) {
-                        throw new TimeoutException();
-                    }
-                } catch (InterruptedException e) {
-                    Throwables.propagate(e);
+            try {
+                nowNanos = m_budget.acquire(nowNanos, timestampNanos, timeoutNanos);
+            } catch (TimeoutException e) {
+                if (partitionBudget != null) {
+                    partitionBudget.refund();
                 }
-                return System.nanoTime();
+                throw e;
+            }
+        } catch (TimeoutException e) {
+            if (procedureBudget != null) {
+                procedureBudget.refund();
             }
+            throw e;
         }
 
-        // this time may have changed if this call blocked during a sleep
-        return timestampNanos;
+        // this time may have changed if this call blocked
+        return nowNanos;
     }
 
     public synchronized void debug() {
         System.out.printf("Target throughput/s is %d and max outstanding txns is %d\n",
-                m_targetTxnsPerSecond, m_maxOutstandingTxns);
+                m_budget.getTxnsPerSecond(), m_budget.getMaxOutstanding());
         System.out.printf("Current outstanding is %d and recent internal latency is %.2f\n",
-                m_outstandingTxns, m_prevInternalLatencyAvgs.peekFirst());
+                m_budget.getOutstanding(), m_prevInternalLatencyAvgs.peekFirst());
     }
 }
@@ -0,0 +1,250 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+/**
+ * Hashed timing wheel used to expire outstanding procedure calls.
+ *
+ * Timeouts are intrusive: the object being timed out extends {@link Timeout} and carries
+ * its own list links, so scheduling and cancelling are O(1) and allocate nothing.
+ * Each bucket is a circular doubly linked list guarded by the bucket's monitor, which spreads
+ * contention between sender threads (schedule), network threads (cancel) and the sweeper.
+ *
+ * Time is divided into ticks of a configurable length. A timeout is placed in the bucket for
+ * the tick its deadline falls in and stays there across revolutions of the wheel until that
+ * tick is swept, so deadlines further out than one revolution are supported. Deadlines are
+ * rounded up to the next tick, so a timeout never fires early and fires at most one tick late
+ * (plus sweeper scheduling delay).
+ *
+ * {@link #advance(long)} must only be called from a single thread.
+ */
+class TimeoutWheel {
+
+    /*
+     * Deadlines further out than this are treated as "never". Avoids overflow when the
+     * timeout is Long.MAX_VALUE, which is how an infinite procedure timeout is configured.
+     */
+    static final long MAX_TIMEOUT_NANOS = Long.MAX_VALUE / 4;
+
+    static abstract class Timeout {
+        // Links and deadline are guarded by the monitor of m_bucket
+        Timeout m_prev;
+        Timeout m_next;
+        long m_deadlineTick;
+        // The bucket this timeout is linked into, null when not scheduled
+        volatile Bucket m_bucket;
+
+        /**
+         * Invoked from the sweeping thread, outside of any wheel lock, once the
+         * deadline has passed and the timeout was not cancelled first.
+         */
+        protected abstract void expire(long nowNanos);
+    }
+
+    /*
+     * A bucket is the sentinel of its own circular list and also keeps the
+     * counters for the operations done while holding its lock
+     */
+    private static final class Bucket extends Timeout {
+        long m_scheduled = 0;
+        long m_cancelled = 0;
+
+        Bucket() {
+            m_prev = this;
+            m_next = this;
+        }
+
+        @Override
+        protected void expire(long nowNanos) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private final long m_tickNanos;
+    private final long m_originNanos;
+    private final Bucket m_buckets[];
+    private final int m_mask;
+
+    // Last tick that was swept, only written by the sweeping thread before it locks the buckets it sweeps
+    private volatile long m_sweptTick;
+
+    // Only written by the sweeping thread
+    private volatile long m_expired = 0;
+    private volatile long m_sweepNanos = 0;
+
+    /**
+     * @param tickNanos Resolution of the wheel
+     * @param wheelSize Number of buckets, rounded up to a power of two
+     * @param nowNanos Current System.nanoTime() which becomes tick 0
+     */
+    TimeoutWheel(long tickNanos, int wheelSize, long nowNanos) {
+        if (tickNanos < 1) {
+            throw new IllegalArgumentException("Tick must be at least 1 nanosecond, " + tickNanos + " was specified");
+        }
+        if (wheelSize < 1 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid wheel size " + wheelSize);
+        }
+        int size = Integer.highestOneBit(wheelSize);
+        if (size < wheelSize) {
+            size <<= 1;
+        }
+        m_tickNanos = tickNanos;
+        m_originNanos = nowNanos;
+        m_buckets = new Bucket[size];
+        for (int ii = 0; ii < size; ii++) {
+            m_buckets[ii] = new Bucket();
+        }
+        m_mask = size - 1;
+        m_sweptTick = 0;
+    }
+
+    long getTickNanos() {
+        return m_tickNanos;
+    }
+
+    /**
+     * Schedule a timeout to expire timeoutNanos after nowNanos. A timeout beyond
+     * {@link #MAX_TIMEOUT_NANOS} is never scheduled.
+     *
+     * @return true if the timeout was scheduled
+     */
+    boolean schedule(Timeout timeout, long nowNanos, long timeoutNanos) {
+        assert(timeout.m_bucket == null);
+        if (timeoutNanos >= MAX_TIMEOUT_NANOS) {
+            return false;
+        }
+        // Round up so a timeout never fires before its deadline
+        final long deadlineTick =
+                (Math.max(0, nowNanos + timeoutNanos - m_originNanos) + m_tickNanos - 1) / m_tickNanos;
+        long tick = Math.max(deadlineTick, m_sweptTick + 1);
+        while (true) {
+            final Bucket bucket = m_buckets[(int)(tick & m_mask)];
+            synchronized (bucket) {
+                /*
+                 * The sweeper publishes m_sweptTick before it locks any of the buckets it
+                 * sweeps, so if the tick is still ahead of it here the sweep covering that
+                 * tick will take this bucket's lock after us and see the timeout.
+                 */
+                if (tick > m_sweptTick) {
+                    timeout.m_deadlineTick = tick;
+                    timeout.m_prev = bucket.m_prev;
+                    timeout.m_next = bucket;
+                    bucket.m_prev.m_next = timeout;
+                    bucket.m_prev = timeout;
+                    timeout.m_bucket = bucket;
+                    bucket.m_scheduled++;
+                    return true;
+                }
+            }
+            tick = m_sweptTick + 1;
+        }
+    }
+
+    /**
+     * Cancel a scheduled timeout. Safe to call on a timeout that was never scheduled,
+     * has already expired or was already cancelled.
+     *
+     * @return true if this call removed the timeout from the wheel
+     */
+    boolean cancel(Timeout timeout) {
+        final Bucket bucket = timeout.m_bucket;
+        if (bucket == null) {
+            return false;
+        }
+        synchronized (bucket) {
+            if (timeout.m_bucket != bucket) {
+                return false;
+            }
+            unlink(timeout);
+            bucket.m_cancelled++;
+        }
+        return true;
+    }
+
+    /**
+     * Sweep up to and including the tick nowNanos falls in and expire the timeouts
+     * whose deadline has passed. However far behind the sweep is, for example after
+     * a GC pause, each bucket is visited at most once instead of once per missed tick.
+     */
+    void advance(long nowNanos) {
+        final long targetTick = Math.max(0, nowNanos - m_originNanos) / m_tickNanos;
+        final long fromTick = m_sweptTick + 1;
+        if (targetTick < fromTick) {
+            return;
+        }
+        final long startNanos = System.nanoTime();
+        // Timeouts scheduled from here on land after targetTick, see schedule()
+        m_sweptTick = targetTick;
+        // After a revolution every bucket has been visited
+        final long lastTick = Math.min(targetTick, fromTick + m_buckets.length - 1);
+        long expiredCount = 0;
+        for (long tick = fromTick; tick <= lastTick; tick++) {
+            final Bucket bucket = m_buckets[(int)(tick & m_mask)];
+            // Expired timeouts are chained through m_next once unlinked, no allocation needed
+            Timeout expired = null;
+            synchronized (bucket) {
+                Timeout t = bucket.m_next;
+                while (t != bucket) {
+                    final Timeout next = t.m_next;
+                    if (t.m_deadlineTick <= targetTick) {
+                        unlink(t);
+                        t.m_next = expired;
+                        expired = t;
+                    }
+                    t = next;
+                }
+            }
+            while (expired != null) {
+                final Timeout t = expired;
+                expired = t.m_next;
+                t.m_next = null;
+                expiredCount++;
+                try {
+                    t.expire(nowNanos);
+                } catch (Throwable e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        m_expired += expiredCount;
+        m_sweepNanos += System.nanoTime() - startNanos;
+    }
+
+    private static void unlink(Timeout timeout) {
+        timeout.m_prev.m_next = timeout.m_next;
+        timeout.m_next.m_prev = timeout.m_prev;
+        timeout.m_prev = null;
+        timeout.m_next = null;
+        timeout.m_bucket = null;
+    }
+
+    /**
+     * Snapshot of the wheel's bookkeeping counters
+     */
+    ClientTimeoutStats getStats() {
+        long scheduled = 0;
+        long cancelled = 0;
+        for (Bucket bucket : m_buckets) {
+            synchronized (bucket) {
+                scheduled += bucket.m_scheduled;
+                cancelled += bucket.m_cancelled;
+            }
+        }
+        return new ClientTimeoutStats(m_tickNanos, scheduled, cancelled, m_expired, m_sweepNanos);
+    }
+}
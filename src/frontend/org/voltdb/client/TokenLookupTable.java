@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import org.voltcore.utils.Bits;
+
+import com.google_voltpatches.common.base.Preconditions;
+
+/**
+ * Maps a hash to the partition owning it on an elastic hashinator ring. The ring
+ * is split into a power of two number of equal ranges, one to two per token, and
+ * for each range the table keeps the index of the token owning its first value.
+ * A lookup reads the entries of its range and the range after it, and only
+ * searches the few tokens between them when they differ, instead of binary
+ * searching the whole ring.
+ *
+ * Shared by ElasticHashinator on the server and HashinatorLite on the client.
+ */
+public final class TokenLookupTable {
+    // 64k ranges, 256KB of ranges at most
+    private static final int MAX_RANGE_BITS = 16;
+
+    private final int m_tokens[];
+    private final int m_partitions[];
+    private final int m_shift;
+    /*
+     * Index of the token owning the first value of each range, in unsigned order of
+     * the ranges, plus one past the last range. -1 if that value precedes every token.
+     */
+    private final int m_ranges[];
+
+    /**
+     * @param tokens Tokens on the ring in ascending order
+     * @param partitions The partition of each token
+     */
+    public TokenLookupTable(int tokens[], int partitions[]) {
+        Preconditions.checkArgument(tokens.length == partitions.length);
+        m_tokens = tokens;
+        m_partitions = partitions;
+
+        final int bits = Math.max(1, Math.min(MAX_RANGE_BITS, 32 - Integer.numberOfLeadingZeros(tokens.length)));
+        m_shift = 32 - bits;
+        m_ranges = new int[(1 << bits) + 1];
+        int index = -1;
+        for (int range = 0; range < 1 << bits; range++) {
+            final int first = (range << m_shift) ^ Integer.MIN_VALUE;
+            while (index + 1 < tokens.length && tokens[index + 1] <= first) {
+                index++;
+            }
+            m_ranges[range] = index;
+        }
+        m_ranges[1 << bits] = tokens.length - 1;
+    }
+
+    /**
+     * Copy a ring stored off heap as token/partition pairs of ints
+     */
+    public static TokenLookupTable fromPointer(long tokens, int tokenCount) {
+        final int tokenArray[] = new int[tokenCount];
+        final int partitionArray[] = new int[tokenCount];
+        for (int ii = 0; ii < tokenCount; ii++) {
+            final long ptr = tokens + (ii * 8);
+            tokenArray[ii] = Bits.unsafe.getInt(ptr);
+            partitionArray[ii] = Bits.unsafe.getInt(ptr + 4);
+        }
+        return new TokenLookupTable(tokenArray, partitionArray);
+    }
+
+    /**
+     * For a given a value hash, find the partition of the first token <= the value hash,
+     * or if the value hash is < the first token in the ring, of the last token in the ring.
+     */
+    public int partitionForToken(int hash) {
+        final int range = (hash ^ Integer.MIN_VALUE) >>> m_shift;
+        int min = m_ranges[range];
+        int max = m_ranges[range + 1];
+        // the owner is somewhere from the owner of this range's first value to the next range's
+        while (min < max) {
+            final int mid = (min + max + 1) >>> 1;
+            if (m_tokens[mid] <= hash) {
+                min = mid;
+            } else {
+                max = mid - 1;
+            }
+        }
+        return m_partitions[min < 0 ? m_tokens.length - 1 : min];
+    }
+
+    public int getTokenCount() {
+        return m_tokens.length;
+    }
+}
@@ -0,0 +1,84 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.dtxn;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.HistogramData;
+import org.voltcore.utils.CompressionStrategySnappy;
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
+
+/**
+ * Latency of each transaction stage traced by {@link StageLatencyTracer} on this host,
+ * one row per stage, in microseconds. The compressed histogram is included so the
+ * stages can be merged across hosts.
+ */
+public class StageLatencyStats extends SiteStatsSource {
+    private final Map<Stage, AbstractHistogram> m_snapshot = new EnumMap<Stage, AbstractHistogram>(Stage.class);
+
+    public StageLatencyStats(long siteId) {
+        super(siteId, false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("STAGE", VoltType.STRING));
+        columns.add(new ColumnInfo("COUNT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG", VoltType.FLOAT));
+        columns.add(new ColumnInfo("P50", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P99", VoltType.BIGINT));
+        columns.add(new ColumnInfo("P999", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX", VoltType.BIGINT));
+        columns.add(new ColumnInfo("HISTOGRAM", VoltType.VARBINARY));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        final Stage stage = (Stage)rowKey;
+        final AbstractHistogram histogram = m_snapshot.get(stage);
+        final HistogramData data = histogram.getHistogramData();
+        final long count = data.getTotalCount();
+        rowValues[columnNameToIndex.get("STAGE")] = stage.name();
+        rowValues[columnNameToIndex.get("COUNT")] = count;
+        rowValues[columnNameToIndex.get("AVG")] = count == 0 ? 0.0 : data.getMean();
+        rowValues[columnNameToIndex.get("P50")] = count == 0 ? 0 : data.getValueAtPercentile(50.0);
+        rowValues[columnNameToIndex.get("P99")] = count == 0 ? 0 : data.getValueAtPercentile(99.0);
+        rowValues[columnNameToIndex.get("P999")] = count == 0 ? 0 : data.getValueAtPercentile(99.9);
+        rowValues[columnNameToIndex.get("MAX")] = count == 0 ? 0 : data.getMaxValue();
+        rowValues[columnNameToIndex.get("HISTOGRAM")] = histogram.toCompressedBytes(CompressionStrategySnappy.INSTANCE);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_snapshot.clear();
+        for (Stage stage : Stage.values()) {
+            m_snapshot.put(stage, StageLatencyTracer.copy(stage, interval));
+        }
+        return Arrays.<Object>asList((Object[])Stage.values()).iterator();
+    }
+}
@@ -0,0 +1,92 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.dtxn;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+
+/**
+ * Always on, sampled latency of each stage a transaction passes through on its way
+ * through the client interface and the iv2 pipeline. A stage calls {@link #start()}
+ * where it begins and {@link #record(Stage, long)} where it ends; roughly one in
+ * TXN_STAGE_SAMPLE_RATE starts (64 by default, 0 turns tracing off) gets a timestamp
+ * and the rest cost a random number. Stages are sampled independently, each stage is
+ * timed entirely on one host and the durations go into a histogram per stage.
+ */
+public class StageLatencyTracer {
+
+    public static enum Stage {
+        RECEIVE,     // client interface, invocation read until handed to the initiator
+        SEQUENCE,    // initiator mailbox, arrival until the scheduler has queued the task
+        DURABILITY,  // command log, logged until durable
+        QUEUE,       // site task queue, offered until the site starts it
+        EXECUTE,     // EE, one batch of plan fragments
+        RESPONSE     // client interface, response arrival until serialized for the client
+    }
+
+    static final int SAMPLE_RATE = Integer.getInteger("TXN_STAGE_SAMPLE_RATE", 64);
+
+    private static final AbstractHistogram s_totals[] = new AbstractHistogram[Stage.values().length];
+    private static final AbstractHistogram s_intervals[] = new AbstractHistogram[Stage.values().length];
+    static {
+        for (int ii = 0; ii < s_totals.length; ii++) {
+            s_totals[ii] = LatencyStats.constructHistogram(true);
+            s_intervals[ii] = LatencyStats.constructHistogram(true);
+        }
+    }
+
+    /**
+     * @return The start time in nanoseconds if this start is sampled, 0 otherwise
+     */
+    public static long start() {
+        if (SAMPLE_RATE <= 0 || (SAMPLE_RATE > 1 && ThreadLocalRandom.current().nextInt(SAMPLE_RATE) != 0)) {
+            return 0;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time since a sampled start, does nothing for starts that weren't sampled.
+     */
+    public static void record(Stage stage, long startNanos) {
+        if (startNanos == 0) {
+            return;
+        }
+        final AbstractHistogram total = s_totals[stage.ordinal()];
+        final long micros = Math.min(Math.max(0, (System.nanoTime() - startNanos) / 1000),
+                                     total.getHighestTrackableValue());
+        total.recordValue(micros);
+        s_intervals[stage.ordinal()].recordValue(micros);
+    }
+
+    /**
+     * Copy of the durations recorded for a stage since startup, or since the last
+     * interval copy if interval is true. Values recorded while an interval copy is
+     * taken may be missed by it.
+     */
+    static AbstractHistogram copy(Stage stage, boolean interval) {
+        if (interval) {
+            final AbstractHistogram histogram = s_intervals[stage.ordinal()];
+            final AbstractHistogram copy = histogram.copy();
+            histogram.reset();
+            return copy;
+        }
+        return s_totals[stage.ordinal()].copy();
+    }
+}
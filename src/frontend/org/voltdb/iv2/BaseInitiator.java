@@ -106,6 +106,11 @@ public abstract class BaseInitiator implements Initiator
         agent.registerStatsSource(StatsSelector.STARVATION,
                                   getInitiatorHSId(),
                                   st);
+        RepairLogStats rls = new RepairLogStats(getInitiatorHSId());
+        m_repairLog.setStats(rls);
+        agent.registerStatsSource(StatsSelector.REPAIRLOG,
+                                  getInitiatorHSId(),
+                                  rls);
 
         String partitionString = " ";
         if (m_partitionId != -1) {
@@ -17,14 +17,18 @@
 
 package org.voltdb.iv2;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import org.apache.hadoop_voltpatches.util.PureJavaCrc32C;
+import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.RateLimitedLogger;
 import org.voltdb.ClientResponseImpl;
 import org.voltdb.VoltTable;
 import org.voltdb.messaging.FragmentResponseMessage;
@@ -33,6 +37,16 @@ import org.voltdb.messaging.InitiateResponseMessage;
 /**
  * Track responses from each partition. This should be subsumed
  * by proper response tracking for the usual replication case?
+ *
+ * The first real response is kept as the one to send on. Every later
+ * response is checked against it by its SQL hash and by a CRC of its
+ * result tables, then dropped, so only one copy of the results is held
+ * per transaction however many replicas there are.
+ *
+ * Responses with the same SQL hash are interchangeable, so which one is
+ * sent doesn't matter. Keeping the first is what lets each later response be compared against a fixed
+ * copy and released on arrival. Keeping the last instead would mean holding
+ * and hashing every new arrival before dropping the one it replaces.
  */
 public class DuplicateCounter
 {
@@ -41,23 +55,42 @@ public class DuplicateCounter
     static final int WAITING = 2;
 
     protected static final VoltLogger tmLog = new VoltLogger("TM");
+    private static final RateLimitedLogger s_resultMismatchLog =
+        new RateLimitedLogger(60 * 1000, tmLog, Level.WARN);
 
     final long m_destinationId;
     Long m_responseHash = null;
     protected VoltMessage m_lastResponse = null;
     protected VoltTable m_lastResultTables[] = null;
+    // CRC of the kept response's result tables, and the bytes they hold
+    private int m_resultHash = 0;
+    protected long m_retainedBytes = 0;
+    // bytes of replica results checked and dropped, and how many didn't match
+    protected long m_releasedBytes = 0;
+    protected int m_resultMismatches = 0;
+    DuplicateCounterStats m_stats = null;
     final List<Long> m_expectedHSIds;
     final long m_txnId;
     private final String m_storedProcName;
+    // read-only work may legitimately return different results at each replica
+    private final boolean m_readOnly;
 
     DuplicateCounter(
             long destinationHSId,
             long realTxnId,
             List<Long> expectedHSIds, String procName)    {
+        this(destinationHSId, realTxnId, expectedHSIds, procName, false);
+    }
+
+    DuplicateCounter(
+            long destinationHSId,
+            long realTxnId,
+            List<Long> expectedHSIds, String procName, boolean readOnly)    {
         m_destinationId = destinationHSId;
         m_txnId = realTxnId;
         m_expectedHSIds = new ArrayList<Long>(expectedHSIds);
         m_storedProcName = procName;
+        m_readOnly = readOnly;
     }
 
     long getTxnId()
@@ -85,11 +118,18 @@ public class DuplicateCounter
         }
     }
 
-    protected int checkCommon(long hash, boolean rejoining, VoltTable resultTables[], VoltMessage message)
+    /**
+     * @param deterministic Whether replicas must produce identical results, which is the
+     *                      case for writes. Reads, including read-only sysprocs, may
+     *                      legitimately return different results at each replica.
+     */
+    protected int checkCommon(long hash, boolean rejoining, boolean deterministic,
+            VoltTable resultTables[], VoltMessage message)
     {
         if (!rejoining) {
             if (m_responseHash == null) {
                 m_responseHash = Long.valueOf(hash);
+                keepResponse(message, resultTables);
             }
             else if (!m_responseHash.equals(hash)) {
                 tmLog.fatal("Stored procedure " + getStoredProcedureName()
@@ -103,21 +143,34 @@ public class DuplicateCounter
                 tmLog.error(msg);
                 return MISMATCH;
             }
-            /*
-             * Replicas will return a response to a write with no result tables
-             * always keep the local response which has the result tables
-             */
-//            if (m_lastResponse != null && resultTables != null) {
-//                if (m_lastResultTables.length < resultTables.length) {
-//                    m_lastResponse = message;
-//                    m_lastResultTables = resultTables;
-//                }
-//            } else {
-//                m_lastResponse = message;
-//                m_lastResultTables = resultTables;
-//            }
-            m_lastResponse = message;
-            m_lastResultTables = resultTables;
+            else {
+                /*
+                 * The SQL matched, so this response is interchangeable with the one
+                 * already kept. Its results only have to be compared, not held.
+                 * Read-only statements aren't part of the SQL hash and may legally
+                 * differ between replicas, so a result mismatch is reported but
+                 * doesn't stop the transaction. Only writes are expected to match,
+                 * a read-only procedure with unordered results is only logged at debug.
+                 */
+                final boolean mismatch = resultHash(resultTables) != m_resultHash;
+                if (mismatch) {
+                    m_resultMismatches++;
+                    final String msg = "Stored procedure " + getStoredProcedureName()
+                            + " returned different results at different replicas of transaction "
+                            + m_txnId + ". Check it for non-deterministic queries.";
+                    if (deterministic) {
+                        s_resultMismatchLog.log(msg, System.currentTimeMillis());
+                    }
+                    else if (tmLog.isDebugEnabled()) {
+                        tmLog.debug(msg);
+                    }
+                }
+                final long released = payloadSize(resultTables);
+                m_releasedBytes += released;
+                if (m_stats != null) {
+                    m_stats.released(released, mismatch);
+                }
+            }
         }
 
         /*
@@ -140,6 +193,82 @@ public class DuplicateCounter
         }
     }
 
+    private void keepResponse(VoltMessage message, VoltTable resultTables[])
+    {
+        m_lastResponse = message;
+        m_lastResultTables = resultTables;
+        m_resultHash = resultHash(resultTables);
+        retain(payloadSize(resultTables));
+    }
+
+    protected void retain(long bytes)
+    {
+        m_retainedBytes += bytes;
+        if (m_stats != null) {
+            m_stats.retained(bytes);
+        }
+    }
+
+    /**
+     * CRC32C of the serialized result tables, fed one chunk at a time
+     * straight from each table's buffer.
+     */
+    static int resultHash(VoltTable resultTables[])
+    {
+        if (resultTables == null || resultTables.length == 0) {
+            return 0;
+        }
+        PureJavaCrc32C crc = new PureJavaCrc32C();
+        byte chunk[] = new byte[(int)Math.min(payloadSize(resultTables), 8192)];
+        for (VoltTable table : resultTables) {
+            if (table == null) {
+                crc.update(0);
+                continue;
+            }
+            ByteBuffer buf = table.getBuffer();
+            while (buf.hasRemaining()) {
+                final int len = Math.min(chunk.length, buf.remaining());
+                buf.get(chunk, 0, len);
+                crc.update(chunk, 0, len);
+            }
+        }
+        return (int)crc.getValue();
+    }
+
+    static long payloadSize(VoltTable resultTables[])
+    {
+        long size = 0;
+        if (resultTables != null) {
+            for (VoltTable table : resultTables) {
+                if (table != null) {
+                    size += table.getSerializedSize();
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return Bytes of results held for the response that will be sent on
+     */
+    long getRetainedBytes()
+    {
+        return m_retainedBytes;
+    }
+
+    /**
+     * @return Bytes of replica results that were checked and not held
+     */
+    long getReleasedBytes()
+    {
+        return m_releasedBytes;
+    }
+
+    int getResultMismatches()
+    {
+        return m_resultMismatches;
+    }
+
     int offer(InitiateResponseMessage message)
     {
         ClientResponseImpl r = message.getClientResponseData();
@@ -149,12 +278,22 @@ public class DuplicateCounter
         if (sqlHash != null) {
             hash = sqlHash.intValue();
         }
-        return checkCommon(hash, message.isRecovering(), r.getResults(), message);
+        return checkCommon(hash, message.isRecovering(), !(m_readOnly || message.isReadOnly()),
+                r.getResults(), message);
     }
 
     int offer(FragmentResponseMessage message)
     {
-        return checkCommon(0, message.isRecovering(), null, message);
+        return checkCommon(0, message.isRecovering(), !m_readOnly, dependencies(message), message);
+    }
+
+    static VoltTable[] dependencies(FragmentResponseMessage message)
+    {
+        VoltTable deps[] = new VoltTable[message.getTableCount()];
+        for (int i = 0; i < deps.length; i++) {
+            deps[i] = message.getTableAtIndex(i);
+        }
+        return deps;
     }
 
     VoltMessage getLastResponse()
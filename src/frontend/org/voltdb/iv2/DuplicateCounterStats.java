@@ -0,0 +1,132 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Memory held by the duplicate counters of a partition leader. Only the
+ * scheduler updates it, under the initiator mailbox lock, and the stats
+ * thread reads it.
+ */
+public class DuplicateCounterStats extends SiteStatsSource {
+    private volatile int m_counters;
+    private volatile long m_retainedBytes;
+    private volatile long m_maxRetainedBytes;
+    private volatile long m_lastMaxRetainedBytes;
+    private volatile long m_releasedBytes;
+    private volatile long m_lastReleasedBytes;
+    private volatile long m_mismatches;
+    private volatile long m_lastMismatches;
+    private boolean m_interval;
+
+    public DuplicateCounterStats(long siteId) {
+        super(siteId, false);
+    }
+
+    void counterAdded() {
+        m_counters++;
+    }
+
+    void counterRemoved(DuplicateCounter counter) {
+        m_counters--;
+        m_retainedBytes -= counter.getRetainedBytes();
+    }
+
+    void retained(long bytes) {
+        final long retained = m_retainedBytes + bytes;
+        m_retainedBytes = retained;
+        if (retained > m_maxRetainedBytes) {
+            m_maxRetainedBytes = retained;
+        }
+        if (retained > m_lastMaxRetainedBytes) {
+            m_lastMaxRetainedBytes = retained;
+        }
+    }
+
+    void released(long bytes, boolean mismatch) {
+        m_releasedBytes += bytes;
+        if (mismatch) {
+            m_mismatches++;
+        }
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("OUTSTANDING", VoltType.INTEGER));
+        columns.add(new ColumnInfo("RETAINED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("MAX_RETAINED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("RELEASED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("RESULT_MISMATCHES", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final long retained = m_retainedBytes;
+        final long released = m_releasedBytes;
+        final long mismatches = m_mismatches;
+        rowValues[columnNameToIndex.get("OUTSTANDING")] = m_counters;
+        rowValues[columnNameToIndex.get("RETAINED_BYTES")] = retained;
+        if (m_interval) {
+            rowValues[columnNameToIndex.get("MAX_RETAINED_BYTES")] = m_lastMaxRetainedBytes;
+            rowValues[columnNameToIndex.get("RELEASED_BYTES")] = released - m_lastReleasedBytes;
+            rowValues[columnNameToIndex.get("RESULT_MISMATCHES")] = mismatches - m_lastMismatches;
+            m_lastMaxRetainedBytes = retained;
+            m_lastReleasedBytes = released;
+            m_lastMismatches = mismatches;
+        } else {
+            rowValues[columnNameToIndex.get("MAX_RETAINED_BYTES")] = m_maxRetainedBytes;
+            rowValues[columnNameToIndex.get("RELEASED_BYTES")] = released;
+            rowValues[columnNameToIndex.get("RESULT_MISMATCHES")] = mismatches;
+        }
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return new Object();
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -18,6 +18,7 @@
 package org.voltdb.iv2;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
@@ -31,6 +32,8 @@ import org.voltcore.messaging.VoltMessage;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
+import org.voltdb.dtxn.StageLatencyTracer;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
 import org.voltdb.messaging.CompleteTransactionMessage;
 import org.voltdb.messaging.DumpMessage;
 import org.voltdb.messaging.FragmentTaskMessage;
@@ -248,9 +251,22 @@ public class InitiatorMailbox implements Mailbox
         m_messenger.send(destHSIds, message);
     }
 
+    /**
+     * Start tracing the sequencing of messages that begin work at this initiator.
+     * @return the start to record once the message is handled, 0 if not traced
+     */
+    static long startSequenceTrace(VoltMessage message)
+    {
+        if (message instanceof Iv2InitiateTaskMessage || message instanceof FragmentTaskMessage) {
+            return StageLatencyTracer.start();
+        }
+        return 0;
+    }
+
     @Override
     public void deliver(final VoltMessage message)
     {
+        final long traceStart = startSequenceTrace(message);
         if (SCHEDULE_IN_SITE_THREAD) {
             this.m_scheduler.getQueue().offer(new SiteTasker.SiteTaskerRunnable() {
                 @Override
@@ -258,12 +274,14 @@ public class InitiatorMailbox implements Mailbox
                     synchronized (InitiatorMailbox.this) {
                         deliverInternal(message);
                     }
+                    StageLatencyTracer.record(Stage.SEQUENCE, traceStart);
                 }
             });
         } else {
             synchronized (this) {
                 deliverInternal(message);
             }
+            StageLatencyTracer.record(Stage.SEQUENCE, traceStart);
         }
     }
 
@@ -355,7 +373,7 @@ public class InitiatorMailbox implements Mailbox
     private void handleLogRequest(VoltMessage message)
     {
         Iv2RepairLogRequestMessage req = (Iv2RepairLogRequestMessage)message;
-        List<Iv2RepairLogResponseMessage> logs = m_repairLog.contents(req.getRequestId(),
+        Iterator<Iv2RepairLogResponseMessage> logs = m_repairLog.streamContents(req.getRequestId(),
                 req.isMPIRequest());
 
         tmLog.debug(""
@@ -363,8 +381,8 @@ public class InitiatorMailbox implements Mailbox
             + " handling repair log request id " + req.getRequestId()
             + " for " + CoreUtils.hsIdToString(message.m_sourceHSId) + ". ");
 
-        for (Iv2RepairLogResponseMessage log : logs) {
-            send(message.m_sourceHSId, log);
+        while (logs.hasNext()) {
+            send(message.m_sourceHSId, logs.next());
         }
     }
 
@@ -27,6 +27,8 @@ import java.util.concurrent.LinkedBlockingQueue;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.HostMessenger;
 import org.voltcore.messaging.VoltMessage;
+import org.voltdb.dtxn.StageLatencyTracer;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
 import org.voltdb.messaging.CompleteTransactionMessage;
 import org.voltdb.messaging.Iv2InitiateTaskMessage;
 
@@ -241,10 +243,12 @@ public class MpInitiatorMailbox extends InitiatorMailbox
 
     @Override
     public void deliver(final VoltMessage message) {
+        final long traceStart = startSequenceTrace(message);
         m_taskQueue.offer(new Runnable() {
             @Override
             public void run() {
                 deliverInternal(message);
+                StageLatencyTracer.record(Stage.SEQUENCE, traceStart);
             }
         });
     }
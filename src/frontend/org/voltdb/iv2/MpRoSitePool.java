@@ -26,6 +26,7 @@ import java.util.concurrent.ThreadFactory;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
+import org.voltcore.utils.EstTime;
 import org.voltdb.BackendTarget;
 import org.voltdb.CatalogContext;
 import org.voltdb.CatalogSpecificPlanner;
@@ -36,13 +37,67 @@ import org.voltdb.StarvationTracker;
 /**
  * Provide a pool of MP Read-only sites to do MP RO work.
  * This should be owned by the MpTransactionTaskQueue and expects all operations
- * to be done while holding its lock.
+ * to be done by its serialized operations, one thread at a time.
+ *
+ * The pool keeps a warm target of sites with the current catalog ready, created at
+ * startup and again right after a catalog update rather than when the first reads
+ * arrive. The target follows the peak number of concurrent reads seen in each sizing
+ * window, limited by the pool size and the core count, and idle sites above it are
+ * shut down.
  */
 class MpRoSitePool {
     final static VoltLogger tmLog = new VoltLogger("TM");
 
     static int DEFAULT_MAX_POOL_SIZE = 20;
     static int INITIAL_POOL_SIZE = 1;
+    static long SIZING_WINDOW_MILLIS = Long.getLong("mpiReadPoolSizingWindowMillis", 60 * 1000);
+
+    /**
+     * Picks how many sites to keep warm from the concurrency seen in each window.
+     * Grows straight to a new peak, shrinks halfway towards a lower one.
+     */
+    static class WarmTarget {
+        private final int m_min;
+        private final int m_max;
+        private final long m_windowMillis;
+        private int m_target;
+        private int m_windowPeak = 0;
+        private long m_windowStart;
+
+        WarmTarget(int min, int max, long windowMillis, long nowMillis) {
+            m_max = Math.max(1, max);
+            m_min = Math.min(Math.max(1, min), m_max);
+            m_windowMillis = windowMillis;
+            m_target = m_min;
+            m_windowStart = nowMillis;
+        }
+
+        int get() {
+            return m_target;
+        }
+
+        void busy(int busySites) {
+            m_windowPeak = Math.max(m_windowPeak, busySites);
+        }
+
+        /**
+         * @return true if the window ended and the target went down
+         */
+        boolean endWindowIfDone(long nowMillis, int busySites) {
+            if (nowMillis - m_windowStart < m_windowMillis) {
+                return false;
+            }
+            final int previous = m_target;
+            if (m_windowPeak >= m_target) {
+                m_target = Math.min(m_max, m_windowPeak);
+            } else {
+                m_target = Math.max(m_min, (m_target + m_windowPeak + 1) / 2);
+            }
+            m_windowPeak = busySites;
+            m_windowStart = nowMillis;
+            return m_target < previous;
+        }
+    }
 
     class MpRoSiteContext {
         final private BackendTarget m_backend;
@@ -114,6 +169,10 @@ class MpRoSitePool {
     private CatalogSpecificPlanner m_csp;
     private ThreadFactory m_poolThreadFactory;
     private final int m_poolSize;
+    private final WarmTarget m_warmTarget;
+    private final MpRoSitePoolStats m_stats;
+    // When reads started waiting for a site because the pool was full, -1 if they aren't
+    private long m_saturatedSince = -1;
 
     MpRoSitePool(
             long siteId,
@@ -140,17 +199,69 @@ class MpRoSitePool {
         m_poolSize = poolSize;
         tmLog.info("Setting maximum size of MPI read pool to: " + m_poolSize);
 
+        m_warmTarget = new WarmTarget(Integer.getInteger("mpiReadPoolWarmSize", INITIAL_POOL_SIZE),
+                Math.min(m_poolSize, CoreUtils.availableProcessors()),
+                SIZING_WINDOW_MILLIS, EstTime.currentTimeMillis());
+        m_stats = new MpRoSitePoolStats(siteId, m_poolSize);
+
         // Construct the initial pool
-        for (int i = 0; i < INITIAL_POOL_SIZE; i++) {
-            m_idleSites.push(new MpRoSiteContext(m_siteId,
-                        m_backend,
-                        m_catalogContext,
-                        m_partitionId,
-                        m_initiatorMailbox,
-                        m_csp,
-                        m_poolThreadFactory));
+        prewarm();
+    }
+
+    /**
+     * A pool that never starts sites, for tests and benchmarks that stand in for its work methods
+     */
+    MpRoSitePool(long siteId, int poolSize)
+    {
+        m_siteId = siteId;
+        m_backend = null;
+        m_partitionId = -1;
+        m_initiatorMailbox = null;
+        m_poolSize = poolSize;
+        m_warmTarget = new WarmTarget(1, 1, SIZING_WINDOW_MILLIS, 0);
+        m_stats = new MpRoSitePoolStats(siteId, m_poolSize);
+    }
+
+    MpRoSitePoolStats getStats()
+    {
+        return m_stats;
+    }
+
+    private MpRoSiteContext createSite()
+    {
+        m_stats.m_created++;
+        return new MpRoSiteContext(m_siteId,
+                m_backend,
+                m_catalogContext,
+                m_partitionId,
+                m_initiatorMailbox,
+                m_csp,
+                m_poolThreadFactory);
+    }
+
+    private boolean isCurrent(MpRoSiteContext site)
+    {
+        return site.getCatalogCRC() == m_catalogContext.getCatalogCRC()
+                && site.getCatalogVersion() == m_catalogContext.catalogVersion;
+    }
+
+    /**
+     * Create idle sites with the current catalog until there are as many as the warm target
+     */
+    private void prewarm()
+    {
+        while (m_idleSites.size() < m_warmTarget.get()) {
+            m_idleSites.push(createSite());
+            m_stats.m_prewarmed++;
         }
+        updateGauges();
+    }
 
+    private void updateGauges()
+    {
+        m_stats.m_idle = m_idleSites.size();
+        m_stats.m_busy = m_busySites.size();
+        m_stats.m_warmTarget = m_warmTarget.get();
     }
 
     /**
@@ -166,12 +277,13 @@ class MpRoSitePool {
         Iterator<MpRoSiteContext> siterator = m_idleSites.iterator();
         while (siterator.hasNext()) {
             MpRoSiteContext site = siterator.next();
-            if (site.getCatalogCRC() != m_catalogContext.getCatalogCRC()
-                    || site.getCatalogVersion() != m_catalogContext.catalogVersion) {
+            if (!isCurrent(site)) {
                 site.shutdown();
-                m_idleSites.remove(site);
+                siterator.remove();
             }
         }
+        // Replace them now so the first reads after the update don't wait for procedures to load
+        prewarm();
     }
 
     /**
@@ -197,6 +309,10 @@ class MpRoSitePool {
     boolean canAcceptWork()
     {
         boolean retval = (!m_idleSites.isEmpty() || m_busySites.size() < m_poolSize);
+        if (!retval && m_saturatedSince == -1) {
+            m_saturatedSince = System.nanoTime();
+            m_stats.m_saturations++;
+        }
         return retval;
     }
 
@@ -217,16 +333,17 @@ class MpRoSitePool {
         }
         else {
             if (m_idleSites.isEmpty()) {
-                m_idleSites.push(new MpRoSiteContext(m_siteId,
-                            m_backend,
-                            m_catalogContext,
-                            m_partitionId,
-                            m_initiatorMailbox,
-                            m_csp,
-                            m_poolThreadFactory));
+                m_idleSites.push(createSite());
             }
             site = m_idleSites.pop();
             m_busySites.put(txnId, site);
+            m_warmTarget.busy(m_busySites.size());
+            m_stats.busy(m_busySites.size());
+            if (m_saturatedSince != -1) {
+                m_stats.m_saturatedNanos += System.nanoTime() - m_saturatedSince;
+                m_saturatedSince = -1;
+            }
+            updateGauges();
         }
         site.offer(task);
         return true;
@@ -244,13 +361,19 @@ class MpRoSitePool {
         // check the catalog versions, only push back onto idle if the catalog hasn't changed
         // otherwise, just let it get garbage collected and let doWork() construct new ones for the
         // pool with the updated catalog.
-        if (site.getCatalogCRC() == m_catalogContext.getCatalogCRC()
-                && site.getCatalogVersion() == m_catalogContext.catalogVersion) {
+        if (isCurrent(site)) {
             m_idleSites.push(site);
         }
         else {
             site.shutdown();
         }
+        if (m_warmTarget.endWindowIfDone(EstTime.currentTimeMillis(), m_busySites.size())) {
+            // Idle sites are pushed on the front, shut down the ones idle longest
+            while (m_idleSites.size() + m_busySites.size() > m_warmTarget.get() && !m_idleSites.isEmpty()) {
+                m_idleSites.pollLast().shutdown();
+            }
+        }
+        updateGauges();
     }
 
     void shutdown()
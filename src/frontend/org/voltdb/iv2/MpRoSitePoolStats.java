@@ -0,0 +1,143 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Occupancy and queueing of the MPI read-only site pool. The counters are only
+ * written by the MpRoSitePool from the operations of its MpTransactionTaskQueue and
+ * read here by the stats thread.
+ */
+public class MpRoSitePoolStats extends SiteStatsSource {
+    private final int m_poolSize;
+
+    volatile int m_warmTarget;
+    volatile int m_idle;
+    volatile int m_busy;
+    volatile int m_peakBusy;
+    // Peak since the last interval read, which the stats thread resets while the pool raises it
+    final AtomicInteger m_lastPeakBusy = new AtomicInteger();
+    volatile long m_created;
+    volatile long m_prewarmed;
+    // Times reads had to wait for a busy site because the pool was full, and how long they waited
+    volatile long m_saturations;
+    volatile long m_saturatedNanos;
+
+    private long m_lastCreated;
+    private long m_lastPrewarmed;
+    private long m_lastSaturations;
+    private long m_lastSaturatedNanos;
+    private boolean m_interval;
+
+    MpRoSitePoolStats(long siteId, int poolSize) {
+        super(siteId, false);
+        m_poolSize = poolSize;
+    }
+
+    void busy(int busySites) {
+        if (busySites > m_peakBusy) {
+            m_peakBusy = busySites;
+        }
+        int lastPeak;
+        while (busySites > (lastPeak = m_lastPeakBusy.get())) {
+            if (m_lastPeakBusy.compareAndSet(lastPeak, busySites)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("POOL_SIZE", VoltType.INTEGER));
+        columns.add(new ColumnInfo("WARM_TARGET", VoltType.INTEGER));
+        columns.add(new ColumnInfo("IDLE_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("BUSY_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("PEAK_BUSY_SITES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("SITES_CREATED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SITES_PREWARMED", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SATURATED_COUNT", VoltType.BIGINT));
+        columns.add(new ColumnInfo("SATURATED_MILLIS", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        final long created = m_created;
+        final long prewarmed = m_prewarmed;
+        final long saturations = m_saturations;
+        final long saturatedNanos = m_saturatedNanos;
+        rowValues[columnNameToIndex.get("POOL_SIZE")] = m_poolSize;
+        rowValues[columnNameToIndex.get("WARM_TARGET")] = m_warmTarget;
+        rowValues[columnNameToIndex.get("IDLE_SITES")] = m_idle;
+        rowValues[columnNameToIndex.get("BUSY_SITES")] = m_busy;
+        if (m_interval) {
+            rowValues[columnNameToIndex.get("PEAK_BUSY_SITES")] = m_lastPeakBusy.getAndSet(m_busy);
+            rowValues[columnNameToIndex.get("SITES_CREATED")] = created - m_lastCreated;
+            rowValues[columnNameToIndex.get("SITES_PREWARMED")] = prewarmed - m_lastPrewarmed;
+            rowValues[columnNameToIndex.get("SATURATED_COUNT")] = saturations - m_lastSaturations;
+            rowValues[columnNameToIndex.get("SATURATED_MILLIS")] =
+                    TimeUnit.NANOSECONDS.toMillis(saturatedNanos - m_lastSaturatedNanos);
+            m_lastCreated = created;
+            m_lastPrewarmed = prewarmed;
+            m_lastSaturations = saturations;
+            m_lastSaturatedNanos = saturatedNanos;
+        } else {
+            rowValues[columnNameToIndex.get("PEAK_BUSY_SITES")] = m_peakBusy;
+            rowValues[columnNameToIndex.get("SITES_CREATED")] = created;
+            rowValues[columnNameToIndex.get("SITES_PREWARMED")] = prewarmed;
+            rowValues[columnNameToIndex.get("SATURATED_COUNT")] = saturations;
+            rowValues[columnNameToIndex.get("SATURATED_MILLIS")] = TimeUnit.NANOSECONDS.toMillis(saturatedNanos);
+        }
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return new Object();
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -18,12 +18,15 @@
 package org.voltdb.iv2;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.CatalogContext;
@@ -36,16 +39,54 @@ import org.voltdb.messaging.FragmentTaskMessage;
  * Provide an implementation of the TransactionTaskQueue specifically for the MPI.
  * This class will manage separating the stream of reads and writes to different
  * Sites and block appropriately so that reads and writes never execute concurrently.
+ *
+ * Pending reads and writes wait in separate lanes. Each write remembers how many reads
+ * were offered before it, and that count is the write barrier: reads offered before a
+ * write run before it, reads offered after it wait until it is done, and the write
+ * itself waits until the reads before it are done. This is the same order as a single
+ * backlog, but reads never have to be skipped over to find the next write.
+ *
+ * No caller takes a lock. Every operation is queued and then run by whichever caller
+ * finds no other operation in progress, which keeps running queued operations until
+ * there are none left. Operations run one at a time and in the order they were queued,
+ * so the lanes, the current read and write sets and the MpRoSitePool are only ever
+ * used by one thread at a time.
  */
 public class MpTransactionTaskQueue extends TransactionTaskQueue
 {
     protected static final VoltLogger tmLog = new VoltLogger("TM");
 
+    /*
+     * A write waiting in the write lane and the number of reads offered before it
+     */
+    private static class PendingWrite {
+        final TransactionTask m_task;
+        final long m_readsBefore;
+
+        PendingWrite(TransactionTask task, long readsBefore) {
+            m_task = task;
+            m_readsBefore = readsBefore;
+        }
+    }
+
+    // Operations waiting to run, and how many have been queued but not finished running
+    private final ConcurrentLinkedQueue<Runnable> m_operations = new ConcurrentLinkedQueue<Runnable>();
+    private final AtomicInteger m_pendingOperations = new AtomicInteger();
+
+    // Everything below is only used by the operations
+
     // Track the current writes and reads in progress.  If writes contains anything, reads must be empty,
     // and vice versa
     private final Map<Long, TransactionTask> m_currentWrites = new HashMap<Long, TransactionTask>();
     private final Map<Long, TransactionTask> m_currentReads = new HashMap<Long, TransactionTask>();
-    private Deque<TransactionTask> m_backlog = new ArrayDeque<TransactionTask>();
+    private final Deque<TransactionTask> m_readLane = new ArrayDeque<TransactionTask>();
+    private final Deque<PendingWrite> m_writeLane = new ArrayDeque<PendingWrite>();
+    // Reads ever added to and taken from the read lane
+    private long m_readsOffered = 0;
+    private long m_readsStarted = 0;
+
+    // Tasks waiting in either lane, for size() and toString()
+    private volatile int m_backlogSize = 0;
 
     private MpRoSitePool m_sitePool = null;
 
@@ -59,29 +100,115 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
         m_sitePool = sitePool;
     }
 
-    synchronized void updateCatalog(String diffCmds, CatalogContext context, CatalogSpecificPlanner csp)
+    /**
+     * Queue an operation and run it, and any queued after it, unless another
+     * thread is already running operations. That thread will run it instead.
+     * @return true if the operation ran before returning
+     */
+    private boolean submit(Runnable operation)
     {
-        m_sitePool.updateCatalog(diffCmds, context, csp);
+        m_operations.offer(operation);
+        if (m_pendingOperations.getAndIncrement() != 0) {
+            return false;
+        }
+        // Keep going past a failed operation so the ones queued behind it aren't stranded,
+        // then let the caller see the first failure
+        Throwable failure = null;
+        do {
+            try {
+                m_operations.poll().run();
+            } catch (RuntimeException | Error e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        } while (m_pendingOperations.decrementAndGet() != 0);
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException)failure;
+        } else if (failure != null) {
+            throw (Error)failure;
+        }
+        return true;
+    }
+
+    /**
+     * Submit an operation and wait for it to run, for the rare operations whose
+     * callers depend on them being finished
+     */
+    private void submitAndWait(final Runnable operation)
+    {
+        final CountDownLatch done = new CountDownLatch(1);
+        boolean ranHere = submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    operation.run();
+                } finally {
+                    done.countDown();
+                }
+            }
+        });
+        if (!ranHere) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    void updateCatalog(final String diffCmds, final CatalogContext context, final CatalogSpecificPlanner csp)
+    {
+        submitAndWait(new Runnable() {
+            @Override
+            public void run() {
+                m_sitePool.updateCatalog(diffCmds, context, csp);
+            }
+        });
     }
 
     void shutdown()
     {
-        m_sitePool.shutdown();
+        submitAndWait(new Runnable() {
+            @Override
+            public void run() {
+                m_sitePool.shutdown();
+            }
+        });
     }
 
     /**
-     * Stick this task in the backlog.
-     * Many network threads may be racing to reach here, synchronize to
-     * serialize queue order.
+     * Stick this task in its lane.
+     * Many network threads may be racing to reach here, operations run in the
+     * order they are submitted which serializes queue order.
      * Always returns true in this case, side effect of extending
      * TransactionTaskQueue.
      */
     @Override
-    synchronized boolean offer(TransactionTask task)
+    boolean offer(final TransactionTask task)
     {
         Iv2Trace.logTransactionTaskQueueOffer(task);
-        m_backlog.addLast(task);
-        taskQueueOffer();
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (task.getTransactionState().isReadOnly()) {
+                    m_readLane.addLast(task);
+                    m_readsOffered++;
+                }
+                else {
+                    m_writeLane.addLast(new PendingWrite(task, m_readsOffered));
+                }
+                taskQueueOffer();
+                updateBacklogSize();
+            }
+        });
         return true;
     }
 
@@ -89,7 +216,21 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     // SiteTaskerQueue.  Before it does this, it unblocks the MP transaction
     // that may be running in the Site thread and causes it to rollback by
     // faking an unsuccessful FragmentResponseMessage.
-    synchronized void repair(SiteTasker task, List<Long> masters, Map<Integer, Long> partitionMasters)
+    void repair(final SiteTasker task, List<Long> masters, Map<Integer, Long> partitionMasters)
+    {
+        // The repair may run on a thread draining the operations, copy the masters the
+        // caller keeps updating. Waiting keeps it under the caller's deliver lock.
+        final List<Long> mastersCopy = new ArrayList<Long>(masters);
+        final Map<Integer, Long> partitionMastersCopy = new HashMap<Integer, Long>(partitionMasters);
+        submitAndWait(new Runnable() {
+            @Override
+            public void run() {
+                repairInternal(task, mastersCopy, partitionMastersCopy);
+            }
+        });
+    }
+
+    private void repairInternal(SiteTasker task, List<Long> masters, Map<Integer, Long> partitionMasters)
     {
         // We know that every Site assigned to the MPI (either the main writer or
         // any of the MP read pool) will only have one active transaction at a time,
@@ -133,21 +274,27 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
                 // to the duplicate counter in MpScheduler for this transaction.
             }
         }
-        // Now, iterate through the backlog and update the partition masters
+        // Now, iterate through both lanes and update the partition masters
         // for all ProcedureTasks
-        Iterator<TransactionTask> iter = m_backlog.iterator();
-        while (iter.hasNext()) {
-            TransactionTask tt = iter.next();
-            if (tt instanceof MpProcedureTask) {
-                MpProcedureTask next = (MpProcedureTask)tt;
-                tmLog.debug("Repair updating task: " + next + " with masters: " + masters);
-                next.updateMasters(masters, partitionMasters);
-            }
-            else if (tt instanceof EveryPartitionTask) {
-                EveryPartitionTask next = (EveryPartitionTask)tt;
-                tmLog.debug("Repair updating EPT task: " + next + " with masters: " + masters);
-                next.updateMasters(masters);
-            }
+        for (TransactionTask tt : m_readLane) {
+            updateMasters(tt, masters, partitionMasters);
+        }
+        for (PendingWrite write : m_writeLane) {
+            updateMasters(write.m_task, masters, partitionMasters);
+        }
+    }
+
+    private static void updateMasters(TransactionTask tt, List<Long> masters, Map<Integer, Long> partitionMasters)
+    {
+        if (tt instanceof MpProcedureTask) {
+            MpProcedureTask next = (MpProcedureTask)tt;
+            tmLog.debug("Repair updating task: " + next + " with masters: " + masters);
+            next.updateMasters(masters, partitionMasters);
+        }
+        else if (tt instanceof EveryPartitionTask) {
+            EveryPartitionTask next = (EveryPartitionTask)tt;
+            tmLog.debug("Repair updating EPT task: " + next + " with masters: " + masters);
+            next.updateMasters(masters);
         }
     }
 
@@ -164,70 +311,72 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
 
     private boolean taskQueueOffer()
     {
-        // Do we have something to do?
-        // - If so, is it a write?
-        //   - If so, are there reads or writes outstanding?
-        //     - if not, pull it from the backlog, add it to current write set, and queue it
-        //     - if so, bail for now
-        //   - If not, are there writes outstanding?
-        //     - if not, while there are reads on the backlog and the pool has capacity:
-        //       - pull the read from the backlog, add it to the current read set, and queue it.
-        //       - bail when done
-        //     - if so, bail for now
+        // Is a write in progress?
+        // - If so, bail for now
+        // - If not, while there are reads ahead of the next write's barrier and the pool has capacity:
+        //   - pull the read from the read lane, add it to the current read set, and queue it.
+        // - Then, if the reads ahead of the next write have all been started and finished:
+        //   - pull the write from the write lane, add it to the current write set, and queue it
 
         boolean retval = false;
-        if (!m_backlog.isEmpty()) {
-            // We may not queue the next task, just peek to get the read-only state
-            TransactionTask task = m_backlog.peekFirst();
-            if (!task.getTransactionState().isReadOnly()) {
-                if (m_currentReads.isEmpty() && m_currentWrites.isEmpty()) {
-                    task = m_backlog.pollFirst();
-                    m_currentWrites.put(task.getTxnId(), task);
-                    taskQueueOffer(task);
-                    retval = true;
-                }
-            }
-            else if (m_currentWrites.isEmpty()) {
-                while (task != null && task.getTransactionState().isReadOnly() &&
-                       m_sitePool.canAcceptWork())
-                {
-                    task = m_backlog.pollFirst();
-                    assert(task.getTransactionState().isReadOnly());
-                    m_currentReads.put(task.getTxnId(), task);
-                    taskQueueOffer(task);
-                    retval = true;
-                    // Prime the pump with the head task, if any.  If empty,
-                    // task will be null
-                    task = m_backlog.peekFirst();
-                }
-            }
+        if (!m_currentWrites.isEmpty()) {
+            return retval;
+        }
+        final PendingWrite nextWrite = m_writeLane.peekFirst();
+        final long readBarrier = nextWrite == null ? Long.MAX_VALUE : nextWrite.m_readsBefore;
+        while (!m_readLane.isEmpty() && m_readsStarted < readBarrier && m_sitePool.canAcceptWork()) {
+            TransactionTask task = m_readLane.pollFirst();
+            m_readsStarted++;
+            assert(task.getTransactionState().isReadOnly());
+            m_currentReads.put(task.getTxnId(), task);
+            taskQueueOffer(task);
+            retval = true;
+        }
+        if (nextWrite != null && m_readsStarted >= readBarrier && m_currentReads.isEmpty()) {
+            m_writeLane.pollFirst();
+            m_currentWrites.put(nextWrite.m_task.getTxnId(), nextWrite.m_task);
+            taskQueueOffer(nextWrite.m_task);
+            retval = true;
         }
         return retval;
     }
 
+    private void updateBacklogSize()
+    {
+        m_backlogSize = m_readLane.size() + m_writeLane.size();
+    }
+
     /**
      * Indicate that the transaction associated with txnId is complete.  Perform
      * management of reads/writes in progress then call taskQueueOffer() to
      * submit additional tasks to be done, determined by whatever the current state is.
      * See giant comment at top of taskQueueOffer() for what happens.
+     * @return 1 if this call started more work, 0 if it didn't or if another thread
+     * ran the flush
      */
     @Override
-    synchronized int flush(long txnId)
+    int flush(final long txnId)
     {
-        int offered = 0;
-        if (m_currentReads.containsKey(txnId)) {
-            m_currentReads.remove(txnId);
-            m_sitePool.completeWork(txnId);
-        }
-        else {
-            assert(m_currentWrites.containsKey(txnId));
-            m_currentWrites.remove(txnId);
-            assert(m_currentWrites.isEmpty());
-        }
-        if (taskQueueOffer()) {
-            ++offered;
-        }
-        return offered;
+        final int offered[] = new int[1];
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (m_currentReads.containsKey(txnId)) {
+                    m_currentReads.remove(txnId);
+                    m_sitePool.completeWork(txnId);
+                }
+                else {
+                    assert(m_currentWrites.containsKey(txnId));
+                    m_currentWrites.remove(txnId);
+                    assert(m_currentWrites.isEmpty());
+                }
+                if (taskQueueOffer()) {
+                    ++offered[0];
+                }
+                updateBacklogSize();
+            }
+        });
+        return offered[0];
     }
 
     /**
@@ -236,24 +385,29 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
      * restart is necessary.
      */
     @Override
-    synchronized void restart()
+    void restart()
     {
-        if (!m_currentReads.isEmpty()) {
-            // re-submit all the tasks in the current read set to the pool.
-            // the pool will ensure that things submitted with the same
-            // txnID will go to the the MpRoSite which is currently running it
-            for (TransactionTask task : m_currentReads.values()) {
-                taskQueueOffer(task);
+        submit(new Runnable() {
+            @Override
+            public void run() {
+                if (!m_currentReads.isEmpty()) {
+                    // re-submit all the tasks in the current read set to the pool.
+                    // the pool will ensure that things submitted with the same
+                    // txnID will go to the the MpRoSite which is currently running it
+                    for (TransactionTask task : m_currentReads.values()) {
+                        taskQueueOffer(task);
+                    }
+                }
+                else {
+                    assert(!m_currentWrites.isEmpty());
+                    TransactionTask task;
+                    // There currently should only ever be one current write.  This
+                    // is the awkward way to get a single value out of a Map
+                    task = m_currentWrites.entrySet().iterator().next().getValue();
+                    taskQueueOffer(task);
+                }
             }
-        }
-        else {
-            assert(!m_currentWrites.isEmpty());
-            TransactionTask task;
-            // There currently should only ever be one current write.  This
-            // is the awkward way to get a single value out of a Map
-            task = m_currentWrites.entrySet().iterator().next().getValue();
-            taskQueueOffer(task);
-        }
+        });
     }
 
     /**
@@ -261,9 +415,9 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
      * @return
      */
     @Override
-    synchronized int size()
+    int size()
     {
-        return m_backlog.size();
+        return m_backlogSize;
     }
 
     @Override
@@ -271,10 +425,7 @@ public class MpTransactionTaskQueue extends TransactionTaskQueue
     {
         StringBuilder sb = new StringBuilder();
         sb.append("MpTransactionTaskQueue:").append("\n");
-        sb.append("\tSIZE: ").append(m_backlog.size()).append("\n");
-        if (!m_backlog.isEmpty()) {
-            sb.append("\tHEAD: ").append(m_backlog.getFirst()).append("\n");
-        }
+        sb.append("\tSIZE: ").append(m_backlogSize).append("\n");
         return sb.toString();
     }
 }
@@ -17,13 +17,12 @@
 
 package org.voltdb.iv2;
 
-import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.messaging.TransactionInfoBaseMessage;
@@ -41,6 +40,13 @@ import org.voltdb.messaging.Iv2RepairLogResponseMessage;
  * shared with less informed RIs should the PI shed its mortal coil.  This includes
  * recording and sharing messages starting and completing multipartition transactions
  * so that a new MPI can repair the cluster state on promotion.
+ *
+ * The SP and MP logs are ring buffers of handles, txnIds and messages addressed by
+ * index, so logging a message allocates nothing once the rings are big enough and
+ * truncation only advances the head. Rings shrink again once truncation leaves them
+ * mostly empty, so a long running MP transaction doesn't leave a large log behind.
+ * Repair responses are built one at a time as they are sent, merging the two logs in
+ * handle order.
  */
 public class RepairLog
 {
@@ -89,37 +95,132 @@ public class RepairLog
         {
             return m_msg;
         }
+    }
+
+    /**
+     * Log entries in delivery order in a growable ring of parallel arrays
+     */
+    static final class EntryRing
+    {
+        static final int MIN_CAPACITY = 64;
+
+        private long[] m_handles = new long[MIN_CAPACITY];
+        private long[] m_txnIds = new long[MIN_CAPACITY];
+        private VoltMessage[] m_messages = new VoltMessage[MIN_CAPACITY];
+        private int m_head = 0;
+        private int m_size = 0;
+        // false once an entry was added with a lower handle than the one before it
+        private boolean m_ordered = true;
+
+        int size()
+        {
+            return m_size;
+        }
+
+        int capacity()
+        {
+            return m_handles.length;
+        }
+
+        boolean isOrdered()
+        {
+            return m_ordered;
+        }
+
+        private int slot(int index)
+        {
+            return (m_head + index) & (m_handles.length - 1);
+        }
+
+        long handle(int index)
+        {
+            return m_handles[slot(index)];
+        }
 
-        boolean isSP()
+        long txnId(int index)
         {
-            return m_type == IS_SP;
+            return m_txnIds[slot(index)];
         }
 
-        boolean isMP()
+        VoltMessage message(int index)
         {
-            return m_type == IS_MP;
+            return m_messages[slot(index)];
         }
 
-        boolean canTruncate(long handle)
+        void add(VoltMessage msg, long handle, long txnId)
         {
-            if (isSP() && m_handle <= handle) {
-                return true;
+            if (m_size == m_handles.length) {
+                resize(m_handles.length * 2);
+            }
+            if (m_size > 0 && handle < handle(m_size - 1)) {
+                m_ordered = false;
+            }
+            final int slot = slot(m_size);
+            m_handles[slot] = handle;
+            m_txnIds[slot] = txnId;
+            m_messages[slot] = msg;
+            m_size++;
+        }
+
+        /**
+         * Drop entries from the front while their handle, or txnId for MP entries,
+         * is at or below the truncation point
+         */
+        void truncate(long truncationPoint, boolean byTxnId)
+        {
+            final long[] keys = byTxnId ? m_txnIds : m_handles;
+            final int mask = m_handles.length - 1;
+            while (m_size > 0 && keys[m_head] <= truncationPoint) {
+                m_messages[m_head] = null;
+                m_head = (m_head + 1) & mask;
+                m_size--;
+            }
+            if (m_size == 0) {
+                m_head = 0;
+                m_ordered = true;
+            }
+            int capacity = m_handles.length;
+            while (capacity > MIN_CAPACITY && m_size < capacity / 4) {
+                capacity /= 2;
             }
-            else if (isMP() && m_txnId <= handle) {
-                return true;
+            if (capacity != m_handles.length) {
+                resize(capacity);
             }
-            return false;
+        }
+
+        private void resize(int capacity)
+        {
+            final long[] handles = new long[capacity];
+            final long[] txnIds = new long[capacity];
+            final VoltMessage[] messages = new VoltMessage[capacity];
+            for (int i = 0; i < m_size; i++) {
+                final int slot = slot(i);
+                handles[i] = m_handles[slot];
+                txnIds[i] = m_txnIds[slot];
+                messages[i] = m_messages[slot];
+            }
+            m_handles = handles;
+            m_txnIds = txnIds;
+            m_messages = messages;
+            m_head = 0;
+        }
+
+        // bytes held by the ring itself, not counting the messages
+        long footprint()
+        {
+            return m_handles.length * (8L + 8L + 8L);
         }
     }
 
     // log storage.
-    final Deque<Item> m_logSP;
-    final Deque<Item> m_logMP;
+    final EntryRing m_logSP;
+    final EntryRing m_logMP;
+    RepairLogStats m_stats = null;
 
     RepairLog()
     {
-        m_logSP = new ArrayDeque<Item>();
-        m_logMP = new ArrayDeque<Item>();
+        m_logSP = new EntryRing();
+        m_logMP = new EntryRing();
     }
 
     // get the HSID for dump logging
@@ -137,12 +238,19 @@ public class RepairLog
         // action always happens after repair is completed.
         if (m_isLeader) {
             truncate(Long.MAX_VALUE, IS_SP);
+            updateStats();
         }
     }
 
     // Offer a new message to the repair log. This will truncate
     // the repairLog if the message includes a truncation hint.
     public void deliver(VoltMessage msg)
+    {
+        deliverInternal(msg);
+        updateStats();
+    }
+
+    private void deliverInternal(VoltMessage msg)
     {
         if (!m_isLeader && msg instanceof Iv2InitiateTaskMessage) {
             final Iv2InitiateTaskMessage m = (Iv2InitiateTaskMessage)msg;
@@ -151,7 +259,7 @@ public class RepairLog
             if (!m.isReadOnly()) {
                 m_lastSpHandle = m.getSpHandle();
                 truncate(m.getTruncationHandle(), IS_SP);
-                m_logSP.add(new Item(IS_SP, m, m.getSpHandle(), m.getTxnId()));
+                m_logSP.add(m, m.getSpHandle(), m.getTxnId());
             }
         } else if (msg instanceof FragmentTaskMessage) {
             final TransactionInfoBaseMessage m = (TransactionInfoBaseMessage)msg;
@@ -159,7 +267,7 @@ public class RepairLog
                 truncate(m.getTruncationHandle(), IS_MP);
                 // only log the first fragment of a procedure (and handle 1st case)
                 if (m.getTxnId() > m_lastMpHandle || m_lastMpHandle == Long.MAX_VALUE) {
-                    m_logMP.add(new Item(IS_MP, m, m.getSpHandle(), m.getTxnId()));
+                    m_logMP.add(m, m.getSpHandle(), m.getTxnId());
                     m_lastMpHandle = m.getTxnId();
                     m_lastSpHandle = m.getSpHandle();
                 }
@@ -171,7 +279,7 @@ public class RepairLog
             CompleteTransactionMessage ctm = (CompleteTransactionMessage)msg;
             if (!ctm.isReadOnly() && !ctm.isRestart()) {
                 truncate(ctm.getTruncationHandle(), IS_MP);
-                m_logMP.add(new Item(IS_MP, ctm, ctm.getSpHandle(), ctm.getTxnId()));
+                m_logMP.add(ctm, ctm.getSpHandle(), ctm.getTxnId());
                 //Restore will send a complete transaction message with a lower mp transaction id because
                 //the restore transaction precedes the loading of the right mp transaction id from the snapshot
                 //Hence Math.max
@@ -183,8 +291,9 @@ public class RepairLog
             String who = CoreUtils.hsIdToString(m_HSId);
             tmLog.warn("Repair log dump for site: " + who + ", isLeader: " + m_isLeader);
             tmLog.warn("" + who + ": lastSpHandle: " + m_lastSpHandle + ", lastMpHandle: " + m_lastMpHandle);
-            for (Iv2RepairLogResponseMessage il : contents(0l, false)) {
-               tmLog.warn("" + who + ": msg: " + il);
+            Iterator<Iv2RepairLogResponseMessage> il = streamContents(0l, false);
+            while (il.hasNext()) {
+               tmLog.warn("" + who + ": msg: " + il.next());
             }
         }
     }
@@ -197,21 +306,27 @@ public class RepairLog
             return;
         }
 
-        Deque<RepairLog.Item> deq = null;
+        // SP entries truncate by spHandle, MP entries by txnId, see EntryRing.truncate
         if (isSP) {
-            deq = m_logSP;
+            m_logSP.truncate(handle, false);
         }
         else {
-            deq = m_logMP;
+            m_logMP.truncate(handle, true);
         }
+    }
 
-        RepairLog.Item item = null;
-        while ((item = deq.peek()) != null) {
-            if (item.canTruncate(handle)) {
-                deq.poll();
-            } else {
-                break;
-            }
+    // publish the log size to the stats source, if there is one
+    void setStats(RepairLogStats stats)
+    {
+        m_stats = stats;
+        updateStats();
+    }
+
+    private void updateStats()
+    {
+        if (m_stats != null) {
+            m_stats.update(m_logSP.size(), m_logMP.size(), m_logSP.capacity() + m_logMP.capacity(),
+                    m_logSP.footprint() + m_logMP.footprint());
         }
     }
 
@@ -239,48 +354,102 @@ public class RepairLog
     // produce the contents of the repair log.
     public List<Iv2RepairLogResponseMessage> contents(long requestId, boolean forMPI)
     {
-        List<Item> items = new LinkedList<Item>();
-        // All cases include the log of MP transactions
-        items.addAll(m_logMP);
-        // SP repair requests also want the SP transactions
-        if (!forMPI) {
-            items.addAll(m_logSP);
+        List<Iv2RepairLogResponseMessage> responses = new ArrayList<Iv2RepairLogResponseMessage>();
+        Iterator<Iv2RepairLogResponseMessage> iter = streamContents(requestId, forMPI);
+        while (iter.hasNext()) {
+            responses.add(iter.next());
         }
+        return responses;
+    }
 
-        // Contents need to be sorted in increasing spHandle order
-        Collections.sort(items, m_handleComparator);
-
-        int ofTotal = items.size() + 1;
+    /**
+     * Produce the contents of the repair log one response at a time. The log must not
+     * change until the iterator is done.
+     */
+    public Iterator<Iv2RepairLogResponseMessage> streamContents(final long requestId, boolean forMPI)
+    {
+        // All cases include the log of MP transactions
+        // SP repair requests also want the SP transactions
+        final EntryRing sp = forMPI ? new EntryRing() : m_logSP;
+        final EntryRing mp = m_logMP;
+        final int ofTotal = sp.size() + mp.size() + 1;
         tmLog.debug("Responding with " + ofTotal + " repair log parts.");
-        List<Iv2RepairLogResponseMessage> responses =
-            new LinkedList<Iv2RepairLogResponseMessage>();
 
         // this constructor sets its sequence no to 0 as ack
         // messages are first in the sequence
-        Iv2RepairLogResponseMessage hheader =
+        final Iv2RepairLogResponseMessage hheader =
                 new Iv2RepairLogResponseMessage(
                         requestId,
                         ofTotal,
                         m_lastSpHandle,
                         m_lastMpHandle,
                         TheHashinator.getCurrentVersionedConfigCooked());
-        responses.add(hheader);
-
-        int seq = responses.size();
 
-        Iterator<Item> itemator = items.iterator();
-        while (itemator.hasNext()) {
-            Item item = itemator.next();
-            Iv2RepairLogResponseMessage response =
-                new Iv2RepairLogResponseMessage(
-                        requestId,
-                        seq++,
-                        ofTotal,
-                        item.getHandle(),
-                        item.getTxnId(),
-                        item.getMessage());
-            responses.add(response);
+        // Contents need to be in increasing spHandle order. Each log is already unless
+        // something was logged out of order, then fall back to sorting.
+        final List<Item> sorted;
+        if (sp.isOrdered() && mp.isOrdered()) {
+            sorted = null;
         }
-        return responses;
+        else {
+            sorted = new ArrayList<Item>(ofTotal - 1);
+            for (int i = 0; i < mp.size(); i++) {
+                sorted.add(new Item(IS_MP, mp.message(i), mp.handle(i), mp.txnId(i)));
+            }
+            for (int i = 0; i < sp.size(); i++) {
+                sorted.add(new Item(IS_SP, sp.message(i), sp.handle(i), sp.txnId(i)));
+            }
+            Collections.sort(sorted, m_handleComparator);
+        }
+
+        return new Iterator<Iv2RepairLogResponseMessage>() {
+            int m_seq = 0;
+            int m_spIndex = 0;
+            int m_mpIndex = 0;
+
+            @Override
+            public boolean hasNext()
+            {
+                return m_seq < ofTotal;
+            }
+
+            @Override
+            public Iv2RepairLogResponseMessage next()
+            {
+                if (m_seq == 0) {
+                    m_seq++;
+                    return hheader;
+                }
+                if (m_seq >= ofTotal) {
+                    throw new NoSuchElementException();
+                }
+                final int seq = m_seq++;
+                if (sorted != null) {
+                    final Item item = sorted.get(seq - 1);
+                    return new Iv2RepairLogResponseMessage(requestId, seq, ofTotal,
+                            item.getHandle(), item.getTxnId(), item.getMessage());
+                }
+                // MP entries go first on equal handles, as the stable sort used to put them
+                final EntryRing ring;
+                final int index;
+                if (m_spIndex == sp.size()
+                        || (m_mpIndex < mp.size() && mp.handle(m_mpIndex) <= sp.handle(m_spIndex))) {
+                    ring = mp;
+                    index = m_mpIndex++;
+                }
+                else {
+                    ring = sp;
+                    index = m_spIndex++;
+                }
+                return new Iv2RepairLogResponseMessage(requestId, seq, ofTotal,
+                        ring.handle(index), ring.txnId(index), ring.message(index));
+            }
+
+            @Override
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
     }
 }
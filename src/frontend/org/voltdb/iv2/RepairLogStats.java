@@ -0,0 +1,109 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.SiteStatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Size of the repair log of an initiator. The log publishes its size here after
+ * each message it is given, and the stats thread reads it.
+ */
+public class RepairLogStats extends SiteStatsSource {
+    private volatile int m_spEntries;
+    private volatile int m_mpEntries;
+    private volatile int m_maxEntries;
+    private volatile int m_lastMaxEntries;
+    private volatile int m_capacity;
+    private volatile long m_footprint;
+    private boolean m_interval;
+
+    public RepairLogStats(long siteId) {
+        super(siteId, false);
+    }
+
+    void update(int spEntries, int mpEntries, int capacity, long footprint) {
+        m_spEntries = spEntries;
+        m_mpEntries = mpEntries;
+        m_capacity = capacity;
+        m_footprint = footprint;
+        final int entries = spEntries + mpEntries;
+        if (entries > m_maxEntries) {
+            m_maxEntries = entries;
+        }
+        if (entries > m_lastMaxEntries) {
+            m_lastMaxEntries = entries;
+        }
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("SP_ENTRIES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("MP_ENTRIES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("MAX_ENTRIES", VoltType.INTEGER));
+        columns.add(new ColumnInfo("CAPACITY", VoltType.INTEGER));
+        columns.add(new ColumnInfo("INDEX_BYTES", VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        rowValues[columnNameToIndex.get("SP_ENTRIES")] = m_spEntries;
+        rowValues[columnNameToIndex.get("MP_ENTRIES")] = m_mpEntries;
+        if (m_interval) {
+            rowValues[columnNameToIndex.get("MAX_ENTRIES")] = m_lastMaxEntries;
+            m_lastMaxEntries = m_spEntries + m_mpEntries;
+        } else {
+            rowValues[columnNameToIndex.get("MAX_ENTRIES")] = m_maxEntries;
+        }
+        rowValues[columnNameToIndex.get("CAPACITY")] = m_capacity;
+        rowValues[columnNameToIndex.get("INDEX_BYTES")] = m_footprint;
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(final boolean interval) {
+        m_interval = interval;
+        return new Iterator<Object>() {
+            boolean returnRow = true;
+            @Override
+            public boolean hasNext() {
+                return returnRow;
+            }
+
+            @Override
+            public Object next() {
+                if (returnRow) {
+                    returnRow = false;
+                    return new Object();
+                } else {
+                    return null;
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
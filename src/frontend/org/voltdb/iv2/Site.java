@@ -19,6 +19,7 @@ package org.voltdb.iv2;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashSet;
@@ -69,6 +70,8 @@ import org.voltdb.catalog.Cluster;
 import org.voltdb.catalog.Database;
 import org.voltdb.catalog.Table;
 import org.voltdb.dtxn.SiteTracker;
+import org.voltdb.dtxn.StageLatencyTracer;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
 import org.voltdb.dtxn.TransactionState;
 import org.voltdb.dtxn.UndoAction;
 import org.voltdb.exceptions.EEException;
@@ -127,6 +130,11 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
     // Manages pending tasks.
     final SiteTaskerQueue m_scheduler;
 
+    // Maximum number of ready tasks taken from the queue at once while running, 1 takes them one at a time
+    private static final int TASK_BATCH_SIZE = Math.max(1, Integer.getInteger("SITE_TASK_BATCH_SIZE", 16));
+    // Tasks taken from the queue but not run yet, only used by the site thread
+    private final ArrayDeque<SiteTasker> m_taskBatch = new ArrayDeque<SiteTasker>(TASK_BATCH_SIZE);
+
     /*
      * There is really no legit reason to touch the initiator mailbox from the site,
      * but it turns out to be necessary at startup when restoring a snapshot. The snapshot
@@ -519,8 +527,13 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
         try {
             while (m_shouldContinue) {
                 if (m_rejoinState == kStateRunning) {
-                    // Normal operation blocks the site thread on the sitetasker queue.
-                    SiteTasker task = m_scheduler.take();
+                    // Normal operation blocks the site thread on the sitetasker queue
+                    // and then takes every ready task up to the batch size with it.
+                    if (m_taskBatch.isEmpty()) {
+                        m_scheduler.takeBatch(m_taskBatch, TASK_BATCH_SIZE);
+                    }
+                    SiteTasker task = m_taskBatch.poll();
+                    StageLatencyTracer.record(Stage.QUEUE, task.m_queuedNanos);
                     if (task instanceof TransactionTask) {
                         m_currentTxnId = ((TransactionTask)task).getTxnId();
                         m_lastTxnTime = EstTime.currentTimeMillis();
@@ -1086,17 +1099,22 @@ public class Site implements Runnable, SiteProcedureConnection, SiteSnapshotConn
                                             boolean readOnly)
             throws EEException
     {
-        return m_ee.executePlanFragments(
-                numFragmentIds,
-                planFragmentIds,
-                inputDepIds,
-                parameterSets,
-                sqlTexts,
-                txnId,
-                spHandle,
-                m_lastCommittedSpHandle,
-                uniqueId,
-                readOnly ? Long.MAX_VALUE : getNextUndoTokenBroken());
+        final long start = StageLatencyTracer.start();
+        try {
+            return m_ee.executePlanFragments(
+                    numFragmentIds,
+                    planFragmentIds,
+                    inputDepIds,
+                    parameterSets,
+                    sqlTexts,
+                    txnId,
+                    spHandle,
+                    m_lastCommittedSpHandle,
+                    uniqueId,
+                    readOnly ? Long.MAX_VALUE : getNextUndoTokenBroken());
+        } finally {
+            StageLatencyTracer.record(Stage.EXECUTE, start);
+        }
     }
 
     @Override
@@ -25,6 +25,9 @@ import org.voltdb.SiteProcedureConnection;
 
 public abstract class SiteTasker {
 
+    // when a sampled task was offered to the site task queue, 0 if it wasn't sampled
+    long m_queuedNanos = 0;
+
     public static abstract class SiteTaskerRunnable extends SiteTasker {
         abstract void run();
 
@@ -17,20 +17,23 @@
 
 package org.voltdb.iv2;
 
+import java.util.Collection;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.TimeUnit;
 
-import org.voltcore.utils.CoreUtils;
 import org.voltdb.StarvationTracker;
+import org.voltdb.dtxn.StageLatencyTracer;
 
 /** SiteTaskerScheduler orders SiteTaskers for execution. */
 public class SiteTaskerQueue
 {
     private final LinkedTransferQueue<SiteTasker> m_tasks = new LinkedTransferQueue<SiteTasker>();
     private StarvationTracker m_starvationTracker;
+    private final SiteWaitStrategy m_waitStrategy = new SiteWaitStrategy();
 
     public boolean offer(SiteTasker task)
     {
+        task.m_queuedNanos = StageLatencyTracer.start();
         return m_tasks.offer(task);
     }
 
@@ -44,12 +47,25 @@ public class SiteTaskerQueue
             return task;
         }
         try {
-            return CoreUtils.queueSpinTake(m_tasks);
+            return m_waitStrategy.take(m_tasks, m_starvationTracker);
         } finally {
             m_starvationTracker.endStarvation();
         }
     }
 
+    /**
+     * Block until a task is ready, then move it and up to maxTasks - 1 more ready
+     * tasks to batch in queue order.
+     * @return the number of tasks added to batch
+     */
+    public int takeBatch(Collection<SiteTasker> batch, int maxTasks) throws InterruptedException
+    {
+        batch.add(take());
+        final int count = maxTasks > 1 ? 1 + m_tasks.drainTo(batch, maxTasks - 1) : 1;
+        m_starvationTracker.recordBatch(count);
+        return count;
+    }
+
     // Non-blocking poll on the site tasker queue.
     public SiteTasker poll()
     {
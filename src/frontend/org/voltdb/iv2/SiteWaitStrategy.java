@@ -0,0 +1,161 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.StarvationTracker;
+
+/**
+ * How a site thread waits for its SiteTaskerQueue once it finds it empty, selected with
+ * the SITE_WAIT_STRATEGY system property:
+ *
+ * BLOCKING (default) spins for QUEUE_SPIN_MICROS, which defaults to 0, and then blocks.
+ * BUSY_SPIN never blocks. It only makes sense when sites are bound to dedicated cores.
+ * ADAPTIVE spins for up to SITE_WAIT_SPIN_MICROS, yields for SITE_WAIT_YIELD_MICROS and
+ * then blocks. The spin time doubles each time spinning or yielding finds a task and
+ * halves each time the site has to block, so sites that are busy avoid park/unpark
+ * while idle sites stop burning CPU.
+ *
+ * Time spent spinning and yielding is reported to the StarvationTracker separately from
+ * the total time waited. An instance holds the adaptive state of one queue and must only
+ * be used by the thread that takes from it.
+ */
+class SiteWaitStrategy {
+    private static final VoltLogger hostLog = new VoltLogger("HOST");
+
+    enum Mode {
+        BLOCKING,
+        BUSY_SPIN,
+        ADAPTIVE
+    }
+
+    static final Mode MODE = parseMode(System.getProperty("SITE_WAIT_STRATEGY", Mode.BLOCKING.name()));
+    static final long MAX_SPIN_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Integer.getInteger("SITE_WAIT_SPIN_MICROS", 50));
+    static final long YIELD_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Integer.getInteger("SITE_WAIT_YIELD_MICROS", 100));
+    // Adaptive spinning never goes below this, so a site that went idle can find out it is busy again
+    static final long MIN_SPIN_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+    private final Mode m_mode;
+    private final long m_maxSpinNanos;
+    private final long m_yieldNanos;
+    private long m_spinNanos;
+
+    private static Mode parseMode(String mode) {
+        try {
+            return Mode.valueOf(mode.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            hostLog.warn("Unknown SITE_WAIT_STRATEGY " + mode + ", using " + Mode.BLOCKING);
+            return Mode.BLOCKING;
+        }
+    }
+
+    SiteWaitStrategy() {
+        this(MODE);
+    }
+
+    SiteWaitStrategy(Mode mode) {
+        this(mode, MAX_SPIN_NANOS, YIELD_NANOS);
+    }
+
+    SiteWaitStrategy(Mode mode, long maxSpinNanos, long yieldNanos) {
+        m_mode = mode;
+        if (mode == Mode.BLOCKING) {
+            m_maxSpinNanos = CoreUtils.QUEUE_SPIN_MICROSECONDS;
+            m_yieldNanos = 0;
+        } else {
+            m_maxSpinNanos = Math.max(maxSpinNanos, MIN_SPIN_NANOS);
+            m_yieldNanos = yieldNanos;
+        }
+        m_spinNanos = m_maxSpinNanos;
+    }
+
+    Mode getMode() {
+        return m_mode;
+    }
+
+    long getSpinNanos() {
+        return m_spinNanos;
+    }
+
+    /**
+     * Wait for a task on a queue that was just found empty
+     */
+    <T> T take(BlockingQueue<T> queue, StarvationTracker tracker) throws InterruptedException {
+        if (m_mode == Mode.BUSY_SPIN) {
+            return busySpin(queue, tracker);
+        }
+        if (m_spinNanos == 0 && m_yieldNanos == 0) {
+            return queue.take();
+        }
+
+        final long start = System.nanoTime();
+        long now = start;
+        T task;
+        while (now - start < m_spinNanos) {
+            if ((task = queue.poll()) != null) {
+                return foundWhileSpinning(task, start, tracker);
+            }
+            now = System.nanoTime();
+        }
+        final long yieldStart = now;
+        while (now - yieldStart < m_yieldNanos) {
+            Thread.yield();
+            if ((task = queue.poll()) != null) {
+                return foundWhileSpinning(task, start, tracker);
+            }
+            now = System.nanoTime();
+        }
+
+        tracker.recordSpin(now - start);
+        if (m_mode == Mode.ADAPTIVE) {
+            m_spinNanos = Math.max(MIN_SPIN_NANOS, m_spinNanos / 2);
+        }
+        return queue.take();
+    }
+
+    private <T> T foundWhileSpinning(T task, long start, StarvationTracker tracker) {
+        tracker.recordSpin(System.nanoTime() - start);
+        if (m_mode == Mode.ADAPTIVE) {
+            m_spinNanos = Math.min(m_maxSpinNanos, m_spinNanos * 2);
+        }
+        return task;
+    }
+
+    private static <T> T busySpin(BlockingQueue<T> queue, StarvationTracker tracker) throws InterruptedException {
+        final long start = System.nanoTime();
+        int spins = 0;
+        T task;
+        try {
+            while ((task = queue.poll()) == null) {
+                // stay interruptible like a blocking take, without reading the flag on every spin
+                if ((++spins & 0x3ff) == 0 && Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            tracker.recordSpin(System.nanoTime() - start);
+        }
+        return task;
+    }
+}
@@ -35,6 +35,7 @@ import org.voltdb.Promotable;
 import org.voltdb.SnapshotCompletionMonitor;
 import org.voltdb.StartAction;
 import org.voltdb.StatsAgent;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltZK;
 import org.voltdb.export.ExportManager;
@@ -108,6 +109,12 @@ public class SpInitiator extends BaseInitiator implements Promotable
         super.configureCommon(backend, catalogContext,
                 csp, numberOfPartitions, startAction, agent, memStats, cl, coreBindIds, drGateway);
 
+        DuplicateCounterStats dcs = new DuplicateCounterStats(getInitiatorHSId());
+        ((SpScheduler) m_scheduler).setDuplicateCounterStats(dcs);
+        agent.registerStatsSource(StatsSelector.DUPLICATECOUNTER,
+                                  getInitiatorHSId(),
+                                  dcs);
+
         m_tickProducer.start();
 
         // add ourselves to the ephemeral node list which BabySitters will watch for this
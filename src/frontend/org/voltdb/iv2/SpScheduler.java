@@ -45,6 +45,8 @@ import org.voltdb.SystemProcedureCatalog;
 import org.voltdb.VoltDB;
 import org.voltdb.VoltTable;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.dtxn.StageLatencyTracer;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
 import org.voltdb.dtxn.TransactionState;
 import org.voltdb.iv2.SiteTasker.SiteTaskerRunnable;
 import org.voltdb.messaging.BorrowTaskMessage;
@@ -136,6 +138,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         new HashMap<Long, TransactionState>();
     private final Map<DuplicateCounterKey, DuplicateCounter> m_duplicateCounters =
         new HashMap<DuplicateCounterKey, DuplicateCounter>();
+    private DuplicateCounterStats m_duplicateCounterStats = null;
     // MP fragment tasks or completion tasks pending durability
     private final Map<Long, Queue<TransactionTask>> m_mpsPendingDurability =
         new HashMap<Long, Queue<TransactionTask>>();
@@ -166,6 +169,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                     void run() {
                         synchronized (m_lock) {
                             for (Object o : durableThings) {
+                                StageLatencyTracer.record(Stage.DURABILITY, ((TransactionTask)o).m_loggedNanos);
                                 m_pendingTasks.offer((TransactionTask)o);
 
                                 // Make sure all queued tasks for this MP txn are released
@@ -200,6 +204,32 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         writeIv2ViableReplayEntry();
     }
 
+    void setDuplicateCounterStats(DuplicateCounterStats stats)
+    {
+        m_duplicateCounterStats = stats;
+    }
+
+    private void addDuplicateCounter(DuplicateCounterKey key, DuplicateCounter counter)
+    {
+        if (m_duplicateCounterStats != null) {
+            counter.m_stats = m_duplicateCounterStats;
+            m_duplicateCounterStats.counterAdded();
+        }
+        DuplicateCounter replaced = m_duplicateCounters.put(key, counter);
+        if (replaced != null && replaced.m_stats != null) {
+            replaced.m_stats.counterRemoved(replaced);
+        }
+    }
+
+    private DuplicateCounter removeDuplicateCounter(DuplicateCounterKey key)
+    {
+        DuplicateCounter counter = m_duplicateCounters.remove(key);
+        if (counter != null && counter.m_stats != null) {
+            counter.m_stats.counterRemoved(counter);
+        }
+        return counter;
+    }
+
     public void setDRGateway(PartitionDRGateway gateway)
     {
         m_drGateway = gateway;
@@ -249,7 +279,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         // Maintain the CI invariant that responses arrive in txnid order.
         Collections.sort(doneCounters);
         for (DuplicateCounterKey key : doneCounters) {
-            DuplicateCounter counter = m_duplicateCounters.remove(key);
+            DuplicateCounter counter = removeDuplicateCounter(key);
             VoltMessage resp = counter.getLastResponse();
             if (resp != null) {
                 // MPI is tracking deps per partition HSID.  We need to make
@@ -529,7 +559,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 DuplicateCounter counter = new DuplicateCounter(
                         msg.getInitiatorHSId(),
                         msg.getTxnId(), m_replicaHSIds, msg.getStoredProcedureName());
-                m_duplicateCounters.put(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
+                addDuplicateCounter(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
             }
         }
         else {
@@ -555,6 +585,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         final SpProcedureTask task =
             new SpProcedureTask(m_mailbox, procedureName, m_pendingTasks, msg, m_drGateway);
         if (!msg.isReadOnly()) {
+            task.m_loggedNanos = StageLatencyTracer.start();
             ListenableFuture<Object> durabilityBackpressureFuture =
                     m_cl.log(msg, msg.getSpHandle(), null, m_durabilityListener, task);
             //Durability future is always null for sync command logging
@@ -605,7 +636,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         DuplicateCounter counter = new DuplicateCounter(
                 HostMessenger.VALHALLA,
                 message.getTxnId(), expectedHSIds, message.getStoredProcedureName());
-        m_duplicateCounters.put(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()), counter);
+        addDuplicateCounter(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()), counter);
 
         m_uniqueIdGenerator.updateMostRecentlyGeneratedUniqueId(message.getUniqueId());
         // is local repair necessary?
@@ -634,8 +665,8 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         List<Long> expectedHSIds = new ArrayList<Long>(needsRepair);
         DuplicateCounter counter = new DuplicateCounter(
                 message.getCoordinatorHSId(), // Assume that the MPI's HSID hasn't changed
-                message.getTxnId(), expectedHSIds, "MP_DETERMINISM_ERROR");
-        m_duplicateCounters.put(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()), counter);
+                message.getTxnId(), expectedHSIds, "MP_DETERMINISM_ERROR", message.isReadOnly());
+        addDuplicateCounter(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()), counter);
 
         // is local repair necessary?
         if (needsRepair.contains(m_mailbox.getHSId())) {
@@ -681,7 +712,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (counter != null) {
             int result = counter.offer(message);
             if (result == DuplicateCounter.DONE) {
-                m_duplicateCounters.remove(dcKey);
+                removeDuplicateCounter(dcKey);
                 m_repairLogTruncationHandle = spHandle;
                 m_mailbox.send(counter.m_destinationId, counter.getLastResponse());
             }
@@ -789,14 +820,14 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                 if (message.getFragmentTaskType() != FragmentTaskMessage.SYS_PROC_PER_SITE) {
                     counter = new DuplicateCounter(
                             msg.getCoordinatorHSId(),
-                            msg.getTxnId(), m_replicaHSIds, "MP_DETERMINISM_ERROR");
+                            msg.getTxnId(), m_replicaHSIds, "MP_DETERMINISM_ERROR", msg.isReadOnly());
                 }
                 else {
                     counter = new SysProcDuplicateCounter(
                             msg.getCoordinatorHSId(),
                             msg.getTxnId(), m_replicaHSIds, "MP_DETERMINISM_ERROR");
                 }
-                m_duplicateCounters.put(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
+                addDuplicateCounter(new DuplicateCounterKey(msg.getTxnId(), newSpHandle), counter);
             }
         }
         else {
@@ -851,6 +882,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
                                  m_pendingTasks, msg, null);
         }
         if (logThis) {
+            task.m_loggedNanos = StageLatencyTracer.start();
             ListenableFuture<Object> durabilityBackpressureFuture =
                     m_cl.log(msg.getInitiateTask(), msg.getSpHandle(), Ints.toArray(msg.getInvolvedPartitions()),
                              m_durabilityListener, task);
@@ -921,7 +953,7 @@ public class SpScheduler extends Scheduler implements SnapshotCompletionInterest
         if (counter != null) {
             int result = counter.offer(message);
             if (result == DuplicateCounter.DONE) {
-                m_duplicateCounters.remove(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()));
+                removeDuplicateCounter(new DuplicateCounterKey(message.getTxnId(), message.getSpHandle()));
                 m_repairLogTruncationHandle = message.getSpHandle();
                 FragmentResponseMessage resp = (FragmentResponseMessage)counter.getLastResponse();
                 // MPI is tracking deps per partition HSID.  We need to make
@@ -77,6 +77,7 @@ public class SysProcDuplicateCounter extends DuplicateCounter
                  * the dummy ones with this legit response.
                  */
                 if (!tables.isEmpty() && tables.get(0).getStatusCode() == VoltTableUtil.NULL_DEPENDENCY_STATUS) {
+                    retain(-payloadSize(tables.toArray(new VoltTable[tables.size()])));
                     tables.clear();
                 }
 
@@ -95,9 +96,10 @@ public class SysProcDuplicateCounter extends DuplicateCounter
             }
 
             tables.add(dep);
+            retain(dep.getSerializedSize());
         }
 
-        return checkCommon(hash, message.isRecovering(), null, message);
+        return checkCommon(hash, message.isRecovering(), true, null, message);
     }
 
     @Override
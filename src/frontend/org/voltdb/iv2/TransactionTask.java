@@ -32,6 +32,8 @@ public abstract class TransactionTask extends SiteTasker
     final protected TransactionState m_txnState;
     final protected TransactionTaskQueue m_queue;
     protected ListenableFuture<Object> m_durabilityBackpressureFuture = CoreUtils.COMPLETED_FUTURE;
+    // when a sampled task was given to the command log, 0 if it wasn't sampled
+    long m_loggedNanos = 0;
 
     public TransactionTask(TransactionState txnState, TransactionTaskQueue queue)
     {
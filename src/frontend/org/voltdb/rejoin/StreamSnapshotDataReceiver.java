@@ -124,7 +124,8 @@ implements Runnable {
                     int uncompressedSize =
                             CompressionService.decompressBuffer(
                                     compressionBuffer,
-                                    messageBuffer);
+                                    messageBuffer,
+                                    dataMsg.getCodec());
                     messageBuffer.limit(uncompressedSize);
                     m_queue.offer(Pair.of(dataMsg.m_sourceHSId, Pair.of(dataMsg.getTargetId(), container)));
                     success = true;
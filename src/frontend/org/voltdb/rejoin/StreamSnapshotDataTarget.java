@@ -40,6 +40,7 @@ import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.SnapshotDataTarget;
 import org.voltdb.SnapshotFormat;
 import org.voltdb.VoltDB;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 
 import com.google_voltpatches.common.base.Preconditions;
@@ -69,6 +70,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     private final Map<Integer, byte[]> m_schemas = new HashMap<Integer, byte[]>();
     // HSId of the destination mailbox
     private final long m_destHSId;
+    // codec the blocks are compressed with, each data message says which
+    private final CompressionCodec m_codec;
     // input and output threads
     private final SnapshotSender m_sender;
     private final StreamSnapshotAckReceiver m_ackReceiver;
@@ -90,18 +93,21 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
     private final AtomicBoolean m_closed = new AtomicBoolean(false);
 
     public StreamSnapshotDataTarget(long HSId, byte[] hashinatorConfig, Map<Integer, byte[]> schemas,
+                                    CompressionCodec codec,
                                     SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
     {
-        this(HSId, hashinatorConfig, schemas, DEFAULT_WRITE_TIMEOUT_MS, sender, ackReceiver);
+        this(HSId, hashinatorConfig, schemas, codec, DEFAULT_WRITE_TIMEOUT_MS, sender, ackReceiver);
     }
 
     public StreamSnapshotDataTarget(long HSId, byte[] hashinatorConfig, Map<Integer, byte[]> schemas,
+                                    CompressionCodec codec,
                                     long writeTimeout, SnapshotSender sender, StreamSnapshotAckReceiver ackReceiver)
     {
         super();
         m_targetId = m_totalSnapshotTargetCount.getAndIncrement();
         m_schemas.putAll(schemas);
         m_destHSId = HSId;
+        m_codec = codec;
         m_sender = sender;
         m_sender.registerDataTarget(m_targetId);
         m_ackReceiver = ackReceiver;
@@ -128,6 +134,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         BBContainer m_message;
         final long m_targetId;
         final long m_destHSId;
+        final CompressionCodec m_codec;
         final long m_ts;
 
         final boolean m_isEmpty;
@@ -142,16 +149,18 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
             m_isEmpty = true;
             m_targetId = -1;
             m_destHSId = -1;
+            m_codec = null;
             m_ts = -1;
             m_future = null;
         }
 
-        SendWork (long targetId, long destHSId,
+        SendWork (long targetId, long destHSId, CompressionCodec codec,
                   BBContainer message,
                   SettableFuture<Boolean> future) {
             m_isEmpty = false;
             m_targetId = targetId;
             m_destHSId = destHSId;
+            m_codec = codec;
             m_message = message;
             m_ts = System.currentTimeMillis();
             m_future = future;
@@ -177,8 +186,8 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
         protected int send(Mailbox mb, MessageFactory msgFactory, BBContainer message) throws IOException {
             final ByteBuffer messageBuffer = message.b();
             if (messageBuffer.isDirect()) {
-                byte[] data = CompressionService.compressBuffer(messageBuffer);
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, data));
+                byte[] data = CompressionService.compressBuffer(messageBuffer, m_codec);
+                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, m_codec, data));
 
                 if (rejoinLog.isTraceEnabled()) {
                     rejoinLog.trace("Sending direct buffer");
@@ -189,9 +198,9 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
                 byte compressedBytes[] =
                     CompressionService.compressBytes(
                             messageBuffer.array(), messageBuffer.position(),
-                            messageBuffer.remaining());
+                            messageBuffer.remaining(), m_codec);
 
-                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, compressedBytes));
+                mb.send(m_destHSId, msgFactory.makeDataMessage(m_targetId, m_codec, compressedBytes));
 
                 if (rejoinLog.isTraceEnabled()) {
                     rejoinLog.trace("Sending heap buffer");
@@ -488,7 +497,7 @@ implements SnapshotDataTarget, StreamSnapshotAckReceiver.AckCallback {
      */
     synchronized ListenableFuture<Boolean> send(int blockIndex, BBContainer chunk) {
         SettableFuture<Boolean> sendFuture = SettableFuture.create();
-        SendWork sendWork = new SendWork(m_targetId, m_destHSId, chunk, sendFuture);
+        SendWork sendWork = new SendWork(m_targetId, m_destHSId, m_codec, chunk, sendFuture);
         m_outstandingWork.put(blockIndex, sendWork);
         m_outstandingWorkCount.incrementAndGet();
         m_sender.offer(sendWork);
@@ -238,7 +238,8 @@ public class NativeSnapshotWritePlan extends SnapshotWritePlan
                 tracker.getPartitionsForHost(hostId),
                 CatalogUtil.getVoltTable(table),
                 txnId,
-                timestamp);
+                timestamp,
+                CatalogUtil.getSnapshotCompression(VoltDB.instance().getCatalogContext().cluster));
 
         m_targets.add(sdt);
         final Runnable onClose = new TargetStatsClosure(sdt, table.getTypeName(), numTables, snapshotRecord);
@@ -49,6 +49,7 @@ import org.voltdb.rejoin.StreamSnapshotAckReceiver;
 import org.voltdb.rejoin.StreamSnapshotDataTarget;
 import org.voltdb.sysprocs.SnapshotRegistry;
 import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.CompressionCodec;
 
 import com.google_voltpatches.common.base.Preconditions;
 import com.google_voltpatches.common.collect.ArrayListMultimap;
@@ -190,6 +191,9 @@ public class StreamSnapshotWritePlan extends SnapshotWritePlan
             // The mailbox will be removed after all snapshot data targets are finished
             SnapshotSiteProcessor.m_tasksOnSnapshotCompletion.offer(createCompletionTask(mb));
 
+            final CompressionCodec codec =
+                    CatalogUtil.getRejoinCompression(VoltDB.instance().getCatalogContext().cluster);
+
             // Create data target for each source HSID in each stream
             for (StreamSnapshotRequestConfig.Stream stream : localStreams) {
                 SNAP_LOG.debug("Sites to stream from: " +
@@ -202,7 +206,7 @@ public class StreamSnapshotWritePlan extends SnapshotWritePlan
                                                 srcHSId,
                                                 destHSId,
                                                 new StreamSnapshotDataTarget(destHSId, hashinatorConfig,
-                                                                             schemas, sender, ackReceiver)));
+                                                                             schemas, codec, sender, ackReceiver)));
                 }
             }
         }
@@ -44,6 +44,7 @@ import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltdb.EELibraryLoader;
 import org.voltdb.messaging.FastDeserializer;
+import org.voltdb.utils.CompressionCodec;
 import org.voltdb.utils.CompressionService;
 import org.voltdb.utils.PosixAdvise;
 
@@ -244,6 +245,7 @@ public class TableSaveFile
                 m_tableName = fd.readString();
                 m_isReplicated = fd.readBoolean();
                 m_isCompressed = false;
+                m_compressionCodec = CompressionCodec.NONE;
                 m_checksumType = ChecksumType.CRC32;
                 if (!m_isReplicated) {
                     m_partitionIds = (int[])fd.readArray(int.class);
@@ -289,6 +291,9 @@ public class TableSaveFile
                 m_tableName = obj.getString("tableName");
                 m_isReplicated = obj.getBoolean("isReplicated");
                 m_isCompressed = obj.optBoolean("isCompressed", false);
+                //Snapshots written before the codec was selectable are all Snappy
+                m_compressionCodec = CompressionCodec.valueOf(obj.optString("compressionCodec",
+                        m_isCompressed ? CompressionCodec.SNAPPY.name() : CompressionCodec.NONE.name()));
                 m_checksumType = ChecksumType.valueOf(obj.optString("checksumType", "CRC32"));
                 if (!m_isReplicated) {
                     JSONArray partitionIds = obj.getJSONArray("partitionIds");
@@ -323,6 +328,9 @@ public class TableSaveFile
             throw new IOException(e);
         } catch (JSONException e) {
             throw new IOException(e);
+        } catch (IllegalArgumentException e) {
+            // unknown compression codec
+            throw new IOException(e);
         }
             }
 
@@ -369,6 +377,10 @@ public class TableSaveFile
         return m_isCompressed;
     }
 
+    public CompressionCodec getCompressionCodec() {
+        return m_compressionCodec;
+    }
+
     public int getTotalPartitions() {
         return m_totalPartitions;
     }
@@ -483,6 +495,7 @@ public class TableSaveFile
     private final String m_tableName;
     private final boolean m_isReplicated;
     private final boolean m_isCompressed;
+    private final CompressionCodec m_compressionCodec;
     private final int m_partitionIds[];
     private final int m_totalPartitions;
     private final long m_txnId;
@@ -656,7 +669,7 @@ public class TableSaveFile
                         sinceLastFAdvise += read;
                     }
                     fileInputBuffer.flip();
-                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer);
+                    nextChunkLength = CompressionService.uncompressedLength(fileInputBuffer, m_compressionCodec);
 
                     /*
                      * Validate the rest of the chunk. This can fail if the data is corrupted
@@ -702,7 +715,7 @@ public class TableSaveFile
                         m_tableHeader.position(0);
                         buf.put(m_tableHeader);
                         //Doesn't move buffer position, does change the limit
-                        CompressionService.decompressBuffer(fileInputBuffer, buf);
+                        CompressionService.decompressBuffer(fileInputBuffer, buf, m_compressionCodec);
                         completedRead = true;
                     } finally {
                         if (!completedRead) {
@@ -753,6 +753,8 @@ public abstract class CatalogUtil {
         int elasticDuration = 50;
         int elasticThroughput = 2;
         int queryTimeout = 0;
+        CompressionCodec snapshotCompression = CompressionCodec.SNAPPY;
+        CompressionCodec rejoinCompression = CompressionCodec.SNAPPY;
         if (deployment.getSystemsettings() != null)
         {
             Temptables temptables = deployment.getSystemsettings().getTemptables();
@@ -775,12 +777,48 @@ public abstract class CatalogUtil {
             {
                 queryTimeout = timeout.getTimeout();
             }
+
+            SystemSettingsType.Compression compression = deployment.getSystemsettings().getCompression();
+            if (compression != null) {
+                snapshotCompression = CompressionCodec.fromSetting(compression.getSnapshot().value());
+                rejoinCompression = CompressionCodec.fromSetting(compression.getRejoin().value());
+            }
         }
         syssettings.setTemptablemaxsize(temptableMaxSize);
         syssettings.setSnapshotpriority(snapshotPriority);
         syssettings.setElasticduration(elasticDuration);
         syssettings.setElasticthroughput(elasticThroughput);
         syssettings.setQuerytimeout(queryTimeout);
+        syssettings.setSnapshotcompression(snapshotCompression.name());
+        syssettings.setRejoincompression(rejoinCompression.name());
+    }
+
+    /**
+     * The codec snapshots are written with, Snappy if the catalog predates the setting
+     */
+    public static CompressionCodec getSnapshotCompression(Cluster cluster) {
+        Systemsettings syssettings = getSystemsettings(cluster);
+        return compressionFromCatalog(syssettings == null ? null : syssettings.getSnapshotcompression());
+    }
+
+    /**
+     * The codec rejoin and elastic join data is streamed with, Snappy if the catalog predates the setting
+     */
+    public static CompressionCodec getRejoinCompression(Cluster cluster) {
+        Systemsettings syssettings = getSystemsettings(cluster);
+        return compressionFromCatalog(syssettings == null ? null : syssettings.getRejoincompression());
+    }
+
+    private static Systemsettings getSystemsettings(Cluster cluster) {
+        Deployment deployment = cluster.getDeployment().get("deployment");
+        return deployment == null ? null : deployment.getSystemsettings().get("systemsettings");
+    }
+
+    private static CompressionCodec compressionFromCatalog(String setting) {
+        if (setting == null || setting.isEmpty()) {
+            return CompressionCodec.SNAPPY;
+        }
+        return CompressionCodec.fromSetting(setting);
     }
 
     private static void validateDirectory(String type, File path, boolean crashOnFailedValidation) {
@@ -0,0 +1,240 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.xerial.snappy.Snappy;
+
+/**
+ * The codecs CompressionService can compress with. Each has an id that is recorded
+ * wherever compressed data is stored or sent, so a reader can decode data compressed
+ * with any codec, whatever the writer was configured with.
+ *
+ * All codecs work on direct buffers and follow Snappy's conventions: the input's
+ * position is not moved, and the output's limit is set to the end of the data
+ * written starting at its position.
+ */
+public enum CompressionCodec {
+    /**
+     * Store the data as is, when the CPU is scarcer than disk or network bandwidth
+     */
+    NONE((byte)0) {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return uncompressedSize;
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) {
+            final int length = uncompressed.remaining();
+            final int position = compressed.position();
+            compressed.limit(position + length);
+            compressed.put(uncompressed.duplicate());
+            compressed.position(position);
+            return length;
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) {
+            return compressed.remaining();
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) {
+            return compress(compressed, uncompressed);
+        }
+    },
+
+    /**
+     * Fast compression with a modest ratio, what everything used before codecs were selectable
+     */
+    SNAPPY((byte)1) {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            return Snappy.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException {
+            return Snappy.compress(uncompressed, compressed);
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) throws IOException {
+            return Snappy.uncompressedLength(compressed);
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+            return Snappy.uncompress(compressed, uncompressed);
+        }
+    },
+
+    /**
+     * Slower compression with a better ratio, for when disk or network bandwidth is scarcer
+     * than CPU. Raw deflate prefixed with the 4-byte uncompressed length.
+     */
+    DEFLATE((byte)2) {
+        @Override
+        public int maxCompressedLength(int uncompressedSize) {
+            // zlib's conservative bound for stored blocks plus the length prefix
+            return 4 + uncompressedSize + ((uncompressedSize + 7) >> 3) + ((uncompressedSize + 63) >> 6) + 11;
+        }
+
+        @Override
+        public int compress(ByteBuffer uncompressed, ByteBuffer compressed) {
+            final DeflateState state = m_deflateState.get();
+            final int length = uncompressed.remaining();
+            final byte input[] = state.input(length);
+            uncompressed.duplicate().get(input, 0, length);
+
+            final Deflater deflater = state.m_deflater;
+            deflater.reset();
+            deflater.setInput(input, 0, length);
+            deflater.finish();
+            final byte output[] = state.output(maxCompressedLength(length));
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                compressedLength += deflater.deflate(output, compressedLength, output.length - compressedLength);
+            }
+
+            final int position = compressed.position();
+            compressed.limit(position + 4 + compressedLength);
+            compressed.putInt(length);
+            compressed.put(output, 0, compressedLength);
+            compressed.position(position);
+            return 4 + compressedLength;
+        }
+
+        @Override
+        public int uncompressedLength(ByteBuffer compressed) {
+            return compressed.getInt(compressed.position());
+        }
+
+        @Override
+        public int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException {
+            final DeflateState state = m_deflateState.get();
+            final int length = uncompressedLength(compressed);
+            final int compressedLength = compressed.remaining() - 4;
+            if (length < 0 || compressedLength < 0 || length > uncompressed.remaining()) {
+                throw new IOException("Corrupt deflate compressed data");
+            }
+            final ByteBuffer source = compressed.duplicate();
+            source.position(source.position() + 4);
+            final byte input[] = state.input(compressedLength);
+            source.get(input, 0, compressedLength);
+
+            final Inflater inflater = state.m_inflater;
+            inflater.reset();
+            inflater.setInput(input, 0, compressedLength);
+            final byte output[] = state.output(length);
+            int uncompressedLength = 0;
+            try {
+                while (uncompressedLength < length && !inflater.finished()) {
+                    final int inflated = inflater.inflate(output, uncompressedLength, length - uncompressedLength);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    uncompressedLength += inflated;
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e);
+            }
+            if (uncompressedLength != length) {
+                throw new IOException("Corrupt deflate compressed data");
+            }
+
+            final int position = uncompressed.position();
+            uncompressed.limit(position + length);
+            uncompressed.put(output, 0, length);
+            uncompressed.position(position);
+            return length;
+        }
+    };
+
+    /*
+     * Deflater and Inflater only take arrays before Java 11, so direct buffers
+     * are staged through arrays that are kept per thread along with them
+     */
+    private static class DeflateState {
+        private final Deflater m_deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final Inflater m_inflater = new Inflater(true);
+        private byte m_input[] = new byte[1024 * 32];
+        private byte m_output[] = new byte[1024 * 32];
+
+        private byte[] input(int length) {
+            if (m_input.length < length) {
+                m_input = new byte[Math.max(m_input.length * 2, length)];
+            }
+            return m_input;
+        }
+
+        private byte[] output(int length) {
+            if (m_output.length < length) {
+                m_output = new byte[Math.max(m_output.length * 2, length)];
+            }
+            return m_output;
+        }
+    }
+
+    private static final ThreadLocal<DeflateState> m_deflateState = new ThreadLocal<DeflateState>() {
+        @Override
+        protected DeflateState initialValue() {
+            return new DeflateState();
+        }
+    };
+
+    private final byte m_id;
+
+    private CompressionCodec(byte id) {
+        m_id = id;
+    }
+
+    public byte getId() {
+        return m_id;
+    }
+
+    public static CompressionCodec fromId(byte id) throws IOException {
+        for (CompressionCodec codec : values()) {
+            if (codec.m_id == id) {
+                return codec;
+            }
+        }
+        throw new IOException("Unknown compression codec id " + id);
+    }
+
+    /**
+     * The codec for a deployment file setting such as "snappy", case insensitive
+     */
+    public static CompressionCodec fromSetting(String setting) {
+        return valueOf(setting.trim().toUpperCase());
+    }
+
+    public abstract int maxCompressedLength(int uncompressedSize);
+
+    public abstract int compress(ByteBuffer uncompressed, ByteBuffer compressed) throws IOException;
+
+    public abstract int uncompressedLength(ByteBuffer compressed) throws IOException;
+
+    public abstract int uncompress(ByteBuffer compressed, ByteBuffer uncompressed) throws IOException;
+}
@@ -79,12 +79,12 @@ public final class CompressionService {
                                          CoreUtils.getThreadFactory("Compression service thread"))
             );
 
-    private static IOBuffers getBuffersForCompression(int length, boolean inputNotUsed) {
+    private static IOBuffers getBuffersForCompression(int length, boolean inputNotUsed, CompressionCodec codec) {
         IOBuffers buffers = m_buffers.get();
         BBContainer input = buffers.input;
         BBContainer output = buffers.output;
 
-        final int maxCompressedLength = Snappy.maxCompressedLength(length);
+        final int maxCompressedLength = codec.maxCompressedLength(length);
 
         final int inputCapacity = input.b().capacity();
         final int outputCapacity = output.b().capacity();
@@ -128,6 +128,12 @@ public final class CompressionService {
     }
 
     public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer, final BBContainer outBufferC) {
+        return compressAndCRC32cBufferAsync(inBuffer, outBufferC, CompressionCodec.SNAPPY);
+    }
+
+    public static Future<BBContainer> compressAndCRC32cBufferAsync(final ByteBuffer inBuffer,
+                                                                   final BBContainer outBufferC,
+                                                                   final CompressionCodec codec) {
         assert(inBuffer.isDirect());
         assert(outBufferC.b().isDirect());
         return submitCompressionTask(new Callable<BBContainer>() {
@@ -139,7 +145,7 @@ public final class CompressionService {
                 final int crcPosition = outBuffer.position();
                 outBuffer.position(outBuffer.position() + 4);
                 final int crcCalcStart = outBuffer.position();
-                compressBuffer(inBuffer, outBuffer);
+                compressBuffer(inBuffer, outBuffer, codec);
                 final int crc32c =
                         DBBPool.getCRC32C( outBufferC.address(), crcCalcStart, outBuffer.limit() - crcCalcStart);
                 outBuffer.putInt(crcPosition, crc32c);
@@ -150,29 +156,41 @@ public final class CompressionService {
     }
 
     public static int compressBuffer(ByteBuffer buffer, ByteBuffer output) throws IOException {
+        return compressBuffer(buffer, output, CompressionCodec.SNAPPY);
+    }
+
+    public static int compressBuffer(ByteBuffer buffer, ByteBuffer output, CompressionCodec codec) throws IOException {
         assert(buffer.isDirect());
         assert(output.isDirect());
-        return Snappy.compress(buffer, output);
+        return codec.compress(buffer, output);
     }
 
     public static byte[] compressBuffer(ByteBuffer buffer) throws IOException {
+        return compressBuffer(buffer, CompressionCodec.SNAPPY);
+    }
+
+    public static byte[] compressBuffer(ByteBuffer buffer, CompressionCodec codec) throws IOException {
         assert(buffer.isDirect());
-        IOBuffers buffers = getBuffersForCompression(buffer.remaining(), true);
+        IOBuffers buffers = getBuffersForCompression(buffer.remaining(), true, codec);
         ByteBuffer output = buffers.output.b();
 
-        final int compressedSize = Snappy.compress(buffer, output);
+        final int compressedSize = codec.compress(buffer, output);
         byte result[] = new byte[compressedSize];
         output.get(result);
         return result;
     }
 
     public static byte[] compressBytes(byte bytes[], int offset, int length) throws IOException {
-        final IOBuffers buffers = getBuffersForCompression(bytes.length, false);
+        return compressBytes(bytes, offset, length, CompressionCodec.SNAPPY);
+    }
+
+    public static byte[] compressBytes(byte bytes[], int offset, int length, CompressionCodec codec) throws IOException {
+        final IOBuffers buffers = getBuffersForCompression(bytes.length, false, codec);
         final ByteBuffer input = buffers.input.b();
         final ByteBuffer output = buffers.output.b();
         input.put(bytes, offset, length);
         input.flip();
-        final int compressedSize = Snappy.compress(input, output);
+        final int compressedSize = codec.compress(input, output);
         final byte compressed[] = new byte[compressedSize];
         output.get(compressed);
         return compressed;
@@ -216,20 +234,37 @@ public final class CompressionService {
         return result;
     }
 
+    /**
+     * The largest the data can get compressed with any codec, for sizing buffers that
+     * are shared by writers and readers regardless of the codec they are configured with
+     */
     public static int maxCompressedLength(int uncompressedSize) {
-        return Snappy.maxCompressedLength(uncompressedSize);
+        int maxCompressedLength = uncompressedSize;
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            maxCompressedLength = Math.max(maxCompressedLength, codec.maxCompressedLength(uncompressedSize));
+        }
+        return maxCompressedLength;
     }
 
     public static int uncompressedLength(ByteBuffer compressed) throws IOException {
+        return uncompressedLength(compressed, CompressionCodec.SNAPPY);
+    }
+
+    public static int uncompressedLength(ByteBuffer compressed, CompressionCodec codec) throws IOException {
         assert(compressed.isDirect());
-        return Snappy.uncompressedLength(compressed);
+        return codec.uncompressedLength(compressed);
     }
 
     public static int decompressBuffer(final ByteBuffer compressed, final ByteBuffer uncompressed) throws IOException {
+        return decompressBuffer(compressed, uncompressed, CompressionCodec.SNAPPY);
+    }
+
+    public static int decompressBuffer(final ByteBuffer compressed, final ByteBuffer uncompressed,
+                                       final CompressionCodec codec) throws IOException {
         assert(compressed.isDirect());
         assert(uncompressed.isDirect());
 
-        return Snappy.uncompress(compressed, uncompressed);
+        return codec.uncompress(compressed, uncompressed);
     }
 
     public static byte[] decompressBytes(byte bytes[]) throws IOException {
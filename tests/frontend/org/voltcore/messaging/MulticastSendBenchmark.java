@@ -0,0 +1,136 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.messaging;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.messaging.TestMessaging.MessageFactory;
+import org.voltcore.messaging.TestMessaging.MsgTest;
+import org.voltcore.utils.PortGenerator;
+
+/**
+ * Multicasts messages from one host to mailboxes spread across the other hosts of an
+ * in-process mesh, the way SP replication and MP fragments fan out. Receiving mailboxes
+ * only count what they are delivered. Reports multicasts per second and the bytes the
+ * sending thread allocates per multicast.
+ *
+ * Run with optional arguments: hosts (default 3), mailboxes per receiving host (default 2),
+ * message size in bytes (default 512), stripes per host pair (default 1),
+ * multicasts (default 1000000).
+ */
+public class MulticastSendBenchmark {
+
+    static class CountingMailbox extends SiteMailbox {
+        final AtomicLong m_received;
+
+        CountingMailbox(HostMessenger hm, long hsId, AtomicLong received) {
+            super(hm, hsId);
+            m_received = received;
+        }
+
+        @Override
+        public void deliver(VoltMessage message) {
+            m_received.incrementAndGet();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int hostCount = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        final int mailboxesPerHost = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        final int messageSize = args.length > 2 ? Integer.parseInt(args[2]) : 512;
+        final int stripes = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        final int multicasts = args.length > 4 ? Integer.parseInt(args[4]) : 1000000;
+
+        final PortGenerator ports = new PortGenerator();
+        final HostMessenger messengers[] = new HostMessenger[hostCount];
+        for (int ii = 0; ii < hostCount; ii++) {
+            HostMessenger.Config config = new HostMessenger.Config(ports);
+            config.factory = new MessageFactory();
+            config.foreignHostStripes = stripes;
+            messengers[ii] = new HostMessenger(config);
+            messengers[ii].start();
+        }
+        for (HostMessenger hm : messengers) {
+            hm.waitForGroupJoin(hostCount);
+        }
+
+        final AtomicLong received = new AtomicLong();
+        final long destinations[] = new long[(hostCount - 1) * mailboxesPerHost];
+        int idx = 0;
+        for (int ii = 1; ii < hostCount; ii++) {
+            for (int jj = 0; jj < mailboxesPerHost; jj++) {
+                long hsId = messengers[ii].generateMailboxId(null);
+                messengers[ii].registerMailbox(new CountingMailbox(messengers[ii], hsId, received));
+                destinations[idx++] = hsId;
+            }
+        }
+        final Mailbox source = messengers[0].createMailbox();
+
+        MsgTest.initWithSize(messageSize);
+        final MsgTest message = new MsgTest();
+        message.setValues();
+
+        // warm up the send path and the plan cache
+        for (int ii = 0; ii < 10000; ii++) {
+            source.send(destinations, message);
+        }
+        waitForDeliveries(received, 10000L * destinations.length);
+        received.set(0);
+
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for (int ii = 0; ii < multicasts; ii++) {
+            source.send(destinations, message);
+            // keep the number of multicasts in flight bounded, as replication would
+            while ((long)ii * destinations.length - received.get() > 64L * destinations.length) {
+                Thread.yield();
+            }
+        }
+        final long sent = System.nanoTime();
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        waitForDeliveries(received, (long)multicasts * destinations.length);
+        final long delivered = System.nanoTime();
+
+        System.out.printf("%d multicasts of %d bytes to %d mailboxes on %d hosts, %d stripe(s)\n",
+                multicasts, messageSize, destinations.length, hostCount - 1, stripes);
+        System.out.printf("Send: %.0f multicasts/sec, %.1f bytes allocated per multicast\n",
+                multicasts / ((sent - start) / 1e9), allocated / (double)multicasts);
+        System.out.printf("Delivered: %.0f messages/sec\n",
+                received.get() / ((delivered - start) / 1e9));
+
+        for (HostMessenger hm : messengers) {
+            hm.shutdown();
+        }
+    }
+
+    private static void waitForDeliveries(AtomicLong received, long expected) throws InterruptedException {
+        while (received.get() < expected) {
+            Thread.sleep(1);
+        }
+    }
+}
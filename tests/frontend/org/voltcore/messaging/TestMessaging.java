@@ -359,6 +359,155 @@ public class TestMessaging extends TestCase {
         msg2.shutdown();
     }
 
+    public void testStripedMesh() throws Exception {
+        HostMessenger msgs[] = new HostMessenger[3];
+        for (int ii = 0; ii < msgs.length; ii++) {
+            HostMessenger.Config config = getConfig();
+            config.foreignHostStripes = 3;
+            msgs[ii] = new HostMessenger(config);
+            msgs[ii].start();
+        }
+        for (HostMessenger msg : msgs) {
+            msg.waitForGroupJoin(msgs.length);
+        }
+
+        // every pair is connected by all of its stripes on both ends
+        for (HostMessenger msg : msgs) {
+            assertEquals(2, msg.m_foreignHosts.size());
+            for (ForeignHost fh : msg.m_foreignHosts.values()) {
+                assertEquals(3, fh.stripeCount());
+            }
+        }
+
+        Mailbox source = msgs[0].createMailbox();
+        Mailbox dests[] = new Mailbox[6];
+        long destHSIds[] = new long[dests.length];
+        for (int ii = 0; ii < dests.length; ii++) {
+            dests[ii] = msgs[1 + ii % 2].createMailbox();
+            destHSIds[ii] = dests[ii].getHSId();
+        }
+
+        // multicasts span stripes, each site must still see its messages in order
+        final int messageCount = 200;
+        for (int ii = 1; ii <= messageCount; ii++) {
+            MsgTest mt = new MsgTest();
+            mt.m_localValue = new byte[ii];
+            source.send(destHSIds, mt);
+        }
+        for (Mailbox dest : dests) {
+            long start = System.currentTimeMillis();
+            int expected = 1;
+            while (expected <= messageCount) {
+                assertTrue(System.currentTimeMillis() - start < 10000);
+                MsgTest mt = (MsgTest) dest.recv();
+                if (mt != null) {
+                    assertEquals(expected++, mt.m_length);
+                }
+            }
+        }
+
+        // each stripe reports its own IO stats, plus the client network and global rows
+        assertTrue(msgs[0].getIOStats(false).size() >= 2 * 3 + 1);
+
+        for (HostMessenger msg : msgs) {
+            msg.shutdown();
+        }
+    }
+
+    public void testCoalescedFrames() throws Exception {
+        // batch whatever queues up, then wait for batches to fill, on two stripes
+        checkCoalescedFrames(0);
+        checkCoalescedFrames(200);
+    }
+
+    private void checkCoalescedFrames(long windowMicros) throws Exception {
+        HostMessenger msgs[] = new HostMessenger[3];
+        for (int ii = 0; ii < msgs.length; ii++) {
+            HostMessenger.Config config = getConfig();
+            config.foreignHostStripes = 2;
+            config.coalesceWindowMicros = windowMicros;
+            msgs[ii] = new HostMessenger(config);
+            msgs[ii].start();
+        }
+        for (HostMessenger msg : msgs) {
+            msg.waitForGroupJoin(msgs.length);
+        }
+
+        Mailbox source = msgs[0].createMailbox();
+        Mailbox dests[] = new Mailbox[4];
+        long destHSIds[] = new long[dests.length];
+        for (int ii = 0; ii < dests.length; ii++) {
+            dests[ii] = msgs[1 + ii % 2].createMailbox();
+            destHSIds[ii] = dests[ii].getHSId();
+        }
+
+        // mostly small messages that coalesce, every 50th bigger than a batch
+        final int messageCount = 1000;
+        for (int ii = 1; ii <= messageCount; ii++) {
+            MsgTest mt = new MsgTest();
+            mt.m_localValue = new byte[ii % 50 == 0 ? MessageBatcher.MAX_BATCH_BYTES + ii : ii];
+            mt.m_localValue[0] = (byte)ii;
+            if (ii % 3 == 0) {
+                source.send(destHSIds, mt);
+            } else {
+                source.send(destHSIds[ii % destHSIds.length], mt);
+            }
+        }
+        for (int jj = 0; jj < dests.length; jj++) {
+            long start = System.currentTimeMillis();
+            int expected = 1;
+            while (expected <= messageCount) {
+                if (expected % 3 != 0 && expected % destHSIds.length != jj) {
+                    expected++;
+                    continue;
+                }
+                assertTrue(System.currentTimeMillis() - start < 10000);
+                MsgTest mt = (MsgTest) dests[jj].recv();
+                if (mt != null) {
+                    assertEquals(expected % 50 == 0 ? MessageBatcher.MAX_BATCH_BYTES + expected : expected, mt.m_length);
+                    assertEquals((byte)expected, mt.m_localValue[0]);
+                    expected++;
+                }
+            }
+            assertNull(dests[jj].recv());
+        }
+
+        for (HostMessenger msg : msgs) {
+            msg.shutdown();
+        }
+    }
+
+    public void testMulticastPlanFollowsMailboxes() throws Exception {
+        HostMessenger msg1 = new HostMessenger(getConfig());
+        msg1.start();
+        HostMessenger msg2 = new HostMessenger(getConfig());
+        msg2.start();
+        msg1.waitForGroupJoin(2);
+        msg2.waitForGroupJoin(2);
+
+        Mailbox source = msg1.createMailbox();
+        Mailbox remote = msg2.createMailbox();
+        // a local slot that starts out with a no-op mailbox
+        long localHSId = msg1.generateMailboxId(null);
+        long destinations[] = new long[] { remote.getHSId(), localHSId };
+
+        MsgTest.initWithSize(16);
+        MsgTest mt = new MsgTest();
+        mt.setValues();
+        source.send(destinations, mt);
+        assertTrue(((MsgTest) remote.recvBlocking(5000)).verify());
+
+        // the cached plan for the same destinations must see the registered mailbox
+        SiteMailbox local = new SiteMailbox(msg1, localHSId);
+        msg1.registerMailbox(local);
+        source.send(destinations, mt);
+        assertTrue(((MsgTest) remote.recvBlocking(5000)).verify());
+        assertTrue(((MsgTest) local.recvBlocking(5000)).verify());
+
+        msg1.shutdown();
+        msg2.shutdown();
+    }
+
     public void testMultiMailbox() throws Exception {
         HostMessenger msg1 = new HostMessenger(getConfig());
         msg1.start();
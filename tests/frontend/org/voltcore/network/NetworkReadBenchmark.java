@@ -0,0 +1,152 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.network;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the read path of a VoltNetwork: length prefixed messages are written to a loopback
+ * socket as fast as possible and a network thread reads them, splits them up and hands them
+ * to an input handler that only counts them. Reports messages per second and the bytes the
+ * network thread allocated per message, which is mostly the message buffers themselves.
+ *
+ * Run with optional arguments: message size in bytes (default 64), seconds to run (default 10).
+ */
+public class NetworkReadBenchmark {
+
+    private static class CountingHandler extends VoltProtocolHandler {
+        final AtomicLong m_messages = new AtomicLong();
+
+        @Override
+        public int getMaxRead() {
+            return Integer.MAX_VALUE;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer message, Connection c) {
+            m_messages.lazySet(m_messages.get() + 1);
+        }
+
+        @Override
+        public Runnable onBackPressure() {
+            return null;
+        }
+
+        @Override
+        public Runnable offBackPressure() {
+            return null;
+        }
+
+        @Override
+        public QueueMonitor writestreamMonitor() {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int messageSize = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        final SocketChannel client = SocketChannel.open(server.socket().getLocalSocketAddress());
+        final SocketChannel accepted = server.accept();
+        client.socket().setTcpNoDelay(true);
+
+        final VoltNetwork network = new VoltNetwork(0, null, "Benchmark");
+        network.start();
+        final CountingHandler handler = new CountingHandler();
+        network.registerChannel(accepted, handler, SelectionKey.OP_READ, ReverseDNSPolicy.NONE);
+
+        // Fill a send buffer with as many whole messages as fit
+        final ByteBuffer sendBuffer = ByteBuffer.allocateDirect(1024 * 256);
+        while (sendBuffer.remaining() >= messageSize + 4) {
+            sendBuffer.putInt(messageSize);
+            sendBuffer.position(sendBuffer.position() + messageSize);
+        }
+        sendBuffer.flip();
+
+        final Thread sender = new Thread("Benchmark Sender") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        sendBuffer.position(0);
+                        while (sendBuffer.hasRemaining()) {
+                            client.write(sendBuffer);
+                        }
+                    }
+                } catch (Exception e) {
+                    // the socket was closed at the end of the run
+                }
+            }
+        };
+        sender.setDaemon(true);
+        sender.start();
+
+        final com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        final long networkThreadId = network.getThreadId();
+
+        // Warm up for a couple of seconds, then report each second
+        Thread.sleep(2000);
+        long lastMessages = handler.m_messages.get();
+        long lastAllocated = threadBean.getThreadAllocatedBytes(networkThreadId);
+        long lastTime = System.nanoTime();
+        long totalMessages = 0;
+        long totalAllocated = 0;
+        for (int ii = 0; ii < seconds; ii++) {
+            Thread.sleep(1000);
+            final long messages = handler.m_messages.get();
+            final long allocated = threadBean.getThreadAllocatedBytes(networkThreadId);
+            final long now = System.nanoTime();
+            final long deltaMessages = messages - lastMessages;
+            final long deltaAllocated = allocated - lastAllocated;
+            System.out.printf("%,d messages/sec, %,d bytes allocated/message%n",
+                    deltaMessages * TimeUnit.SECONDS.toNanos(1) / (now - lastTime),
+                    deltaMessages == 0 ? 0 : deltaAllocated / deltaMessages);
+            totalMessages += deltaMessages;
+            totalAllocated += deltaAllocated;
+            lastMessages = messages;
+            lastAllocated = allocated;
+            lastTime = now;
+        }
+        System.out.printf("Average of %,d messages/sec of %d bytes, %,d bytes allocated/message%n",
+                totalMessages / seconds, messageSize,
+                totalMessages == 0 ? 0 : totalAllocated / totalMessages);
+
+        client.close();
+        network.shutdown();
+        accepted.close();
+        server.close();
+    }
+}
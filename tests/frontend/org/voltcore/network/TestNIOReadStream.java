@@ -199,6 +199,22 @@ public class TestNIOReadStream extends TestCase {
         assertEquals(252, stream.getInt());
     }
 
+    public void testReadIntSpanningBuffers() throws IOException {
+        // the second int straddles the end of the first pooled buffer
+        final int SIZE = 1024 * 32 + 6;
+        channel.nextRead = new byte[SIZE];
+        channel.nextRead[SIZE - 8] = 1;
+        channel.nextRead[SIZE - 5] = 2;
+        channel.nextRead[SIZE - 4] = 3;
+        channel.nextRead[SIZE - 1] = -4;
+        assertEquals(SIZE, stream.read(channel, SIZE, pool));
+        byte[] skip = new byte[SIZE - 8];
+        stream.getBytes(skip);
+        assertEquals(0x01000002, stream.getInt());
+        assertEquals(0x030000fc, stream.getInt());
+        assertStreamIsEmpty();
+    }
+
     public void testEndReadComplete() throws IOException {
         channel.nextRead = new byte[]{1, 2, 3,4 };
         channel.end = true;
@@ -50,6 +50,7 @@
 
 package org.voltcore.network;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -63,6 +64,7 @@ import junit.framework.TestCase;
 
 import org.voltcore.utils.EstTime;
 import org.voltcore.utils.EstTimeUpdater;
+import org.voltcore.utils.ScatteredDeferredSerialization;
 
 public class TestNIOWriteStream extends TestCase {
 
@@ -195,11 +197,42 @@ public class TestNIOWriteStream extends TestCase {
         public static int SINK = 0;     // accept all data
         public static int FULL = 1;     // accept no data
         public static int PARTIAL = 2;  // accept some data
+        public static int LIMITED = 3;  // accept up to m_limit bytes per call and keep them
+
+        public int m_limit = Integer.MAX_VALUE;
+        public int m_gatheringWrites = 0;
+        public final ByteArrayOutputStream m_received = new ByteArrayOutputStream();
+
         @Override
         public long write(ByteBuffer[] srcs, int offset, int length)
                 throws IOException {
-            // TODO Auto-generated method stub
-            return 0;
+            if (!m_open) throw new IOException();
+            m_gatheringWrites++;
+
+            if (m_behavior == FULL) {
+                return 0;
+            }
+            else if (m_behavior == PARTIAL) {
+                for (int ii = offset; ii < offset + length; ii++) {
+                    if (srcs[ii].hasRemaining()) {
+                        return write(srcs[ii]);
+                    }
+                }
+                return 0;
+            }
+            long written = 0;
+            for (int ii = offset; ii < offset + length; ii++) {
+                ByteBuffer src = srcs[ii];
+                int toWrite = src.remaining();
+                if (m_behavior == LIMITED) {
+                    toWrite = (int)Math.min(toWrite, m_limit - written);
+                }
+                byte bytes[] = new byte[toWrite];
+                src.get(bytes);
+                m_received.write(bytes);
+                written += toWrite;
+            }
+            return written;
         }
     }
 
@@ -341,6 +374,103 @@ public class TestNIOWriteStream extends TestCase {
         wstream.shutdown();
     }
 
+    public void testGatheringWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.LIMITED);
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+
+        // several pooled buffers worth of messages with recognizable contents
+        final int messageSize = 30000;
+        final int messageCount = 8;
+        for (int ii = 0; ii < messageCount; ii++) {
+            ByteBuffer tmp = ByteBuffer.allocate(messageSize);
+            while (tmp.hasRemaining()) {
+                tmp.put((byte)(ii + tmp.position()));
+            }
+            tmp.flip();
+            wstream.enqueue(tmp);
+        }
+        wstream.swapAndSerializeQueuedWrites(pool);
+
+        // the socket takes a little less than two buffers per call
+        channel.m_limit = 50000;
+        int written = wstream.drainTo(channel);
+        assertEquals(messageSize * messageCount, written);
+        assertTrue(wstream.isEmpty());
+
+        // every call but the last was a gathering write that filled the socket
+        assertEquals((messageSize * messageCount + channel.m_limit - 1) / channel.m_limit,
+                channel.m_gatheringWrites);
+        long stats[] = wstream.getBytesAndMessagesWritten(false);
+        assertEquals(messageSize * messageCount, stats[0]);
+        assertEquals(messageCount, stats[1]);
+        assertEquals(channel.m_gatheringWrites, stats[2]);
+
+        // and the bytes arrived in order
+        byte received[] = channel.m_received.toByteArray();
+        assertEquals(messageSize * messageCount, received.length);
+        for (int ii = 0; ii < messageCount; ii++) {
+            for (int jj = 0; jj < messageSize; jj++) {
+                assertEquals((byte)(ii + jj), received[ii * messageSize + jj]);
+            }
+        }
+        wstream.shutdown();
+    }
+
+    public void testScatteredWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.LIMITED);
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+
+        // a small header followed by pieces larger and smaller than a pooled buffer
+        final int sizes[] = new int[] { 7, 100000, 4, 20000, 1 };
+        final ByteBuffer pieces[] = new ByteBuffer[sizes.length];
+        int total = 0;
+        for (int ii = 0; ii < sizes.length; ii++) {
+            ByteBuffer piece = ByteBuffer.allocate(sizes[ii]);
+            while (piece.hasRemaining()) {
+                piece.put((byte)(total + piece.position()));
+            }
+            piece.flip();
+            pieces[ii] = piece.asReadOnlyBuffer();
+            total += sizes[ii];
+        }
+        final int messageSize = total;
+
+        wstream.enqueue(new ScatteredDeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) throws IOException {
+                fail("A scattered message should not be serialized to a temporary buffer");
+            }
+
+            @Override
+            public void cancel() {
+            }
+
+            @Override
+            public int getSerializedSize() throws IOException {
+                return messageSize;
+            }
+
+            @Override
+            public ByteBuffer[] serializeToBuffers() throws IOException {
+                return pieces;
+            }
+        });
+        wstream.swapAndSerializeQueuedWrites(pool);
+
+        int written = wstream.drainTo(channel);
+        assertEquals(messageSize, written);
+        assertTrue(wstream.isEmpty());
+
+        byte received[] = channel.m_received.toByteArray();
+        assertEquals(messageSize, received.length);
+        for (int ii = 0; ii < messageSize; ii++) {
+            assertEquals((byte)ii, received[ii]);
+        }
+        wstream.shutdown();
+    }
+
     public void testLastWriteDelta() throws Exception {
         EstTimeUpdater.pause = true;
         Thread.sleep(10);
@@ -142,6 +142,7 @@ public class TestVoltNetwork extends TestCase {
         @Override
         public SelectionKey interestOps(int interestOps) {
             m_interestOps = interestOps;
+            m_interestOpsChanges++;
             return this;
         }
 
@@ -166,6 +167,7 @@ public class TestVoltNetwork extends TestCase {
         }
 
         public int m_interestOps;
+        public int m_interestOpsChanges;
         public int m_readyOps;
         public Object m_fakeAttachment;
     }
@@ -262,6 +264,33 @@ public class TestVoltNetwork extends TestCase {
         assertEquals(selectionKey.interestOps(), vp.interestOps());
     }
 
+    public void testUnchangedInterestsNotReinstalled() throws Exception {
+        MockSelector selector = new MockSelector();
+        VoltNetwork vn = new VoltNetwork(selector);
+        MockVoltPort vp = new MockVoltPort(vn, new MockInputHandler());
+        MockSelectionKey selectionKey = new MockSelectionKey();
+
+        selectionKey.interestOps(SelectionKey.OP_READ);
+        selector.setFakeKey(selectionKey);
+        vp.m_selectionKey = selectionKey;
+        vp.setInterests(SelectionKey.OP_READ, 0);
+        selectionKey.attach(vp);
+        selectionKey.readyOps(SelectionKey.OP_READ);
+
+        // running the port leaves the key's interest set as it was
+        selectionKey.m_interestOpsChanges = 0;
+        vn.invokeCallbacks(ThreadLocalRandom.current());
+        assertEquals(SelectionKey.OP_READ, vp.readyOps());
+        assertEquals(0, selectionKey.m_interestOpsChanges);
+
+        // a change made while running is installed once
+        vp.setInterests(SelectionKey.OP_WRITE, 0);
+        vn.installInterests(vp);
+        assertEquals(1, selectionKey.m_interestOpsChanges);
+        assertEquals(SelectionKey.OP_READ | SelectionKey.OP_WRITE, selectionKey.interestOps());
+        vn.shutdown();
+    }
+
     public void testInvokeCallbacks() throws Exception{
         MockSelector selector = new MockSelector();
         VoltNetwork vn = new VoltNetwork(selector);               // network with fake selector
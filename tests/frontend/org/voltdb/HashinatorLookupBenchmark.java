@@ -0,0 +1,172 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.cassandra_voltpatches.MurmurHash3;
+import org.voltdb.client.HashinatorLite;
+import org.voltdb.client.HashinatorLite.HashinatorLiteType;
+import org.voltdb.client.TokenLookupTable;
+
+/**
+ * Compares the ways a partitioning value is mapped to a partition: the binary search
+ * over the whole elastic ring the hashinators used to do, the token lookup table they
+ * share now, and the full parameter paths of ElasticHashinator, HashinatorLite and
+ * LegacyHashinator for long and string values. Reports nanoseconds per lookup.
+ *
+ * Run with optional arguments: partitions (default 6), lookups per round (default 10000000).
+ */
+public class HashinatorLookupBenchmark {
+
+    private interface Lookup {
+        int lookup(int ii);
+    }
+
+    public static void main(String[] args) {
+        final int partitions = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+        final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 10000000;
+
+        final byte configBytes[] = ElasticHashinator.getConfigureBytes(partitions, ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+        final ElasticHashinator elastic = new ElasticHashinator(configBytes, false);
+        final HashinatorLite lite = new HashinatorLite(HashinatorLiteType.ELASTIC, configBytes, false);
+        final TheHashinator legacy = new LegacyHashinator(LegacyHashinator.getConfigureBytes(partitions), false);
+
+        final int ringTokens[] = new int[elastic.getTokens().size()];
+        final int ringPartitions[] = new int[ringTokens.length];
+        int idx = 0;
+        for (Map.Entry<Integer, Integer> e : elastic.getTokens().entrySet()) {
+            ringTokens[idx] = e.getKey();
+            ringPartitions[idx] = e.getValue();
+            idx++;
+        }
+        final TokenLookupTable table = new TokenLookupTable(ringTokens, ringPartitions);
+
+        // a power of two of random inputs, so picking one is a mask
+        final Random random = new Random(0);
+        final int hashes[] = new int[1 << 16];
+        final Long longs[] = new Long[hashes.length];
+        final String strings[] = new String[hashes.length];
+        for (int ii = 0; ii < hashes.length; ii++) {
+            hashes[ii] = random.nextInt();
+            longs[ii] = random.nextLong();
+            strings[ii] = Long.toHexString(random.nextLong());
+        }
+        final int mask = hashes.length - 1;
+        final int bigint = VoltType.BIGINT.getValue();
+        final int string = VoltType.STRING.getValue();
+
+        System.out.printf("%d partitions, %d tokens, %d lookups per round\n", partitions, ringTokens.length, lookups);
+        for (int round = 0; round < 3; round++) {
+            System.out.printf("Round %d\n", round);
+            run("Ring binary search", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return ringSearch(ringTokens, ringPartitions, hashes[ii & mask]);
+                }
+            });
+            run("Token lookup table", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return table.partitionForToken(hashes[ii & mask]);
+                }
+            });
+            run("Murmur3 of a long", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return MurmurHash3.hash3_x64_128(longs[ii & mask]);
+                }
+            });
+            run("ElasticHashinator long", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return elastic.getHashedPartitionForParameter(bigint, longs[ii & mask]);
+                }
+            });
+            run("ElasticHashinator string", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return elastic.getHashedPartitionForParameter(string, strings[ii & mask]);
+                }
+            });
+            run("HashinatorLite long", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return lite.getHashedPartitionForParameter(bigint, longs[ii & mask]);
+                }
+            });
+            run("HashinatorLite string", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return lite.getHashedPartitionForParameter(string, strings[ii & mask]);
+                }
+            });
+            run("LegacyHashinator long", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return legacy.getHashedPartitionForParameter(bigint, longs[ii & mask]);
+                }
+            });
+            run("LegacyHashinator string", lookups, new Lookup() {
+                @Override
+                public int lookup(int ii) {
+                    return legacy.getHashedPartitionForParameter(string, strings[ii & mask]);
+                }
+            });
+        }
+    }
+
+    private static void run(String name, int lookups, Lookup lookup) {
+        int sink = 0;
+        final long start = System.nanoTime();
+        for (int ii = 0; ii < lookups; ii++) {
+            sink += lookup.lookup(ii);
+        }
+        final long elapsed = System.nanoTime() - start;
+        // print the sink so the lookups can't be optimized away
+        System.out.printf("  %-26s %6.1f ns/lookup (%d)\n", name, elapsed / (double)lookups, sink & 1);
+    }
+
+    /*
+     * The first token <= hash by binary search over the whole ring, the way the
+     * hashinators searched their off heap token arrays
+     */
+    private static int ringSearch(int tokens[], int partitions[], int hash) {
+        int min = 0;
+        int max = tokens.length - 1;
+        while (min <= max) {
+            final int mid = (min + max) >>> 1;
+            final int midval = tokens[mid];
+            if (midval < hash) {
+                min = mid + 1;
+            } else if (midval > hash) {
+                max = mid - 1;
+            } else {
+                return partitions[mid];
+            }
+        }
+        return partitions[min - 1];
+    }
+}
@@ -28,6 +28,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyLong;
@@ -39,6 +40,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -73,6 +75,7 @@ import org.voltcore.network.Connection;
 import org.voltcore.network.VoltNetworkPool;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.Pair;
+import org.voltcore.utils.ScatteredDeferredSerialization;
 import org.voltdb.ClientInterface.ClientInputHandler;
 import org.voltdb.VoltDB.Configuration;
 import org.voltdb.VoltTable.ColumnInfo;
@@ -670,6 +673,100 @@ public class TestClientInterface {
         assertEquals(newHashinatorVersion, TheHashinator.getCurrentVersionedConfig().getFirst().longValue());
     }
 
+    @Test
+    public void testBulkInvocations() throws Exception {
+        ByteBuffer first = createMsg("hello", 1);
+        ByteBuffer second = createMsg("hello", 2);
+        ByteBuffer frame = ByteBuffer.allocate(1 + 4 + 4 + first.remaining() + 4 + second.remaining());
+        frame.put(ProcedureInvocationType.BULK_INVOCATIONS);
+        frame.putInt(2);
+        frame.putInt(first.remaining());
+        frame.put(first);
+        frame.putInt(second.remaining());
+        frame.put(second);
+        frame.flip();
+
+        m_ci.handleBulkRead(frame, m_handler, m_cxn);
+
+        // both invocations were dispatched, in order
+        ArgumentCaptor<Iv2InitiateTaskMessage> messageCaptor =
+                ArgumentCaptor.forClass(Iv2InitiateTaskMessage.class);
+        verify(m_messenger, times(2)).send(anyLong(), messageCaptor.capture());
+        assertEquals(2, messageCaptor.getAllValues().size());
+        assertEquals(1, messageCaptor.getAllValues().get(0).getStoredProcedureInvocation().getParameterAtIndex(0));
+        assertEquals(2, messageCaptor.getAllValues().get(1).getStoredProcedureInvocation().getParameterAtIndex(0));
+        assertTrue(responses.isEmpty());
+    }
+
+    @Test
+    public void testMalformedBulkInvocations() throws Exception {
+        ByteBuffer first = createMsg("hello", 1);
+        final int length = first.remaining();
+
+        // negative invocation count
+        ByteBuffer frame = ByteBuffer.allocate(1 + 4);
+        frame.put(ProcedureInvocationType.BULK_INVOCATIONS);
+        frame.putInt(-1);
+        frame.flip();
+        try {
+            m_ci.handleBulkRead(frame, m_handler, m_cxn);
+            fail();
+        } catch (IOException expected) {}
+
+        // bytes left over after the last invocation, nothing in the frame is run
+        frame = ByteBuffer.allocate(1 + 4 + 4 + length + 3);
+        frame.put(ProcedureInvocationType.BULK_INVOCATIONS);
+        frame.putInt(1);
+        frame.putInt(length);
+        frame.put(first);
+        frame.put(new byte[3]);
+        frame.flip();
+        try {
+            m_ci.handleBulkRead(frame, m_handler, m_cxn);
+            fail();
+        } catch (IOException expected) {}
+        verify(m_messenger, never()).send(anyLong(), any(VoltMessage.class));
+    }
+
+    @Test
+    public void testScatteredResponse() throws Exception {
+        ByteBuffer msg = createMsg("hello", 1);
+        Iv2InitiateTaskMessage initMsg = readAndCheck(msg, "hello", 1, true, true);
+
+        VoltTable first = new VoltTable(new ColumnInfo("ID", VoltType.BIGINT),
+                                        new ColumnInfo("NAME", VoltType.STRING));
+        for (int ii = 0; ii < 1000; ii++) {
+            first.addRow(ii, "row " + ii);
+        }
+        VoltTable second = new VoltTable(new ColumnInfo("EMPTY", VoltType.INTEGER));
+        InitiateResponseMessage respMsg = new InitiateResponseMessage(initMsg);
+        respMsg.setResults(new ClientResponseImpl(ClientResponse.SUCCESS,
+                new VoltTable[] { first, second }, "status"));
+        m_ci.m_mailbox.deliver(respMsg);
+
+        // the response can be sent as is from its table buffers
+        DeferredSerialization resp = responsesDS.take();
+        assertTrue(resp instanceof ScatteredDeferredSerialization);
+        int size = resp.getSerializedSize();
+        ByteBuffer flattened = ByteBuffer.allocate(size);
+        resp.serialize(flattened);
+        ByteBuffer scattered = ByteBuffer.allocate(size);
+        for (ByteBuffer buf : ((ScatteredDeferredSerialization)resp).serializeToBuffers()) {
+            scattered.put(buf);
+        }
+        assertFalse(flattened.hasRemaining());
+        assertFalse(scattered.hasRemaining());
+        assertEquals(flattened.flip(), scattered.flip());
+
+        // and still reads back as the original response
+        scattered.position(4);
+        ClientResponseImpl read = new ClientResponseImpl();
+        read.initFromBuffer(scattered);
+        assertEquals(2, read.getResults().length);
+        assertEquals(first, read.getResults()[0]);
+        assertEquals(second, read.getResults()[1]);
+    }
+
     @Test
     public void testGetPartitionKeys() throws IOException {
         //Unsupported type
@@ -52,6 +52,7 @@ package org.voltdb;
 
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
 import java.util.Date;
@@ -527,4 +528,72 @@ public class TestParameterSet extends TestCase {
 
         assertTrue(Arrays.deepEquals(pset1array, pset2array));
     }
+
+    /*
+     * A set read from a buffer is written back out byte for byte, without being decoded
+     */
+    public void testForwardsSerializedBytes() throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(5L, "text", null, new byte[] { 1, 2 },
+                new int[] { 3, 4 }, new String[] { "a", null }, new BigDecimal(3).setScale(VoltDecimalHelper.kDefaultScale));
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize() + 8);
+        buf.putInt(0xdead);
+        pset.flattenToBuffer(buf);
+        buf.putInt(0xbeef);
+        buf.flip();
+        buf.getInt();
+
+        ParameterSet lazy = ParameterSet.fromByteBuffer(buf);
+        assertEquals(0xbeef, buf.getInt());
+        assertEquals(pset.getSerializedSize(), lazy.getSerializedSize());
+        assertEquals(7, lazy.size());
+
+        ByteBuffer out = ByteBuffer.allocate(lazy.getSerializedSize());
+        lazy.flattenToBuffer(out);
+        assertEquals(0, out.remaining());
+        assertTrue(Arrays.equals(Arrays.copyOfRange(buf.array(), 4, 4 + out.capacity()), out.array()));
+
+        // decoding doesn't change what is written
+        assertEquals("text", lazy.getParam(1));
+        ByteBuffer again = ByteBuffer.allocate(lazy.getSerializedSize());
+        lazy.flattenToBuffer(again);
+        assertTrue(Arrays.equals(out.array(), again.array()));
+        assertTrue(Arrays.deepEquals(pset.toArray(), lazy.toArray()));
+        assertEquals(pset, lazy);
+    }
+
+    public void testDecodeFromReadOnlyBuffer() throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy("abc", 7, "\u00e9t\u00e9");
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+
+        ParameterSet lazy = ParameterSet.fromByteBuffer(buf.asReadOnlyBuffer());
+        assertEquals("\u00e9t\u00e9", lazy.getParam(2));
+        assertEquals(7, lazy.getParam(1));
+        assertTrue(Arrays.deepEquals(pset.toArray(), lazy.toArray()));
+    }
+
+    public void testGetParameterAtIndex() throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy("skip", new long[] { 1, 2 }, null, 12.5, "key");
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+
+        assertEquals("key", ParameterSet.getParameterAtIndex(4, buf));
+        assertEquals(0, buf.position());
+        assertEquals(12.5, ParameterSet.getParameterAtIndex(3, buf));
+        assertNull(ParameterSet.getParameterAtIndex(2, buf));
+    }
+
+    public void testTruncatedBuffer() throws IOException {
+        ParameterSet pset = ParameterSet.fromArrayNoCopy(1, "a longer string");
+        ByteBuffer buf = ByteBuffer.allocate(pset.getSerializedSize());
+        pset.flattenToBuffer(buf);
+        buf.flip();
+        buf.limit(buf.limit() - 1);
+        try {
+            ParameterSet.fromByteBuffer(buf);
+            fail();
+        } catch (BufferUnderflowException expected) {}
+    }
 }
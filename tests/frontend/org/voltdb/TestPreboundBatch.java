@@ -0,0 +1,83 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.voltdb.ProcedureRunner.PreboundBatch;
+import org.voltdb.ProcedureRunner.QueuedSQL;
+
+public class TestPreboundBatch extends TestCase
+{
+    private static SQLStmt stmt(String sql, long fragId) {
+        SQLStmt stmt = new SQLStmt(sql);
+        stmt.aggregator = new SQLStmt.Frag(fragId, new byte[20], true);
+        return stmt;
+    }
+
+    private static List<QueuedSQL> batch(SQLStmt... stmts) {
+        List<QueuedSQL> batch = new ArrayList<QueuedSQL>();
+        for (SQLStmt stmt : stmts) {
+            QueuedSQL qs = new QueuedSQL();
+            qs.stmt = stmt;
+            batch.add(qs);
+        }
+        return batch;
+    }
+
+    public void testBindAndMatch() {
+        SQLStmt select = stmt("select * from t where a = ?;", 1);
+        SQLStmt update = stmt("update t set b = ? where a = ?;", 2);
+        PreboundBatch prebound = new PreboundBatch(batch(select, update, select));
+
+        assertEquals(3, prebound.fragmentIds.length);
+        assertEquals(2, prebound.fragmentIds[1]);
+        assertEquals("update t set b = ? where a = ?;", prebound.sqlTexts[1]);
+        assertEquals(3, prebound.params.length);
+
+        assertTrue(prebound.matches(batch(select, update, select)));
+        assertFalse(prebound.matches(batch(select, update)));
+        assertFalse(prebound.matches(batch(update, select, select)));
+        // same text, different statement object
+        assertFalse(prebound.matches(batch(select, stmt("update t set b = ? where a = ?;", 2), select)));
+    }
+
+    public void testReplannedStatementDoesNotMatch() {
+        SQLStmt select = stmt("select * from t where a = ?;", 1);
+        PreboundBatch prebound = new PreboundBatch(batch(select));
+        select.aggregator = new SQLStmt.Frag(7, new byte[20], true);
+        assertFalse(prebound.matches(batch(select)));
+    }
+
+    public void testAdHocIsNotPrebound() {
+        SQLStmt select = stmt("select * from t where a = ?;", 1);
+        assertTrue(PreboundBatch.canPrebind(batch(select)));
+        SQLStmt adhoc = stmt("select * from t;", 3);
+        adhoc.inCatalog = false;
+        assertFalse(PreboundBatch.canPrebind(batch(select, adhoc)));
+    }
+}
@@ -0,0 +1,158 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.voltdb.types.TimestampType;
+
+public class TestProcedureInvokerGenerator extends TestCase
+{
+    public static class AllTypes extends VoltProcedure {
+        Object[] m_seen;
+
+        public long run(long a, int b, short c, byte d, double e, String f, BigDecimal g,
+                TimestampType h, byte[] i, long[] j, VoltTable k, String[] l) {
+            m_seen = new Object[] { a, b, c, d, e, f, g, h, i, j, k, l };
+            return a + b + c + d;
+        }
+    }
+
+    public static class NoParams extends VoltProcedure {
+        boolean m_ran = false;
+
+        public void run() {
+            m_ran = true;
+        }
+    }
+
+    public static class Tables extends VoltProcedure {
+        public VoltTable[] run(VoltTable t) {
+            return new VoltTable[] { t, t };
+        }
+    }
+
+    public static class Aborts extends VoltProcedure {
+        public long run(String msg) {
+            throw new VoltAbortException(msg);
+        }
+    }
+
+    // 130 parameters, so indexes above 127 are pushed with sipush instead of bipush
+    public static class Wide extends VoltProcedure {
+        public double run(int p0, int p1, int p2, int p3, int p4, int p5, int p6, int p7,
+                int p8, int p9, int p10, int p11, int p12, int p13, int p14, int p15,
+                int p16, int p17, int p18, int p19, int p20, int p21, int p22, int p23,
+                int p24, int p25, int p26, int p27, int p28, int p29, int p30, int p31,
+                int p32, int p33, int p34, int p35, int p36, int p37, int p38, int p39,
+                int p40, int p41, int p42, int p43, int p44, int p45, int p46, int p47,
+                int p48, int p49, int p50, int p51, int p52, int p53, int p54, int p55,
+                int p56, int p57, int p58, int p59, int p60, int p61, int p62, int p63,
+                int p64, int p65, int p66, int p67, int p68, int p69, int p70, int p71,
+                int p72, int p73, int p74, int p75, int p76, int p77, int p78, int p79,
+                int p80, int p81, int p82, int p83, int p84, int p85, int p86, int p87,
+                int p88, int p89, int p90, int p91, int p92, int p93, int p94, int p95,
+                int p96, int p97, int p98, int p99, int p100, int p101, int p102, int p103,
+                int p104, int p105, int p106, int p107, int p108, int p109, int p110, int p111,
+                int p112, int p113, int p114, int p115, int p116, int p117, int p118, int p119,
+                int p120, int p121, int p122, int p123, int p124, int p125, int p126, int p127,
+                int p128, double last) {
+            return p0 + p128 + last;
+        }
+    }
+
+    static class NotPublic extends VoltProcedure {
+        public long run(long a) {
+            return a;
+        }
+    }
+
+    private static Method runMethod(Class<?> c) {
+        for (Method m : c.getDeclaredMethods()) {
+            if (m.getName().equals("run")) {
+                return m;
+            }
+        }
+        throw new AssertionError();
+    }
+
+    public void testAllTypes() throws Throwable {
+        ProcedureInvoker invoker = ProcedureInvokerGenerator.getInvoker(runMethod(AllTypes.class));
+        assertNotNull(invoker);
+        AllTypes proc = new AllTypes();
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.BIGINT));
+        Object[] params = new Object[] { 1L, 2, (short)3, (byte)4, 5.5, "six", new BigDecimal("7.7"),
+                new TimestampType(8), new byte[] { 9 }, new long[] { 10 }, table, new String[] { "twelve" } };
+        assertEquals(10L, invoker.invoke(proc, params));
+        assertTrue(Arrays.deepEquals(params, proc.m_seen));
+
+        // nulls pass through for reference types
+        params[5] = null;
+        params[10] = null;
+        assertEquals(10L, invoker.invoke(proc, params));
+        assertNull(proc.m_seen[5]);
+    }
+
+    public void testCachedPerMethod() {
+        Method m = runMethod(AllTypes.class);
+        assertSame(ProcedureInvokerGenerator.getInvoker(m), ProcedureInvokerGenerator.getInvoker(m));
+    }
+
+    public void testReturnTypes() throws Throwable {
+        NoParams noParams = new NoParams();
+        assertNull(ProcedureInvokerGenerator.getInvoker(runMethod(NoParams.class)).invoke(noParams, new Object[0]));
+        assertTrue(noParams.m_ran);
+
+        VoltTable table = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.BIGINT));
+        VoltTable[] results = (VoltTable[])ProcedureInvokerGenerator.getInvoker(runMethod(Tables.class))
+                .invoke(new Tables(), new Object[] { table });
+        assertEquals(2, results.length);
+        assertSame(table, results[1]);
+
+        Object params[] = new Object[130];
+        for (int ii = 0; ii < 129; ii++) {
+            params[ii] = ii;
+        }
+        params[129] = 0.5;
+        assertEquals(128.5, ProcedureInvokerGenerator.getInvoker(runMethod(Wide.class)).invoke(new Wide(), params));
+    }
+
+    public void testExceptionsAreNotWrapped() throws Throwable {
+        ProcedureInvoker invoker = ProcedureInvokerGenerator.getInvoker(runMethod(Aborts.class));
+        try {
+            invoker.invoke(new Aborts(), new Object[] { "no" });
+            fail();
+        } catch (VoltProcedure.VoltAbortException e) {
+            assertEquals("no", e.getMessage());
+        }
+    }
+
+    public void testFallsBackToReflection() {
+        assertNull(ProcedureInvokerGenerator.getInvoker(runMethod(NotPublic.class)));
+    }
+}
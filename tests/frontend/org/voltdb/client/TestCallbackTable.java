@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.voltdb.client.Distributer.CallbackBookeeping;
+
+public class TestCallbackTable extends TestCase {
+
+    private static CallbackBookeeping record(long handle) {
+        CallbackBookeeping cb = new CallbackBookeeping();
+        cb.init(null, handle, 0, new NullCallback(), "proc", 0, false);
+        return cb;
+    }
+
+    public void testPutGetRemove() {
+        CallbackTable table = new CallbackTable();
+        CallbackBookeeping a = record(1);
+        CallbackBookeeping b = record(-1);
+        CallbackBookeeping c = record(Long.MIN_VALUE);
+
+        assertNull(table.put(1, a));
+        assertNull(table.put(-1, b));
+        assertNull(table.put(Long.MIN_VALUE, c));
+        assertEquals(3, table.size());
+        assertSame(a, table.get(1));
+        assertSame(b, table.get(-1));
+        assertSame(c, table.get(Long.MIN_VALUE));
+        assertFalse(table.containsKey(2));
+
+        assertSame(a, table.remove(1));
+        assertNull(table.remove(1));
+        assertEquals(2, table.size());
+    }
+
+    /*
+     * Compare against a HashMap with enough keys to force resizing and lots of
+     * collisions so backward shift deletion gets exercised
+     */
+    public void testRandomizedAgainstHashMap() {
+        final Random r = new Random(42);
+        CallbackTable table = new CallbackTable(2);
+        Map<Long, CallbackBookeeping> expected = new HashMap<Long, CallbackBookeeping>();
+        for (int ii = 0; ii < 200000; ii++) {
+            long handle = r.nextInt(5000);
+            if (r.nextBoolean()) {
+                CallbackBookeeping cb = record(handle);
+                assertSame(expected.put(handle, cb), table.put(handle, cb));
+            } else {
+                assertSame(expected.remove(handle), table.remove(handle));
+            }
+        }
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Long, CallbackBookeeping> e : expected.entrySet()) {
+            assertSame(e.getValue(), table.get(e.getKey()));
+        }
+
+        List<CallbackBookeeping> removed = new ArrayList<CallbackBookeeping>();
+        table.removeAll(removed);
+        assertEquals(expected.size(), removed.size());
+        assertEquals(0, table.size());
+        assertNull(table.get(expected.keySet().iterator().next()));
+    }
+
+    public void testPooling() {
+        CallbackTable table = new CallbackTable();
+        CallbackBookeeping cb = table.acquire(7);
+        cb.init(null, 7, 0, new NullCallback(), "proc", 0, false);
+        table.put(7, cb);
+        assertSame(cb, table.remove(7));
+        table.release(cb);
+        assertNull(cb.callback);
+        assertNull(cb.name);
+
+        // same handle maps to the same stripe, so the record comes back
+        assertSame(cb, table.acquire(7));
+        assertNotSame(cb, table.acquire(7));
+    }
+}
@@ -58,6 +58,7 @@ public class TestDistributer extends TestCase {
         volatile Semaphore invokedSubscribe = new Semaphore(0);
         volatile Semaphore invokedTopology = new Semaphore(0);
         volatile Semaphore invokedSystemInformation = new Semaphore(0);
+        AtomicInteger bulkFrames = new AtomicInteger(0);
 
         @Override
         public int getMaxRead() {
@@ -66,6 +67,23 @@ public class TestDistributer extends TestCase {
 
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
+            if (message.get(0) == ProcedureInvocationType.BULK_INVOCATIONS) {
+                bulkFrames.incrementAndGet();
+                message.get();
+                final int count = message.getInt();
+                for (int ii = 0; ii < count; ii++) {
+                    final int length = message.getInt();
+                    final ByteBuffer invocation = message.slice();
+                    invocation.limit(length);
+                    message.position(message.position() + length);
+                    handleInvocation(invocation, c);
+                }
+            } else {
+                handleInvocation(message, c);
+            }
+        }
+
+        private void handleInvocation(ByteBuffer message, Connection c) {
             try {
                 StoredProcedureInvocation spi = new StoredProcedureInvocation();
                 spi.initFromBuffer(message);
@@ -400,6 +418,135 @@ public class TestDistributer extends TestCase {
     }
 
 
+    @Test
+    public void testCallbackThreads() throws Exception {
+        MockVolt volt0 = null;
+        Distributer dist = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+
+            CSL csl = new CSL();
+            dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, null /* subject */,
+                    ClientConfig.DEFAULT_TIMEOUT_TICK_NANOS,
+                    2, true);
+            dist.addClientStatusListener(csl);
+            dist.createConnection("localhost", "", "", 20000);
+
+            final List<Long> callbackThreadIds = new ArrayList<Long>();
+            final List<Long> networkThreadIds = dist.getThreadIds();
+            final List<Long> handles = new ArrayList<Long>();
+            ProcedureCallback recordingCallback = new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    synchronized (handles) {
+                        callbackThreadIds.add(Thread.currentThread().getId());
+                        handles.add(((ClientResponseImpl)clientResponse).getClientHandle());
+                    }
+                }
+            };
+
+            dist.queue(new ProcedureInvocation(1, "i1", new Integer(1)),
+                    new ThrowingCallback(), true, System.nanoTime(), 0);
+            dist.drain();
+            assertTrue(csl.m_exceptionHandled);
+
+            for (int ii = 2; ii < 102; ii++) {
+                dist.queue(new ProcedureInvocation(ii, "i1", new Integer(1)),
+                        recordingCallback, true, System.nanoTime(), 0);
+            }
+            dist.drain();
+
+            // ordered per connection, so one callback thread saw them all in order
+            assertEquals(100, handles.size());
+            for (int ii = 0; ii < 100; ii++) {
+                assertEquals(ii + 2, handles.get(ii).longValue());
+                assertEquals(callbackThreadIds.get(0), callbackThreadIds.get(ii));
+            }
+            // and it is one of the threads the client won't let block
+            assertTrue(networkThreadIds.contains(callbackThreadIds.get(0)));
+
+            ClientStats stats = dist.createStatsContext().fetch().getStats();
+            assertEquals(101, stats.getInvocationsCompleted());
+            assertEquals(101, stats.m_callbacksInvoked);
+            assertTrue(stats.getMaxCallbackQueueDepth() >= 1);
+
+            // an Error from a callback doesn't kill its callback thread or hang drain
+            dist.queue(new ProcedureInvocation(102, "i1", new Integer(1)),
+                    new ProcedureCallback() {
+                        @Override
+                        public void clientCallback(ClientResponse clientResponse) {
+                            throw new AssertionError("callback failed");
+                        }
+                    }, true, System.nanoTime(), 0);
+            dist.queue(new ProcedureInvocation(103, "i1", new Integer(1)),
+                    recordingCallback, true, System.nanoTime(), 0);
+            dist.drain();
+            assertEquals(101, handles.size());
+            assertEquals(103, handles.get(100).longValue());
+        }
+        finally {
+            if (dist != null) {
+                dist.shutdown();
+            }
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+        }
+    }
+
+
+    @Test
+    public void testBulkInvocations() throws Exception {
+        MockVolt volt0 = null;
+        Distributer dist = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+
+            dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, null /* subject */,
+                    ClientConfig.DEFAULT_TIMEOUT_TICK_NANOS,
+                    0, true, true);
+            dist.createConnection("localhost", "", "", 20000);
+
+            final AtomicInteger succeeded = new AtomicInteger(0);
+            ProcedureCallback countingCallback = new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    if (clientResponse.getStatus() == ClientResponse.SUCCESS) {
+                        succeeded.incrementAndGet();
+                    }
+                }
+            };
+
+            // invocations queued faster than the network thread writes share frames
+            final int invocations = 1000;
+            for (int ii = 0; ii < invocations; ii++) {
+                dist.queue(new ProcedureInvocation(ii, "i1", new Integer(ii)),
+                        countingCallback, true, System.nanoTime(), 0);
+            }
+            dist.drain();
+
+            assertEquals(invocations, succeeded.get());
+            assertTrue(volt0.handler.bulkFrames.get() > 0);
+            assertTrue(volt0.handler.bulkFrames.get() < invocations);
+        }
+        finally {
+            if (dist != null) {
+                dist.shutdown();
+            }
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+        }
+    }
+
     /**
      * Test connection timeouts.
      * Create a fake voltdb that runs all happy for a while, but
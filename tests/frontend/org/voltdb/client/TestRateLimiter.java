@@ -0,0 +1,242 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class TestRateLimiter extends TestCase {
+
+    private static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    public void testMaxOutstanding() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimits(Integer.MAX_VALUE, 3);
+        for (int ii = 0; ii < 3; ii++) {
+            long now = System.nanoTime();
+            assertEquals(now, limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(now, NO_TIMEOUT, false));
+        }
+        try {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), TimeUnit.MILLISECONDS.toNanos(10), false);
+            fail();
+        } catch (TimeoutException expected) {}
+
+        // ignoring backpressure never blocks or takes a permit
+        long now = System.nanoTime();
+        assertEquals(now, limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(now, 0, true));
+        limiter.transactionResponseReceived(System.nanoTime(), -1, true);
+
+        limiter.transactionResponseReceived(System.nanoTime(), -1, false);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false);
+    }
+
+    /*
+     * A timed out sender must not leave a permit behind, or hand one back that it never took
+     */
+    public void testTimeoutHoldsNoPermits() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimits(Integer.MAX_VALUE, 2);
+        limiter.setProcedureLimits("proc", Integer.MAX_VALUE, 5);
+        RateLimiter.Budget procBudget = limiter.getProcedureBudget("proc");
+
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false, procBudget, null);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false, procBudget, null);
+        try {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, procBudget, null);
+            fail();
+        } catch (TimeoutException expected) {}
+        assertEquals(2, procBudget.getOutstanding());
+        assertEquals(2, limiter.m_budget.getOutstanding());
+
+        limiter.transactionResponseReceived(System.nanoTime(), -1, false, procBudget, null);
+        limiter.transactionResponseReceived(System.nanoTime(), -1, false, procBudget, null);
+        assertEquals(0, procBudget.getOutstanding());
+        assertEquals(0, limiter.m_budget.getOutstanding());
+    }
+
+    /*
+     * A send slot taken from a rate limited budget is given back when a later budget times out
+     */
+    public void testTimeoutRefundsRate() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimits(Integer.MAX_VALUE, 1);
+        limiter.setProcedureLimits("proc", 1, 10);
+        RateLimiter.Budget procBudget = limiter.getProcedureBudget("proc");
+
+        // hold the only client wide permit
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false);
+        for (int ii = 0; ii < 3; ii++) {
+            try {
+                limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, procBudget, null);
+                fail();
+            } catch (TimeoutException expected) {}
+        }
+        assertEquals(0, procBudget.getOutstanding());
+
+        // at one per second the failed sends would have pushed this slot three seconds out
+        limiter.transactionResponseReceived(System.nanoTime(), -1, false);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, procBudget, null);
+        assertEquals(1, procBudget.getOutstanding());
+    }
+
+    public void testProcedureAndPartitionBudgets() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimits(Integer.MAX_VALUE, 100);
+        limiter.setProcedureLimits("slow", Integer.MAX_VALUE, 1);
+        limiter.setPartitionLimits(3, Integer.MAX_VALUE, 2);
+        assertNull(limiter.getProcedureBudget("fast"));
+        assertNull(limiter.getPartitionBudget(2));
+        assertNull(limiter.getPartitionBudget(-1));
+
+        RateLimiter.Budget slow = limiter.getProcedureBudget("slow");
+        RateLimiter.Budget p3 = limiter.getPartitionBudget(3);
+
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false, slow, null);
+        try {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, slow, null);
+            fail();
+        } catch (TimeoutException expected) {}
+        // other procedures still get through
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, null, p3);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, null, p3);
+        try {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, null, p3);
+            fail();
+        } catch (TimeoutException expected) {}
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, null, null);
+        assertEquals(4, limiter.m_budget.getOutstanding());
+
+        // raising the limit lets a sender through without a response
+        limiter.setProcedureLimits("slow", Integer.MAX_VALUE, 2);
+        assertSame(slow, limiter.getProcedureBudget("slow"));
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false, slow, null);
+        assertEquals(2, slow.getOutstanding());
+    }
+
+    /*
+     * Lowering the limit while permits are held makes senders wait for enough responses
+     */
+    public void testShrinkWhileOutstanding() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimits(Integer.MAX_VALUE, 4);
+        for (int ii = 0; ii < 4; ii++) {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false);
+        }
+        limiter.setLimits(Integer.MAX_VALUE, 2);
+        assertEquals(2, limiter.getLimits()[1]);
+        for (int ii = 0; ii < 2; ii++) {
+            limiter.transactionResponseReceived(System.nanoTime(), -1, false);
+            try {
+                limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false);
+                fail();
+            } catch (TimeoutException expected) {}
+        }
+        limiter.transactionResponseReceived(System.nanoTime(), -1, false);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false);
+    }
+
+    public void testRate() throws Exception {
+        RateLimiter limiter = new RateLimiter();
+        limiter.setLimits(1000, Integer.MAX_VALUE);
+        final long start = System.nanoTime();
+        long blocked = 0;
+        for (int ii = 0; ii < 200; ii++) {
+            long now = System.nanoTime();
+            long after = limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(now, NO_TIMEOUT, false);
+            blocked += after - now;
+        }
+        final long elapsed = System.nanoTime() - start;
+        // 200 sends at 1000/sec take at least 199ms less the 1ms burst
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(197));
+        assertTrue(blocked > 0);
+
+        // a sender that can't get a slot before its timeout gives up right away
+        limiter.setLimits(1, Integer.MAX_VALUE);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false);
+        final long before = System.nanoTime();
+        try {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(before, TimeUnit.MILLISECONDS.toNanos(100), false);
+            fail();
+        } catch (TimeoutException expected) {}
+        assertTrue(System.nanoTime() - before < TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    public void testConcurrentSenders() throws Exception {
+        final RateLimiter limiter = new RateLimiter();
+        final int maxOutstanding = 8;
+        limiter.setLimits(Integer.MAX_VALUE, maxOutstanding);
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger maxSeen = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(16);
+        for (int t = 0; t < 16; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int ii = 0; ii < 10000; ii++) {
+                            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), NO_TIMEOUT, false);
+                            int now = outstanding.incrementAndGet();
+                            int max = maxSeen.get();
+                            while (now > max && !maxSeen.compareAndSet(max, now)) {
+                                max = maxSeen.get();
+                            }
+                            outstanding.decrementAndGet();
+                            limiter.transactionResponseReceived(System.nanoTime(), 1, false);
+                        }
+                    } catch (TimeoutException e) {
+                        throw new RuntimeException(e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertTrue(maxSeen.get() <= maxOutstanding);
+        assertEquals(0, limiter.m_budget.getOutstanding());
+    }
+
+    public void testBlockedTimeStats() {
+        ClientStats stats = new ClientStats();
+        stats.updateRateLimit(TimeUnit.MILLISECONDS.toNanos(2));
+        stats.updateRateLimit(TimeUnit.MILLISECONDS.toNanos(4));
+        ClientStats copy = new ClientStats(stats);
+        assertEquals(2, copy.getRateLimitBlockedInvocations());
+        assertEquals(3.0, copy.getAverageRateLimitBlockedTime(), 0.001);
+        assertEquals(4.0, copy.kPercentileRateLimitBlockedTime(1.0), 0.1);
+
+        stats.updateRateLimit(TimeUnit.MILLISECONDS.toNanos(6));
+        ClientStats diff = ClientStats.diff(new ClientStats(stats), copy);
+        assertEquals(1, diff.getRateLimitBlockedInvocations());
+        assertEquals(6.0, diff.getAverageRateLimitBlockedTime(), 0.001);
+
+        copy.add(diff);
+        assertEquals(3, copy.getRateLimitBlockedInvocations());
+        assertEquals(6.0, copy.kPercentileRateLimitBlockedTime(1.0), 0.1);
+    }
+}
@@ -0,0 +1,164 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestTimeoutWheel extends TestCase {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+    static class RecordingTimeout extends TimeoutWheel.Timeout {
+        final List<RecordingTimeout> m_log;
+        long m_expiredAt = -1;
+
+        RecordingTimeout(List<RecordingTimeout> log) {
+            m_log = log;
+        }
+
+        @Override
+        protected void expire(long nowNanos) {
+            m_expiredAt = nowNanos;
+            m_log.add(this);
+        }
+    }
+
+    public void testExpiresNoEarlierThanDeadline() {
+        List<RecordingTimeout> log = new ArrayList<RecordingTimeout>();
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 16, 0);
+        RecordingTimeout t = new RecordingTimeout(log);
+        assertTrue(wheel.schedule(t, 0, 5 * TICK + 1));
+
+        wheel.advance(5 * TICK);
+        assertTrue(log.isEmpty());
+        wheel.advance(6 * TICK);
+        assertEquals(1, log.size());
+        assertEquals(6 * TICK, t.m_expiredAt);
+
+        // already expired, cancel is a no-op
+        assertFalse(wheel.cancel(t));
+    }
+
+    public void testCancel() {
+        List<RecordingTimeout> log = new ArrayList<RecordingTimeout>();
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 16, 0);
+        RecordingTimeout a = new RecordingTimeout(log);
+        RecordingTimeout b = new RecordingTimeout(log);
+        RecordingTimeout c = new RecordingTimeout(log);
+        wheel.schedule(a, 0, 3 * TICK);
+        wheel.schedule(b, 0, 3 * TICK);
+        wheel.schedule(c, 0, 3 * TICK);
+
+        assertTrue(wheel.cancel(b));
+        assertFalse(wheel.cancel(b));
+
+        wheel.advance(3 * TICK);
+        assertEquals(2, log.size());
+        assertTrue(log.contains(a));
+        assertTrue(log.contains(c));
+
+        ClientTimeoutStats stats = wheel.getStats();
+        assertEquals(3, stats.getScheduled());
+        assertEquals(1, stats.getCancelled());
+        assertEquals(2, stats.getExpired());
+    }
+
+    public void testDeadlinesBeyondOneRevolution() {
+        List<RecordingTimeout> log = new ArrayList<RecordingTimeout>();
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 8, 0);
+        RecordingTimeout near = new RecordingTimeout(log);
+        RecordingTimeout far = new RecordingTimeout(log);
+        // same bucket, different revolutions
+        wheel.schedule(near, 0, 2 * TICK);
+        wheel.schedule(far, 0, 18 * TICK);
+
+        wheel.advance(2 * TICK);
+        assertEquals(1, log.size());
+        assertSame(near, log.get(0));
+
+        wheel.advance(10 * TICK);
+        assertEquals(1, log.size());
+
+        wheel.advance(18 * TICK);
+        assertEquals(2, log.size());
+        assertSame(far, log.get(1));
+    }
+
+    public void testPastDeadlineFiresOnNextSweep() {
+        List<RecordingTimeout> log = new ArrayList<RecordingTimeout>();
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 8, 0);
+        wheel.advance(4 * TICK);
+
+        RecordingTimeout t = new RecordingTimeout(log);
+        wheel.schedule(t, 0, 0);
+        wheel.advance(4 * TICK);
+        assertTrue(log.isEmpty());
+        wheel.advance(5 * TICK);
+        assertEquals(1, log.size());
+    }
+
+    public void testCatchUpAfterPause() {
+        List<RecordingTimeout> log = new ArrayList<RecordingTimeout>();
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 8, 0);
+        RecordingTimeout early = new RecordingTimeout(log);
+        RecordingTimeout late = new RecordingTimeout(log);
+        RecordingTimeout future = new RecordingTimeout(log);
+        wheel.schedule(early, 0, 3 * TICK);
+        wheel.schedule(late, 0, 20 * TICK);
+        wheel.schedule(future, 0, 120 * TICK);
+
+        // many revolutions behind, every passed deadline fires once in a single sweep
+        wheel.advance(100 * TICK);
+        assertEquals(2, log.size());
+        assertTrue(log.contains(early));
+        assertTrue(log.contains(late));
+
+        // timeouts scheduled after the catch up land after it
+        RecordingTimeout next = new RecordingTimeout(log);
+        wheel.schedule(next, 0, TICK);
+        wheel.advance(100 * TICK);
+        assertEquals(2, log.size());
+        wheel.advance(101 * TICK);
+        assertEquals(3, log.size());
+        assertSame(next, log.get(2));
+
+        wheel.advance(120 * TICK);
+        assertEquals(4, log.size());
+        assertSame(future, log.get(3));
+        assertEquals(4, wheel.getStats().getExpired());
+    }
+
+    public void testInfiniteTimeoutIsNeverScheduled() {
+        List<RecordingTimeout> log = new ArrayList<RecordingTimeout>();
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 8, 0);
+        RecordingTimeout t = new RecordingTimeout(log);
+        assertFalse(wheel.schedule(t, 0, Long.MAX_VALUE));
+        assertFalse(wheel.cancel(t));
+        assertEquals(0, wheel.getStats().getScheduled());
+    }
+}
@@ -0,0 +1,129 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.apache.cassandra_voltpatches.MurmurHash3;
+import org.voltdb.ElasticHashinator;
+
+public class TestTokenLookupTable extends TestCase {
+    private final Random m_random = new Random();
+
+    /*
+     * The partition of the first token <= hash, wrapping to the last token
+     */
+    private static int expectedPartition(TreeMap<Integer, Integer> ring, int hash) {
+        Integer floor = ring.floorKey(hash);
+        return ring.get(floor == null ? ring.lastKey() : floor);
+    }
+
+    private static TokenLookupTable toTable(TreeMap<Integer, Integer> ring) {
+        int tokens[] = new int[ring.size()];
+        int partitions[] = new int[ring.size()];
+        int ii = 0;
+        for (Map.Entry<Integer, Integer> e : ring.entrySet()) {
+            tokens[ii] = e.getKey();
+            partitions[ii] = e.getValue();
+            ii++;
+        }
+        return new TokenLookupTable(tokens, partitions);
+    }
+
+    private void checkRing(TreeMap<Integer, Integer> ring) {
+        TokenLookupTable table = toTable(ring);
+        assertEquals(ring.size(), table.getTokenCount());
+
+        // the tokens themselves and their neighbours
+        for (int token : ring.keySet()) {
+            for (int hash : new int[] { token - 1, token, token + 1 }) {
+                assertEquals(expectedPartition(ring, hash), table.partitionForToken(hash));
+            }
+        }
+        for (int hash : new int[] { Integer.MIN_VALUE, Integer.MAX_VALUE, -1, 0, 1 }) {
+            assertEquals(expectedPartition(ring, hash), table.partitionForToken(hash));
+        }
+        for (int ii = 0; ii < 100000; ii++) {
+            int hash = m_random.nextInt();
+            assertEquals(expectedPartition(ring, hash), table.partitionForToken(hash));
+        }
+    }
+
+    public void testRandomRings() {
+        for (int size : new int[] { 1, 2, 3, 7, 100, 1000, 16384, 100000 }) {
+            TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+            // rings that start at the bottom, the way the hashinator builds them, and rings that wrap
+            if (size % 2 == 0) {
+                ring.put(Integer.MIN_VALUE, 0);
+            }
+            while (ring.size() < size) {
+                ring.put(m_random.nextInt(), m_random.nextInt(16));
+            }
+            checkRing(ring);
+        }
+    }
+
+    public void testClusteredTokens() {
+        // many tokens in one range of the table
+        TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+        ring.put(Integer.MIN_VALUE, 0);
+        for (int ii = 0; ii < 1000; ii++) {
+            ring.put(1000 + ii * 3, ii % 7);
+        }
+        checkRing(ring);
+    }
+
+    public void testElasticRing() {
+        byte configBytes[] = ElasticHashinator.getConfigureBytes(6, ElasticHashinator.DEFAULT_TOTAL_TOKENS);
+        ElasticHashinator hashinator = new ElasticHashinator(configBytes, false);
+        TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>(hashinator.getTokens());
+        checkRing(ring);
+        for (int ii = 0; ii < 100000; ii++) {
+            int hash = m_random.nextInt();
+            assertEquals(expectedPartition(ring, hash), hashinator.partitionForToken(hash));
+        }
+    }
+
+    public void testLongHashMatchesBytes() {
+        long values[] = new long[1000];
+        for (int ii = 0; ii < values.length; ii++) {
+            values[ii] = ii < 20 ? ii - 10 : m_random.nextLong();
+        }
+        values[0] = Long.MIN_VALUE;
+        values[1] = Long.MAX_VALUE;
+        for (long value : values) {
+            ByteBuffer buf = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putLong(value);
+            assertEquals(Arrays.toString(buf.array()),
+                    MurmurHash3.hash3_x64_128(buf, 0, 8, 0), MurmurHash3.hash3_x64_128(value));
+        }
+    }
+}
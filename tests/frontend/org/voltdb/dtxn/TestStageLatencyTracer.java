@@ -0,0 +1,85 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.dtxn;
+
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltdb.VoltTable;
+import org.voltdb.dtxn.StageLatencyTracer.Stage;
+
+public class TestStageLatencyTracer extends TestCase
+{
+    public void testSampling() {
+        int sampled = 0;
+        for (int ii = 0; ii < 64 * 1000; ii++) {
+            if (StageLatencyTracer.start() != 0) {
+                sampled++;
+            }
+        }
+        // one in 64 on average
+        assertTrue(sampled > 500 && sampled < 2000);
+        // an unsampled start records nothing
+        final long before = StageLatencyTracer.copy(Stage.RESPONSE, false).getHistogramData().getTotalCount();
+        StageLatencyTracer.record(Stage.RESPONSE, 0);
+        assertEquals(before, StageLatencyTracer.copy(Stage.RESPONSE, false).getHistogramData().getTotalCount());
+    }
+
+    public void testIntervalsAndTotals() {
+        StageLatencyTracer.copy(Stage.EXECUTE, true);
+        final long total = StageLatencyTracer.copy(Stage.EXECUTE, false).getHistogramData().getTotalCount();
+        StageLatencyTracer.record(Stage.EXECUTE, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+        StageLatencyTracer.record(Stage.EXECUTE, System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(5));
+
+        AbstractHistogram interval = StageLatencyTracer.copy(Stage.EXECUTE, true);
+        assertEquals(2, interval.getHistogramData().getTotalCount());
+        assertTrue(interval.getHistogramData().getMinValue() >= 4900);
+        assertEquals(0, StageLatencyTracer.copy(Stage.EXECUTE, true).getHistogramData().getTotalCount());
+        assertEquals(total + 2, StageLatencyTracer.copy(Stage.EXECUTE, false).getHistogramData().getTotalCount());
+
+        // durations past the trackable range are clamped, not thrown
+        StageLatencyTracer.record(Stage.EXECUTE, 1);
+    }
+
+    public void testStatsRows() {
+        StageLatencyTracer.record(Stage.QUEUE, System.nanoTime() - TimeUnit.MICROSECONDS.toNanos(100));
+        StageLatencyStats stats = new StageLatencyStats(0);
+        VoltTable table = new VoltTable(stats.getColumnSchema().toArray(new VoltTable.ColumnInfo[0]));
+        for (Object[] row : stats.getStatsRows(false, 0L)) {
+            table.addRow(row);
+        }
+        assertEquals(Stage.values().length, table.getRowCount());
+        boolean sawQueue = false;
+        while (table.advanceRow()) {
+            if (table.getString("STAGE").equals("QUEUE")) {
+                sawQueue = true;
+                assertTrue(table.getLong("COUNT") >= 1);
+                assertTrue(table.getLong("MAX") >= 90);
+            }
+        }
+        assertTrue(sawQueue);
+    }
+}
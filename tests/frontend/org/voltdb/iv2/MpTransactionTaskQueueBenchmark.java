@@ -0,0 +1,215 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltdb.SiteProcedureConnection;
+import org.voltdb.StarvationTracker;
+import org.voltdb.StoredProcedureInvocation;
+import org.voltdb.dtxn.TransactionState;
+import org.voltdb.messaging.FragmentTaskMessage;
+import org.voltdb.rejoin.TaskLog;
+
+/**
+ * Drives an MpTransactionTaskQueue with many threads offering MP reads, up to a few
+ * thousand outstanding, against a trickle of MP writes. Read-only sites and the MP
+ * write site are stand-in threads that only flush the queue, so the queue's own
+ * scheduling is what limits throughput. Reports reads and writes completed per second.
+ *
+ * Run with optional arguments: offering threads (default 32), read sites (default 20),
+ * outstanding reads (default 4096), microseconds between writes (default 1000),
+ * seconds to run (default 10).
+ */
+public class MpTransactionTaskQueueBenchmark {
+
+    static class BenchState extends TransactionState {
+        BenchState(long txnId, boolean readOnly) {
+            super(null, new FragmentTaskMessage(0L, 0L, txnId, 0L, readOnly, false, false));
+        }
+
+        @Override
+        public boolean isSinglePartition() {
+            return false;
+        }
+
+        @Override
+        public StoredProcedureInvocation getInvocation() {
+            return null;
+        }
+    }
+
+    static class BenchTask extends TransactionTask {
+        BenchTask(long txnId, boolean readOnly, TransactionTaskQueue queue) {
+            super(new BenchState(txnId, readOnly), queue);
+        }
+
+        @Override
+        public void run(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runFromTaskLog(SiteProcedureConnection siteConnection) {}
+
+        @Override
+        public void runForRejoin(SiteProcedureConnection siteConnection, TaskLog rejoinTaskLog)
+                throws IOException {}
+    }
+
+    /*
+     * Hands reads to the read site threads instead of starting them on MpRoSites
+     */
+    static class BenchPool extends MpRoSitePool {
+        final BlockingQueue<TransactionTask> m_work = new LinkedBlockingQueue<TransactionTask>();
+        final int m_size;
+        int m_busy = 0;
+
+        BenchPool(int size) {
+            super(0, size);
+            m_size = size;
+        }
+
+        @Override
+        boolean canAcceptWork() {
+            return m_busy < m_size;
+        }
+
+        @Override
+        boolean doWork(long txnId, TransactionTask task) {
+            m_busy++;
+            m_work.offer(task);
+            return true;
+        }
+
+        @Override
+        void completeWork(long txnId) {
+            m_busy--;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final int offerThreads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        final int readSites = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        final int outstanding = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        final long writeIntervalMicros = args.length > 3 ? Long.parseLong(args[3]) : 1000;
+        final int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        final SiteTaskerQueue writeSiteQueue = new SiteTaskerQueue();
+        writeSiteQueue.setStarvationTracker(new StarvationTracker(0));
+        final MpTransactionTaskQueue queue = new MpTransactionTaskQueue(writeSiteQueue, 0);
+        final BenchPool pool = new BenchPool(readSites);
+        queue.setMpRoSitePool(pool);
+
+        final AtomicBoolean running = new AtomicBoolean(true);
+        final AtomicLong nextTxnId = new AtomicLong();
+        final AtomicLong reads = new AtomicLong();
+        final AtomicLong writes = new AtomicLong();
+        final Semaphore readPermits = new Semaphore(outstanding);
+
+        for (int i = 0; i < readSites; i++) {
+            Thread site = new Thread("Read site " + i) {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            TransactionTask task = pool.m_work.take();
+                            queue.flush(task.getTxnId());
+                            reads.incrementAndGet();
+                            readPermits.release();
+                        }
+                    } catch (InterruptedException e) {}
+                }
+            };
+            site.setDaemon(true);
+            site.start();
+        }
+
+        Thread writeSite = new Thread("Write site") {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        SiteTasker task = writeSiteQueue.take();
+                        queue.flush(((TransactionTask)task).getTxnId());
+                        writes.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {}
+            }
+        };
+        writeSite.setDaemon(true);
+        writeSite.start();
+
+        for (int i = 0; i < offerThreads; i++) {
+            Thread offerer = new Thread("Reader " + i) {
+                @Override
+                public void run() {
+                    while (running.get()) {
+                        try {
+                            if (!readPermits.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                                continue;
+                            }
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                        queue.offer(new BenchTask(nextTxnId.incrementAndGet(), true, queue));
+                    }
+                }
+            };
+            offerer.setDaemon(true);
+            offerer.start();
+        }
+
+        Thread writer = new Thread("Writer") {
+            @Override
+            public void run() {
+                while (running.get()) {
+                    queue.offer(new BenchTask(nextTxnId.incrementAndGet(), false, queue));
+                    long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(writeIntervalMicros);
+                    while (System.nanoTime() < deadline && running.get()) {
+                        Thread.yield();
+                    }
+                }
+            }
+        };
+        writer.setDaemon(true);
+        writer.start();
+
+        long lastReads = 0, lastWrites = 0;
+        for (int i = 0; i < seconds; i++) {
+            Thread.sleep(1000);
+            final long nowReads = reads.get(), nowWrites = writes.get();
+            System.out.printf("%,d reads/sec %,d writes/sec backlog %d%n",
+                    nowReads - lastReads, nowWrites - lastWrites, queue.size());
+            lastReads = nowReads;
+            lastWrites = nowWrites;
+        }
+        running.set(false);
+        System.out.printf("Average %,d reads/sec %,d writes/sec%n", reads.get() / seconds, writes.get() / seconds);
+    }
+}
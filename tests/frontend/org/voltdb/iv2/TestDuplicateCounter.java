@@ -0,0 +1,100 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+import org.voltdb.client.ClientResponse;
+import org.voltdb.messaging.InitiateResponseMessage;
+
+public class TestDuplicateCounter extends TestCase
+{
+    private static VoltTable table(int rows, long value) {
+        VoltTable t = new VoltTable(new VoltTable.ColumnInfo("A", VoltType.BIGINT),
+                new VoltTable.ColumnInfo("B", VoltType.STRING));
+        for (int ii = 0; ii < rows; ii++) {
+            t.addRow(value + ii, "row " + ii);
+        }
+        return t;
+    }
+
+    private static InitiateResponseMessage response(long sourceHSId, int sqlHash, VoltTable... results) {
+        InitiateResponseMessage msg = new InitiateResponseMessage();
+        ClientResponseImpl cr = new ClientResponseImpl(ClientResponse.SUCCESS, results, null);
+        cr.setHash(sqlHash);
+        msg.setResults(cr);
+        msg.m_sourceHSId = sourceHSId;
+        return msg;
+    }
+
+    public void testKeepsFirstAndReleasesReplicas() {
+        DuplicateCounter dut = new DuplicateCounter(10L, 100L, Arrays.asList(1L, 2L, 3L), "proc");
+        InitiateResponseMessage first = response(1L, 42, table(100, 0));
+        long size = DuplicateCounter.payloadSize(first.getClientResponseData().getResults());
+
+        assertEquals(DuplicateCounter.WAITING, dut.offer(first));
+        assertEquals(size, dut.getRetainedBytes());
+        assertEquals(DuplicateCounter.WAITING, dut.offer(response(2L, 42, table(100, 0))));
+        assertEquals(DuplicateCounter.DONE, dut.offer(response(3L, 42, table(100, 0))));
+
+        // the first response is sent on, the others were only compared
+        assertSame(first, dut.getLastResponse());
+        assertEquals(size, dut.getRetainedBytes());
+        assertEquals(2 * size, dut.getReleasedBytes());
+        assertEquals(0, dut.getResultMismatches());
+    }
+
+    public void testResultMismatchIsCountedNotFatal() {
+        DuplicateCounter dut = new DuplicateCounter(10L, 100L, Arrays.asList(1L, 2L), "proc");
+        assertEquals(DuplicateCounter.WAITING, dut.offer(response(1L, 42, table(5, 0))));
+        assertEquals(DuplicateCounter.DONE, dut.offer(response(2L, 42, table(5, 1))));
+        assertEquals(1, dut.getResultMismatches());
+    }
+
+    public void testSqlMismatchIsFatal() {
+        DuplicateCounter dut = new DuplicateCounter(10L, 100L, Arrays.asList(1L, 2L), "proc");
+        assertEquals(DuplicateCounter.WAITING, dut.offer(response(1L, 42, table(5, 0))));
+        assertEquals(DuplicateCounter.MISMATCH, dut.offer(response(2L, 43, table(5, 0))));
+    }
+
+    public void testResultHash() {
+        assertEquals(0, DuplicateCounter.resultHash(null));
+        assertEquals(0, DuplicateCounter.resultHash(new VoltTable[0]));
+        // hashing in chunks covers tables bigger than the chunk
+        VoltTable big = table(2000, 0);
+        assertTrue(big.getSerializedSize() > 8192);
+        assertEquals(DuplicateCounter.resultHash(new VoltTable[] { big }),
+                DuplicateCounter.resultHash(new VoltTable[] { table(2000, 0) }));
+        assertFalse(DuplicateCounter.resultHash(new VoltTable[] { big }) ==
+                DuplicateCounter.resultHash(new VoltTable[] { table(2000, 1) }));
+        // table boundaries and order count
+        assertFalse(DuplicateCounter.resultHash(new VoltTable[] { table(1, 0), table(1, 5) }) ==
+                DuplicateCounter.resultHash(new VoltTable[] { table(1, 5), table(1, 0) }));
+    }
+}
@@ -0,0 +1,76 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import junit.framework.TestCase;
+
+public class TestMpRoSitePool extends TestCase
+{
+    public void testWarmTargetFollowsPeak()
+    {
+        MpRoSitePool.WarmTarget target = new MpRoSitePool.WarmTarget(1, 8, 1000, 0);
+        assertEquals(1, target.get());
+
+        // nothing changes until the window ends
+        target.busy(5);
+        assertFalse(target.endWindowIfDone(999, 0));
+        assertEquals(1, target.get());
+
+        // grows straight to the peak
+        assertFalse(target.endWindowIfDone(1000, 0));
+        assertEquals(5, target.get());
+
+        // limited by the maximum
+        target.busy(12);
+        target.endWindowIfDone(2000, 0);
+        assertEquals(8, target.get());
+
+        // shrinks halfway to a lower peak, then to the minimum
+        target.busy(2);
+        assertTrue(target.endWindowIfDone(3000, 0));
+        assertEquals(5, target.get());
+        assertTrue(target.endWindowIfDone(4000, 0));
+        assertEquals(3, target.get());
+        assertTrue(target.endWindowIfDone(5000, 0));
+        assertEquals(2, target.get());
+        assertTrue(target.endWindowIfDone(6000, 0));
+        assertEquals(1, target.get());
+        assertFalse(target.endWindowIfDone(7000, 0));
+        assertEquals(1, target.get());
+    }
+
+    public void testWarmTargetCountsSitesBusyAcrossWindows()
+    {
+        MpRoSitePool.WarmTarget target = new MpRoSitePool.WarmTarget(2, 4, 1000, 0);
+        assertEquals(2, target.get());
+        target.busy(4);
+        // sites still busy when a window ends count towards the next one
+        target.endWindowIfDone(1000, 3);
+        assertEquals(4, target.get());
+        target.endWindowIfDone(2000, 0);
+        assertEquals(4, target.get());
+        target.endWindowIfDone(3000, 0);
+        assertEquals(2, target.get());
+    }
+}
@@ -26,6 +26,7 @@ package org.voltdb.iv2;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -34,12 +35,23 @@ import static org.mockito.Mockito.when;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import junit.framework.TestCase;
 
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.voltdb.StarvationTracker;
 
 public class TestMpTransactionTaskQueue extends TestCase
 {
@@ -150,4 +162,150 @@ public class TestMpTransactionTaskQueue extends TestCase
         verify(m_MPpool).doWork(eq(readtxnid), any(TransactionTask.class));
         verify(m_MPpool).doWork(eq(readtxnid2), any(TransactionTask.class));
     }
+
+    // Repair waits for a flush running on another thread, and doesn't hold on to the caller's masters
+    @Test
+    public void testRepairDuringFlush() throws Exception
+    {
+        TxnEgo txnId = TxnEgo.makeZero(MpInitiator.MP_INIT_PID).makeNext();
+        final long flushed = txnId.getTxnId();
+        m_dut.offer(makeTransactionTask(flushed, true));
+        txnId = txnId.makeNext();
+        final long running = txnId.getTxnId();
+        MpProcedureTask runningTask = makeTransactionTask(running, true);
+        m_dut.offer(runningTask);
+
+        // hold the flush inside the queue, like a site thread completing a read
+        final CountDownLatch inFlush = new CountDownLatch(1);
+        final CountDownLatch releaseFlush = new CountDownLatch(1);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                inFlush.countDown();
+                releaseFlush.await();
+                return null;
+            }
+        }).when(m_MPpool).completeWork(flushed);
+        Thread site = new Thread() {
+            @Override
+            public void run() {
+                m_dut.flush(flushed);
+            }
+        };
+        site.start();
+        assertTrue(inFlush.await(10, TimeUnit.SECONDS));
+
+        final SiteTasker repairTask = mock(SiteTasker.class);
+        final List<Long> masters = new ArrayList<Long>(Arrays.asList(1L, 2L));
+        final Map<Integer, Long> partitionMasters = new HashMap<Integer, Long>();
+        partitionMasters.put(0, 1L);
+        partitionMasters.put(1, 2L);
+        Thread mpi = new Thread() {
+            @Override
+            public void run() {
+                m_dut.repair(repairTask, masters, partitionMasters);
+            }
+        };
+        mpi.start();
+        // repair can't run until the flush is done, and must not return before it has
+        while (mpi.getState() != Thread.State.WAITING) {
+            assertTrue(mpi.isAlive());
+            Thread.sleep(1);
+        }
+        verify(m_MPpool, never()).repair(anyLong(), any(SiteTasker.class));
+
+        // the caller changes its masters once the repair was handed over
+        masters.clear();
+        partitionMasters.clear();
+        releaseFlush.countDown();
+        mpi.join(10000);
+        assertFalse(mpi.isAlive());
+        site.join(10000);
+
+        verify(m_MPpool).repair(running, repairTask);
+        Map<Integer, Long> expectedPartitionMasters = new HashMap<Integer, Long>();
+        expectedPartitionMasters.put(0, 1L);
+        expectedPartitionMasters.put(1, 2L);
+        verify(runningTask).doRestart(Arrays.asList(1L, 2L), expectedPartitionMasters);
+    }
+
+    // Reads and writes offered and flushed from many threads never run at the same time
+    @Test
+    public void testConcurrentReadsAndWrites() throws Exception
+    {
+        final SiteTaskerQueue writeSiteQueue = new SiteTaskerQueue();
+        writeSiteQueue.setStarvationTracker(new StarvationTracker(0));
+        final MpTransactionTaskQueue dut = new MpTransactionTaskQueue(writeSiteQueue, 0);
+        final MpTransactionTaskQueueBenchmark.BenchPool pool = new MpTransactionTaskQueueBenchmark.BenchPool(4);
+        dut.setMpRoSitePool(pool);
+
+        final int threads = 8;
+        final int tasksPerThread = 2000;
+        final AtomicLong nextTxnId = new AtomicLong();
+        final AtomicInteger runningReads = new AtomicInteger();
+        final AtomicInteger runningWrites = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean(false);
+        final CountDownLatch done = new CountDownLatch(threads * tasksPerThread);
+
+        List<Thread> sites = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            sites.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            TransactionTask task = pool.m_work.take();
+                            runningReads.incrementAndGet();
+                            if (runningWrites.get() != 0) {
+                                overlapped.set(true);
+                            }
+                            runningReads.decrementAndGet();
+                            dut.flush(task.getTxnId());
+                            done.countDown();
+                        }
+                    } catch (InterruptedException e) {}
+                }
+            });
+        }
+        sites.add(new Thread() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        SiteTasker task = writeSiteQueue.take();
+                        runningWrites.incrementAndGet();
+                        if (runningReads.get() != 0 || pool.m_busy != 0) {
+                            overlapped.set(true);
+                        }
+                        runningWrites.decrementAndGet();
+                        dut.flush(((TransactionTask)task).getTxnId());
+                        done.countDown();
+                    }
+                } catch (InterruptedException e) {}
+            }
+        });
+        for (Thread site : sites) {
+            site.setDaemon(true);
+            site.start();
+        }
+
+        for (int i = 0; i < threads; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < tasksPerThread; j++) {
+                        dut.offer(new MpTransactionTaskQueueBenchmark.BenchTask(
+                                    nextTxnId.incrementAndGet(), j % 50 != 0, dut));
+                    }
+                }
+            }.start();
+        }
+
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        assertFalse(overlapped.get());
+        assertEquals(0, dut.size());
+        for (Thread site : sites) {
+            site.interrupt();
+        }
+    }
 }
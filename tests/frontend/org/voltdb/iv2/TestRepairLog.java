@@ -331,4 +331,83 @@ public class TestRepairLog
         }
         Collections.sort(items, dut.m_handleComparator);
     }
+
+    @Test
+    public void testRingWrapAndShrink()
+    {
+        RepairLog.EntryRing ring = new RepairLog.EntryRing();
+        // wrap around the initial capacity a few times without growing
+        long next = 0;
+        for (int i = 0; i < 10 * RepairLog.EntryRing.MIN_CAPACITY; i++) {
+            ring.add(null, next, next);
+            next++;
+            ring.truncate(next - 11, false);
+        }
+        assertEquals(10, ring.size());
+        assertEquals(RepairLog.EntryRing.MIN_CAPACITY, ring.capacity());
+        assertEquals(next - 10, ring.handle(0));
+        assertEquals(next - 1, ring.txnId(9));
+
+        // grow while truncation is held back, then shrink once it catches up
+        for (int i = 0; i < 10000; i++) {
+            ring.add(null, next, next);
+            next++;
+        }
+        assertEquals(10010, ring.size());
+        assertTrue(ring.capacity() >= 10010);
+        for (int i = 0; i < 10010; i++) {
+            assertEquals(next - 10010 + i, ring.handle(i));
+        }
+        ring.truncate(next - 5, true);
+        assertEquals(4, ring.size());
+        assertEquals(next - 4, ring.handle(0));
+        assertTrue(ring.capacity() <= 2 * RepairLog.EntryRing.MIN_CAPACITY);
+        ring.truncate(Long.MAX_VALUE, false);
+        assertEquals(0, ring.size());
+        assertTrue(ring.isOrdered());
+    }
+
+    @Test
+    public void testStreamedContentsMergeInHandleOrder()
+    {
+        RepairLog dut = new RepairLog();
+        // interleave SP and MP messages with increasing handles
+        for (int i = 0; i < 100; i++) {
+            if (i % 3 == 0) {
+                CompleteTransactionMessage msg = mock(CompleteTransactionMessage.class);
+                when(msg.getTxnId()).thenReturn((long)i);
+                when(msg.getSpHandle()).thenReturn((long)i * 2);
+                when(msg.getTruncationHandle()).thenReturn(Long.MIN_VALUE);
+                dut.deliver(msg);
+            } else {
+                dut.deliver(truncInitMsg(Long.MIN_VALUE, i * 2));
+            }
+        }
+        List<Iv2RepairLogResponseMessage> stuff = dut.contents(1l, false);
+        assertEquals(101, stuff.size());
+        validateRepairLog(stuff);
+        for (int i = 1; i < stuff.size(); i++) {
+            assertEquals((i - 1) * 2, stuff.get(i).getHandle());
+            assertEquals(i, stuff.get(i).getSequence());
+        }
+
+        // the MPI only gets the MP log
+        stuff = dut.contents(1l, true);
+        assertEquals(35, stuff.size());
+        validateRepairLog(stuff);
+    }
+
+    @Test
+    public void testOutOfOrderHandlesAreSorted()
+    {
+        RepairLog dut = new RepairLog();
+        dut.deliver(truncInitMsg(Long.MIN_VALUE, 10));
+        dut.deliver(truncInitMsg(Long.MIN_VALUE, 5));
+        dut.deliver(truncInitMsg(Long.MIN_VALUE, 7));
+        List<Iv2RepairLogResponseMessage> stuff = dut.contents(1l, false);
+        assertEquals(4, stuff.size());
+        assertEquals(5, stuff.get(1).getHandle());
+        assertEquals(7, stuff.get(2).getHandle());
+        assertEquals(10, stuff.get(3).getHandle());
+    }
 }
@@ -0,0 +1,158 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.voltdb.StarvationTracker;
+import org.voltdb.VoltTable;
+
+public class TestSiteTaskerQueue extends TestCase
+{
+    static class NamedTask extends SiteTasker.SiteTaskerRunnable {
+        final int m_id;
+        NamedTask(int id) {
+            m_id = id;
+        }
+
+        @Override
+        void run() {}
+    }
+
+    public void testTakeBatch() throws Exception
+    {
+        SiteTaskerQueue queue = new SiteTaskerQueue();
+        StarvationTracker tracker = new StarvationTracker(0);
+        queue.setStarvationTracker(tracker);
+        for (int i = 0; i < 5; i++) {
+            queue.offer(new NamedTask(i));
+        }
+
+        List<SiteTasker> batch = new ArrayList<SiteTasker>();
+        assertEquals(3, queue.takeBatch(batch, 3));
+        assertEquals(2, queue.takeBatch(batch, 3));
+        assertTrue(queue.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, ((NamedTask)batch.get(i)).m_id);
+        }
+
+        // a batch of one is a plain take
+        queue.offer(new NamedTask(5));
+        queue.offer(new NamedTask(6));
+        assertEquals(1, queue.takeBatch(batch, 1));
+        assertEquals(5, ((NamedTask)batch.get(5)).m_id);
+
+        VoltTable stats = new VoltTable(tracker.getColumnSchema().toArray(new VoltTable.ColumnInfo[0]));
+        stats.addRow(tracker.getStatsRows(false, System.currentTimeMillis())[0]);
+        stats.advanceRow();
+        assertEquals(3, stats.getLong("BATCHES"));
+        assertEquals(2.0, stats.getDouble("AVG_BATCH_SIZE"), 0.001);
+        assertEquals(3, stats.getLong("MAX_BATCH_SIZE"));
+    }
+
+    public void testTakeBatchBlocks() throws Exception
+    {
+        final SiteTaskerQueue queue = new SiteTaskerQueue();
+        queue.setStarvationTracker(new StarvationTracker(0));
+        Thread producer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {}
+                queue.offer(new NamedTask(0));
+            }
+        };
+        producer.start();
+        List<SiteTasker> batch = new ArrayList<SiteTasker>();
+        assertEquals(1, queue.takeBatch(batch, 16));
+        producer.join();
+    }
+
+    private static SiteTasker offerLater(final BlockingQueue<SiteTasker> queue, final long delayMillis) {
+        final SiteTasker task = new NamedTask(0);
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {}
+                queue.offer(task);
+            }
+        }.start();
+        return task;
+    }
+
+    public void testAdaptiveWait() throws Exception
+    {
+        StarvationTracker tracker = new StarvationTracker(0);
+        BlockingQueue<SiteTasker> queue = new LinkedBlockingQueue<SiteTasker>();
+        SiteWaitStrategy strategy = new SiteWaitStrategy(SiteWaitStrategy.Mode.ADAPTIVE,
+                TimeUnit.MICROSECONDS.toNanos(64), TimeUnit.MICROSECONDS.toNanos(10));
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(64), strategy.getSpinNanos());
+
+        // blocking halves the spin time, down to the minimum
+        for (int i = 0; i < 10; i++) {
+            SiteTasker task = offerLater(queue, 5);
+            assertSame(task, strategy.take(queue, tracker));
+        }
+        assertEquals(SiteWaitStrategy.MIN_SPIN_NANOS, strategy.getSpinNanos());
+
+        // finding a task while spinning doubles it, up to the maximum
+        for (int i = 0; i < 10; i++) {
+            queue.offer(new NamedTask(i));
+            strategy.take(queue, tracker);
+        }
+        assertEquals(TimeUnit.MICROSECONDS.toNanos(64), strategy.getSpinNanos());
+    }
+
+    public void testBusySpin() throws Exception
+    {
+        StarvationTracker tracker = new StarvationTracker(0);
+        BlockingQueue<SiteTasker> queue = new LinkedBlockingQueue<SiteTasker>();
+        SiteWaitStrategy strategy = new SiteWaitStrategy(SiteWaitStrategy.Mode.BUSY_SPIN);
+        SiteTasker task = offerLater(queue, 20);
+        tracker.beginStarvation();
+        assertSame(task, strategy.take(queue, tracker));
+        tracker.endStarvation();
+
+        VoltTable stats = new VoltTable(tracker.getColumnSchema().toArray(new VoltTable.ColumnInfo[0]));
+        stats.addRow(tracker.getStatsRows(false, System.currentTimeMillis())[0]);
+        stats.advanceRow();
+        assertTrue(stats.getDouble("SPIN_PERCENT") > 0.0);
+        assertEquals(0.0, stats.getDouble("BLOCKED_PERCENT"), 1.0);
+
+        Thread.currentThread().interrupt();
+        try {
+            strategy.take(queue, tracker);
+            fail();
+        } catch (InterruptedException expected) {}
+    }
+}
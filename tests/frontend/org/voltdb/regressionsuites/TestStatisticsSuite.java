@@ -228,6 +228,47 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         assertTrue(invocations > 0);
     }
 
+    public void testLatencyStageStatistics() throws Exception {
+        System.out.println("\n\nTESTING LATENCY_STAGES STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[12];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("SITE_ID", VoltType.INTEGER);
+        expectedSchema[4] = new ColumnInfo("STAGE", VoltType.STRING);
+        expectedSchema[5] = new ColumnInfo("COUNT", VoltType.BIGINT);
+        expectedSchema[6] = new ColumnInfo("AVG", VoltType.FLOAT);
+        expectedSchema[7] = new ColumnInfo("P50", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("P99", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("P999", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("MAX", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("HISTOGRAM", VoltType.VARBINARY);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        VoltTable[] results = null;
+
+        for (int i = 0; i < 1000; i++) {
+            client.callProcedure("NEW_ORDER.insert", i);
+        }
+        results = client.callProcedure("@Statistics", "LATENCY_STAGES", 0).getResults();
+        // one aggregate table returned
+        assertEquals(1, results.length);
+        System.out.println("Test LATENCY_STAGES table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+        // one row per stage per host
+        assertEquals(HOSTS * 6, results[0].getRowCount());
+        // 1000 inserts at the default one in 64 sampling are all but certain to be seen
+        long received = 0;
+        while (results[0].advanceRow()) {
+            if (results[0].getString("STAGE").equals("RECEIVE")) {
+                received += results[0].getLong("COUNT");
+            }
+        }
+        assertTrue(received > 0);
+    }
+
     public void testInitiatorStatistics() throws Exception {
         System.out.println("\n\nTESTING INITIATOR STATS\n\n\n");
         Client client  = getFullyConnectedClient();
@@ -611,7 +652,7 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         // Based on doc, not code
         // HOST_ID, SITE_ID, and PARTITION_ID all differ.  Fixed to match
         // reality so tests would pass, but, ugh.
-        ColumnInfo[] expectedSchema = new ColumnInfo[9];
+        ColumnInfo[] expectedSchema = new ColumnInfo[11];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -621,6 +662,8 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[6] = new ColumnInfo("MESSAGES_READ", VoltType.BIGINT);
         expectedSchema[7] = new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT);
         expectedSchema[8] = new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("WRITE_CALLS", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("WRITE_CALLS_PER_MESSAGE", VoltType.FLOAT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -934,11 +977,145 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         validateRowSeenAtAllHosts(results[0], "HOSTNAME", results[0].getString("HOSTNAME"), true);
     }
 
+    public void testAcceptorStatistics() throws Exception {
+        System.out.println("\n\nTESTING ACCEPTOR STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[13];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("ACCEPTOR_ID", VoltType.INTEGER);
+        expectedSchema[4] = new ColumnInfo("PORT", VoltType.INTEGER);
+        expectedSchema[5] = new ColumnInfo("ADMIN", VoltType.TINYINT);
+        expectedSchema[6] = new ColumnInfo("CONNECTIONS_ACCEPTED", VoltType.BIGINT);
+        expectedSchema[7] = new ColumnInfo("CONNECTIONS_REJECTED", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("AUTHENTICATED", VoltType.BIGINT);
+        expectedSchema[9] = new ColumnInfo("AUTHENTICATION_FAILURES", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("AVG_AUTHENTICATION_MICROS", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("MAX_AUTHENTICATION_MICROS", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("PENDING_AUTHENTICATIONS", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        VoltTable[] results = null;
+        //
+        // ACCEPTOR
+        //
+        results = client.callProcedure("@Statistics", "ACCEPTOR", 0).getResults();
+        // one aggregate table returned
+        assertEquals(1, results.length);
+        System.out.println("Test ACCEPTOR table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+        // every host has at least a client port and an admin port acceptor,
+        // and between them they authenticated this test's connections
+        long authenticated = 0;
+        while (results[0].advanceRow()) {
+            authenticated += results[0].getLong("AUTHENTICATED");
+        }
+        assertTrue(results[0].getRowCount() >= 2 * HOSTS);
+        assertTrue(authenticated >= HOSTS);
+    }
+
+    public void testMpReadPoolStatistics() throws Exception {
+        System.out.println("\n\nTESTING MPREADPOOL STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[13];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("SITE_ID", VoltType.INTEGER);
+        expectedSchema[4] = new ColumnInfo("POOL_SIZE", VoltType.INTEGER);
+        expectedSchema[5] = new ColumnInfo("WARM_TARGET", VoltType.INTEGER);
+        expectedSchema[6] = new ColumnInfo("IDLE_SITES", VoltType.INTEGER);
+        expectedSchema[7] = new ColumnInfo("BUSY_SITES", VoltType.INTEGER);
+        expectedSchema[8] = new ColumnInfo("PEAK_BUSY_SITES", VoltType.INTEGER);
+        expectedSchema[9] = new ColumnInfo("SITES_CREATED", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("SITES_PREWARMED", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("SATURATED_COUNT", VoltType.BIGINT);
+        expectedSchema[12] = new ColumnInfo("SATURATED_MILLIS", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        VoltTable[] results = null;
+        //
+        // MPREADPOOL
+        //
+        results = client.callProcedure("@Statistics", "MPREADPOOL", 0).getResults();
+        // one aggregate table returned
+        assertEquals(1, results.length);
+        System.out.println("Test MPREADPOOL table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+        // one MPI per host, each with its initial sites already warm
+        assertEquals(HOSTS, results[0].getRowCount());
+        while (results[0].advanceRow()) {
+            assertTrue(results[0].getLong("SITES_PREWARMED") >= 1);
+            assertTrue(results[0].getLong("IDLE_SITES") >= 1);
+        }
+    }
+
+    public void testRepairLogStatistics() throws Exception {
+        System.out.println("\n\nTESTING REPAIRLOG STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[9];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("SITE_ID", VoltType.INTEGER);
+        expectedSchema[4] = new ColumnInfo("SP_ENTRIES", VoltType.INTEGER);
+        expectedSchema[5] = new ColumnInfo("MP_ENTRIES", VoltType.INTEGER);
+        expectedSchema[6] = new ColumnInfo("MAX_ENTRIES", VoltType.INTEGER);
+        expectedSchema[7] = new ColumnInfo("CAPACITY", VoltType.INTEGER);
+        expectedSchema[8] = new ColumnInfo("INDEX_BYTES", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        VoltTable[] results = null;
+        //
+        // REPAIRLOG
+        //
+        results = client.callProcedure("@Statistics", "REPAIRLOG", 0).getResults();
+        // one aggregate table returned
+        assertEquals(1, results.length);
+        System.out.println("Test REPAIRLOG table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+        // one row per initiator, including the MPI on each host
+        assertEquals(HOSTS * (SITES + 1), results[0].getRowCount());
+    }
+
+    public void testDuplicateCounterStatistics() throws Exception {
+        System.out.println("\n\nTESTING DUPLICATECOUNTER STATS\n\n\n");
+        Client client  = getFullyConnectedClient();
+
+        ColumnInfo[] expectedSchema = new ColumnInfo[9];
+        expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
+        expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
+        expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
+        expectedSchema[3] = new ColumnInfo("SITE_ID", VoltType.INTEGER);
+        expectedSchema[4] = new ColumnInfo("OUTSTANDING", VoltType.INTEGER);
+        expectedSchema[5] = new ColumnInfo("RETAINED_BYTES", VoltType.BIGINT);
+        expectedSchema[6] = new ColumnInfo("MAX_RETAINED_BYTES", VoltType.BIGINT);
+        expectedSchema[7] = new ColumnInfo("RELEASED_BYTES", VoltType.BIGINT);
+        expectedSchema[8] = new ColumnInfo("RESULT_MISMATCHES", VoltType.BIGINT);
+        VoltTable expectedTable = new VoltTable(expectedSchema);
+
+        VoltTable[] results = null;
+        //
+        // DUPLICATECOUNTER
+        //
+        results = client.callProcedure("@Statistics", "DUPLICATECOUNTER", 0).getResults();
+        // one aggregate table returned
+        assertEquals(1, results.length);
+        System.out.println("Test DUPLICATECOUNTER table: " + results[0].toString());
+        validateSchema(results[0], expectedTable);
+        // one row per SP initiator
+        assertEquals(HOSTS * SITES, results[0].getRowCount());
+    }
+
     public void testStarvationStatistics() throws Exception {
         System.out.println("\n\nTESTING STARVATION STATS\n\n\n");
         Client client  = getFullyConnectedClient();
 
-        ColumnInfo[] expectedSchema = new ColumnInfo[10];
+        ColumnInfo[] expectedSchema = new ColumnInfo[15];
         expectedSchema[0] = new ColumnInfo("TIMESTAMP", VoltType.BIGINT);
         expectedSchema[1] = new ColumnInfo("HOST_ID", VoltType.INTEGER);
         expectedSchema[2] = new ColumnInfo("HOSTNAME", VoltType.STRING);
@@ -949,6 +1126,11 @@ public class TestStatisticsSuite extends SaveRestoreBase {
         expectedSchema[7] = new ColumnInfo("MIN", VoltType.BIGINT);
         expectedSchema[8] = new ColumnInfo("MAX", VoltType.BIGINT);
         expectedSchema[9] = new ColumnInfo("STDDEV", VoltType.BIGINT);
+        expectedSchema[10] = new ColumnInfo("BATCHES", VoltType.BIGINT);
+        expectedSchema[11] = new ColumnInfo("AVG_BATCH_SIZE", VoltType.FLOAT);
+        expectedSchema[12] = new ColumnInfo("MAX_BATCH_SIZE", VoltType.BIGINT);
+        expectedSchema[13] = new ColumnInfo("SPIN_PERCENT", VoltType.FLOAT);
+        expectedSchema[14] = new ColumnInfo("BLOCKED_PERCENT", VoltType.FLOAT);
         VoltTable expectedTable = new VoltTable(expectedSchema);
 
         VoltTable[] results = null;
@@ -410,6 +410,41 @@ public class TestCatalogUtil extends TestCase {
         assertEquals(200, sysset.getQuerytimeout());
     }
 
+    public void testSystemSettingsCompression() throws Exception
+    {
+        final String depOff =
+            "<?xml version='1.0' encoding='UTF-8' standalone='no'?>" +
+            "<deployment>" +
+            "   <cluster hostcount='3' kfactor='1' sitesperhost='2'/>" +
+            "   <paths><voltdbroot path=\"/tmp/" + System.getProperty("user.name") + "\" /></paths>" +
+            "</deployment>";
+
+        final String depOn =
+            "<?xml version='1.0' encoding='UTF-8' standalone='no'?>" +
+            "<deployment>" +
+            "   <cluster hostcount='3' kfactor='1' sitesperhost='2'/>" +
+            "   <paths><voltdbroot path=\"/tmp/" + System.getProperty("user.name") + "\" /></paths>" +
+            "   <systemsettings>" +
+            "      <compression snapshot=\"none\" rejoin=\"deflate\"/>" +
+            "   </systemsettings>" +
+            "</deployment>";
+
+        final File tmpDepOff = VoltProjectBuilder.writeStringToTempFile(depOff);
+        long crcDepOff = CatalogUtil.compileDeployment(catalog, tmpDepOff.getPath(), true, false);
+        assertTrue(crcDepOff >= 0);
+        Cluster cluster = catalog.getClusters().get("cluster");
+        assertEquals(CompressionCodec.SNAPPY, CatalogUtil.getSnapshotCompression(cluster));
+        assertEquals(CompressionCodec.SNAPPY, CatalogUtil.getRejoinCompression(cluster));
+
+        setUp();
+        final File tmpDepOn = VoltProjectBuilder.writeStringToTempFile(depOn);
+        long crcDepOn = CatalogUtil.compileDeployment(catalog, tmpDepOn.getPath(), true, false);
+        assertTrue(crcDepOn >= 0);
+        cluster = catalog.getClusters().get("cluster");
+        assertEquals(CompressionCodec.NONE, CatalogUtil.getSnapshotCompression(cluster));
+        assertEquals(CompressionCodec.DEFLATE, CatalogUtil.getRejoinCompression(cluster));
+    }
+
 
     // XXX Need to add command log paths here when command logging
     // gets tweaked to create directories if they don't exist
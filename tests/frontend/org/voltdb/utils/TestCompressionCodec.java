@@ -0,0 +1,145 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2014 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.voltcore.utils.DBBPool;
+import org.voltcore.utils.DBBPool.BBContainer;
+
+public class TestCompressionCodec extends TestCase {
+
+    /*
+     * Compressible data, a few repeated words with some random bytes mixed in
+     */
+    private static byte[] makeData(int length) {
+        Random r = new Random(length);
+        String words[] = { "volt", "snapshot", "rejoin", "partition", "table" };
+        byte data[] = new byte[length];
+        int ii = 0;
+        while (ii < length) {
+            byte word[] = r.nextInt(4) == 0 ?
+                    new byte[] { (byte)r.nextInt() } : words[r.nextInt(words.length)].getBytes();
+            for (int jj = 0; jj < word.length && ii < length; jj++) {
+                data[ii++] = word[jj];
+            }
+        }
+        return data;
+    }
+
+    private static void roundTrip(CompressionCodec codec, byte data[]) throws IOException {
+        BBContainer input = DBBPool.allocateDirect(data.length + 16);
+        BBContainer compressed = DBBPool.allocateDirect(codec.maxCompressedLength(data.length) + 16);
+        BBContainer output = DBBPool.allocateDirect(data.length + 16);
+        try {
+            // start at offsets to check positions are honored
+            input.b().position(3);
+            input.b().put(data);
+            input.b().flip();
+            input.b().position(3);
+            compressed.b().clear();
+            compressed.b().position(5);
+
+            final int compressedLength = codec.compress(input.b(), compressed.b());
+            assertEquals(3, input.b().position());
+            assertEquals(5, compressed.b().position());
+            assertEquals(5 + compressedLength, compressed.b().limit());
+            assertTrue(compressedLength <= codec.maxCompressedLength(data.length));
+            assertTrue(compressedLength <= CompressionService.maxCompressedLength(data.length));
+
+            assertEquals(data.length, codec.uncompressedLength(compressed.b()));
+            output.b().clear();
+            output.b().position(7);
+            assertEquals(data.length, codec.uncompress(compressed.b(), output.b()));
+            assertEquals(5, compressed.b().position());
+            assertEquals(7, output.b().position());
+            assertEquals(7 + data.length, output.b().limit());
+
+            byte result[] = new byte[data.length];
+            output.b().get(result);
+            assertTrue(java.util.Arrays.equals(data, result));
+        } finally {
+            input.discard();
+            compressed.discard();
+            output.discard();
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            for (int length : new int[] { 0, 1, 31, 1024, 100000, 1024 * 1024 * 2 }) {
+                roundTrip(codec, makeData(length));
+            }
+        }
+    }
+
+    public void testCompressionRatios() throws Exception {
+        byte data[] = makeData(1024 * 1024);
+        ByteBuffer input = ByteBuffer.allocateDirect(data.length);
+        input.put(data);
+        input.flip();
+        byte none[] = CompressionService.compressBuffer(input, CompressionCodec.NONE);
+        byte snappy[] = CompressionService.compressBuffer(input, CompressionCodec.SNAPPY);
+        byte deflate[] = CompressionService.compressBuffer(input, CompressionCodec.DEFLATE);
+        assertEquals(data.length, none.length);
+        assertTrue(snappy.length < none.length);
+        assertTrue(deflate.length < snappy.length);
+
+        // the Snappy overloads are unchanged
+        assertTrue(java.util.Arrays.equals(data, CompressionService.decompressBytes(snappy)));
+        assertTrue(java.util.Arrays.equals(snappy, CompressionService.compressBytes(data)));
+    }
+
+    public void testIds() throws Exception {
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            assertEquals(codec, CompressionCodec.fromId(codec.getId()));
+            assertEquals(codec, CompressionCodec.fromSetting(" " + codec.name().toLowerCase()));
+        }
+        try {
+            CompressionCodec.fromId((byte)42);
+            fail();
+        } catch (IOException expected) {}
+    }
+
+    public void testCorruptDeflate() throws Exception {
+        BBContainer compressed = DBBPool.allocateDirect(64);
+        BBContainer output = DBBPool.allocateDirect(1024);
+        try {
+            compressed.b().putInt(100);
+            compressed.b().put(new byte[] { 1, 2, 3, 4, 5, 6, 7, 8 });
+            compressed.b().flip();
+            try {
+                CompressionCodec.DEFLATE.uncompress(compressed.b(), output.b());
+                fail();
+            } catch (IOException expected) {}
+        } finally {
+            compressed.discard();
+            output.discard();
+        }
+    }
+}
@@ -18,7 +18,6 @@
 package org.apache.cassandra_voltpatches;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 import com.google_voltpatches.common.primitives.UnsignedBytes;
 
@@ -72,11 +71,31 @@ public class MurmurHash3
         return hash3_x64_128(value, 0);
     }
 
+    /*
+     * Same as hashing the 8 little endian bytes of the value, without
+     * going through a buffer. Eight bytes are all tail and no blocks.
+     */
     public static int hash3_x64_128(long value, long seed) {
-        ByteBuffer buf = ByteBuffer.allocate(8);
-        buf.order(ByteOrder.LITTLE_ENDIAN);
-        buf.putLong(value);
-        return hash3_x64_128(buf, 0, 8, seed);
+        final long c1 = 0x87c37b91114253d5L;
+        final long c2 = 0x4cf5ad432745937fL;
+
+        long h1 = seed;
+        long h2 = seed;
+
+        long k1 = value;
+        k1 *= c1; k1  = rotl64(k1,31); k1 *= c2; h1 ^= k1;
+
+        h1 ^= 8; h2 ^= 8;
+
+        h1 += h2;
+        h2 += h1;
+
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+
+        h1 += h2;
+
+        return (int)(h1 >>> 32);
     }
 
     private final static long MASK = 0xFFFFFFFF00000000L;